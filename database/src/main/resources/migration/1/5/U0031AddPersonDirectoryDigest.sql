@@ -0,0 +1,4 @@
+insert into db_version (major, minor, patch, scriptname, description) values (1, 5, '0031', 
+'U0031AddPersonDirectoryDigest', 'Add digest of directory-sourced attributes to Person');
+
+ALTER TABLE Person ADD COLUMN directoryDigest VARCHAR(32) NULL;
@@ -0,0 +1,12 @@
+insert into db_version (major, minor, patch, scriptname, description) values (1, 5, '0032', 
+'U0032AddCacheGenerationTable', 'Add table holding the active and pending cache generations');
+
+create table CacheGeneration (
+    id  bigserial not null,
+    version int8 not null,
+    activeGeneration int8 not null,
+    pendingGeneration int8,
+    primary key (id)
+);
+
+insert into CacheGeneration (version, activeGeneration, pendingGeneration) values (0, 0, null);
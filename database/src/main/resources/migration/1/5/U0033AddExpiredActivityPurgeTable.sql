@@ -0,0 +1,12 @@
+insert into db_version (major, minor, patch, scriptname, description) values (1, 5, '0033', 
+'U0033AddExpiredActivityPurgeTable', 'Add table holding the progress of the expired activity purge');
+
+create table ExpiredActivityPurge (
+    id  bigserial not null,
+    version int8 not null,
+    expirationDate timestamp,
+    lastActivityId int8 not null,
+    primary key (id)
+);
+
+insert into ExpiredActivityPurge (version, expirationDate, lastActivityId) values (0, null, 0);
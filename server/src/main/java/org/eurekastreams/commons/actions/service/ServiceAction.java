@@ -48,6 +48,11 @@ public class ServiceAction implements Action
      */
     private final boolean readOnly;
 
+    /**
+     * Whether this action may run concurrently with the other actions of a batched request.
+     */
+    private boolean parallelizable = false;
+
     /**
      * Constructor for the ServiceAction class.
      * @param inValidationStrategy - instance of the {@link ValidationStrategy} for this action.
@@ -96,4 +101,24 @@ public class ServiceAction implements Action
         return readOnly;
     }
 
+    /**
+     * Whether this action may run concurrently with the other actions of a batched request. Only read-only actions
+     * which rely on no request thread state besides the security context should be marked.
+     *
+     * @return true if the action is safe to run in parallel.
+     */
+    public boolean isParallelizable()
+    {
+        return parallelizable;
+    }
+
+    /**
+     * @param inParallelizable
+     *            whether this action may run concurrently with the other actions of a batched request.
+     */
+    public void setParallelizable(final boolean inParallelizable)
+    {
+        parallelizable = inParallelizable;
+    }
+
 }
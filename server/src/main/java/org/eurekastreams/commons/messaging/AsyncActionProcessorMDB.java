@@ -15,6 +15,7 @@
  */
 package org.eurekastreams.commons.messaging;
 
+import javax.jms.BytesMessage;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.ObjectMessage;
@@ -22,6 +23,7 @@ import javax.jms.ObjectMessage;
 import org.apache.log4j.Logger;
 import org.eurekastreams.commons.server.UserActionRequest;
 import org.eurekastreams.commons.task.TaskExecutor;
+import org.eurekastreams.commons.task.UserActionRequestCodec;
 
 /**
  * This class takes a message off the queue, gets the request out of the message, gets the action, and calls the action,
@@ -76,9 +78,24 @@ public class AsyncActionProcessorMDB implements MessageListener
                 // run the action.
                 taskExecutor.execute(userActionRequest);
             }
+            else if (message instanceof BytesMessage)
+            {
+                log.debug("message received is of BytesMessage type.");
+
+                // pull the compactly encoded request out of the message
+                BytesMessage bytesMessage = (BytesMessage) message;
+                byte[] data = new byte[(int) bytesMessage.getBodyLength()];
+                bytesMessage.readBytes(data);
+                UserActionRequest userActionRequest = UserActionRequestCodec.decode(data);
+
+                log.debug("found action " + userActionRequest.getActionKey());
+
+                // run the action.
+                taskExecutor.execute(userActionRequest);
+            }
             else
             {
-                log.debug("message received is not of ObjectMessage type.");
+                log.debug("message received is not of ObjectMessage or BytesMessage type.");
             }
         }
         catch (Exception e)
@@ -15,16 +15,22 @@
  */
 package org.eurekastreams.commons.server;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.eurekastreams.commons.actions.service.ServiceAction;
 import org.eurekastreams.commons.client.ActionRPCService;
 import org.eurekastreams.commons.client.ActionRequest;
 import org.eurekastreams.commons.exceptions.SessionException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.security.Authentication;
+import org.springframework.security.context.SecurityContext;
 import org.springframework.security.context.SecurityContextHolder;
 import org.springframework.security.userdetails.UserDetails;
 import org.springframework.web.context.support.WebApplicationContextUtils;
@@ -56,6 +62,11 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
      */
     private ActionExecutorFactory actionExecutorFactory;
 
+    /**
+     * Runs the parallelizable actions of a batched request concurrently; null if batches run sequentially.
+     */
+    private ParallelActionRunner parallelActionRunner;
+
     /**
      * As a servlet, this class' init() method is called automatically. This is how we get context.
      * 
@@ -79,6 +90,16 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
         springContext = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
 
         actionExecutorFactory = (ActionExecutorFactory) springContext.getBean("actionExecutorFactory");
+
+        // opt-in: batches run sequentially unless a runner is configured and enabled
+        if (springContext.containsBean("parallelActionRunner"))
+        {
+            ParallelActionRunner runner = (ParallelActionRunner) springContext.getBean("parallelActionRunner");
+            if (runner.isEnabled())
+            {
+                parallelActionRunner = runner;
+            }
+        }
     }
 
     /**
@@ -130,7 +151,12 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
     @SuppressWarnings("unchecked")
     public final ActionRequest[] execute(final ActionRequest[] requests)
     {
-        UserDetails user = getUserDetails();
+        final UserDetails user = getUserDetails();
+
+        if (parallelActionRunner != null && requests.length > 1)
+        {
+            return executeParallel(requests, user);
+        }
 
         ActionRequest[] results = new ActionRequest[requests.length];
         for (int i = 0; i < requests.length; i++)
@@ -141,6 +167,83 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
         return results;
     }
 
+    /**
+     * Execute multiple ActionRequests, running the read-only actions marked parallelizable concurrently. The session
+     * check is done up front on the request thread since it needs the servlet request.
+     *
+     * @param requests
+     *            the request specifications to execute
+     * @param user
+     *            the user making the request
+     * @return the action responses encapsulated with the requests, in the order given
+     */
+    @SuppressWarnings("unchecked")
+    private ActionRequest[] executeParallel(final ActionRequest[] requests, final UserDetails user)
+    {
+        // the principal populator reads the security context, which is bound to the request thread
+        final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        List<Callable<ActionRequest>> tasks = new ArrayList<Callable<ActionRequest>>(requests.length);
+        boolean[] parallel = new boolean[requests.length];
+        for (int i = 0; i < requests.length; i++)
+        {
+            final ActionRequest request = requests[i];
+            parallel[i] = isParallelizable(request) && isSessionValid(request);
+            if (parallel[i])
+            {
+                tasks.add(new Callable<ActionRequest>()
+                {
+                    public ActionRequest call()
+                    {
+                        // restored afterwards since the runner falls back to the request thread when saturated
+                        SecurityContext previous = SecurityContextHolder.getContext();
+                        SecurityContextHolder.setContext(securityContext);
+                        try
+                        {
+                            return executeAction(user, request);
+                        }
+                        finally
+                        {
+                            SecurityContextHolder.setContext(previous);
+                        }
+                    }
+                });
+            }
+            else
+            {
+                tasks.add(new Callable<ActionRequest>()
+                {
+                    public ActionRequest call()
+                    {
+                        return execute(request, user);
+                    }
+                });
+            }
+        }
+
+        return parallelActionRunner.execute(requests, tasks, parallel);
+    }
+
+    /**
+     * Checks whether a request's action is a read-only service action marked parallelizable.
+     *
+     * @param request
+     *            the request.
+     * @return true if the action may run concurrently with others.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isParallelizable(final ActionRequest request)
+    {
+        String actionKey = request.getActionKey();
+        if (actionKey == null || !springContext.containsBean(actionKey))
+        {
+            return false;
+        }
+        Object springBean = springContext.getBean(actionKey);
+        return springBean instanceof ServiceAction && ((ServiceAction) springBean).isReadOnly()
+                && ((ServiceAction) springBean).isParallelizable();
+    }
+
     /**
      * Execute a single ActionRequest.
      * 
@@ -158,9 +261,7 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
             request.setSessionId(this.getThreadLocalRequest().getSession().getId());
         }
 
-        // check that the session id is the session id stamped in the request, ignoring on first action call
-        // from ApplicationEntryPoint.
-        if (!this.getThreadLocalRequest().getSession().getId().equals(request.getSessionId()))
+        if (!isSessionValid(request))
         {
             request.setResponse(new SessionException("Session Expired"));
             return request;
@@ -171,6 +272,20 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
         }
     }
 
+    /**
+     * Check that the session id is the session id stamped in the request, ignoring on first action call from
+     * ApplicationEntryPoint. Must be called on the request thread.
+     *
+     * @param request
+     *            the request.
+     * @return true if the request's session is current.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isSessionValid(final ActionRequest request)
+    {
+        return this.getThreadLocalRequest().getSession().getId().equals(request.getSessionId());
+    }
+
     /**
      * Try to get the User information from the session.
      * 
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.server;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eurekastreams.commons.client.ActionRequest;
+import org.eurekastreams.commons.client.ActionRequestImpl;
+import org.eurekastreams.commons.exceptions.GeneralException;
+
+/**
+ * Runs the actions of a batched request, starting the parallelizable ones on a bounded executor and running the rest
+ * on the calling thread while those are in flight. Results keep the order of the requests.
+ */
+public class ParallelActionRunner
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.getLog(ParallelActionRunner.class);
+
+    /**
+     * Executor running the parallelizable actions.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * How long each parallel action may run, in milliseconds, counted from when it starts running (or, while it is
+     * still waiting for a thread, from when the batch started waiting for it).
+     */
+    private final long actionTimeout;
+
+    /**
+     * If batches should be run in parallel at all.
+     */
+    private final boolean enabled;
+
+    /**
+     * Constructor.
+     *
+     * @param inExecutor
+     *            Executor running the parallelizable actions; should have a bounded number of threads and a bounded
+     *            queue, and reject actions once both are taken (they then run on the calling thread).
+     * @param inActionTimeout
+     *            How long each parallel action may run, in milliseconds.
+     * @param inEnabled
+     *            If batches should be run in parallel at all.
+     */
+    public ParallelActionRunner(final ExecutorService inExecutor, final long inActionTimeout,
+            final boolean inEnabled)
+    {
+        executor = inExecutor;
+        actionTimeout = inActionTimeout;
+        enabled = inEnabled;
+    }
+
+    /**
+     * @return If batches should be run in parallel at all.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Runs the actions of a batch.
+     *
+     * @param requests
+     *            The requests.
+     * @param tasks
+     *            For each request, the work which executes it and returns the response.
+     * @param parallel
+     *            For each request, whether it may run concurrently with the others.
+     * @return The executed requests, in the order given.
+     */
+    @SuppressWarnings("unchecked")
+    public ActionRequest[] execute(final ActionRequest[] requests, final List<Callable<ActionRequest>> tasks,
+            final boolean[] parallel)
+    {
+        ActionRequest[] results = new ActionRequest[requests.length];
+        Future<ActionRequest>[] futures = new Future[requests.length];
+        TimedTask[] timedTasks = new TimedTask[requests.length];
+
+        for (int i = 0; i < requests.length; i++)
+        {
+            if (parallel[i])
+            {
+                try
+                {
+                    timedTasks[i] = new TimedTask(tasks.get(i));
+                    futures[i] = executor.submit(timedTasks[i]);
+                }
+                catch (RejectedExecutionException ex)
+                {
+                    log.warn("Parallel action executor is saturated; running " + requests[i].getActionKey()
+                            + " on the request thread.");
+                }
+            }
+        }
+
+        for (int i = 0; i < requests.length; i++)
+        {
+            if (futures[i] == null)
+            {
+                results[i] = call(requests[i], tasks.get(i));
+            }
+        }
+
+        for (int i = 0; i < requests.length; i++)
+        {
+            if (futures[i] != null)
+            {
+                results[i] = await(requests[i], futures[i], timedTasks[i]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs an action on the calling thread.
+     *
+     * @param request
+     *            The request.
+     * @param task
+     *            The work which executes it.
+     * @return The executed request.
+     */
+    @SuppressWarnings("unchecked")
+    private ActionRequest call(final ActionRequest request, final Callable<ActionRequest> task)
+    {
+        try
+        {
+            return task.call();
+        }
+        catch (Exception ex)
+        {
+            log.error("Error running action " + request.getActionKey(), ex);
+            return fail(request, "Error running action.");
+        }
+    }
+
+    /**
+     * Waits for a parallel action to finish.
+     *
+     * @param request
+     *            The request.
+     * @param future
+     *            The running action.
+     * @param task
+     *            The action's task, which records when it started running.
+     * @return The executed request, or the request with an error response if it failed or did not finish in time.
+     */
+    @SuppressWarnings("unchecked")
+    private ActionRequest await(final ActionRequest request, final Future<ActionRequest> future,
+            final TimedTask task)
+    {
+        long waitStarted = System.currentTimeMillis();
+        try
+        {
+            while (true)
+            {
+                long started = task.getStartTime();
+                long deadline = (started > 0 ? started : waitStarted) + actionTimeout;
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                {
+                    future.cancel(true);
+                    log.error("Action " + request.getActionKey() + " did not finish within " + actionTimeout
+                            + " ms.");
+                    return fail(request, "Action timed out.");
+                }
+                try
+                {
+                    return future.get(remaining, TimeUnit.MILLISECONDS);
+                }
+                catch (TimeoutException ex)
+                {
+                    // loop: the deadline moves out if the action only started running while we waited
+                    continue;
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return fail(request, "Action interrupted.");
+        }
+        catch (java.util.concurrent.ExecutionException ex)
+        {
+            log.error("Error running action " + request.getActionKey(), ex.getCause());
+            return fail(request, "Error running action.");
+        }
+    }
+
+    /**
+     * Wraps an action's task to record when it starts running, so its time budget does not include time spent waiting
+     * for a thread or for the batch's other actions.
+     */
+    private static class TimedTask implements Callable<ActionRequest>
+    {
+        /**
+         * The action's task.
+         */
+        private final Callable<ActionRequest> task;
+
+        /**
+         * When the task started running (milliseconds), 0 if not yet.
+         */
+        private volatile long startTime = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param inTask
+         *            The action's task.
+         */
+        public TimedTask(final Callable<ActionRequest> inTask)
+        {
+            task = inTask;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ActionRequest call() throws Exception
+        {
+            startTime = System.currentTimeMillis();
+            return task.call();
+        }
+
+        /**
+         * @return When the task started running (milliseconds), 0 if not yet.
+         */
+        public long getStartTime()
+        {
+            return startTime;
+        }
+    }
+
+    /**
+     * Builds the failure response for a request. A copy of the request is returned since an abandoned action may
+     * still be running and setting its own response on the original.
+     *
+     * @param request
+     *            The request.
+     * @param message
+     *            The error message.
+     * @return A copy of the request, without params, with the error as its response.
+     */
+    @SuppressWarnings("unchecked")
+    private ActionRequest fail(final ActionRequest request, final String message)
+    {
+        ActionRequest failed = new ActionRequestImpl(request.getActionKey(), null);
+        failed.setId(request.getId());
+        failed.setSessionId(request.getSessionId());
+        failed.setResponse(new GeneralException(message));
+        return failed;
+    }
+}
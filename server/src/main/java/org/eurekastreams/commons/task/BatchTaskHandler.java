@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import java.util.List;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+
+/**
+ * Task handler which can submit all the requests queued by an action together.
+ */
+public interface BatchTaskHandler extends TaskHandler
+{
+    /**
+     * Submits a group of requests for asynchronous execution, all or none of them.
+     *
+     * @param inUserActionRequests
+     *            The user action request objects to perform asynchronously.
+     * @throws Exception
+     *             if the requests could not be submitted.
+     */
+    void handleTasks(List<UserActionRequest> inUserActionRequests) throws Exception;
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.eurekastreams.commons.server.UserActionRequest;
+
+/**
+ * Task executor which routes tasks to lanes by action key, so bulk work such as cache warming or feed refreshes is
+ * moved to a queue of its own with a few capped consumers and cannot take over the queue consumers needed by
+ * user-visible work. Tasks for action keys without a lane run on the calling (consumer) thread, as before.
+ */
+public class LaneTaskExecutor implements TaskExecutor
+{
+    /**
+     * The logger.
+     */
+    private Logger logger = Logger.getLogger(LaneTaskExecutor.class);
+
+    /**
+     * Executor actually running the tasks.
+     */
+    private final TaskExecutor taskExecutor;
+
+    /**
+     * Lane for each routed action key.
+     */
+    private final Map<String, TaskLane> lanesByActionKey;
+
+    /**
+     * Constructor.
+     *
+     * @param inTaskExecutor
+     *            Executor actually running the tasks.
+     * @param inActionKeysByLane
+     *            Action keys to route to each lane.
+     */
+    public LaneTaskExecutor(final TaskExecutor inTaskExecutor, final Map<TaskLane, List<String>> inActionKeysByLane)
+    {
+        taskExecutor = inTaskExecutor;
+        lanesByActionKey = new HashMap<String, TaskLane>();
+        for (Map.Entry<TaskLane, List<String>> entry : inActionKeysByLane.entrySet())
+        {
+            for (String actionKey : entry.getValue())
+            {
+                if (lanesByActionKey.put(actionKey, entry.getKey()) != null)
+                {
+                    throw new IllegalArgumentException("Action " + actionKey + " is routed to more than one lane.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a task to its action key's lane, or runs it on the calling thread if it has none (or it cannot be sent).
+     *
+     * @param inUserActionRequest
+     *            The task.
+     */
+    @Override
+    public void execute(final UserActionRequest inUserActionRequest)
+    {
+        TaskLane lane = lanesByActionKey.get(inUserActionRequest.getActionKey());
+        if (lane == null)
+        {
+            taskExecutor.execute(inUserActionRequest);
+        }
+        else
+        {
+            try
+            {
+                lane.submit(inUserActionRequest);
+            }
+            catch (Exception ex)
+            {
+                logger.warn("Could not send " + inUserActionRequest.getActionKey() + " to lane " + lane.getName()
+                        + "; running it on the calling thread.", ex);
+                taskExecutor.execute(inUserActionRequest);
+                return;
+            }
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(lane.toString());
+            }
+        }
+    }
+
+    /**
+     * @return The lanes.
+     */
+    public List<TaskLane> getLanes()
+    {
+        return new ArrayList<TaskLane>(new LinkedHashSet<TaskLane>(lanesByActionKey.values()));
+    }
+}
@@ -15,26 +15,37 @@
  */
 package org.eurekastreams.commons.task;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.jms.BytesMessage;
 import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.MessageProducer;
 import javax.jms.ObjectMessage;
 import javax.jms.Queue;
+import javax.jms.QueueBrowser;
 import javax.jms.Session;
 
 import org.apache.log4j.Logger;
 import org.eurekastreams.commons.server.UserActionRequest;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.jms.core.BrowserCallback;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.core.SessionCallback;
 
 /**
- * This class puts a request into a message and places it on the queue.
+ * This class puts a request into a message and places it on the queue. All the requests of a batch are sent on one
+ * producer in a single transacted session, so they are delivered all or none. Give it a caching connection factory so
+ * the connection, session and producer are reused between calls.
  * 
  */
-public class QueueTaskHandler implements TaskHandler
+public class QueueTaskHandler implements BatchTaskHandler
 {
 
     /**
@@ -51,6 +62,31 @@ public class QueueTaskHandler implements TaskHandler
      * The queue that the request will be placed upon.
      */
     private Queue jmsQueue;
+
+    /**
+     * Whether to send requests in the compact binary form instead of as serialized objects.
+     */
+    private boolean compactSerialization = false;
+
+    /**
+     * Number of messages sent.
+     */
+    private final AtomicLong messageCount = new AtomicLong();
+
+    /**
+     * Number of sends (single requests or batches).
+     */
+    private final AtomicLong sendCount = new AtomicLong();
+
+    /**
+     * Total time spent sending, in milliseconds.
+     */
+    private final AtomicLong totalSendMillis = new AtomicLong();
+
+    /**
+     * Longest single send, in milliseconds.
+     */
+    private final AtomicLong maxSendMillis = new AtomicLong();
     
     /**
      * The connection factory used to create the jms template.
@@ -62,6 +98,7 @@ public class QueueTaskHandler implements TaskHandler
     public void setConnectionFactory(final ConnectionFactory connectionFactory) 
     {
         this.jmsTemplate = new JmsTemplate(connectionFactory);
+        this.jmsTemplate.setSessionTransacted(true);
     }
      
     /**
@@ -76,6 +113,18 @@ public class QueueTaskHandler implements TaskHandler
         this.jmsQueue = queue;
     }
 
+    /**
+     * Whether to send requests in the compact binary form of {@link UserActionRequestCodec} instead of as serialized
+     * objects. Only enable once every consumer understands it.
+     * 
+     * @param inCompactSerialization
+     *            true to send compact messages.
+     */
+    public void setCompactSerialization(final boolean inCompactSerialization)
+    {
+        compactSerialization = inCompactSerialization;
+    }
+
     /**
      * Puts a request into a message and places it on the queue.
      * 
@@ -84,14 +133,169 @@ public class QueueTaskHandler implements TaskHandler
      */
     public void handleTask(final UserActionRequest inUserActionRequest) 
     {
+        long start = System.currentTimeMillis();
         this.jmsTemplate.send(this.jmsQueue, new MessageCreator() 
         {
             public Message createMessage(final Session session) throws JMSException 
             {
-                ObjectMessage message = session.createObjectMessage((Serializable) inUserActionRequest);
-                return message;
+                return buildMessage(session, inUserActionRequest);
             }     
-       });
-       logger.info("Message sent to message broker");
-   }
+        });
+        recordSend(1, start);
+        logger.info("Message sent to message broker");
+    }
+
+    /**
+     * Puts each request into a message and places them all on the queue in one transaction.
+     * 
+     * @param inUserActionRequests
+     *            the requests
+     */
+    public void handleTasks(final List<UserActionRequest> inUserActionRequests)
+    {
+        if (inUserActionRequests.isEmpty())
+        {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        this.jmsTemplate.execute(new SessionCallback()
+        {
+            public Object doInJms(final Session session) throws JMSException
+            {
+                MessageProducer producer = session.createProducer(jmsQueue);
+                try
+                {
+                    for (UserActionRequest request : inUserActionRequests)
+                    {
+                        producer.send(buildMessage(session, request));
+                    }
+                    session.commit();
+                }
+                catch (JMSException ex)
+                {
+                    session.rollback();
+                    throw ex;
+                }
+                finally
+                {
+                    producer.close();
+                }
+                return null;
+            }
+        }, true);
+        recordSend(inUserActionRequests.size(), start);
+        logger.info(inUserActionRequests.size() + " messages sent to message broker");
+    }
+
+    /**
+     * Puts a request into a message.
+     * 
+     * @param session
+     *            the session.
+     * @param request
+     *            the request.
+     * @return the message.
+     * @throws JMSException
+     *             on error.
+     */
+    private Message buildMessage(final Session session, final UserActionRequest request) throws JMSException
+    {
+        if (compactSerialization && UserActionRequestCodec.canEncode(request))
+        {
+            try
+            {
+                BytesMessage message = session.createBytesMessage();
+                message.writeBytes(UserActionRequestCodec.encode(request));
+                return message;
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Could not encode " + request.getActionKey() + " compactly; sending it as an object.",
+                        ex);
+            }
+        }
+        ObjectMessage message = session.createObjectMessage((Serializable) request);
+        return message;
+    }
+
+    /**
+     * Records the metrics for a send.
+     * 
+     * @param messages
+     *            number of messages sent.
+     * @param start
+     *            when the send started.
+     */
+    private void recordSend(final int messages, final long start)
+    {
+        long elapsed = System.currentTimeMillis() - start;
+        messageCount.addAndGet(messages);
+        sendCount.incrementAndGet();
+        totalSendMillis.addAndGet(elapsed);
+        long max = maxSendMillis.get();
+        while (elapsed > max && !maxSendMillis.compareAndSet(max, elapsed))
+        {
+            max = maxSendMillis.get();
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Sent " + messages + " message(s) in " + elapsed + " ms");
+        }
+    }
+
+    /**
+     * @return the number of messages sent.
+     */
+    public long getMessageCount()
+    {
+        return messageCount.get();
+    }
+
+    /**
+     * @return the number of sends (single requests or batches).
+     */
+    public long getSendCount()
+    {
+        return sendCount.get();
+    }
+
+    /**
+     * @return the average time of a send, in milliseconds.
+     */
+    public double getAverageSendMillis()
+    {
+        long sends = sendCount.get();
+        return sends == 0 ? 0 : (double) totalSendMillis.get() / sends;
+    }
+
+    /**
+     * @return the longest single send, in milliseconds.
+     */
+    public long getMaxSendMillis()
+    {
+        return maxSendMillis.get();
+    }
+
+    /**
+     * Counts the messages waiting on the queue by browsing it. Browsing walks the queue, so this is meant for
+     * occasional monitoring reads, not for every send.
+     *
+     * @return the number of messages on the queue.
+     */
+    public int getQueueDepth()
+    {
+        return (Integer) jmsTemplate.browse(jmsQueue, new BrowserCallback()
+        {
+            public Object doInJms(final Session session, final QueueBrowser browser) throws JMSException
+            {
+                int count = 0;
+                for (Enumeration< ? > messages = browser.getEnumeration(); messages.hasMoreElements(); count++)
+                {
+                    messages.nextElement();
+                }
+                return count;
+            }
+        });
+    }
 }
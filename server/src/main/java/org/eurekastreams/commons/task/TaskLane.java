@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+
+/**
+ * A lane of the task queue processor: a JMS queue of its own for a kind of bulk work, consumed by a listener container
+ * with a capped number of consumers. Tasks routed to the lane are sent to its queue, so they stay persisted until a
+ * lane consumer has run them; the lane consumers' listener runs them through this class to keep the lane's metrics,
+ * which are exported over JMX along with the depth of the lane's queue.
+ */
+public class TaskLane implements TaskExecutor, TaskLaneMetrics
+{
+    /**
+     * Name of the lane.
+     */
+    private final String name;
+
+    /**
+     * Handler sending tasks to the lane's queue.
+     */
+    private final QueueTaskHandler queueTaskHandler;
+
+    /**
+     * Executor actually running the tasks.
+     */
+    private final TaskExecutor taskExecutor;
+
+    /**
+     * Number of tasks sent to the lane's queue.
+     */
+    private final AtomicLong routedCount = new AtomicLong();
+
+    /**
+     * Number of tasks running.
+     */
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    /**
+     * Number of tasks completed.
+     */
+    private final AtomicLong completedCount = new AtomicLong();
+
+    /**
+     * Total execution time of completed tasks, in milliseconds.
+     */
+    private final AtomicLong totalExecutionMillis = new AtomicLong();
+
+    /**
+     * Longest task execution, in milliseconds.
+     */
+    private final AtomicLong maxExecutionMillis = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param inName
+     *            Name of the lane.
+     * @param inQueueTaskHandler
+     *            Handler sending tasks to the lane's queue.
+     * @param inTaskExecutor
+     *            Executor actually running the tasks.
+     */
+    public TaskLane(final String inName, final QueueTaskHandler inQueueTaskHandler,
+            final TaskExecutor inTaskExecutor)
+    {
+        name = inName;
+        queueTaskHandler = inQueueTaskHandler;
+        taskExecutor = inTaskExecutor;
+    }
+
+    /**
+     * Sends a task to the lane's queue.
+     *
+     * @param inUserActionRequest
+     *            The task.
+     * @throws Exception
+     *             If the task could not be sent.
+     */
+    public void submit(final UserActionRequest inUserActionRequest) throws Exception
+    {
+        queueTaskHandler.handleTask(inUserActionRequest);
+        routedCount.incrementAndGet();
+    }
+
+    /**
+     * Runs a task received from the lane's queue; returns once it is done, so the message is only acknowledged after.
+     *
+     * @param inUserActionRequest
+     *            The task.
+     */
+    @Override
+    public void execute(final UserActionRequest inUserActionRequest)
+    {
+        activeCount.incrementAndGet();
+        long start = System.currentTimeMillis();
+        try
+        {
+            taskExecutor.execute(inUserActionRequest);
+        }
+        finally
+        {
+            activeCount.decrementAndGet();
+            recordExecution(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Records the metrics for a completed task.
+     *
+     * @param elapsed
+     *            Execution time in milliseconds.
+     */
+    private void recordExecution(final long elapsed)
+    {
+        completedCount.incrementAndGet();
+        totalExecutionMillis.addAndGet(elapsed);
+        long max = maxExecutionMillis.get();
+        while (elapsed > max && !maxExecutionMillis.compareAndSet(max, elapsed))
+        {
+            max = maxExecutionMillis.get();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueDepth()
+    {
+        return queueTaskHandler.getQueueDepth();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRoutedCount()
+    {
+        return routedCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getActiveCount()
+    {
+        return activeCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCompletedCount()
+    {
+        return completedCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getAverageExecutionMillis()
+    {
+        long completed = completedCount.get();
+        return completed == 0 ? 0 : (double) totalExecutionMillis.get() / completed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxExecutionMillis()
+    {
+        return maxExecutionMillis.get();
+    }
+
+    /**
+     * @return Summary of the lane's metrics.
+     */
+    @Override
+    public String toString()
+    {
+        return "TaskLane " + name + ": routed " + getRoutedCount() + ", active " + getActiveCount() + ", completed "
+                + getCompletedCount() + ", avg ms " + getAverageExecutionMillis() + ", max ms "
+                + getMaxExecutionMillis();
+    }
+}
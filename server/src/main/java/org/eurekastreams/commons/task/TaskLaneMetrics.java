@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+/**
+ * Metrics of a task lane, as exposed for monitoring (JMX).
+ */
+public interface TaskLaneMetrics
+{
+    /**
+     * @return Name of the lane.
+     */
+    String getName();
+
+    /**
+     * @return Number of tasks waiting in the lane's queue (across all servers).
+     */
+    int getQueueDepth();
+
+    /**
+     * @return Number of tasks sent to the lane's queue by this server.
+     */
+    long getRoutedCount();
+
+    /**
+     * @return Number of tasks running on this server.
+     */
+    int getActiveCount();
+
+    /**
+     * @return Number of tasks completed on this server.
+     */
+    long getCompletedCount();
+
+    /**
+     * @return Average execution time of the tasks completed on this server, in milliseconds.
+     */
+    double getAverageExecutionMillis();
+
+    /**
+     * @return Longest task execution on this server, in milliseconds.
+     */
+    long getMaxExecutionMillis();
+}
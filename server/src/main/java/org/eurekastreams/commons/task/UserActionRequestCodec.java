@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+
+/**
+ * Compact binary form of a {@link UserActionRequest} for queue messages. Nearly every queued request has no user and
+ * a null, numeric or string parameter; those are written directly instead of through Java serialization of the whole
+ * request. Other parameters are Java serialized on their own. Requests carrying a user are not encoded.
+ *
+ * The format is a version byte, the action key, a parameter type byte, then the parameter.
+ */
+public final class UserActionRequestCodec
+{
+    /** Format version. */
+    private static final byte VERSION = 1;
+
+    /** Parameter type: null. */
+    private static final byte TYPE_NULL = 0;
+
+    /** Parameter type: Long. */
+    private static final byte TYPE_LONG = 1;
+
+    /** Parameter type: Integer. */
+    private static final byte TYPE_INTEGER = 2;
+
+    /** Parameter type: String, as a length-prefixed UTF-8 byte array. */
+    private static final byte TYPE_STRING = 3;
+
+    /** Parameter type: Java serialized object, as a length-prefixed byte array. */
+    private static final byte TYPE_SERIALIZED = 4;
+
+    /** Character set for strings. */
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * Constructor to prevent instantiation.
+     */
+    private UserActionRequestCodec()
+    {
+    }
+
+    /**
+     * Checks whether a request can be encoded.
+     *
+     * @param request
+     *            The request.
+     * @return true if the request carries no user.
+     */
+    public static boolean canEncode(final UserActionRequest request)
+    {
+        return request.getUser() == null;
+    }
+
+    /**
+     * Encodes a request.
+     *
+     * @param request
+     *            The request; must satisfy {@link #canEncode(UserActionRequest)}.
+     * @return The encoded bytes.
+     * @throws IOException
+     *             if the parameter cannot be serialized.
+     */
+    public static byte[] encode(final UserActionRequest request) throws IOException
+    {
+        if (!canEncode(request))
+        {
+            throw new IllegalArgumentException("Requests carrying a user cannot be encoded.");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeUTF(request.getActionKey());
+
+        Serializable params = request.getParams();
+        if (params == null)
+        {
+            out.writeByte(TYPE_NULL);
+        }
+        else if (params instanceof Long)
+        {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) params);
+        }
+        else if (params instanceof Integer)
+        {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) params);
+        }
+        else if (params instanceof String)
+        {
+            out.writeByte(TYPE_STRING);
+            writeBytes(out, ((String) params).getBytes(CHARSET));
+        }
+        else
+        {
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            ObjectOutputStream objectOut = new ObjectOutputStream(serialized);
+            objectOut.writeObject(params);
+            objectOut.close();
+            out.writeByte(TYPE_SERIALIZED);
+            writeBytes(out, serialized.toByteArray());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a request.
+     *
+     * @param data
+     *            The encoded bytes.
+     * @return The request.
+     * @throws IOException
+     *             if the data is malformed.
+     */
+    public static UserActionRequest decode(final byte[] data) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte version = in.readByte();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported user action request format version " + version);
+        }
+        String actionKey = in.readUTF();
+
+        Serializable params;
+        byte type = in.readByte();
+        switch (type)
+        {
+        case TYPE_NULL:
+            params = null;
+            break;
+        case TYPE_LONG:
+            params = in.readLong();
+            break;
+        case TYPE_INTEGER:
+            params = in.readInt();
+            break;
+        case TYPE_STRING:
+            params = new String(readBytes(in), CHARSET);
+            break;
+        case TYPE_SERIALIZED:
+            ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)));
+            try
+            {
+                params = (Serializable) objectIn.readObject();
+            }
+            catch (ClassNotFoundException ex)
+            {
+                throw new IOException("Unknown parameter class for action " + actionKey + ": " + ex.getMessage());
+            }
+            break;
+        default:
+            throw new IOException("Unknown parameter type " + type + " for action " + actionKey);
+        }
+        return new UserActionRequest(actionKey, null, params);
+    }
+
+    /**
+     * Writes a length-prefixed byte array.
+     *
+     * @param out
+     *            The output.
+     * @param value
+     *            The bytes.
+     * @throws IOException
+     *             on write error.
+     */
+    private static void writeBytes(final DataOutputStream out, final byte[] value) throws IOException
+    {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    /**
+     * Reads a length-prefixed byte array.
+     *
+     * @param in
+     *            The input.
+     * @return The bytes.
+     * @throws IOException
+     *             on read error.
+     */
+    private static byte[] readBytes(final DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            throw new IOException("Negative length " + length + " in user action request");
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+}
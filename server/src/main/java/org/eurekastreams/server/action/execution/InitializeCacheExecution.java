@@ -16,6 +16,7 @@
 package org.eurekastreams.server.action.execution;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
@@ -24,11 +25,17 @@ import org.eurekastreams.commons.actions.context.ActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.CacheRebuildRequest;
 import org.eurekastreams.server.persistence.mappers.cache.Cache;
+import org.eurekastreams.server.persistence.mappers.cache.CacheRebuildTracker;
 
 /**
  * This action initialized/warms the cache by running a series of cache loaders. This action is meant to be run
  * asynchronously at application startup.
+ *
+ * Either clears the cache before warming it, or (hot-swap mode) starts a rebuild into a new cache generation: users
+ * keep being served from the current generation while the warmers fill the new one, which is activated when the last
+ * warmer finishes.
  */
 public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<ActionContext>
 {
@@ -42,6 +49,11 @@ public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<Ac
      */
     private Cache cache;
 
+    /**
+     * Tracker of hot-swap rebuilds; null to warm in place.
+     */
+    private CacheRebuildTracker rebuildTracker;
+
     /**
      * Action key.
      */
@@ -62,7 +74,21 @@ public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<Ac
     }
 
     /**
-     * Clear cache (if not null) and queue list of cache warming actions.
+     * Constructor for hot-swap mode: the cache is rebuilt into a new generation instead of being cleared.
+     * 
+     * @param inActionKeys
+     *            Action keys of the warmers; each is given its {@link CacheRebuildRequest} as parameter.
+     * @param inRebuildTracker
+     *            Tracker of hot-swap rebuilds.
+     */
+    public InitializeCacheExecution(final List<String> inActionKeys, final CacheRebuildTracker inRebuildTracker)
+    {
+        rebuildTracker = inRebuildTracker;
+        actionKeys = inActionKeys;
+    }
+
+    /**
+     * Clear cache (if not null) or start a rebuild (in hot-swap mode), and queue list of cache warming actions.
      * 
      * @param inActionContext
      *            {@link TaskHandlerActionContext}.
@@ -71,7 +97,22 @@ public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<Ac
     @Override
     public Serializable execute(final TaskHandlerActionContext<ActionContext> inActionContext)
     {
-        if (cache != null)
+        List<String> keys = new ArrayList<String>();
+        for (String key : actionKeys)
+        {
+            if (key != null && !key.isEmpty())
+            {
+                keys.add(key);
+            }
+        }
+
+        long generation = 0;
+        if (rebuildTracker != null)
+        {
+            generation = rebuildTracker.beginRebuild();
+            log.info("Rebuilding cache into generation " + generation);
+        }
+        else if (cache != null)
         {
             log.info("Clearing Cache");
             cache.clear();
@@ -81,13 +122,13 @@ public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<Ac
             log.info("Skipping Cache clearing");
         }
 
-        for (String key : actionKeys)
+        for (int i = 0; i < keys.size(); i++)
         {
-            if (key != null && !key.isEmpty())
-            {
-                log.info("Queueing up action: " + key);
-                inActionContext.getUserActionRequests().add(new UserActionRequest(key, null, null));
-            }
+            String key = keys.get(i);
+            log.info("Queueing up action: " + key);
+            Serializable params = rebuildTracker == null ? null : new CacheRebuildRequest(generation, i + 1, keys
+                    .size());
+            inActionContext.getUserActionRequests().add(new UserActionRequest(key, null, params));
         }
         return null;
     }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.CacheRebuildRequest;
+import org.eurekastreams.server.action.request.CacheWarmingChunkRequest;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.cache.CacheRebuildTracker;
+
+/**
+ * Queues the cache warming of all entities of a type as chunks of ascending ids, one task per chunk. Each chunk is a
+ * message of its own on the task queue; the task queue processor moves chunk tasks to the persistent cache warming
+ * lane queue and only acknowledges them once warmed, so a warm-up interrupted by a restart carries on with the chunks
+ * not yet done. Chunks run concurrently and finish in any order. When run as part of a hot-swap rebuild (a
+ * {@link CacheRebuildRequest} parameter), the chunks carry the rebuild so their completion can be tracked.
+ */
+public class QueueCacheWarmingChunksExecution implements TaskHandlerExecutionStrategy<ActionContext>
+{
+    /**
+     * The logger.
+     */
+    private Log log = LogFactory.make();
+
+    /**
+     * Action key of the task warming a chunk.
+     */
+    private final String warmChunkActionKey;
+
+    /**
+     * Mapper to get the ids of the entities to warm.
+     */
+    private final DomainMapper<Serializable, List<Serializable>> idMapper;
+
+    /**
+     * Number of entities per chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * Tracker of hot-swap rebuilds; null if rebuilds are not used.
+     */
+    private final CacheRebuildTracker rebuildTracker;
+
+    /**
+     * Constructor.
+     * 
+     * @param inWarmChunkActionKey
+     *            Action key of the task warming a chunk.
+     * @param inIdMapper
+     *            Mapper to get the ids of the entities to warm.
+     * @param inChunkSize
+     *            Number of entities per chunk.
+     */
+    public QueueCacheWarmingChunksExecution(final String inWarmChunkActionKey,
+            final DomainMapper<Serializable, List<Serializable>> inIdMapper, final int inChunkSize)
+    {
+        this(inWarmChunkActionKey, inIdMapper, inChunkSize, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param inWarmChunkActionKey
+     *            Action key of the task warming a chunk.
+     * @param inIdMapper
+     *            Mapper to get the ids of the entities to warm.
+     * @param inChunkSize
+     *            Number of entities per chunk.
+     * @param inRebuildTracker
+     *            Tracker of hot-swap rebuilds; null if rebuilds are not used.
+     */
+    public QueueCacheWarmingChunksExecution(final String inWarmChunkActionKey,
+            final DomainMapper<Serializable, List<Serializable>> inIdMapper, final int inChunkSize,
+            final CacheRebuildTracker inRebuildTracker)
+    {
+        warmChunkActionKey = inWarmChunkActionKey;
+        idMapper = inIdMapper;
+        chunkSize = inChunkSize;
+        rebuildTracker = inRebuildTracker;
+    }
+
+    /**
+     * Queues the chunks.
+     * 
+     * @param inActionContext
+     *            {@link TaskHandlerActionContext}; the params may hold the {@link CacheRebuildRequest} this warm-up is
+     *            part of.
+     * @return null.
+     */
+    @Override
+    public Serializable execute(final TaskHandlerActionContext<ActionContext> inActionContext)
+    {
+        Serializable params = inActionContext.getActionContext().getParams();
+        CacheRebuildRequest rebuild = params instanceof CacheRebuildRequest && rebuildTracker != null
+                ? (CacheRebuildRequest) params : null;
+
+        List<Long> ids = new ArrayList<Long>();
+        for (Serializable id : idMapper.execute(null))
+        {
+            ids.add(((Number) id).longValue());
+        }
+        Collections.sort(ids);
+
+        int chunkCount = (ids.size() + chunkSize - 1) / chunkSize;
+        if (rebuild != null)
+        {
+            rebuildTracker.beginWarmer(rebuild);
+            if (chunkCount == 0)
+            {
+                rebuildTracker.warmerFinished(rebuild);
+            }
+        }
+
+        List<UserActionRequest> tasks = inActionContext.getUserActionRequests();
+        for (int chunk = 0; chunk < chunkCount; chunk++)
+        {
+            ArrayList<Long> chunkIds = new ArrayList<Long>(ids.subList(chunk * chunkSize, Math.min(ids.size(),
+                    (chunk + 1) * chunkSize)));
+            tasks.add(new UserActionRequest(warmChunkActionKey, null, new CacheWarmingChunkRequest(chunkIds,
+                    chunk + 1, chunkCount, rebuild)));
+        }
+
+        log.info("Queued " + chunkCount + " " + warmChunkActionKey + " chunks for " + ids.size() + " entities");
+        return null;
+    }
+}
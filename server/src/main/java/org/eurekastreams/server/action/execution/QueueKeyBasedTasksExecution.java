@@ -22,10 +22,14 @@ import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
 import org.eurekastreams.commons.actions.context.ActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.CacheRebuildRequest;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.cache.CacheRebuildTracker;
 
 /**
- * Queue up async actions for cache initialization.
+ * Queue up async actions for cache initialization. When run as part of a hot-swap rebuild, reports itself finished once
+ * the actions are queued; the queued actions write to the new generation as long as they run before it is activated,
+ * and to the active generation afterwards.
  * 
  */
 public class QueueKeyBasedTasksExecution implements TaskHandlerExecutionStrategy<ActionContext>
@@ -40,6 +44,11 @@ public class QueueKeyBasedTasksExecution implements TaskHandlerExecutionStrategy
      */
     private DomainMapper<Serializable, List<Serializable>> objectKeyMapper;
 
+    /**
+     * Tracker of hot-swap rebuilds; null if rebuilds are not used.
+     */
+    private CacheRebuildTracker rebuildTracker;
+
     /**
      * Constructor.
      * 
@@ -50,9 +59,27 @@ public class QueueKeyBasedTasksExecution implements TaskHandlerExecutionStrategy
      */
     public QueueKeyBasedTasksExecution(final List<String> inActionKeys,
             final DomainMapper<Serializable, List<Serializable>> inOjectKeyMapper)
+    {
+        this(inActionKeys, inOjectKeyMapper, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param inActionKeys
+     *            Action key (name) for task to queue.
+     * @param inOjectKeyMapper
+     *            Mapper to get list of keys of entities to warm.
+     * @param inRebuildTracker
+     *            Tracker of hot-swap rebuilds; null if rebuilds are not used.
+     */
+    public QueueKeyBasedTasksExecution(final List<String> inActionKeys,
+            final DomainMapper<Serializable, List<Serializable>> inOjectKeyMapper,
+            final CacheRebuildTracker inRebuildTracker)
     {
         actionKeys = inActionKeys;
         objectKeyMapper = inOjectKeyMapper;
+        rebuildTracker = inRebuildTracker;
     }
 
     /**
@@ -65,6 +92,17 @@ public class QueueKeyBasedTasksExecution implements TaskHandlerExecutionStrategy
     @Override
     public Serializable execute(final TaskHandlerActionContext<ActionContext> inActionContext)
     {
+        CacheRebuildRequest rebuild = null;
+        if (rebuildTracker != null)
+        {
+            Serializable params = inActionContext.getActionContext().getParams();
+            if (params instanceof CacheRebuildRequest)
+            {
+                rebuild = (CacheRebuildRequest) params;
+                rebuildTracker.waitForRebuildVisible();
+            }
+        }
+
         List<Serializable> objectKeys = objectKeyMapper.execute(null);
 
         List<UserActionRequest> tasks = inActionContext.getUserActionRequests();
@@ -77,6 +115,11 @@ public class QueueKeyBasedTasksExecution implements TaskHandlerExecutionStrategy
             }
         }
 
+        if (rebuild != null)
+        {
+            rebuildTracker.warmerFinished(rebuild);
+        }
+
         return null;
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.actions.ExecutionStrategy;
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.action.request.CacheWarmingChunkRequest;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.cache.CacheRebuildTracker;
+
+/**
+ * Warms the cache for one chunk of entities: each bulk loader is given the whole chunk, each single loader is run for
+ * every id of it. Chunks run concurrently and finish in any order; each logs its own progress. Chunks of a hot-swap
+ * rebuild report their completion to the rebuild tracker.
+ */
+public class WarmCacheChunkExecution implements ExecutionStrategy<ActionContext>
+{
+    /**
+     * The logger.
+     */
+    private Log log = LogFactory.make();
+
+    /**
+     * Force-refresh mappers taking the list of ids of a chunk.
+     */
+    private final List<DomainMapper<List<Long>, ? >> bulkLoaders;
+
+    /**
+     * Force-refresh mappers taking a single id, for caches without a bulk loader.
+     */
+    private final List<DomainMapper<Long, ? >> singleLoaders;
+
+    /**
+     * Tracker of hot-swap rebuilds; null if rebuilds are not used.
+     */
+    private final CacheRebuildTracker rebuildTracker;
+
+    /**
+     * Constructor.
+     * 
+     * @param inBulkLoaders
+     *            Force-refresh mappers taking the list of ids of a chunk.
+     * @param inSingleLoaders
+     *            Force-refresh mappers taking a single id, for caches without a bulk loader.
+     */
+    public WarmCacheChunkExecution(final List<DomainMapper<List<Long>, ? >> inBulkLoaders,
+            final List<DomainMapper<Long, ? >> inSingleLoaders)
+    {
+        this(inBulkLoaders, inSingleLoaders, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param inBulkLoaders
+     *            Force-refresh mappers taking the list of ids of a chunk.
+     * @param inSingleLoaders
+     *            Force-refresh mappers taking a single id, for caches without a bulk loader.
+     * @param inRebuildTracker
+     *            Tracker of hot-swap rebuilds; null if rebuilds are not used.
+     */
+    public WarmCacheChunkExecution(final List<DomainMapper<List<Long>, ? >> inBulkLoaders,
+            final List<DomainMapper<Long, ? >> inSingleLoaders, final CacheRebuildTracker inRebuildTracker)
+    {
+        bulkLoaders = inBulkLoaders;
+        singleLoaders = inSingleLoaders;
+        rebuildTracker = inRebuildTracker;
+    }
+
+    /**
+     * Warms the chunk.
+     * 
+     * @param inActionContext
+     *            Action context holding a {@link CacheWarmingChunkRequest}.
+     * @return null.
+     */
+    @Override
+    public Serializable execute(final ActionContext inActionContext)
+    {
+        CacheWarmingChunkRequest request = (CacheWarmingChunkRequest) inActionContext.getParams();
+        List<Long> ids = request.getIds();
+        if (ids.isEmpty())
+        {
+            return null;
+        }
+
+        long start = System.currentTimeMillis();
+        for (DomainMapper<List<Long>, ? > loader : bulkLoaders)
+        {
+            loader.execute(ids);
+        }
+        for (DomainMapper<Long, ? > loader : singleLoaders)
+        {
+            for (Long id : ids)
+            {
+                loader.execute(id);
+            }
+        }
+
+        log.info("Warmed cache chunk " + request.getChunkNumber() + " of " + request.getChunkCount() + " ("
+                + ids.size() + " entities, ids " + ids.get(0) + " to " + ids.get(ids.size() - 1) + ") in "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        if (request.getRebuild() != null && rebuildTracker != null)
+        {
+            rebuildTracker.chunkFinished(request.getRebuild(), request.getChunkNumber(), request.getChunkCount());
+        }
+        return null;
+    }
+}
@@ -18,9 +18,13 @@ package org.eurekastreams.server.action.execution.notification;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
 import org.eurekastreams.commons.actions.context.ActionContext;
@@ -66,8 +70,8 @@ public class CreateNotificationsExecution implements TaskHandlerExecutionStrateg
     /** Mapper to get people for filtering (determining locked users, etc.). */
     private final DomainMapper<Long, PersonModelView> personMapper;
 
-    /** Mapper to get people for filtering (determining locked users, etc.). */
-    private DomainMapper<List<Long>, List<PersonModelView>> bulkPersonMapper;
+    /** Mapper to get all the people for filtering at once (determining locked users, etc.). */
+    private final DomainMapper<List<Long>, List<PersonModelView>> bulkPersonMapper;
 
     /** Provides the category for each notification type. */
     private final Map<NotificationType, Category> notificationTypeToCategory;
@@ -109,11 +113,48 @@ public class CreateNotificationsExecution implements TaskHandlerExecutionStrateg
             final Map<String, Iterable<RecipientFilter>> inRecipientFilters,
             final Map<String, Property<Object>> inDefaultProperties,
             final Map<Class, DomainMapper<Serializable, Object>> inPropertyLoadMappers)
+    {
+        this(inTranslators, inNotifiers, inPreferencesMapper, inPersonMapper, null, inNotificationTypeCategories,
+                inRecipientFilters, inDefaultProperties, inPropertyLoadMappers);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inTranslators
+     *            map of translators to set.
+     * @param inNotifiers
+     *            list of notifiers to set.
+     * @param inPreferencesMapper
+     *            preferences mapper to set.
+     * @param inPersonMapper
+     *            Mapper to get people for filtering; used when there is no bulk mapper.
+     * @param inBulkPersonMapper
+     *            Mapper to get all the people for filtering at once.
+     * @param inNotificationTypeCategories
+     *            Map providing the category for each notification type.
+     * @param inRecipientFilters
+     *            Recipient filter strategies per notifier type.
+     * @param inDefaultProperties
+     *            Properties provided to all notifications.
+     * @param inPropertyLoadMappers
+     *            Mappers for loading notification properties.
+     */
+    public CreateNotificationsExecution(final Map<RequestType, NotificationTranslator> inTranslators,
+            final Map<String, Notifier> inNotifiers,
+            final GetNotificationFilterPreferencesByPeopleIds inPreferencesMapper,
+            final DomainMapper<Long, PersonModelView> inPersonMapper,
+            final DomainMapper<List<Long>, List<PersonModelView>> inBulkPersonMapper,
+            final Map<NotificationType, Category> inNotificationTypeCategories,
+            final Map<String, Iterable<RecipientFilter>> inRecipientFilters,
+            final Map<String, Property<Object>> inDefaultProperties,
+            final Map<Class, DomainMapper<Serializable, Object>> inPropertyLoadMappers)
     {
         translators = inTranslators;
         notifiers = inNotifiers;
         preferencesMapper = inPreferencesMapper;
         personMapper = inPersonMapper;
+        bulkPersonMapper = inBulkPersonMapper;
         notificationTypeToCategory = inNotificationTypeCategories;
         recipientFilters = inRecipientFilters;
         defaultProperties = inDefaultProperties;
@@ -147,7 +188,18 @@ public class CreateNotificationsExecution implements TaskHandlerExecutionStrateg
         {
             allRecipientIds.addAll(recipientIds);
         }
-        List<NotificationFilterPreferenceDTO> recipientFilterPreferences = preferencesMapper.execute(allRecipientIds);
+        Map<String, Map<Category, Set<Long>>> optOuts = indexOptOuts(preferencesMapper.execute(allRecipientIds));
+
+        // recipients are loaded (at most) once for all the notifiers that filter them
+        Map<Long, PersonModelView> people = new HashMap<Long, PersonModelView>();
+        if (bulkPersonMapper != null && !recipientFilters.isEmpty())
+        {
+            List<Long> uniqueRecipientIds = new ArrayList<Long>(new HashSet<Long>(allRecipientIds));
+            for (PersonModelView person : bulkPersonMapper.execute(uniqueRecipientIds))
+            {
+                people.put(person.getId(), person);
+            }
+        }
 
         PropertyMap<Object> propertyList = new PropertyHashMap<Object>();
         propertyList.putAll(defaultProperties);
@@ -168,8 +220,8 @@ public class CreateNotificationsExecution implements TaskHandlerExecutionStrateg
                             + recipientIds);
                 }
 
-                List<Long> filteredRecipients = filterRecipients(type, recipientIds, properties,
-                        recipientFilterPreferences, notifierKey);
+                List<Long> filteredRecipients = filterRecipients(type, recipientIds, properties, optOuts, people,
+                        notifierKey);
                 if (filteredRecipients.isEmpty())
                 {
                     continue;
@@ -199,6 +251,35 @@ public class CreateNotificationsExecution implements TaskHandlerExecutionStrateg
         return Boolean.TRUE;
     }
 
+    /**
+     * Indexes the opt-outs by notifier type and category.
+     *
+     * @param preferences
+     *            the list of all notification preferences for users in the the allRecipient list.
+     * @return the ids of the people who opted out, by notifier type and category.
+     */
+    private Map<String, Map<Category, Set<Long>>> indexOptOuts(final List<NotificationFilterPreferenceDTO> preferences)
+    {
+        Map<String, Map<Category, Set<Long>>> optOuts = new HashMap<String, Map<Category, Set<Long>>>();
+        for (NotificationFilterPreferenceDTO preference : preferences)
+        {
+            Map<Category, Set<Long>> byCategory = optOuts.get(preference.getNotifierType());
+            if (byCategory == null)
+            {
+                byCategory = new HashMap<Category, Set<Long>>();
+                optOuts.put(preference.getNotifierType(), byCategory);
+            }
+            Set<Long> personIds = byCategory.get(preference.getNotificationCategory());
+            if (personIds == null)
+            {
+                personIds = new HashSet<Long>();
+                byCategory.put(preference.getNotificationCategory(), personIds);
+            }
+            personIds.add(preference.getPersonId());
+        }
+        return optOuts;
+    }
+
     /**
      * Filters out notification recipients based on per-recipient settings.
      *
@@ -208,43 +289,52 @@ public class CreateNotificationsExecution implements TaskHandlerExecutionStrateg
      *            the list of all recipient ids for the notification, unfiltered.
      * @param properties
      *            Notification details.
-     * @param preferences
-     *            the list of all notification preferences for users in the the allRecipient list.
+     * @param optOuts
+     *            the ids of the recipients who opted out, by notifier type and category.
+     * @param people
+     *            the recipients loaded so far, by id; recipients loaded here are added.
      * @param notifierType
      *            the key string for the notifier itself.
      * @return the filtered list of recipient ids.
      */
     private List<Long> filterRecipients(final NotificationType type, final Collection<Long> unfilteredRecipients,
-            final Map<String, Object> properties, final List<NotificationFilterPreferenceDTO> preferences,
-            final String notifierType)
+            final Map<String, Object> properties, final Map<String, Map<Category, Set<Long>>> optOuts,
+            final Map<Long, PersonModelView> people, final String notifierType)
     {
         Category category = notificationTypeToCategory.get(type);
-        List<Long> recipientIds = new ArrayList<Long>(unfilteredRecipients);
+        Map<Category, Set<Long>> notifierOptOuts = optOuts.get(notifierType);
+        Set<Long> optedOut = notifierOptOuts == null ? null : notifierOptOuts.get(category);
+        if (optedOut == null)
+        {
+            optedOut = Collections.emptySet();
+        }
+        Iterable<RecipientFilter> filters = recipientFilters.get(notifierType);
 
-        // remove any users who opted out of the notification (for the given transport)
-        for (NotificationFilterPreferenceDTO preference : preferences)
+        List<Long> finalRecipients = new ArrayList<Long>(unfilteredRecipients.size());
+        eachRecipient: for (Long recipientId : unfilteredRecipients)
         {
-            if (preference.getNotifierType().equals(notifierType)
-                    && preference.getNotificationCategory().equals(category))
+            // remove any users who opted out of the notification (for the given transport)
+            if (optedOut.contains(recipientId))
             {
-                recipientIds.remove(preference.getPersonId());
+                continue;
             }
-        }
 
-        // filter list further by configurable criteria
-        Iterable<RecipientFilter> filters = recipientFilters.get(notifierType);
-        if (filters == null)
-        {
-            return recipientIds;
-        }
-        else
-        {
-            List<Long> finalRecipients = new ArrayList<Long>();
-            eachRecipient: for (Long recipientId : recipientIds)
+            // filter list further by configurable criteria
+            if (filters != null)
             {
-                // unfortunately, users (who have not opted out of a given notifier) will be retrieved once PER notifier
-                // (vs. once for the whole action)
-                PersonModelView recipient = personMapper.execute(recipientId);
+                PersonModelView recipient = people.get(recipientId);
+                if (recipient == null && bulkPersonMapper == null)
+                {
+                    recipient = personMapper.execute(recipientId);
+                    people.put(recipientId, recipient);
+                }
+                if (recipient == null)
+                {
+                    // the filters need the person; one who could not be loaded (e.g. deleted) gets no notification
+                    log.warn("Skipping " + type + " recipient " + recipientId + " for notifier " + notifierType
+                            + ": person not found");
+                    continue;
+                }
 
                 for (RecipientFilter filter : filters)
                 {
@@ -253,10 +343,9 @@ public class CreateNotificationsExecution implements TaskHandlerExecutionStrateg
                         continue eachRecipient;
                     }
                 }
-                finalRecipients.add(recipientId);
             }
-
-            return finalRecipients;
+            finalRecipients.add(recipientId);
         }
+        return finalRecipients;
     }
 }
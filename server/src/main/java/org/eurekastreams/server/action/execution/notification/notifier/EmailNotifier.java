@@ -23,7 +23,6 @@ import java.util.Map;
 
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.app.event.EventCartridge;
 import org.apache.velocity.app.event.implement.EscapeHtmlReference;
 import org.apache.velocity.context.Context;
@@ -39,8 +38,8 @@ import org.eurekastreams.server.service.actions.strategies.EmailerFactory;
  */
 public class EmailNotifier implements Notifier
 {
-    /** Apache Velocity templating engine. */
-    private final VelocityEngine velocityEngine;
+    /** Parsed Apache Velocity templates. */
+    private final VelocityTemplateRegistry templateRegistry;
 
     /** Global context for Apache Velocity templating engine. (Holds system-wide properties.) */
     private final Context velocityGlobalContext;
@@ -57,8 +56,8 @@ public class EmailNotifier implements Notifier
     /**
      * Constructor.
      *
-     * @param inVelocityEngine
-     *            Apache Velocity templating engine.
+     * @param inTemplateRegistry
+     *            Parsed Apache Velocity templates.
      * @param inVelocityGlobalContext
      *            Global context for Apache Velocity templating engine.
      * @param inTemplates
@@ -68,11 +67,11 @@ public class EmailNotifier implements Notifier
      * @param inSubjectPrefix
      *            Prefix to use on email subjects.
      */
-    public EmailNotifier(final VelocityEngine inVelocityEngine, final Context inVelocityGlobalContext,
+    public EmailNotifier(final VelocityTemplateRegistry inTemplateRegistry, final Context inVelocityGlobalContext,
             final Map<NotificationType, EmailNotificationTemplate> inTemplates,
             final DomainMapper<List<Long>, List<PersonModelView>> inPersonsMapper, final String inSubjectPrefix)
     {
-        velocityEngine = inVelocityEngine;
+        templateRegistry = inTemplateRegistry;
         velocityGlobalContext = inVelocityGlobalContext;
         templates = inTemplates;
         personsMapper = inPersonsMapper;
@@ -100,12 +99,13 @@ public class EmailNotifier implements Notifier
 
         // build the subject
         StringWriter writer = new StringWriter();
-        velocityEngine.evaluate(velocityContext, writer, "EmailSubject-" + inType, template.getSubjectTemplate());
+        Template vt = templateRegistry.getInlineTemplate("EmailSubject-" + inType, template.getSubjectTemplate());
+        vt.merge(velocityContext, writer);
         email.setSubject(subjectPrefix + writer.toString());
 
         // build the text body
         writer.getBuffer().setLength(0);
-        Template vt = velocityEngine.getTemplate(template.getTextBodyTemplateResourcePath());
+        vt = templateRegistry.getTemplate(template.getTextBodyTemplateResourcePath());
         vt.merge(velocityContext, writer);
         email.setTextBody(writer.toString());
 
@@ -116,7 +116,7 @@ public class EmailNotifier implements Notifier
         ec.attachToContext(velocityContext);
 
         writer.getBuffer().setLength(0);
-        vt = velocityEngine.getTemplate(template.getHtmlBodyTemplateResourcePath());
+        vt = templateRegistry.getTemplate(template.getHtmlBodyTemplateResourcePath());
         vt.merge(velocityContext, writer);
         email.setHtmlBody(writer.toString());
 
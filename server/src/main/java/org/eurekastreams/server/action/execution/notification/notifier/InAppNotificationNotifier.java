@@ -20,25 +20,24 @@ import java.util.Collection;
 import java.util.Map;
 
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.context.Context;
 import org.eurekastreams.commons.server.UserActionRequest;
 import org.eurekastreams.server.action.execution.notification.NotificationPropertyKeys;
 import org.eurekastreams.server.domain.Identifiable;
 import org.eurekastreams.server.domain.InAppNotificationEntity;
 import org.eurekastreams.server.domain.NotificationType;
-import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.domain.UnreadInAppNotificationCountDTO;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
-import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
+import org.eurekastreams.server.persistence.mappers.db.notification.InsertInAppNotificationForUsersRequest;
 
 /**
- * Notifier for in-app notifications. Builds the messages and stores them in the database.
+ * Notifier for in-app notifications. Builds the messages and stores them in the database with bulk inserts and a single
+ * unread count sync for all recipients.
  */
 public class InAppNotificationNotifier implements Notifier
 {
-	/** Apache Velocity templating engine. */
-	private final VelocityEngine velocityEngine;
+	/** Parsed Apache Velocity templates. */
+	private final VelocityTemplateRegistry templateRegistry;
 
 	/** Global context for Apache Velocity templating engine. (Holds system-wide properties.) */
 	private final Context velocityGlobalContext;
@@ -46,43 +45,37 @@ public class InAppNotificationNotifier implements Notifier
 	/** Message templates by notification type. */
 	private final Map<NotificationType, String> templates;
 
-	/** Mapper to persist the notification. */
-	private final DomainMapper<PersistenceRequest<InAppNotificationEntity>, Boolean> insertMapper;
+	/** Mapper to persist the notification for all recipients at once. */
+	private final DomainMapper<InsertInAppNotificationForUsersRequest, Integer> bulkInsertMapper;
 
-	/** Mapper to sync unread alert count in cache. */
-	private final DomainMapper<Long, UnreadInAppNotificationCountDTO> syncMapper;
-
-	/** Provides a dummy person object for persisting the in-app entity. */
-	private final DomainMapper<Long, Person> placeholderPersonMapper;
+	/** Mapper to sync unread alert counts in cache for all recipients at once. */
+	private final DomainMapper<Collection<Long>, Map<Long, UnreadInAppNotificationCountDTO>> bulkSyncMapper;
 
 	/**
 	 * Constructor.
 	 *
-	 * @param inVelocityEngine
-	 *            Apache Velocity templating engine.
+	 * @param inTemplateRegistry
+	 *            Parsed Apache Velocity templates.
 	 * @param inVelocityGlobalContext
 	 *            Global context for Apache Velocity templating engine.
 	 * @param inTemplates
 	 *            Message templates by notification type.
-	 * @param inInsertMapper
-	 *            Mapper to persist the notification.
-	 * @param inSyncMapper
-	 *            Mapper to sync unread alert count in cache.
-	 * @param inPlaceholderPersonMapper
-	 *            Provides a dummy person object for persisting the in-app entity.
+	 * @param inBulkInsertMapper
+	 *            Mapper to persist the notification for all recipients at once.
+	 * @param inBulkSyncMapper
+	 *            Mapper to sync unread alert counts in cache for all recipients at once.
 	 */
-	public InAppNotificationNotifier(final VelocityEngine inVelocityEngine, final Context inVelocityGlobalContext,
+	public InAppNotificationNotifier(final VelocityTemplateRegistry inTemplateRegistry,
+			final Context inVelocityGlobalContext,
 			final Map<NotificationType, String> inTemplates,
-			final DomainMapper<PersistenceRequest<InAppNotificationEntity>, Boolean> inInsertMapper,
-			final DomainMapper<Long, UnreadInAppNotificationCountDTO> inSyncMapper,
-			final DomainMapper<Long, Person> inPlaceholderPersonMapper)
+			final DomainMapper<InsertInAppNotificationForUsersRequest, Integer> inBulkInsertMapper,
+			final DomainMapper<Collection<Long>, Map<Long, UnreadInAppNotificationCountDTO>> inBulkSyncMapper)
 	{
-		velocityEngine = inVelocityEngine;
+		templateRegistry = inTemplateRegistry;
 		velocityGlobalContext = inVelocityGlobalContext;
 		templates = inTemplates;
-		insertMapper = inInsertMapper;
-		syncMapper = inSyncMapper;
-		placeholderPersonMapper = inPlaceholderPersonMapper;
+		bulkInsertMapper = inBulkInsertMapper;
+		bulkSyncMapper = inBulkSyncMapper;
 	}
 
 	/**
@@ -103,52 +96,52 @@ public class InAppNotificationNotifier implements Notifier
 		// velocityContext.put("notificationProperties", inProperties);
 
 		StringWriter writer = new StringWriter();
-		velocityEngine.evaluate(velocityContext, writer, "InAppNotification-" + inType, template);
+		templateRegistry.getInlineTemplate("InAppNotification-" + inType, template).merge(velocityContext, writer);
 
 		String message = writer.toString();
 
-		InAppNotificationEntity dbNotif = null;
-		for (long recipientId : inRecipients)
-		{
-			Person recipient = placeholderPersonMapper.execute(recipientId);
-			if (recipient != null)
-			{
-				// build or clone notification
-				if (dbNotif == null)
-				{
-					dbNotif = new InAppNotificationEntity();
-					dbNotif.setNotificationType(inType);
-					dbNotif.setMessage(message);
-					dbNotif.setUrl((String) inProperties.get(NotificationPropertyKeys.URL));
-					dbNotif.setHighPriority(Boolean.TRUE.equals(inProperties
-							.get(NotificationPropertyKeys.HIGH_PRIORITY)));
-
-					Object obj = inProperties.get(NotificationPropertyKeys.SOURCE);
-					if (obj instanceof Identifiable)
-					{
-						Identifiable source = (Identifiable) obj;
-						dbNotif.setSourceType(source.getEntityType());
-						dbNotif.setSourceUniqueId(source.getUniqueId());
-						dbNotif.setSourceName(source.getDisplayName());
-					}
-					obj = inProperties.get(NotificationPropertyKeys.ACTOR);
-					if (obj instanceof Identifiable)
-					{
-						Identifiable actor = (Identifiable) obj;
-						dbNotif.setAvatarOwnerType(actor.getEntityType());
-						dbNotif.setAvatarOwnerUniqueId(actor.getUniqueId());
-					}
-				}
-				else
-				{
-					dbNotif = new InAppNotificationEntity(dbNotif);
-				}
-				dbNotif.setRecipient(recipient);
-
-				insertMapper.execute(new PersistenceRequest<InAppNotificationEntity>(dbNotif));
-				syncMapper.execute(recipientId);
-			}
-		}
+		InAppNotificationEntity notification = buildNotification(inType, message, inProperties);
+
+		bulkInsertMapper.execute(new InsertInAppNotificationForUsersRequest(notification, inRecipients));
+		bulkSyncMapper.execute(inRecipients);
 		return null;
 			}
+
+	/**
+	 * Builds the notification to store (without a recipient).
+	 *
+	 * @param inType
+	 *            Type of notification.
+	 * @param inMessage
+	 *            The rendered message.
+	 * @param inProperties
+	 *            Notification properties.
+	 * @return The notification.
+	 */
+	private InAppNotificationEntity buildNotification(final NotificationType inType, final String inMessage,
+			final Map<String, Object> inProperties)
+	{
+		InAppNotificationEntity dbNotif = new InAppNotificationEntity();
+		dbNotif.setNotificationType(inType);
+		dbNotif.setMessage(inMessage);
+		dbNotif.setUrl((String) inProperties.get(NotificationPropertyKeys.URL));
+		dbNotif.setHighPriority(Boolean.TRUE.equals(inProperties.get(NotificationPropertyKeys.HIGH_PRIORITY)));
+
+		Object obj = inProperties.get(NotificationPropertyKeys.SOURCE);
+		if (obj instanceof Identifiable)
+		{
+			Identifiable source = (Identifiable) obj;
+			dbNotif.setSourceType(source.getEntityType());
+			dbNotif.setSourceUniqueId(source.getUniqueId());
+			dbNotif.setSourceName(source.getDisplayName());
+		}
+		obj = inProperties.get(NotificationPropertyKeys.ACTOR);
+		if (obj instanceof Identifiable)
+		{
+			Identifiable actor = (Identifiable) obj;
+			dbNotif.setAvatarOwnerType(actor.getEntityType());
+			dbNotif.setAvatarOwnerUniqueId(actor.getUniqueId());
+		}
+		return dbNotif;
+	}
 }
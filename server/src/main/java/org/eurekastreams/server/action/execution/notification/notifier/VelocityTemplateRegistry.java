@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.notification.notifier;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+
+/**
+ * Parses Velocity templates once and hands out the parsed templates for reuse. Resource templates are loaded through
+ * the engine's resource loaders; inline templates (given as text) are first placed in a string resource repository
+ * which the engine is configured to read from. Parsed templates may be merged concurrently.
+ */
+public class VelocityTemplateRegistry
+{
+    /** Apache Velocity templating engine. */
+    private final VelocityEngine velocityEngine;
+
+    /** Repository the engine reads inline templates from. */
+    private final StringResourceRepository stringRepository;
+
+    /** Parsed resource templates by resource path. */
+    private final ConcurrentMap<String, Template> resourceTemplates = new ConcurrentHashMap<String, Template>();
+
+    /** Parsed inline templates by name. */
+    private final ConcurrentMap<String, Template> inlineTemplates = new ConcurrentHashMap<String, Template>();
+
+    /**
+     * Constructor.
+     *
+     * @param inVelocityEngine
+     *            Apache Velocity templating engine.
+     * @param inStringRepository
+     *            Repository the engine reads inline templates from.
+     */
+    public VelocityTemplateRegistry(final VelocityEngine inVelocityEngine,
+            final StringResourceRepository inStringRepository)
+    {
+        velocityEngine = inVelocityEngine;
+        stringRepository = inStringRepository;
+    }
+
+    /**
+     * Gets a template stored as a resource, parsing it on first use.
+     *
+     * @param resourcePath
+     *            Resource path of the template.
+     * @return The parsed template.
+     */
+    public Template getTemplate(final String resourcePath)
+    {
+        Template template = resourceTemplates.get(resourcePath);
+        if (template == null)
+        {
+            template = velocityEngine.getTemplate(resourcePath);
+            resourceTemplates.putIfAbsent(resourcePath, template);
+        }
+        return template;
+    }
+
+    /**
+     * Gets a template given as text, parsing it on first use. The name identifies the template, so a given name must
+     * always be used with the same text.
+     *
+     * @param name
+     *            Unique name for the template (also used in error messages).
+     * @param templateText
+     *            The template itself.
+     * @return The parsed template.
+     */
+    public Template getInlineTemplate(final String name, final String templateText)
+    {
+        Template template = inlineTemplates.get(name);
+        if (template == null)
+        {
+            stringRepository.putStringResource(name, templateText);
+            template = velocityEngine.getTemplate(name);
+            inlineTemplates.putIfAbsent(name, template);
+        }
+        return template;
+    }
+}
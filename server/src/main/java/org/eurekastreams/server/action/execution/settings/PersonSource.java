@@ -18,6 +18,7 @@ package org.eurekastreams.server.action.execution.settings;
 import java.util.Set;
 
 import org.eurekastreams.server.domain.Person;
+import org.eurekastreams.server.persistence.mappers.ldap.PageHandler;
 
 /**
  * Interface for abstracting source of user data.
@@ -31,4 +32,15 @@ public interface PersonSource
      * @return set of Person objects representing users in the system.
      */
     Set<Person> getPeople();
+
+    /**
+     * Passes the Person objects representing users in the system to a handler a page at a time, so that the whole
+     * user population does not have to be held in memory. Each user is delivered once, and the handler is never
+     * called concurrently. Throws if any part of the source could not be read, since a partial result would look like
+     * users having been removed.
+     * 
+     * @param inHandler
+     *            receives each page of people.
+     */
+    void getPeople(PageHandler<Person> inHandler);
 }
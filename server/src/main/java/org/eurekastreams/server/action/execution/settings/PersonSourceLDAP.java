@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2010 Lockheed Martin Corporation
+ * Copyright (c) 2010-2011 Lockheed Martin Corporation
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,21 +15,30 @@
  */
 package org.eurekastreams.server.action.execution.settings;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.exceptions.ExecutionException;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.domain.dto.MembershipCriteriaDTO;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.ldap.PageHandler;
 import org.eurekastreams.server.persistence.mappers.requests.MapperRequest;
+import org.eurekastreams.server.service.actions.strategies.PagedPersonLookupStrategy;
 import org.eurekastreams.server.service.actions.strategies.PersonLookupStrategy;
 
 /**
  * LDAP source for user information.
  * 
+ * When constructed with paged lookup strategies and an executor, the membership criteria are queried concurrently on
+ * the executor's (bounded) threads and people are streamed to the consumer a page at a time as the queries run.
  */
 public class PersonSourceLDAP implements PersonSource
 {
@@ -53,6 +62,11 @@ public class PersonSourceLDAP implements PersonSource
      */
     private PersonLookupStrategy attributeLookupStrategy;
 
+    /**
+     * Runs the criteria queries concurrently; null to run them one after another on the calling thread.
+     */
+    private ExecutorService executor;
+
     /**
      * Constructor.
      * 
@@ -71,36 +85,197 @@ public class PersonSourceLDAP implements PersonSource
         attributeLookupStrategy = inAttributeLookupStrategy;
     }
 
+    /**
+     * Constructor for concurrent, paged enumeration.
+     * 
+     * @param inMembershipCriteriaDAO
+     *            mapper to get membership criteria.
+     * @param inGroupLookupStrategy
+     *            group lookup mapper.
+     * @param inAttributeLookupStrategy
+     *            person lookup mapper.
+     * @param inExecutor
+     *            runs the criteria queries; should have a bounded number of threads.
+     */
+    public PersonSourceLDAP(final DomainMapper<MapperRequest, List<MembershipCriteriaDTO>> inMembershipCriteriaDAO,
+            final PagedPersonLookupStrategy inGroupLookupStrategy,
+            final PagedPersonLookupStrategy inAttributeLookupStrategy, final ExecutorService inExecutor)
+    {
+        this(inMembershipCriteriaDAO, inGroupLookupStrategy, inAttributeLookupStrategy);
+        executor = inExecutor;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Set<Person> getPeople()
+    {
+        final HashSet<Person> results = new HashSet<Person>();
+        getPeople(new PageHandler<Person>()
+        {
+            @Override
+            public void handlePage(final List<Person> inPage)
+            {
+                results.addAll(inPage);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void getPeople(final PageHandler<Person> inHandler)
     {
         List<MembershipCriteriaDTO> membershipCriteria = membershipCriteriaDAO.execute(null);
+        PageHandler<Person> handler = new UniquePersonPageHandler(inHandler);
 
-        HashSet<Person> results = new HashSet<Person>();
+        if (executor == null)
+        {
+            for (MembershipCriteriaDTO criterion : membershipCriteria)
+            {
+                query(criterion.getCriteria(), handler);
+            }
+            return;
+        }
 
-        PersonLookupStrategy lookupStrategy = null;
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(membershipCriteria.size());
         for (MembershipCriteriaDTO criterion : membershipCriteria)
         {
-            String ldapQuery = criterion.getCriteria();
-            log.info("Processing criteria: " + ldapQuery);
+            final String ldapQuery = criterion.getCriteria();
+            final PageHandler<Person> queryHandler = handler;
+            futures.add(executor.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                {
+                    return query(ldapQuery, queryHandler);
+                }
+            }));
+        }
 
-            if (ldapQuery.contains("="))
+        // wait for every query; any failure fails the whole enumeration since a partial result would lock people.
+        RuntimeException failure = null;
+        for (Future<Integer> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (InterruptedException ex)
             {
-                lookupStrategy = attributeLookupStrategy;
+                Thread.currentThread().interrupt();
+                failure = new ExecutionException("Interrupted while enumerating people from LDAP.", ex);
+                break;
             }
-            else
+            catch (java.util.concurrent.ExecutionException ex)
             {
-                lookupStrategy = groupLookupStrategy;
+                log.error("Error enumerating people from LDAP.", ex.getCause());
+                if (failure == null)
+                {
+                    failure = new ExecutionException("Error enumerating people from LDAP.", ex.getCause());
+                }
             }
+        }
 
+        if (failure != null)
+        {
+            for (Future<Integer> future : futures)
+            {
+                future.cancel(true);
+            }
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs the query for one membership criterion.
+     * 
+     * @param ldapQuery
+     *            the criterion.
+     * @param inHandler
+     *            receives the people found.
+     * @return the number of people found.
+     */
+    private int query(final String ldapQuery, final PageHandler<Person> inHandler)
+    {
+        log.info("Processing criteria: " + ldapQuery);
+        long start = System.currentTimeMillis();
+
+        PersonLookupStrategy lookupStrategy;
+        if (ldapQuery.contains("="))
+        {
+            lookupStrategy = attributeLookupStrategy;
+        }
+        else
+        {
+            lookupStrategy = groupLookupStrategy;
+        }
+
+        int count;
+        if (executor != null)
+        {
+            count = ((PagedPersonLookupStrategy) lookupStrategy).findPeople(ldapQuery, inHandler);
+        }
+        else
+        {
             List<Person> people = lookupStrategy.findPeople(ldapQuery, new Integer(Integer.MAX_VALUE));
-            log.info(people.size() + " people found for criteria.");
-            results.addAll(people);
+            count = people.size();
+            inHandler.handlePage(people);
         }
-        return results;
+
+        log.info(count + " people found for criteria " + ldapQuery + " (" + (System.currentTimeMillis() - start)
+                + "ms).");
+        return count;
     }
 
+    /**
+     * Serializes the pages coming from the concurrent queries and drops people already delivered by another
+     * criterion.
+     */
+    private static class UniquePersonPageHandler implements PageHandler<Person>
+    {
+        /**
+         * The consumer.
+         */
+        private final PageHandler<Person> handler;
+
+        /**
+         * Account ids delivered so far.
+         */
+        private final Set<String> seenAccountIds = new HashSet<String>();
+
+        /**
+         * Constructor.
+         * 
+         * @param inHandler
+         *            the consumer.
+         */
+        public UniquePersonPageHandler(final PageHandler<Person> inHandler)
+        {
+            handler = inHandler;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void handlePage(final List<Person> inPage)
+        {
+            List<Person> unique = new ArrayList<Person>(inPage.size());
+            for (Person p : inPage)
+            {
+                if (seenAccountIds.add(p.getAccountId()))
+                {
+                    unique.add(p);
+                }
+            }
+            if (!unique.isEmpty())
+            {
+                handler.handlePage(unique);
+            }
+        }
+    }
 }
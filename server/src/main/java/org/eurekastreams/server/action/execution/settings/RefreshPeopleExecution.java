@@ -16,8 +16,10 @@
 package org.eurekastreams.server.action.execution.settings;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -31,11 +33,16 @@ import org.eurekastreams.server.action.request.SetPersonLockedStatusRequest;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.domain.SystemSettings;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.ldap.PageHandler;
 import org.eurekastreams.server.persistence.mappers.requests.MapperRequest;
+import org.eurekastreams.server.service.utility.PersonDirectoryDigest;
 
 /**
- * Use {@link PersonSource} to create/lock/unlock user accounts.
+ * Use {@link PersonSource} to create/lock/unlock user accounts. People are handled a page at a time as the source
+ * delivers them, so only those needing an action are held in memory.
  * 
+ * When given a directory digest mapper, existing users are only refreshed if the digest of their directory attributes
+ * differs from the one recorded at their last refresh, and the refreshes are queued in batches.
  */
 public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<ActionContext>
 {
@@ -75,7 +82,18 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
     private final DomainMapper<MapperRequest, SystemSettings> settingsMapper;
 
     /**
-     * Constructor.
+     * Gets the recorded directory digests of users by locked status (GetPersonDirectoryDigestsByLockedStatus); null
+     * to refresh every existing user.
+     */
+    private final DomainMapper<Boolean, Map<String, String>> directoryDigestsDAO;
+
+    /**
+     * Number of people to refresh per queued refresh action.
+     */
+    private final int refreshBatchSize;
+
+    /**
+     * Constructor which refreshes every existing user, one action per user.
      * 
      * @param inSource
      *            {@link PersonSource}.
@@ -94,6 +112,36 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
             final String inLockPersonAccountActionKey, final String inRefreshPersonActionKey,
             final DomainMapper<Boolean, List<String>> inGetPersonIdsByLockedStatus,
             final DomainMapper<MapperRequest, SystemSettings> inSettingsMapper)
+    {
+        this(inSource, inCreatePersonActionKey, inLockPersonAccountActionKey, inRefreshPersonActionKey,
+                inGetPersonIdsByLockedStatus, inSettingsMapper, null, 1);
+    }
+
+    /**
+     * Constructor which only refreshes users whose directory attributes changed.
+     * 
+     * @param inSource
+     *            {@link PersonSource}.
+     * @param inCreatePersonActionKey
+     *            Action key for create action.
+     * @param inLockPersonAccountActionKey
+     *            action key for lock/unlock action.
+     * @param inRefreshPersonActionKey
+     *            action key for refresh action.
+     * @param inGetPersonIdsByLockedStatus
+     *            Gets locked/unlocked users (GetPersonAccountIdsByLockedStatus).
+     * @param inSettingsMapper
+     *            {@link FindSystemSettings}.
+     * @param inDirectoryDigestsDAO
+     *            Gets recorded directory digests by locked status (GetPersonDirectoryDigestsByLockedStatus).
+     * @param inRefreshBatchSize
+     *            Number of people to refresh per queued refresh action.
+     */
+    public RefreshPeopleExecution(final PersonSource inSource, final String inCreatePersonActionKey,
+            final String inLockPersonAccountActionKey, final String inRefreshPersonActionKey,
+            final DomainMapper<Boolean, List<String>> inGetPersonIdsByLockedStatus,
+            final DomainMapper<MapperRequest, SystemSettings> inSettingsMapper,
+            final DomainMapper<Boolean, Map<String, String>> inDirectoryDigestsDAO, final int inRefreshBatchSize)
     {
         source = inSource;
         createPersonActionKey = inCreatePersonActionKey;
@@ -101,6 +149,8 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
         refreshPersonActionKey = inRefreshPersonActionKey;
         personIdsByLockedStatusDAO = inGetPersonIdsByLockedStatus;
         settingsMapper = inSettingsMapper;
+        directoryDigestsDAO = inDirectoryDigestsDAO;
+        refreshBatchSize = inRefreshBatchSize;
     }
 
     /**
@@ -113,16 +163,19 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
     @Override
     public Serializable execute(final TaskHandlerActionContext<ActionContext> inActionContext)
     {
-        // Get all current users that should be in system
-        log.info("Getting users from PersonSource ids...");
-        Long start = System.currentTimeMillis();
-        Set<Person> people = source.getPeople();
-        Long time = System.currentTimeMillis() - start;
-        log.info("Found " + people.size() + " users to refresh (" + time + "ms).");
-
         // Get locked/unlocked user ids
         log.info("Getting all unlocked user ids...");
-        Set<String> unLockedUserAccountIds = new HashSet<String>(personIdsByLockedStatusDAO.execute(false));
+        Map<String, String> unLockedDigests = null;
+        Set<String> unLockedUserAccountIds;
+        if (directoryDigestsDAO == null)
+        {
+            unLockedUserAccountIds = new HashSet<String>(personIdsByLockedStatusDAO.execute(false));
+        }
+        else
+        {
+            unLockedDigests = directoryDigestsDAO.execute(false);
+            unLockedUserAccountIds = new HashSet<String>(unLockedDigests.keySet());
+        }
         log.info("Found " + unLockedUserAccountIds.size() + " currently unlocked user accounts.");
 
         log.info("Getting all locked user ids...");
@@ -135,16 +188,166 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
 
         // get system setting to determine if emails should be sent to created users.
         SystemSettings settings = settingsMapper.execute(null);
-        boolean shouldSendEmail = settings.getSendWelcomeEmails();
 
-        // counts for summary log.
-        int toLock = 0;
-        int toUnlock = 0;
-        int toCreate = 0;
+        // Get all current users that should be in system, handling them a page at a time as they arrive
+        log.info("Getting users from PersonSource ids...");
+        Long start = System.currentTimeMillis();
+        PersonClassifier classifier = new PersonClassifier(inActionContext, unLockedUserAccountIds,
+                lockedUserAccountIds, unLockedDigests, queueCreatePerson, queueLockAccounts, settings
+                        .getSendWelcomeEmails());
+        source.getPeople(classifier);
+        classifier.flushRefreshBatch();
+        Long time = System.currentTimeMillis() - start;
+        log.info("Found " + classifier.found + " users to refresh (" + time + "ms).");
+
+        // Everyone that hasn't been removed from the unLockedUserAccountIds collection by this point needs to be
+        // locked.
+        int toLock = unLockedUserAccountIds.size();
+        log.info("Determined there are " + unLockedUserAccountIds.size() + " user accounts to lock.");
+        for (String id : unLockedUserAccountIds)
+        {
+            if (log.isInfoEnabled())
+            {
+                log.info("Found user AcctId: " + id + " to be locked.");
+            }
+            if (queueLockAccounts)
+            {
+                inActionContext.getUserActionRequests().add(
+                        new UserActionRequest(lockPersonActionKey, null, new SetPersonLockedStatusRequest(id, true)));
+            }
+        }
+
+        log.info("Summary: Lock: " + toLock + " unlock: " + classifier.toUnlock + " Create: " + classifier.toCreate
+                + " Refresh: " + classifier.toRefresh + " Unchanged: " + classifier.unchanged
+                + ". LOCK-UNLOCK ENABLED: " + queueLockAccounts + " CREATE ENABLED: " + queueCreatePerson);
+        return null;
+    }
+
+    /**
+     * Queues the unlock, refresh or create action for each person delivered by the {@link PersonSource}, removing
+     * them from the unlocked ids so that only the people to lock remain once the source is exhausted.
+     */
+    private class PersonClassifier implements PageHandler<Person>
+    {
+        /**
+         * The action context to queue actions on.
+         */
+        private final TaskHandlerActionContext<ActionContext> actionContext;
+
+        /**
+         * Account ids of the unlocked users not yet found in the source.
+         */
+        private final Set<String> unLockedUserAccountIds;
+
+        /**
+         * Account ids of the locked users.
+         */
+        private final Set<String> lockedUserAccountIds;
+
+        /**
+         * Recorded directory digests of the unlocked users; null to refresh every existing user.
+         */
+        private final Map<String, String> unLockedDigests;
+
+        /**
+         * If create actions should be queued.
+         */
+        private final boolean queueCreatePerson;
+
+        /**
+         * If lock/unlock actions should be queued.
+         */
+        private final boolean queueLockAccounts;
+
+        /**
+         * If created users should be sent welcome emails.
+         */
+        private final boolean shouldSendEmail;
+
+        /**
+         * People collected for the next refresh action.
+         */
+        private ArrayList<Person> refreshBatch = new ArrayList<Person>();
+
+        /**
+         * Number of people found in the source.
+         */
+        private int found = 0;
+
+        /**
+         * Number of people to unlock.
+         */
+        private int toUnlock = 0;
+
+        /**
+         * Number of people to create.
+         */
+        private int toCreate = 0;
+
+        /**
+         * Number of people to refresh.
+         */
+        private int toRefresh = 0;
+
+        /**
+         * Number of people whose directory attributes are unchanged.
+         */
+        private int unchanged = 0;
+
+        /**
+         * Constructor.
+         * 
+         * @param inActionContext
+         *            The action context to queue actions on.
+         * @param inUnLockedUserAccountIds
+         *            Account ids of the unlocked users.
+         * @param inLockedUserAccountIds
+         *            Account ids of the locked users.
+         * @param inUnLockedDigests
+         *            Recorded directory digests of the unlocked users, or null.
+         * @param inQueueCreatePerson
+         *            If create actions should be queued.
+         * @param inQueueLockAccounts
+         *            If lock/unlock actions should be queued.
+         * @param inShouldSendEmail
+         *            If created users should be sent welcome emails.
+         */
+        public PersonClassifier(final TaskHandlerActionContext<ActionContext> inActionContext,
+                final Set<String> inUnLockedUserAccountIds, final Set<String> inLockedUserAccountIds,
+                final Map<String, String> inUnLockedDigests, final boolean inQueueCreatePerson,
+                final boolean inQueueLockAccounts, final boolean inShouldSendEmail)
+        {
+            actionContext = inActionContext;
+            unLockedUserAccountIds = inUnLockedUserAccountIds;
+            lockedUserAccountIds = inLockedUserAccountIds;
+            unLockedDigests = inUnLockedDigests;
+            queueCreatePerson = inQueueCreatePerson;
+            queueLockAccounts = inQueueLockAccounts;
+            shouldSendEmail = inShouldSendEmail;
+        }
 
-        for (Person p : people)
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void handlePage(final List<Person> inPage)
+        {
+            for (Person p : inPage)
+            {
+                handle(p);
+            }
+        }
+
+        /**
+         * Queues the action needed for one person.
+         * 
+         * @param p
+         *            The person from the source.
+         */
+        private void handle(final Person p)
         {
             String acctId = p.getAccountId();
+            found++;
 
             if (lockedUserAccountIds.contains(acctId))
             {
@@ -154,7 +357,7 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
                 }
                 if (queueLockAccounts)
                 {
-                    inActionContext.getUserActionRequests().add(
+                    actionContext.getUserActionRequests().add(
                             new UserActionRequest(lockPersonActionKey, null, new SetPersonLockedStatusRequest(acctId,
                                     false)));
                 }
@@ -162,8 +365,26 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
             }
             else if (unLockedUserAccountIds.contains(acctId))
             {
-                // Queue action to refresh user info from AD
-                inActionContext.getUserActionRequests().add(new UserActionRequest(refreshPersonActionKey, null, p));
+                if (unLockedDigests == null)
+                {
+                    // Queue action to refresh user info from AD
+                    actionContext.getUserActionRequests().add(new UserActionRequest(refreshPersonActionKey, null, p));
+                    toRefresh++;
+                }
+                else if (PersonDirectoryDigest.compute(p).equals(unLockedDigests.get(acctId)))
+                {
+                    unchanged++;
+                }
+                else
+                {
+                    // Queue action to refresh user info from AD once a batch of changed users is collected
+                    refreshBatch.add(p);
+                    toRefresh++;
+                    if (refreshBatch.size() >= refreshBatchSize)
+                    {
+                        flushRefreshBatch();
+                    }
+                }
 
                 // remove from unlocked list, when done looping remaining ids will be locked.
                 unLockedUserAccountIds.remove(acctId);
@@ -176,7 +397,7 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
                 }
                 if (queueCreatePerson)
                 {
-                    inActionContext.getUserActionRequests().add(
+                    actionContext.getUserActionRequests().add(
                             new UserActionRequest(createPersonActionKey, null, new CreatePersonRequest(p,
                                     shouldSendEmail)));
                 }
@@ -184,25 +405,17 @@ public class RefreshPeopleExecution implements TaskHandlerExecutionStrategy<Acti
             }
         }
 
-        // Everyone that hasn't been removed from the unLockedUserAccountIds collection by this point needs to be
-        // locked.
-        toLock = unLockedUserAccountIds.size();
-        log.info("Determined there are " + unLockedUserAccountIds.size() + " user accounts to lock.");
-        for (String id : unLockedUserAccountIds)
+        /**
+         * Queues the refresh action for the people collected so far, if any.
+         */
+        public void flushRefreshBatch()
         {
-            if (log.isInfoEnabled())
-            {
-                log.info("Found user AcctId: " + id + " to be locked.");
-            }
-            if (queueLockAccounts)
+            if (!refreshBatch.isEmpty())
             {
-                inActionContext.getUserActionRequests().add(
-                        new UserActionRequest(lockPersonActionKey, null, new SetPersonLockedStatusRequest(id, true)));
+                actionContext.getUserActionRequests().add(
+                        new UserActionRequest(refreshPersonActionKey, null, refreshBatch));
+                refreshBatch = new ArrayList<Person>();
             }
         }
-
-        log.info("Summary: Lock: " + toLock + " unlock: " + toUnlock + " Create: " + toCreate
-                + ". LOCK-UNLOCK ENABLED: " + queueLockAccounts + " CREATE ENABLED: " + queueCreatePerson);
-        return null;
     }
 }
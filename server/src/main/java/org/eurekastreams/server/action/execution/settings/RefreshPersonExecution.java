@@ -16,6 +16,7 @@
 package org.eurekastreams.server.action.execution.settings;
 
 import java.io.Serializable;
+import java.util.Collection;
 
 import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
 import org.eurekastreams.commons.actions.context.ActionContext;
@@ -26,7 +27,8 @@ import org.eurekastreams.server.persistence.mappers.db.UpdatePersonMapper;
 import org.eurekastreams.server.persistence.mappers.requests.UpdatePersonResponse;
 
 /**
- * Strategy for updating person record in the system.
+ * Strategy for updating person records in the system. The params are either a single {@link Person} from the
+ * directory or a collection of them, as queued in batches by {@link RefreshPeopleExecution}.
  */
 public class RefreshPersonExecution implements TaskHandlerExecutionStrategy<ActionContext>
 {
@@ -47,17 +49,43 @@ public class RefreshPersonExecution implements TaskHandlerExecutionStrategy<Acti
     }
 
     /**
-     * Refresh person in the system.
+     * Refresh person (or people) in the system.
      * 
      * @param inActionContext
      *            The action context
      * 
      * @return true on success.
      */
+    @SuppressWarnings("unchecked")
     @Override
     public Serializable execute(final TaskHandlerActionContext<ActionContext> inActionContext)
     {
-        Person ldapPerson = (Person) inActionContext.getActionContext().getParams();
+        Serializable params = inActionContext.getActionContext().getParams();
+        if (params instanceof Collection)
+        {
+            for (Person ldapPerson : (Collection<Person>) params)
+            {
+                refresh(ldapPerson, inActionContext);
+            }
+        }
+        else
+        {
+            refresh((Person) params, inActionContext);
+        }
+
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Refreshes a single person.
+     * 
+     * @param ldapPerson
+     *            The person as found in the directory.
+     * @param inActionContext
+     *            The action context
+     */
+    private void refresh(final Person ldapPerson, final TaskHandlerActionContext<ActionContext> inActionContext)
+    {
         UpdatePersonResponse response = personMapper.execute(ldapPerson);
 
         // Queue async action to update cache if necessary
@@ -66,7 +94,5 @@ public class RefreshPersonExecution implements TaskHandlerExecutionStrategy<Acti
             inActionContext.getUserActionRequests().add(
                     new UserActionRequest("cachePerson", null, response.getPersonId()));
         }
-
-        return Boolean.TRUE;
     }
 }
@@ -15,9 +15,11 @@
  */
 package org.eurekastreams.server.action.execution.stream;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -25,6 +27,7 @@ import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.server.domain.stream.ActivitySecurityDTO;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.persistence.mappers.cache.GetPrivateCoordinatedAndFollowedGroupIdsForUser;
+import org.eurekastreams.server.service.utility.LongHashSet;
 
 /**
  * Trims activities that a user does not have permission to see.
@@ -71,13 +74,42 @@ public class ActivitySecurityTrimmer
      * @return the activityIDs that the user has permission to see.
      */
     public List<Long> trim(final List<Long> activityIds, final Long userPersonId)
+    {
+        return trim(activityIds, userPersonId, new HashMap<Long, Set<Long>>());
+    }
+
+    /**
+     * Trim activities that the user does not have permission to see, reusing the user's visible groups if they have
+     * already been looked up during this request. Callers that trim several batches for one request (e.g. paging)
+     * should pass the same memo map to each call.
+     * 
+     * @param activityIds
+     *            the activityIDs.
+     * @param userPersonId
+     *            the user's id.
+     * @param visibleGroupIdsMemo
+     *            request-scoped map of person id to the group ids visible to that person; filled on first use.
+     * @return the activityIDs that the user has permission to see, in the order given.
+     */
+    public List<Long> trim(final List<Long> activityIds, final Long userPersonId,
+            final Map<Long, Set<Long>> visibleGroupIdsMemo)
     {
         log.debug("Trimming " + activityIds.size() + " activity ids for person#" + userPersonId);
-        Set<Long> accessibleGroupIds = getVisibleGroupsForUserMapper.execute(userPersonId);
+        if (activityIds.isEmpty())
+        {
+            return new ArrayList<Long>(0);
+        }
+
+        Set<Long> accessibleGroupIds = visibleGroupIdsMemo.get(userPersonId);
+        if (accessibleGroupIds == null)
+        {
+            accessibleGroupIds = getVisibleGroupsForUserMapper.execute(userPersonId);
+            visibleGroupIdsMemo.put(userPersonId, accessibleGroupIds);
+        }
 
         final Collection<ActivitySecurityDTO> securityDTOs = securityMapper.execute(activityIds);
 
-        final List<Long> visibleActivities = new LinkedList<Long>();
+        final LongHashSet visibleActivities = new LongHashSet(securityDTOs.size());
 
         for (ActivitySecurityDTO actSec : securityDTOs)
         {
@@ -95,13 +127,13 @@ public class ActivitySecurityTrimmer
         }
 
         // Preserve order
-        final List<Long> orderedActivities = new LinkedList<Long>();
+        final List<Long> orderedActivities = new ArrayList<Long>(visibleActivities.size());
 
-        for (int i = 0; i < activityIds.size(); i++)
+        for (Long activityId : activityIds)
         {
-            if (visibleActivities.contains(activityIds.get(i)))
+            if (visibleActivities.contains(activityId))
             {
-                orderedActivities.add(activityIds.get(i));
+                orderedActivities.add(activityId);
             }
         }
 
@@ -17,11 +17,8 @@ package org.eurekastreams.server.action.execution.stream;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
@@ -115,52 +112,25 @@ public class DeleteActivitiesByIdsExecution implements TaskHandlerExecutionStrat
                 new UserActionRequest("deleteIdsFromLists", null, new DeleteIdsFromListsRequest(keys, response
                         .getActivityIds())));
 
+        // remove the activities, their security records and their comments from cache in one bulk delete
+        HashSet<String> deleteKeys = new HashSet<String>();
+        deleteKeys.addAll(createKeys(CacheKeys.ACTIVITY_BY_ID, response.getActivityIds()));
+        deleteKeys.addAll(createKeys(CacheKeys.ACTIVITY_SECURITY_BY_ID, response.getActivityIds()));
+        deleteKeys.addAll(createKeys(CacheKeys.COMMENT_BY_ID, response.getCommentIds()));
         if (log.isInfoEnabled())
         {
-            log.info("Queuing UserActionRequests for removing expired activity ids from cache: "
-                    + response.getActivityIds().size());
+            log.info("Queuing UserActionRequest for removing expired activities and comments from cache (num of "
+                    + "keys): " + deleteKeys.size());
         }
-        // remove ALL activities from cache (low priority should we even do this?)
-        generateIndividualDeleteKeyFromCacheTasks(new HashSet<String>(createKeys(CacheKeys.ACTIVITY_BY_ID, response
-                .getActivityIds())), inActionContext);
-
-        // Clean up security records.
-        generateIndividualDeleteKeyFromCacheTasks(new HashSet<String>(createKeys(CacheKeys.ACTIVITY_SECURITY_BY_ID,
-                response.getActivityIds())), inActionContext);
-
-        if (log.isInfoEnabled())
+        if (!deleteKeys.isEmpty())
         {
-            log.info("Queuing UserActionRequests for removing expired activitys' comment ids from cache: "
-                    + response.getCommentIds());
+            inActionContext.getUserActionRequests().add(
+                    new UserActionRequest("deleteCacheKeysAction", null, deleteKeys));
         }
-        // remove ALL comments from cache (low priority should we even do this?)
-        generateIndividualDeleteKeyFromCacheTasks(new HashSet<String>(createKeys(CacheKeys.COMMENT_BY_ID, response
-                .getCommentIds())), inActionContext);
 
         return null;
     }
 
-    /**
-     * Queues UserActionRequest for deleteKeysFromCache action, one for each key.
-     * 
-     * @param keys
-     *            keys to delete from cache.
-     * @param inActionContext
-     *            {@link TaskHandlerActionContext}.
-     */
-    private void generateIndividualDeleteKeyFromCacheTasks(final Set<String> keys,
-            final TaskHandlerActionContext<ActionContext> inActionContext)
-    {
-        Iterator<String> it = keys.iterator();
-        while (it.hasNext())
-        {
-            inActionContext.getUserActionRequests()
-                    .add(
-                            new UserActionRequest("deleteCacheKeysAction", null, new HashSet<String>(Arrays.asList(it
-                                    .next()))));
-        }
-    }
-
     /**
      * Generate cacheKeys.
      * 
@@ -15,27 +15,27 @@
  */
 package org.eurekastreams.server.action.execution.stream;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Date;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
 import org.eurekastreams.commons.actions.context.PrincipalActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.logging.LogFactory;
-import org.eurekastreams.commons.server.UserActionRequest;
 import org.eurekastreams.server.domain.SystemSettings;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
-import org.eurekastreams.server.persistence.mappers.db.GetExpiredActivities;
+import org.eurekastreams.server.persistence.mappers.db.ExpiredActivityPurgeDbMapper;
 import org.eurekastreams.server.persistence.mappers.requests.MapperRequest;
 
 import com.ibm.icu.util.Calendar;
 
 /**
- * This execution strategy performs a cleanup of expired activites from the system based on the system setting for the
- * number of days before content/activity is considered old or expired. Once the expired activities are found, they are
- * batched and then each batch is submitted to the DeleteActivitiesByIds async action which then proceeds with the
- * cleanup by batches.
+ * This execution strategy starts a cleanup of expired activites from the system based on the system setting for the
+ * number of days before content/activity is considered old or expired.
+ *
+ * Starting a purge only records it in the database; the purge is carried out one chunk at a time by
+ * {@link PurgeExpiredActivitiesChunkExecution}, run on a schedule. A purge is not started while another one is still in
+ * progress, so the nightly and on-demand purges never run over the same activities at once.
  *
  */
 public class DeleteExpiredActivitiesExecution implements TaskHandlerExecutionStrategy<PrincipalActionContext>
@@ -51,31 +51,23 @@ public class DeleteExpiredActivitiesExecution implements TaskHandlerExecutionStr
     private DomainMapper<MapperRequest, SystemSettings> settingsMapper;
 
     /**
-     * Mapper to get a list of all expired activities.
-     */
-    private GetExpiredActivities expiredActivitiesMapper;
-
-    /**
-     * Number of expired activities to process at a time so the queue can handle smaller tasks.
+     * Mapper for the progress of the purge.
      */
-    private int chunkSize;
+    private ExpiredActivityPurgeDbMapper purgeMapper;
 
     /**
      * Constructor.
      *
      * @param inSettingsMapper
      *            the settings mapper.
-     * @param inExpiredActivitiesMapper
-     *            the expired activities mapper.
-     * @param inChunkSize
-     *            the number of activities to include in a single processing chunk.
+     * @param inPurgeMapper
+     *            mapper for the progress of the purge.
      */
     public DeleteExpiredActivitiesExecution(final DomainMapper<MapperRequest, SystemSettings> inSettingsMapper,
-            final GetExpiredActivities inExpiredActivitiesMapper, final int inChunkSize)
+            final ExpiredActivityPurgeDbMapper inPurgeMapper)
     {
         settingsMapper = inSettingsMapper;
-        expiredActivitiesMapper = inExpiredActivitiesMapper;
-        chunkSize = inChunkSize;
+        purgeMapper = inPurgeMapper;
     }
 
     /**
@@ -92,28 +84,15 @@ public class DeleteExpiredActivitiesExecution implements TaskHandlerExecutionStr
         {
             Calendar calendar = Calendar.getInstance();
             calendar.add(Calendar.DATE, expirationDays * -1);
-            List<Long> expired = expiredActivitiesMapper.execute(calendar.getTime());
+            Date expirationDate = calendar.getTime();
 
-            if (log.isTraceEnabled())
+            if (purgeMapper.start(expirationDate))
             {
-                log.trace("Expired activity ids to delete: " + expired);
+                log.info("Starting purge of activities expired before " + expirationDate);
             }
-
-            while (expired.size() > 0)
+            else
             {
-                int count = expired.size() > chunkSize ? chunkSize : expired.size();
-
-                ArrayList<Long> chunkActivityIds = new ArrayList<Long>(expired.subList(0, count));
-
-                if (log.isTraceEnabled())
-                {
-                    log.trace("Pushing UserActionRequest to queue for deleteActivitiesByIds with "
-                            + chunkActivityIds.size() + " activities");
-                }
-                inActionContext.getUserActionRequests().add(
-                        new UserActionRequest("deleteActivitiesByIds", null, chunkActivityIds));
-
-                expired.subList(0, count).clear();
+                log.info("Not starting a purge of expired activities: a purge is already in progress");
             }
         }
         return Boolean.TRUE;
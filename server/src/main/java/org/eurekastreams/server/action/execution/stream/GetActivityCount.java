@@ -32,30 +32,38 @@ public class GetActivityCount implements ExecutionStrategy<PrincipalActionContex
      */
     private GetActivityIdsByJson getActivityIdsByJsonRequest;
 
+    /**
+     * The most activities to count; clients display anything at or above it as "more than".
+     */
+    private int maxCount;
+
     /**
      * Default constructor.
      * 
      * @param inGetActivityIdsByJsonRequest
      *            activity getter..
+     * @param inMaxCount
+     *            the most activities to count.
      */
-    public GetActivityCount(final GetActivityIdsByJson inGetActivityIdsByJsonRequest)
+    public GetActivityCount(final GetActivityIdsByJson inGetActivityIdsByJsonRequest, final int inMaxCount)
     {
         getActivityIdsByJsonRequest = inGetActivityIdsByJsonRequest;
+        maxCount = inMaxCount;
     }
 
     /**
-     * Execute the executor and return it's size.
+     * Count the activities matching the request, up to the max count.
      * 
      * @param inActionContext
      *            the action context.
      * @throws ExecutionException
      *             the exception.
-     * @return the size.
+     * @return the count.
      */
     public Serializable execute(final PrincipalActionContext inActionContext) throws ExecutionException
     {
-        return Integer.valueOf(getActivityIdsByJsonRequest.execute((String) inActionContext.getParams(),
-                inActionContext.getPrincipal().getId()).size());
+        return Integer.valueOf(getActivityIdsByJsonRequest.count((String) inActionContext.getParams(),
+                inActionContext.getPrincipal().getId(), maxCount));
     }
 
 }
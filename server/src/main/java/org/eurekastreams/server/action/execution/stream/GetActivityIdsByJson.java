@@ -16,7 +16,10 @@
 package org.eurekastreams.server.action.execution.stream;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import net.sf.json.JSONObject;
 
@@ -25,6 +28,7 @@ import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.search.modelview.PersonModelView;
 import org.eurekastreams.server.service.actions.strategies.activity.ListCollider;
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderCursor;
 import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderDataSource;
 import org.eurekastreams.server.service.actions.strategies.activity.datasources.SortedDataSource;
 
@@ -38,6 +42,11 @@ public class GetActivityIdsByJson
      */
     private Log log = LogFactory.make();
 
+    /**
+     * Largest number of activity ids read from the data sources per pass.
+     */
+    private static final int MAX_BATCH_SIZE = 10000;
+
     /**
      * Data source that MUST provide results in descending order of ID.
      */
@@ -114,6 +123,89 @@ public class GetActivityIdsByJson
      * @return the activity ids.
      */
     public List<Long> execute(final String inRequest, final Long userEntityId)
+    {
+        final JSONObject jsonRequest = parseRequest(inRequest, userEntityId);
+        return execute(jsonRequest, userEntityId, sortedDataSource.fetch(jsonRequest, userEntityId));
+    }
+
+    /**
+     * Counts the activities matching a request that the user can see, up to a limit. Meant for polling for unseen
+     * activity: only the ids above the request's minId are read, they are security trimmed no more than a limit's worth
+     * at a time, and counting stops as soon as the limit is reached. Requests that need the sorted data source are
+     * counted through the full pipeline.
+     * 
+     * @param inRequest
+     *            the request.
+     * @param userEntityId
+     *            the user entity ID.
+     * @param maxLimit
+     *            the most activities to count; the request's count lowers it further.
+     * @return the number of activities, at most the limit.
+     */
+    public int count(final String inRequest, final Long userEntityId, final int maxLimit)
+    {
+        final JSONObject jsonRequest = parseRequest(inRequest, userEntityId);
+        final int limit = jsonRequest.containsKey("count") ? Math.min(jsonRequest.getInt("count"), maxLimit)
+                : maxLimit;
+        if (limit <= 0)
+        {
+            return 0;
+        }
+
+        jsonRequest.put("count", limit);
+        long minActivityId = jsonRequest.containsKey("minId") ? jsonRequest.getLong("minId") : 0;
+        long maxActivityId = jsonRequest.containsKey("maxId") ? jsonRequest.getLong("maxId") : Long.MAX_VALUE;
+
+        final List<Long> sortedDataSet = sortedDataSource.fetch(jsonRequest, userEntityId);
+        DescendingOrderCursor cursor = null;
+        if (sortedDataSet == null)
+        {
+            cursor = descendingOrderdataSource.openCursor(jsonRequest, userEntityId, maxActivityId);
+        }
+        if (cursor == null)
+        {
+            return execute(jsonRequest, userEntityId, sortedDataSet).size();
+        }
+
+        Map<Long, Set<Long>> visibleGroupIdsMemo = new HashMap<Long, Set<Long>>();
+        int visible = 0;
+        boolean exhausted = false;
+        while (!exhausted && visible < limit)
+        {
+            // no more than this many further ids can change the count
+            int window = limit - visible;
+            List<Long> batch = cursor.next(window);
+            exhausted = batch.size() < window;
+
+            List<Long> candidates = new ArrayList<Long>(batch.size());
+            for (Long activityId : batch)
+            {
+                if (activityId <= minActivityId)
+                {
+                    exhausted = true;
+                    break;
+                }
+                candidates.add(activityId);
+            }
+
+            if (!candidates.isEmpty())
+            {
+                visible += securityTrimmer.trim(candidates, userEntityId, visibleGroupIdsMemo).size();
+            }
+        }
+        return Math.min(visible, limit);
+    }
+
+    /**
+     * Parses a request, replacing the user placeholder with the user's account id.
+     * 
+     * @param inRequest
+     *            the request.
+     * @param userEntityId
+     *            the user entity ID.
+     * @return the parsed request.
+     */
+    private JSONObject parseRequest(final String inRequest, final Long userEntityId)
     {
         String request = inRequest;
         log.debug("Attempted to parse: " + inRequest);
@@ -125,8 +217,23 @@ public class GetActivityIdsByJson
             request = request.replaceAll(userReplaceString, personMapper.execute(peopleIds).get(0).getAccountId());
         }
 
-        final JSONObject jsonRequest = JSONObject.fromObject(request);
+        return JSONObject.fromObject(request);
+    }
 
+    /**
+     * Get activity ids base on a parsed request and user entity ID.
+     * 
+     * @param jsonRequest
+     *            the parsed request.
+     * @param userEntityId
+     *            the user entity ID.
+     * @param sortedDataSet
+     *            the results of the sorted data source for the request, null if it doesn't handle it.
+     * @return the activity ids.
+     */
+    private List<Long> execute(final JSONObject jsonRequest, final Long userEntityId,
+            final List<Long> sortedDataSet)
+    {
         int maxResults = 0;
         long minActivityId = 0;
         long maxActivityId = Long.MAX_VALUE;
@@ -137,143 +244,198 @@ public class GetActivityIdsByJson
         }
         if (jsonRequest.containsKey("minId"))
         {
-            minActivityId = jsonRequest.getInt("minId");
+            minActivityId = jsonRequest.getLong("minId");
         }
         if (jsonRequest.containsKey("maxId"))
         {
             maxActivityId = jsonRequest.getLong("maxId");
         }
 
-        // used for paging, this is the next activity in the list to add to the
-        // current page
-        int startingIndex = 0;
-
         // the list of activities to return
         List<Long> results = new ArrayList<Long>();
-
-        List<Long> allKeys = new ArrayList<Long>();
-
-        final List<Long> sortedDataSet = sortedDataSource.fetch(jsonRequest, userEntityId);
-
-        // The pass.
-        int pass = 1;
-        int batchSize = 0;
-
-        // build a list of activity ids to fetch for this page, and
-        // increment the start index for next page
-        List<Long> page = new ArrayList<Long>();
-
-        boolean reachedMinActivityIdWhenSortingByIdDescending = false;
-        boolean sortedByIdDescending = false;
-        do
+        if (maxResults <= 0)
         {
-            allKeys.clear();
+            return results;
+        }
 
-            // multiply the batch size by the multiplier to avoid extra cache hits
-            batchSize = maxResults * (int) (Math.pow(2, pass));
+        // the user's visible groups, looked up once and shared by every security trim pass of this request
+        Map<Long, Set<Long>> visibleGroupIdsMemo = new HashMap<Long, Set<Long>>();
 
-            jsonRequest.put("count", batchSize);
+        final DescendingOrderCursor cursor = descendingOrderdataSource.openCursor(jsonRequest, userEntityId,
+                maxActivityId);
 
-            final List<Long> descendingOrderDataSet = descendingOrderdataSource.fetch(jsonRequest, userEntityId);
+        // the batch grows each pass so heavily trimmed streams need few security trims; each id is only read once
+        int batchSize = maxResults;
 
-            if (descendingOrderDataSet != null)
+        List<Long> orderedIds = sortedDataSet;
+        if (cursor != null && sortedDataSet != null)
+        {
+            // the sorted data set decides the order and the descending one which ids belong, so collide them once
+            // over every id that could match to keep the whole result in the sorted order
+            orderedIds = andCollider.collide(readCandidates(cursor, sortedDataSet, minActivityId, maxActivityId,
+                    maxResults), sortedDataSet, sortedDataSet.size());
+        }
+        else if (cursor != null)
+        {
+            boolean exhausted = false;
+            while (!exhausted)
             {
-                sortedByIdDescending = true;
-                if (sortedDataSet != null)
+                batchSize = nextBatchSize(batchSize);
+                List<Long> batch = cursor.next(batchSize);
+                exhausted = batch.size() < batchSize;
+
+                List<Long> page = new ArrayList<Long>(batch.size());
+                for (Long activityId : batch)
                 {
-                    // we have both lists
-                    allKeys = andCollider.collide(descendingOrderDataSet, sortedDataSet, batchSize);
+                    if (activityId <= minActivityId)
+                    {
+                        // we've reached the minimum id and the cursor is sorted by id, descending, so we can stop
+                        exhausted = true;
+                        break;
+                    }
+                    page.add(activityId);
                 }
-                else
+
+                if (addVisible(page, userEntityId, visibleGroupIdsMemo, results, maxResults))
                 {
-                    // we don't have a sorted list - just descending order list
-                    allKeys = descendingOrderDataSet;
+                    return results;
                 }
-            }
-            else if (sortedDataSet != null)
-            {
-                sortedByIdDescending = false;
-                allKeys = sortedDataSet;
-            }
 
-            if (allKeys.size() < startingIndex)
-            {
-                // no more
-                log.debug("No more results to page through after " + allKeys.size());
-                break;
+                log.trace("Done looping?: " + exhausted + ", batchSize: " + batchSize + ", results.size(): "
+                        + results.size() + ", maxResults: " + maxResults);
             }
+        }
 
-            // loop across the available keys in allKeys
-            for (int i = startingIndex; i < allKeys.size(); i++, startingIndex++)
+        if (orderedIds != null)
+        {
+            // the ids are in the sorted data set's order, not id order, so check every id against the range
+            List<Long> page = new ArrayList<Long>();
+            batchSize = nextBatchSize(batchSize);
+            for (Long activityId : orderedIds)
             {
-                if (sortedByIdDescending && allKeys.get(i) <= minActivityId)
-                {
-                    // we've reached the minimum id and our list is sorted by id, descending, so we can safely break out
-                    reachedMinActivityIdWhenSortingByIdDescending = true;
-                    break;
-                }
-                // if this is within our limits, include it for security trimming
-                if (allKeys.get(i) < maxActivityId && allKeys.get(i) > minActivityId)
+                if (activityId < maxActivityId && activityId > minActivityId)
                 {
-                    page.add(allKeys.get(i));
-
-                    if (page.size() == batchSize || i == allKeys.size() - 1)
+                    page.add(activityId);
+                    if (page.size() == batchSize)
                     {
-                        log.debug("Sending a page of " + page.size() + " out for security trimming.");
-
-                        // we've filled up a page - either by hitting our batch size or by hitting the end of allKeys,
-                        // so security trim it
-                        page = securityTrimmer.trim(page, userEntityId);
-
-                        // add the trimmed results to our return list
-                        for (Long item : page)
+                        if (addVisible(page, userEntityId, visibleGroupIdsMemo, results, maxResults))
                         {
-                            results.add(item);
-                            if (results.size() >= maxResults)
-                            {
-                                log.debug("Filled a full page of " + results.size() + " results.");
-                                return results;
-                            }
+                            return results;
                         }
-
-                        log.info("Return results now has " + results.size() + " results - looking for more");
-
-                        // start over for our next scoped page
                         page = new ArrayList<Long>();
+                        batchSize = nextBatchSize(batchSize);
                     }
                 }
             }
+            addVisible(page, userEntityId, visibleGroupIdsMemo, results, maxResults);
+        }
 
-            // we've looped across allPages and haven't yet found enough results - increment the pass, and try
-            // getting more into allKeys
+        return results;
+    }
 
-            log.trace("Done looping?: "
-                    + (reachedMinActivityIdWhenSortingByIdDescending || allKeys.size() >= batchSize) + ", pass: "
-                    + pass + ", results.size(): " + results.size() + ", maxResults: " + maxResults
-                    + ", allKeys.size(): " + allKeys.size() + ", batchSize: " + batchSize
-                    + ", sorting by id descending? " + sortedByIdDescending
-                    + ", reached min activity id when sorted by id descending? "
-                    + reachedMinActivityIdWhenSortingByIdDescending);
+    /**
+     * Reads the ids of a descending order cursor that could match a sorted data set: those down to the lowest id of
+     * the sorted data set within the range.
+     * 
+     * @param cursor
+     *            the cursor.
+     * @param sortedDataSet
+     *            the sorted data set.
+     * @param minActivityId
+     *            the range's lower bound (exclusive).
+     * @param maxActivityId
+     *            the range's upper bound (exclusive).
+     * @param firstBatchSize
+     *            the number of ids to read first; each further read doubles it, up to a limit.
+     * @return the ids, in descending order.
+     */
+    private List<Long> readCandidates(final DescendingOrderCursor cursor, final List<Long> sortedDataSet,
+            final long minActivityId, final long maxActivityId, final int firstBatchSize)
+    {
+        List<Long> candidates = new ArrayList<Long>();
 
-            pass++;
+        long lowestId = Long.MAX_VALUE;
+        for (Long activityId : sortedDataSet)
+        {
+            if (activityId < maxActivityId && activityId > minActivityId && activityId < lowestId)
+            {
+                lowestId = activityId;
+            }
+        }
+        if (lowestId == Long.MAX_VALUE)
+        {
+            return candidates;
         }
-        while (!reachedMinActivityIdWhenSortingByIdDescending && allKeys.size() >= batchSize); // while we got back at
-        // least as many as we needed for the recent batch
 
-        if (results.size() < maxResults && page.size() > 0)
-        { // we haven't gotten all our results yet, and we still have results to security trim
-            page = securityTrimmer.trim(page, userEntityId);
-            for (Long item : page)
+        int batchSize = firstBatchSize;
+        boolean exhausted = false;
+        while (!exhausted)
+        {
+            batchSize = nextBatchSize(batchSize);
+            List<Long> batch = cursor.next(batchSize);
+            exhausted = batch.size() < batchSize;
+            for (Long activityId : batch)
             {
-                results.add(item);
-                if (results.size() >= maxResults)
+                if (activityId < lowestId)
                 {
-                    log.debug("Filled a full page of " + results.size() + " results.");
-                    return results;
+                    // no lower id is in the sorted data set's range
+                    exhausted = true;
+                    break;
                 }
+                candidates.add(activityId);
             }
         }
+        return candidates;
+    }
 
-        return results;
+    /**
+     * Security trims a page of activity ids and adds the visible ones to the results.
+     * 
+     * @param page
+     *            the activity ids.
+     * @param userEntityId
+     *            the user entity ID.
+     * @param visibleGroupIdsMemo
+     *            the user's visible groups, shared by every trim of the request.
+     * @param results
+     *            the results to add to.
+     * @param maxResults
+     *            the number of results wanted.
+     * @return true once the results are full.
+     */
+    private boolean addVisible(final List<Long> page, final Long userEntityId,
+            final Map<Long, Set<Long>> visibleGroupIdsMemo, final List<Long> results, final int maxResults)
+    {
+        if (page.isEmpty())
+        {
+            return false;
+        }
+
+        log.debug("Sending a page of " + page.size() + " out for security trimming.");
+
+        for (Long item : securityTrimmer.trim(page, userEntityId, visibleGroupIdsMemo))
+        {
+            results.add(item);
+            if (results.size() >= maxResults)
+            {
+                log.debug("Filled a full page of " + results.size() + " results.");
+                return true;
+            }
+        }
+
+        log.info("Return results now has " + results.size() + " results - looking for more");
+        return false;
+    }
+
+    /**
+     * Doubles the batch size, up to a limit.
+     * 
+     * @param batchSize
+     *            the current batch size.
+     * @return the next batch size.
+     */
+    private static int nextBatchSize(final int batchSize)
+    {
+        return batchSize >= MAX_BATCH_SIZE ? batchSize : Math.min(batchSize * 2, MAX_BATCH_SIZE);
     }
 }
@@ -16,6 +16,8 @@
 package org.eurekastreams.server.action.execution.stream;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.actions.ExecutionStrategy;
@@ -25,6 +27,7 @@ import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.server.action.request.stream.PostActivityRequest;
 import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.ActivityDTO;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.persistence.mappers.FindByIdMapper;
 import org.eurekastreams.server.persistence.mappers.requests.FindByIdRequest;
 import org.eurekastreams.server.persistence.mappers.stream.PostCachedActivity;
@@ -33,7 +36,7 @@ import org.eurekastreams.server.persistence.mappers.stream.PostCachedActivity;
  * This class provides the Async ExecutionStrategy for the PostActivity action.
  * 
  * Add the activity to cache, extract its hashtags, and store them in the database for each stream that will use them
- * for their popular hashtags.
+ * for their popular hashtags. For posts which deferred it, also load the activity into cache.
  * 
  */
 public class PostActivityAsyncExecutionStrategy implements ExecutionStrategy<AsyncActionContext>
@@ -58,6 +61,11 @@ public class PostActivityAsyncExecutionStrategy implements ExecutionStrategy<Asy
      */
     private final StoreStreamHashTagsForActivityStrategy storeStreamHashTagStrategy;
 
+    /**
+     * Mapper to load activities into cache, for posts which deferred it; null if none do.
+     */
+    private final DomainMapper<List<Long>, List<ActivityDTO>> activitiesMapper;
+
     /**
      * Constructor for the PostActivityAsyncExecutionStrategy class.
      * 
@@ -71,10 +79,31 @@ public class PostActivityAsyncExecutionStrategy implements ExecutionStrategy<Asy
     public PostActivityAsyncExecutionStrategy(final PostCachedActivity inPostCachedActivityMapper,
             final FindByIdMapper<Activity> inFindByIdMapper,
             final StoreStreamHashTagsForActivityStrategy inStoreStreamHashTagStrategy)
+    {
+        this(inPostCachedActivityMapper, inFindByIdMapper, inStoreStreamHashTagStrategy, null);
+    }
+
+    /**
+     * Constructor for the PostActivityAsyncExecutionStrategy class, supporting posts which defer cache hydration.
+     * 
+     * @param inPostCachedActivityMapper
+     *            - instance of the {@link PostCachedActivity} mapper that will perform the cache updates.
+     * @param inFindByIdMapper
+     *            mapper to find an activity by id
+     * @param inStoreStreamHashTagStrategy
+     *            strategy to store activities to streams in the database
+     * @param inActivitiesMapper
+     *            mapper to load activities into cache (the BulkActivitiesMapper).
+     */
+    public PostActivityAsyncExecutionStrategy(final PostCachedActivity inPostCachedActivityMapper,
+            final FindByIdMapper<Activity> inFindByIdMapper,
+            final StoreStreamHashTagsForActivityStrategy inStoreStreamHashTagStrategy,
+            final DomainMapper<List<Long>, List<ActivityDTO>> inActivitiesMapper)
     {
         postCachedActivityMapper = inPostCachedActivityMapper;
         findByIdMapper = inFindByIdMapper;
         storeStreamHashTagStrategy = inStoreStreamHashTagStrategy;
+        activitiesMapper = inActivitiesMapper;
     }
 
     /**
@@ -83,11 +112,18 @@ public class PostActivityAsyncExecutionStrategy implements ExecutionStrategy<Asy
     @Override
     public Serializable execute(final AsyncActionContext inActionContext) throws ExecutionException
     {
-        ActivityDTO currentActivity = ((PostActivityRequest) inActionContext.getParams()).getActivityDTO();
+        PostActivityRequest request = (PostActivityRequest) inActionContext.getParams();
+        ActivityDTO currentActivity = request.getActivityDTO();
 
         Activity activity = findByIdMapper.execute(new FindByIdRequest("Activity", currentActivity.getId()));
         if (activity != null)
         {
+            if (activitiesMapper != null && request.isCacheHydrationDeferred())
+            {
+                log.info("Loading activity #" + currentActivity.getId() + " into cache");
+                activitiesMapper.execute(Collections.singletonList(currentActivity.getId()));
+            }
+
             log.info("Updating caches for activity #" + currentActivity.getId());
             postCachedActivityMapper.execute(activity);
 
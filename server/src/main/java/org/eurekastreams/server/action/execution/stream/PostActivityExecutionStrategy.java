@@ -38,6 +38,8 @@ import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.ActivityDTO;
 import org.eurekastreams.server.domain.stream.ActivityVerb;
 import org.eurekastreams.server.domain.stream.SharedResource;
+import org.eurekastreams.server.domain.stream.StreamEntityDTO;
+import org.eurekastreams.server.domain.stream.StreamScope;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.persistence.mappers.InsertMapper;
 import org.eurekastreams.server.persistence.mappers.cache.Cache;
@@ -46,11 +48,18 @@ import org.eurekastreams.server.persistence.mappers.cache.PostActivityUpdateStre
 import org.eurekastreams.server.persistence.mappers.requests.InsertActivityCommentRequest;
 import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
 import org.eurekastreams.server.persistence.mappers.stream.InsertActivityComment;
+import org.eurekastreams.server.search.modelview.CommentDTO;
+import org.eurekastreams.server.search.modelview.PersonModelView;
 import org.eurekastreams.server.service.actions.strategies.RecipientRetriever;
 
 /**
  * This class contains the business logic for posting an Activity to the system.
  *
+ * In fast-ack mode (constructed with an actor mapper) the post is acknowledged with an {@link ActivityDTO} assembled
+ * from what is already in hand, and loading the activity into cache is left to the postActivityAsyncAction, so it is
+ * not part of the user's transaction. The activity id is still added to its entity streams in the transaction, so the
+ * post shows up in order right away.
+ *
  */
 public class PostActivityExecutionStrategy implements TaskHandlerExecutionStrategy<PrincipalActionContext>
 {
@@ -95,6 +104,11 @@ public class PostActivityExecutionStrategy implements TaskHandlerExecutionStrate
      */
     private final Cache cache;
 
+    /**
+     * Mapper to get the (cached) actor by account id for fast-ack posts; null to hydrate the activity in the post.
+     */
+    private final DomainMapper<String, PersonModelView> actorMapper;
+
     /**
      * Constructor for the PostActivityExecutionStrategy.
      *
@@ -120,6 +134,39 @@ public class PostActivityExecutionStrategy implements TaskHandlerExecutionStrate
             final PostActivityUpdateStreamsByActorMapper inUpdateStreamsByActorMapper,
             final DomainMapper<SharedResourceRequest, SharedResource> inFindOrInsertSharedResourceMapper,
             final Cache inCache)
+    {
+        this(inInsertMapper, inInsertCommentDAO, inActivitiesMapper, inRecipientRetriever,
+                inUpdateStreamsByActorMapper, inFindOrInsertSharedResourceMapper, inCache, null);
+    }
+
+    /**
+     * Constructor for the PostActivityExecutionStrategy.
+     *
+     * @param inInsertMapper
+     *            - instance of the {@link InsertMapper} for the {@link Activity} object.
+     * @param inInsertCommentDAO
+     *            - instance of the {@link InsertActivityComment} mapper.
+     * @param inActivitiesMapper
+     *            - instance of the {@link BulkActivitiesMapper}.
+     * @param inRecipientRetriever
+     *            - instance of the {@link RecipientRetriever}.
+     * @param inUpdateStreamsByActorMapper
+     *            - instance of the {@link PostActivityUpdateStreamsByActorMapper}.
+     * @param inFindOrInsertSharedResourceMapper
+     *            mapper to find or insert shared resources
+     * @param inCache
+     *            the cache to use to clean up shared resources immediately
+     * @param inActorMapper
+     *            mapper to get a person by account id; when given, posts are acknowledged without hydrating the
+     *            activity (fast-ack).
+     */
+    public PostActivityExecutionStrategy(final InsertMapper<Activity> inInsertMapper,
+            final InsertActivityComment inInsertCommentDAO,
+            final DomainMapper<List<Long>, List<ActivityDTO>> inActivitiesMapper,
+            final RecipientRetriever inRecipientRetriever,
+            final PostActivityUpdateStreamsByActorMapper inUpdateStreamsByActorMapper,
+            final DomainMapper<SharedResourceRequest, SharedResource> inFindOrInsertSharedResourceMapper,
+            final Cache inCache, final DomainMapper<String, PersonModelView> inActorMapper)
     {
         insertMapper = inInsertMapper;
         insertCommentDAO = inInsertCommentDAO;
@@ -128,6 +175,7 @@ public class PostActivityExecutionStrategy implements TaskHandlerExecutionStrate
         updateStreamsByActorMapper = inUpdateStreamsByActorMapper;
         findOrInsertSharedResourceMapper = inFindOrInsertSharedResourceMapper;
         cache = inCache;
+        actorMapper = inActorMapper;
     }
 
     /**
@@ -164,9 +212,18 @@ public class PostActivityExecutionStrategy implements TaskHandlerExecutionStrate
         insertMapper.execute(new PersistenceRequest<Activity>(newActivity));
         insertMapper.flush();
 
-        // Force the cache to load the activityDTO in from the db.
-        List<ActivityDTO> activityResults = activitiesMapper.execute(Arrays.asList(newActivity.getId()));
-        persistedActivityDTO = activityResults.get(0);
+        boolean fastAck = actorMapper != null;
+        if (fastAck)
+        {
+            // Answer with what is in hand; the async action loads the cache and adds to the entity streams.
+            persistedActivityDTO = assemblePostedActivity(inActivityDTO, newActivity);
+        }
+        else
+        {
+            // Force the cache to load the activityDTO in from the db.
+            List<ActivityDTO> activityResults = activitiesMapper.execute(Arrays.asList(newActivity.getId()));
+            persistedActivityDTO = activityResults.get(0);
+        }
         actorId = persistedActivityDTO.getActor().getId();
         destinationId = persistedActivityDTO.getDestinationStream().getDestinationEntityId();
         destinationType = persistedActivityDTO.getDestinationStream().getType();
@@ -177,8 +234,13 @@ public class PostActivityExecutionStrategy implements TaskHandlerExecutionStrate
         // Insert the comment that was posted with a shared post.
         if (inActivityDTO.getFirstComment() != null && inActivityDTO.getVerb().equals(ActivityVerb.SHARE))
         {
-            insertCommentDAO.execute(new InsertActivityCommentRequest(actorId, persistedActivityDTO.getId(),
-                    inActivityDTO.getFirstComment().getBody()));
+            CommentDTO comment = insertCommentDAO.execute(new InsertActivityCommentRequest(actorId,
+                    persistedActivityDTO.getId(), inActivityDTO.getFirstComment().getBody()));
+            if (fastAck && comment != null)
+            {
+                persistedActivityDTO.setFirstComment(comment);
+                persistedActivityDTO.setCommentCount(1);
+            }
         }
 
         RequestType requestType = null;
@@ -206,13 +268,89 @@ public class PostActivityExecutionStrategy implements TaskHandlerExecutionStrate
         // are not saved in cache.
 
         queueRequests.add(new UserActionRequest("postActivityAsyncAction", null, new PostActivityRequest(
-                persistedActivityDTO)));
+                persistedActivityDTO, fastAck)));
 
         inActionContext.getUserActionRequests().addAll(queueRequests);
 
         return persistedActivityDTO;
     }
 
+    /**
+     * Assembles the DTO of a just-posted activity from the posted DTO, the persisted activity and the (cached) actor,
+     * without loading the activity back from the database.
+     *
+     * @param inActivityDTO
+     *            - the DTO that was posted.
+     * @param inActivity
+     *            - the persisted activity.
+     * @return the DTO of the posted activity.
+     */
+    private ActivityDTO assemblePostedActivity(final ActivityDTO inActivityDTO, final Activity inActivity)
+    {
+        ActivityDTO activity = new ActivityDTO();
+        activity.setId(inActivity.getId());
+        activity.setVerb(inActivity.getVerb());
+        activity.setBaseObjectType(inActivity.getBaseObjectType());
+        activity.setBaseObjectProperties(inActivity.getBaseObject());
+        activity.setPostedTime(inActivity.getPostedTime());
+        activity.setLocation(inActivity.getLocation());
+        activity.setMood(inActivity.getMood());
+        activity.setAnnotation(inActivity.getAnnotation());
+        activity.setIsDestinationStreamPublic(inActivity.getIsDestinationStreamPublic());
+        activity.setAppId(inActivity.getAppId());
+        activity.setAppName(inActivity.getAppName());
+        activity.setAppSource(inActivity.getAppSource());
+        activity.setAppType(inActivity.getAppType());
+        activity.setShowInStream(inActivity.getShowInStream());
+        activity.setCommentCount(0);
+        activity.setActor(assemblePerson(inActivity.getActorId()));
+
+        StreamEntityDTO originalActor = inActivityDTO.getOriginalActor();
+        if (originalActor != null && originalActor.getType() == EntityType.PERSON
+                && originalActor.getUniqueIdentifier() != null)
+        {
+            activity.setOriginalActor(assemblePerson(originalActor.getUniqueIdentifier()));
+        }
+        else
+        {
+            activity.setOriginalActor(originalActor);
+        }
+
+        StreamScope scope = inActivity.getRecipientStreamScope();
+        StreamEntityDTO destination = new StreamEntityDTO();
+        destination.setType(inActivityDTO.getDestinationStream().getType());
+        destination.setUniqueIdentifier(scope.getUniqueKey());
+        destination.setId(scope.getId());
+        destination.setDestinationEntityId(scope.getDestinationEntityId());
+        destination.setDisplayName(scope.getDisplayName());
+        activity.setDestinationStream(destination);
+
+        return activity;
+    }
+
+    /**
+     * Assembles the stream entity of a person from the (cached) person.
+     *
+     * @param inAccountId
+     *            - the person's account id.
+     * @return the stream entity; only the type and account id are set if the person was not found.
+     */
+    private StreamEntityDTO assemblePerson(final String inAccountId)
+    {
+        StreamEntityDTO entity = new StreamEntityDTO();
+        entity.setType(EntityType.PERSON);
+        entity.setUniqueIdentifier(inAccountId);
+        PersonModelView person = actorMapper.execute(inAccountId);
+        if (person != null)
+        {
+            entity.setId(person.getEntityId());
+            entity.setDestinationEntityId(person.getEntityId());
+            entity.setDisplayName(person.getDisplayName());
+            entity.setAvatarId(person.getAvatarId());
+        }
+        return entity;
+    }
+
     /**
      * Method to convert ActivityDTO to an Activity object.
      *
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.stream;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.PrincipalActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.actions.context.service.ServiceActionContext;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.domain.stream.ExpiredActivityPurge;
+import org.eurekastreams.server.persistence.mappers.db.ExpiredActivityPurgeDbMapper;
+import org.eurekastreams.server.persistence.mappers.db.GetExpiredActivities;
+
+/**
+ * Deletes the next chunk of the expired activity purge in progress, if any. Run on a schedule: the schedule's interval
+ * is the throttle between chunks, and no thread waits while holding a transaction.
+ *
+ * The purge works through the expired activities in ascending id order from the checkpoint kept in the database. Each
+ * run claims its chunk by moving the checkpoint past it in the same transaction as the delete, so a chunk is deleted
+ * exactly once even if runs overlap, and a purge interrupted by a restart carries on from its last committed chunk.
+ */
+public class PurgeExpiredActivitiesChunkExecution implements TaskHandlerExecutionStrategy<PrincipalActionContext>
+{
+    /**
+     * Local logger instance.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Mapper for the progress of the purge.
+     */
+    private ExpiredActivityPurgeDbMapper purgeMapper;
+
+    /**
+     * Mapper to get the expired activities.
+     */
+    private GetExpiredActivities expiredActivitiesMapper;
+
+    /**
+     * Execution deleting a chunk of activities (given the list of ids as params).
+     */
+    private TaskHandlerExecutionStrategy<ActionContext> deleteExecution;
+
+    /**
+     * Number of expired activities deleted per chunk.
+     */
+    private int chunkSize;
+
+    /**
+     * Constructor.
+     *
+     * @param inPurgeMapper
+     *            mapper for the progress of the purge.
+     * @param inExpiredActivitiesMapper
+     *            the expired activities mapper.
+     * @param inDeleteExecution
+     *            execution deleting a chunk of activities.
+     * @param inChunkSize
+     *            the number of activities to include in a single processing chunk.
+     */
+    public PurgeExpiredActivitiesChunkExecution(final ExpiredActivityPurgeDbMapper inPurgeMapper,
+            final GetExpiredActivities inExpiredActivitiesMapper,
+            final TaskHandlerExecutionStrategy<ActionContext> inDeleteExecution, final int inChunkSize)
+    {
+        purgeMapper = inPurgeMapper;
+        expiredActivitiesMapper = inExpiredActivitiesMapper;
+        deleteExecution = inDeleteExecution;
+        chunkSize = inChunkSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean execute(final TaskHandlerActionContext<PrincipalActionContext> inActionContext)
+    {
+        ExpiredActivityPurge purge = purgeMapper.read();
+        if (purge == null || purge.getExpirationDate() == null)
+        {
+            // no purge in progress
+            return Boolean.TRUE;
+        }
+        Date expirationDate = purge.getExpirationDate();
+        long lastActivityId = purge.getLastActivityId();
+
+        List<Long> expired = expiredActivitiesMapper.execute(expirationDate, lastActivityId, chunkSize);
+        if (expired.isEmpty())
+        {
+            finish(expirationDate);
+            return Boolean.TRUE;
+        }
+
+        long checkpoint = expired.get(expired.size() - 1);
+        if (!purgeMapper.advance(expirationDate, lastActivityId, checkpoint))
+        {
+            log.debug("Expired activities after id " + lastActivityId + " are already being purged by another run");
+            return Boolean.TRUE;
+        }
+
+        if (log.isTraceEnabled())
+        {
+            log.trace("Expired activity ids to delete: " + expired);
+        }
+        deleteExecution.execute(new TaskHandlerActionContext<ActionContext>(new ServiceActionContext(
+                new ArrayList<Long>(expired), inActionContext.getActionContext().getPrincipal()), inActionContext
+                .getUserActionRequests()));
+
+        log.info("Purged " + expired.size() + " expired activities; checkpoint: id " + checkpoint);
+        if (expired.size() < chunkSize)
+        {
+            finish(expirationDate);
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Ends the purge.
+     *
+     * @param inExpirationDate
+     *            Expiration date of the purge.
+     */
+    private void finish(final Date inExpirationDate)
+    {
+        if (purgeMapper.finish(inExpirationDate))
+        {
+            log.info("Finished purge of activities expired before " + inExpirationDate);
+        }
+    }
+}
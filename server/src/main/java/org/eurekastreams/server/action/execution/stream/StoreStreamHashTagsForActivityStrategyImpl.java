@@ -15,16 +15,19 @@
  */
 package org.eurekastreams.server.action.execution.stream;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.action.request.stream.StreamPopularHashTagsRequest;
 import org.eurekastreams.server.domain.strategies.HashTagExtractor;
 import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.HashTag;
 import org.eurekastreams.server.domain.stream.StreamHashTag;
 import org.eurekastreams.server.domain.stream.StreamScope.ScopeType;
 import org.eurekastreams.server.persistence.mappers.InsertMapper;
+import org.eurekastreams.server.persistence.mappers.cache.StreamHashTagCounterMapper;
 import org.eurekastreams.server.persistence.mappers.chained.DecoratedPartialResponseDomainMapper;
 import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
 import org.eurekastreams.server.persistence.mappers.stream.ActivityContentExtractor;
@@ -60,6 +63,11 @@ public class StoreStreamHashTagsForActivityStrategyImpl implements StoreStreamHa
      */
     private final InsertMapper<StreamHashTag> streamHashTagInsertMapper;
 
+    /**
+     * Mapper to update the popular hashtag counts of the stream; null to leave them to be recomputed on expiry.
+     */
+    private final StreamHashTagCounterMapper hashTagCounterMapper;
+
     /**
      * Constructor for the PostActivityAsyncExecutionStrategy class.
      * 
@@ -76,11 +84,35 @@ public class StoreStreamHashTagsForActivityStrategyImpl implements StoreStreamHa
             final ActivityContentExtractor inContentExtractor,
             final DecoratedPartialResponseDomainMapper<List<String>, List<HashTag>> inHashTagMapper,
             final InsertMapper<StreamHashTag> inStreamHashTagInsertMapper)
+    {
+        this(inHashTagExtractor, inContentExtractor, inHashTagMapper, inStreamHashTagInsertMapper, null);
+    }
+
+    /**
+     * Constructor for the PostActivityAsyncExecutionStrategy class.
+     * 
+     * @param inContentExtractor
+     *            the activity content extractor
+     * @param inHashTagExtractor
+     *            hash tag extractor
+     * @param inHashTagMapper
+     *            mapper to get hashtags from the database
+     * @param inStreamHashTagInsertMapper
+     *            mapper to insert stream hashtags
+     * @param inHashTagCounterMapper
+     *            mapper to update the popular hashtag counts of the stream
+     */
+    public StoreStreamHashTagsForActivityStrategyImpl(final HashTagExtractor inHashTagExtractor,
+            final ActivityContentExtractor inContentExtractor,
+            final DecoratedPartialResponseDomainMapper<List<String>, List<HashTag>> inHashTagMapper,
+            final InsertMapper<StreamHashTag> inStreamHashTagInsertMapper,
+            final StreamHashTagCounterMapper inHashTagCounterMapper)
     {
         hashTagExtractor = inHashTagExtractor;
         contentExtractor = inContentExtractor;
         hashTagMapper = inHashTagMapper;
         streamHashTagInsertMapper = inStreamHashTagInsertMapper;
+        hashTagCounterMapper = inHashTagCounterMapper;
     }
 
     /**
@@ -111,6 +143,7 @@ public class StoreStreamHashTagsForActivityStrategyImpl implements StoreStreamHa
             return;
         }
 
+        List<String> storedHashTags = new ArrayList<String>();
         for (HashTag hashTag : hashTagMapper.execute(hashTagStrings))
         {
             // insert the activity hashtag for the destination stream
@@ -122,6 +155,13 @@ public class StoreStreamHashTagsForActivityStrategyImpl implements StoreStreamHa
 
             streamHashTag = new StreamHashTag(hashTag, inActivity, recipientStreamKey, scopeType);
             streamHashTagInsertMapper.execute(new PersistenceRequest<StreamHashTag>(streamHashTag));
+            storedHashTags.add(hashTag.getContent());
+        }
+
+        if (hashTagCounterMapper != null)
+        {
+            hashTagCounterMapper.addHashTags(new StreamPopularHashTagsRequest(scopeType, recipientStreamKey),
+                    storedHashTags, inActivity.getPostedTime());
         }
     }
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.request;
+
+import java.io.Serializable;
+
+/**
+ * Identifies a cache warmer's part in a hot-swap cache rebuild.
+ */
+public class CacheRebuildRequest implements Serializable
+{
+    /**
+     * Serial version id.
+     */
+    private static final long serialVersionUID = -2283546025806714310L;
+
+    /**
+     * Cache generation being rebuilt.
+     */
+    private long generation;
+
+    /**
+     * Number of this warmer within the rebuild, starting at 1.
+     */
+    private int warmerNumber;
+
+    /**
+     * Number of warmers taking part in the rebuild.
+     */
+    private int warmerCount;
+
+    /**
+     * Private default constructor.
+     */
+    @SuppressWarnings("unused")
+    private CacheRebuildRequest()
+    {
+        // no-op
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param inGeneration
+     *            Cache generation being rebuilt.
+     * @param inWarmerNumber
+     *            Number of this warmer within the rebuild, starting at 1.
+     * @param inWarmerCount
+     *            Number of warmers taking part in the rebuild.
+     */
+    public CacheRebuildRequest(final long inGeneration, final int inWarmerNumber, final int inWarmerCount)
+    {
+        generation = inGeneration;
+        warmerNumber = inWarmerNumber;
+        warmerCount = inWarmerCount;
+    }
+
+    /**
+     * @return the generation
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * @return the warmer number
+     */
+    public int getWarmerNumber()
+    {
+        return warmerNumber;
+    }
+
+    /**
+     * @return the warmer count
+     */
+    public int getWarmerCount()
+    {
+        return warmerCount;
+    }
+}
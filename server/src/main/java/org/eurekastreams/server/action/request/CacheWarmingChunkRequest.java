@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.request;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Request to warm the cache for one chunk of entities.
+ */
+public class CacheWarmingChunkRequest implements Serializable
+{
+    /**
+     * Serial version id.
+     */
+    private static final long serialVersionUID = 3406721943167723509L;
+
+    /**
+     * Ids of the entities in the chunk, ascending.
+     */
+    private List<Long> ids;
+
+    /**
+     * Position of this chunk in the warm-up, starting at 1.
+     */
+    private int chunkNumber;
+
+    /**
+     * Number of chunks in the warm-up.
+     */
+    private int chunkCount;
+
+    /**
+     * Rebuild this chunk is part of; null if it is a plain warm-up.
+     */
+    private CacheRebuildRequest rebuild;
+
+    /**
+     * Private default constructor.
+     */
+    @SuppressWarnings("unused")
+    private CacheWarmingChunkRequest()
+    {
+        // no-op
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param inIds
+     *            Ids of the entities in the chunk, ascending.
+     * @param inChunkNumber
+     *            Position of this chunk in the warm-up, starting at 1.
+     * @param inChunkCount
+     *            Number of chunks in the warm-up.
+     */
+    public CacheWarmingChunkRequest(final List<Long> inIds, final int inChunkNumber, final int inChunkCount)
+    {
+        ids = inIds;
+        chunkNumber = inChunkNumber;
+        chunkCount = inChunkCount;
+    }
+
+    /**
+     * Constructor for a chunk of a hot-swap rebuild.
+     * 
+     * @param inIds
+     *            Ids of the entities in the chunk, ascending.
+     * @param inChunkNumber
+     *            Position of this chunk in the warm-up, starting at 1.
+     * @param inChunkCount
+     *            Number of chunks in the warm-up.
+     * @param inRebuild
+     *            Rebuild this chunk is part of; null if it is a plain warm-up.
+     */
+    public CacheWarmingChunkRequest(final List<Long> inIds, final int inChunkNumber, final int inChunkCount,
+            final CacheRebuildRequest inRebuild)
+    {
+        this(inIds, inChunkNumber, inChunkCount);
+        rebuild = inRebuild;
+    }
+
+    /**
+     * @return the ids
+     */
+    public List<Long> getIds()
+    {
+        return ids;
+    }
+
+    /**
+     * @return the chunk number
+     */
+    public int getChunkNumber()
+    {
+        return chunkNumber;
+    }
+
+    /**
+     * @return the chunk count
+     */
+    public int getChunkCount()
+    {
+        return chunkCount;
+    }
+
+    /**
+     * @return the rebuild this chunk is part of, null if none
+     */
+    public CacheRebuildRequest getRebuild()
+    {
+        return rebuild;
+    }
+}
@@ -35,6 +35,12 @@ public class PostActivityRequest implements Serializable
      */
     private ActivityDTO activityDTO;
 
+    /**
+     * Whether the activity was posted without being loaded into cache or added to its streams' cached lists, leaving
+     * that to the async action.
+     */
+    private boolean cacheHydrationDeferred = false;
+
     /**
      * Used for Serialization.
      */
@@ -52,6 +58,18 @@ public class PostActivityRequest implements Serializable
         activityDTO = inActivityDTO;
     }
 
+    /**
+     * Constructor for the async action request of a post.
+     * @param inActivityDTO - instance of the {@link ActivityDTO} to use with the action.
+     * @param inCacheHydrationDeferred - whether loading the activity into cache and its streams' lists is left to the
+     *            async action.
+     */
+    public PostActivityRequest(final ActivityDTO inActivityDTO, final boolean inCacheHydrationDeferred)
+    {
+        activityDTO = inActivityDTO;
+        cacheHydrationDeferred = inCacheHydrationDeferred;
+    }
+
     /**
      * Retrieve the current {@link ActivityDTO} instance.
      * @return - instance of the {@link ActivityDTO} object.
@@ -61,6 +79,14 @@ public class PostActivityRequest implements Serializable
         return activityDTO;
     }
 
+    /**
+     * @return whether loading the activity into cache and its streams' lists is left to the async action.
+     */
+    public boolean isCacheHydrationDeferred()
+    {
+        return cacheHydrationDeferred;
+    }
+
     /**
      * Setter for the ActivityDTO.
      * @param inActivity - activityDTO for the request.
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.domain;
+
+import java.io.Serializable;
+
+import javax.persistence.Basic;
+import javax.persistence.Entity;
+
+import org.eurekastreams.commons.model.DomainEntity;
+
+/**
+ * The cache generations (see GenerationalCache): the one in use, and the one being rebuilt if any. Kept in the database
+ * rather than in the cache itself so that an eviction cannot switch servers to a generation holding stale entries.
+ * There is at most one row.
+ */
+@Entity
+public class CacheGeneration extends DomainEntity implements Serializable
+{
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = -5139012716254473461L;
+
+    /**
+     * The generation in use.
+     */
+    @Basic(optional = false)
+    private long activeGeneration;
+
+    /**
+     * The generation being rebuilt, null if none.
+     */
+    @Basic(optional = true)
+    private Long pendingGeneration;
+
+    /**
+     * Empty constructor - for serialization.
+     */
+    protected CacheGeneration()
+    {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inActiveGeneration
+     *            The generation in use.
+     * @param inPendingGeneration
+     *            The generation being rebuilt, null if none.
+     */
+    public CacheGeneration(final long inActiveGeneration, final Long inPendingGeneration)
+    {
+        activeGeneration = inActiveGeneration;
+        pendingGeneration = inPendingGeneration;
+    }
+
+    /**
+     * @return The generation in use.
+     */
+    public long getActiveGeneration()
+    {
+        return activeGeneration;
+    }
+
+    /**
+     * @param inActiveGeneration
+     *            The generation in use.
+     */
+    public void setActiveGeneration(final long inActiveGeneration)
+    {
+        activeGeneration = inActiveGeneration;
+    }
+
+    /**
+     * @return The generation being rebuilt, null if none.
+     */
+    public Long getPendingGeneration()
+    {
+        return pendingGeneration;
+    }
+
+    /**
+     * @param inPendingGeneration
+     *            The generation being rebuilt, null if none.
+     */
+    public void setPendingGeneration(final Long inPendingGeneration)
+    {
+        pendingGeneration = inPendingGeneration;
+    }
+}
@@ -624,6 +624,12 @@ public class Person extends DomainEntity implements Serializable, AvatarEntity,
     @Length(min = 1, max = MAX_FIRST_NAME_LENGTH, message = COMPANY_NAME_MESSAGE)
     private String companyName;
 
+    /**
+     * Digest of the directory-sourced attributes as of the last refresh, used to skip refreshing unchanged people.
+     */
+    @Basic(optional = true)
+    private String directoryDigest;
+
     /**
      * Whether this user is a system administrator.
      */
@@ -1803,6 +1809,27 @@ public class Person extends DomainEntity implements Serializable, AvatarEntity,
         companyName = inCompanyName;
     }
 
+    /**
+     * Get the digest of the directory-sourced attributes as of the last refresh.
+     * 
+     * @return the digest, null if never recorded.
+     */
+    public String getDirectoryDigest()
+    {
+        return directoryDigest;
+    }
+
+    /**
+     * Set the digest of the directory-sourced attributes.
+     * 
+     * @param inDirectoryDigest
+     *            the digest.
+     */
+    public void setDirectoryDigest(final String inDirectoryDigest)
+    {
+        directoryDigest = inDirectoryDigest;
+    }
+
     /**
      * @return the isAdministrator
      */
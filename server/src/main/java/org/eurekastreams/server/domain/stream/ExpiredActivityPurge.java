@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.domain.stream;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Basic;
+import javax.persistence.Entity;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import org.eurekastreams.commons.model.DomainEntity;
+
+/**
+ * Progress of the expired activity purge: the expiration date of the purge in progress, if any, and the id of the last
+ * activity it has dealt with. Kept in the database so a purge carries on from where it stopped across restarts, and so
+ * only one purge runs at a time. There is at most one row.
+ */
+@Entity
+public class ExpiredActivityPurge extends DomainEntity implements Serializable
+{
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = 2820731356064316183L;
+
+    /**
+     * Activities posted before this date are being purged; null if no purge is in progress.
+     */
+    @Basic(optional = true)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expirationDate;
+
+    /**
+     * Id of the last activity dealt with; the purge continues with the ids above it.
+     */
+    @Basic(optional = false)
+    private long lastActivityId;
+
+    /**
+     * Empty constructor - for serialization.
+     */
+    protected ExpiredActivityPurge()
+    {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inExpirationDate
+     *            Activities posted before this date are being purged; null if no purge is in progress.
+     * @param inLastActivityId
+     *            Id of the last activity dealt with.
+     */
+    public ExpiredActivityPurge(final Date inExpirationDate, final long inLastActivityId)
+    {
+        expirationDate = inExpirationDate;
+        lastActivityId = inLastActivityId;
+    }
+
+    /**
+     * @return The expiration date of the purge in progress, null if none.
+     */
+    public Date getExpirationDate()
+    {
+        return expirationDate;
+    }
+
+    /**
+     * @param inExpirationDate
+     *            The expiration date of the purge in progress, null if none.
+     */
+    public void setExpirationDate(final Date inExpirationDate)
+    {
+        expirationDate = inExpirationDate;
+    }
+
+    /**
+     * @return The id of the last activity dealt with.
+     */
+    public long getLastActivityId()
+    {
+        return lastActivityId;
+    }
+
+    /**
+     * @param inLastActivityId
+     *            The id of the last activity dealt with.
+     */
+    public void setLastActivityId(final long inLastActivityId)
+    {
+        lastActivityId = inLastActivityId;
+    }
+}
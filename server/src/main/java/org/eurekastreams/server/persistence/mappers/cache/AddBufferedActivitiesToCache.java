@@ -18,6 +18,7 @@ package org.eurekastreams.server.persistence.mappers.cache;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eurekastreams.server.domain.stream.ActivityDTO;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
@@ -39,9 +40,10 @@ public class AddBufferedActivitiesToCache extends CachedDomainMapper
     private Cache cache;
 
     /**
-     * Mapper to get ids of people following the destination stream of an activity.
+     * Mapper to get ids of people following the destination streams of activities, keyed by activity id.
      */
-    private DomainMapper<ActivityDTO, List<Long>> getIdsOfPeopleFollowingActivityDestinationStreamMapper;
+    private DomainMapper<List<ActivityDTO>, Map<Long, List<Long>>> //
+    getIdsOfPeopleFollowingActivityDestinationStreamMapper;
 
     /**
      * {@link PostActivityUpdateStreamsByActorMapper}.
@@ -56,13 +58,14 @@ public class AddBufferedActivitiesToCache extends CachedDomainMapper
      * @param inCache
      *            Cache.
      * @param inGetIdsOfPeopleFollowingActivityDestinationStreamMapper
-     *            Mapper to get ids of people following the destination stream of an activity.
+     *            Mapper to get ids of people following the destination streams of activities, keyed by activity id.
      * @param inUpdateActorActivityStreamMapper
      *            {@link PostActivityUpdateStreamsByActorMapper}.
      */
     public AddBufferedActivitiesToCache(final DomainMapper<List<Long>, List<ActivityDTO>> inBulkActivitiesMapper,
             final Cache inCache,
-            final DomainMapper<ActivityDTO, List<Long>> inGetIdsOfPeopleFollowingActivityDestinationStreamMapper,
+            final DomainMapper<List<ActivityDTO>, Map<Long, List<Long>>> //
+            inGetIdsOfPeopleFollowingActivityDestinationStreamMapper,
             final PostActivityUpdateStreamsByActorMapper inUpdateActorActivityStreamMapper)
     {
         bulkActivitiesMapper = inBulkActivitiesMapper;
@@ -81,8 +84,16 @@ public class AddBufferedActivitiesToCache extends CachedDomainMapper
     {
         List<Long> activityIds = cache.setListCAS(CacheKeys.BUFFERED_ACTIVITIES, null);
         List<ActivityDTO> activites = bulkActivitiesMapper.execute(activityIds);
+        if (activites.isEmpty())
+        {
+            return true;
+        }
 
-        HashMap<Long, ArrayList<Long>> activitesByFollower = new HashMap<Long, ArrayList<Long>>();
+        Map<Long, List<Long>> followersByActivity = getIdsOfPeopleFollowingActivityDestinationStreamMapper
+                .execute(activites);
+
+        // every list prepend, keyed by cache key, so they can be sent to cache together
+        Map<String, List<Long>> prependsByKey = new HashMap<String, List<Long>>();
         List<Long> allActivityIds = new ArrayList<Long>();
 
         for (ActivityDTO activity : activites)
@@ -91,29 +102,33 @@ public class AddBufferedActivitiesToCache extends CachedDomainMapper
             // every activity to be added to the everyone list.
             allActivityIds.add(activity.getId());
 
-            List<Long> followers = getIdsOfPeopleFollowingActivityDestinationStreamMapper.execute(activity);
-
-            for (Long followerId : followers)
+            List<Long> followers = followersByActivity.get(activity.getId());
+            if (followers != null)
             {
-                if (!activitesByFollower.containsKey(followerId))
+                for (Long followerId : followers)
                 {
-                    activitesByFollower.put(followerId, new ArrayList<Long>());
+                    String key = CacheKeys.ACTIVITIES_BY_FOLLOWING + followerId;
+                    List<Long> ids = prependsByKey.get(key);
+                    if (ids == null)
+                    {
+                        ids = new ArrayList<Long>();
+                        prependsByKey.put(key, ids);
+                    }
+                    ids.add(activity.getId());
                 }
-                activitesByFollower.get(followerId).add(activity.getId());
             }
 
-            updateActorActivityStreamMapper.execute(activity);
+            updateActorActivityStreamMapper.execute(activity, prependsByKey);
         }
 
         if (!allActivityIds.isEmpty())
         {
-            cache.addToTopOfList(CacheKeys.EVERYONE_ACTIVITY_IDS, allActivityIds);
+            prependsByKey.put(CacheKeys.EVERYONE_ACTIVITY_IDS, allActivityIds);
         }
 
-        for (Long compositeId : activitesByFollower.keySet())
+        if (!prependsByKey.isEmpty())
         {
-            ArrayList<Long> ids = activitesByFollower.get(compositeId);
-            cache.addToTopOfList(CacheKeys.ACTIVITIES_BY_FOLLOWING + compositeId, ids);
+            cache.addToTopOfLists(prependsByKey);
         }
 
         return true;
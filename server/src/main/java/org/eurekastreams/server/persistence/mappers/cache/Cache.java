@@ -82,6 +82,29 @@ public interface Cache
      * @return a map containing the key/value pairs retrieved from the cache.
      */
     Map<String, ArrayList<Long>> multiGetList(Collection<String> inKeys);    
+
+    /**
+     * Retrieve the first entries of a list from cache as a primitive array. Unlike getList this is read-only (it never
+     * trims the stored list) and only decodes as many entries as requested.
+     * 
+     * @param inKey
+     *            the key of the list to get
+     * @param inMaximumEntries
+     *            the maximum number of entries to return
+     * @return the first entries of the list, null if not found
+     */
+    long[] getListArray(String inKey, int inMaximumEntries);
+
+    /**
+     * Gets the first entries of a collection of lists from the cache as primitive arrays.
+     * 
+     * @param inKeys
+     *            a collection of keys corresponding to lists to be retrieved.
+     * @param inMaximumEntries
+     *            the maximum number of entries to return for each list
+     * @return a map containing the key/array pairs found in the cache.
+     */
+    Map<String, long[]> multiGetListArrays(Collection<String> inKeys, int inMaximumEntries);
     
     /**
      * Sets a value in the cache.
@@ -103,6 +126,24 @@ public interface Cache
      */
     void setList(String inKey, List<Long> inValue);
 
+    /**
+     * Sets several cached Lists of Long values at once. The writes are sent together and the call returns once all of
+     * them have completed, so bulk loaders such as the cache warmer do not pay a round trip per key.
+     * 
+     * @param inValuesByKey
+     *            the lists to store, keyed by cache key.
+     */
+    void setLists(Map<String, List<Long>> inValuesByKey);
+
+    /**
+     * Sets several values in the cache at once. The writes are sent together and the call returns once all of them
+     * have completed.
+     * 
+     * @param inValuesByKey
+     *            the objects to store, keyed by cache key.
+     */
+    void multiSet(Map<String, ?> inValuesByKey);
+
     /**
      * Sets a value in the cache replacing whatever was there before 
      * and returning the original value to the caller.
@@ -116,6 +157,19 @@ public interface Cache
      *               create a new method (suggestion setListCASPost).
      */
     ArrayList<Long> setListCAS(String inKey, List<Long> inValue); 
+
+    /**
+     * Updates an object in the cache with a compare-and-set retry loop, so updates made concurrently (from any
+     * server) are not lost. Nothing is stored if the key is not in the cache.
+     * 
+     * @param inKey
+     *            the key of the object to update.
+     * @param inUpdater
+     *            computes the new value from the current one.
+     * @return the value stored, or null if the key was not in the cache, the updater left it unchanged, or the
+     *         update kept conflicting with concurrent ones.
+     */
+    Object updateCAS(String inKey, CacheValueUpdater inUpdater);
     
     /**
      * Deletes a value from the cache.
@@ -135,6 +189,15 @@ public interface Cache
      */
     void deleteList(String inKey);
 
+    /**
+     * Deletes several values from the cache at once. The deletes are sent together and the call returns once all of
+     * them have completed, which is much cheaper than calling delete once per key.
+     * 
+     * @param inKeys
+     *            the keys of the objects to delete
+     */
+    void multiDelete(Collection<String> inKeys);
+
     /**
      * Prepends a Long value to a cached List of Long values. If the value is not yet in cache, it will be created.
      * 
@@ -157,6 +220,16 @@ public interface Cache
      */
     void addToTopOfList(String inKey, Long inValue);
 
+    /**
+     * Prepends values to several cached Lists of Long values at once. Lists not already in cache are not created. The
+     * writes are sent together and the call returns once all of them have completed, which is much cheaper than
+     * calling addToTopOfList once per key when fanning an activity out to many streams.
+     * 
+     * @param inValuesByKey
+     *            the values to prepend, keyed by the key of the cached list.
+     */
+    void addToTopOfLists(Map<String, List<Long>> inValuesByKey);
+
     /**
      * Removes a specified value from a cached List of Long values.
      * 
@@ -168,7 +241,8 @@ public interface Cache
     void removeFromList(String inKey, Long inValue);
 
     /**
-     * Removes specified values from a List of cached keys pointing to lists of Long.
+     * Removes specified values from a List of cached keys pointing to lists of Long. Lists not in cache are left
+     * alone; lists are read and rewritten together, with any lists changed concurrently retried as a batch.
      * 
      * @param inKeys
      *            the keys of the cached lists to delete from.
@@ -159,6 +159,11 @@ public final class CacheKeys
      */
     public static final String POPULAR_HASH_TAGS_BY_STREAM_TYPE_AND_SHORT_NAME = "PHT:";
 
+    /**
+     * Sliding-window hashtag counts by stream type and short name.
+     */
+    public static final String HASH_TAG_COUNTER_BY_STREAM_TYPE_AND_SHORT_NAME = "HTC:";
+
     /**
      * Cache key for the everyone activity list.
      */
@@ -208,4 +213,14 @@ public final class CacheKeys
      * Key for getting a SharedResource by unique key (lower-cased).
      */
     public static final String SHARED_RESOURCE_BY_UNIQUE_KEY = "SRBUK:";
+
+    /**
+     * Key for the set of finished chunk numbers of a cache warmer during a rebuild, by generation and warmer.
+     */
+    public static final String CACHE_REBUILD_CHUNKS = "CacheRebuildChunks:";
+
+    /**
+     * Key for the set of finished warmers of a cache rebuild, by generation.
+     */
+    public static final String CACHE_REBUILD_WARMERS = "CacheRebuildWarmers:";
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.action.request.CacheRebuildRequest;
+
+/**
+ * Tracks the progress of a hot-swap cache rebuild and activates the rebuilt generation once every warmer has finished.
+ *
+ * Progress is kept in sets in the (non-generational) cache so chunks finishing on different threads or servers are
+ * counted together. If a progress update is lost (e.g. a CAS timeout) the rebuild is not activated; users keep being
+ * served from the old generation and the next rebuild starts over.
+ */
+public class CacheRebuildTracker
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Cache holding the progress sets; must not be the generational cache.
+     */
+    private final Cache trackingCache;
+
+    /**
+     * The generational cache being rebuilt.
+     */
+    private final GenerationalCache generationalCache;
+
+    /**
+     * Constructor.
+     *
+     * @param inTrackingCache
+     *            Cache holding the progress sets; must not be the generational cache.
+     * @param inGenerationalCache
+     *            The generational cache being rebuilt.
+     */
+    public CacheRebuildTracker(final Cache inTrackingCache, final GenerationalCache inGenerationalCache)
+    {
+        trackingCache = inTrackingCache;
+        generationalCache = inGenerationalCache;
+    }
+
+    /**
+     * Starts a rebuild.
+     *
+     * @return The generation being rebuilt.
+     */
+    public long beginRebuild()
+    {
+        long generation = generationalCache.beginRebuild();
+        trackingCache.set(CacheKeys.CACHE_REBUILD_WARMERS + generation, new HashSet<Long>());
+        return generation;
+    }
+
+    /**
+     * Records that a warmer is about to queue its chunks.
+     *
+     * @param inRebuild
+     *            The warmer's part in the rebuild.
+     */
+    public void beginWarmer(final CacheRebuildRequest inRebuild)
+    {
+        waitForRebuildVisible();
+        trackingCache.set(chunksKey(inRebuild), new HashSet<Long>());
+    }
+
+    /**
+     * Waits until every server writes to the generation being rebuilt; warmers must not read the database before then
+     * or they could overwrite a concurrent update with a stale value.
+     */
+    public void waitForRebuildVisible()
+    {
+        generationalCache.waitForPendingGeneration();
+    }
+
+    /**
+     * Records a finished chunk, finishing the warmer when it was the last one.
+     *
+     * @param inRebuild
+     *            The warmer's part in the rebuild.
+     * @param inChunkNumber
+     *            The chunk's number.
+     * @param inChunkCount
+     *            The number of chunks of the warmer.
+     */
+    public void chunkFinished(final CacheRebuildRequest inRebuild, final int inChunkNumber, final int inChunkCount)
+    {
+        Set<Long> finished = trackingCache.addToSet(chunksKey(inRebuild), (long) inChunkNumber);
+        if (finished != null && finished.size() >= inChunkCount)
+        {
+            warmerFinished(inRebuild);
+        }
+    }
+
+    /**
+     * Records a finished warmer, activating the rebuilt generation when it was the last one.
+     *
+     * @param inRebuild
+     *            The warmer's part in the rebuild.
+     */
+    public void warmerFinished(final CacheRebuildRequest inRebuild)
+    {
+        Set<Long> finished = trackingCache.addToSet(CacheKeys.CACHE_REBUILD_WARMERS + inRebuild.getGeneration(),
+                (long) inRebuild.getWarmerNumber());
+        log.info("Cache warmer " + inRebuild.getWarmerNumber() + " of " + inRebuild.getWarmerCount()
+                + " finished for generation " + inRebuild.getGeneration());
+        if (finished != null && finished.size() >= inRebuild.getWarmerCount())
+        {
+            generationalCache.activate(inRebuild.getGeneration());
+        }
+    }
+
+    /**
+     * Builds the key of a warmer's finished chunk set.
+     *
+     * @param inRebuild
+     *            The warmer's part in the rebuild.
+     * @return The key.
+     */
+    private String chunksKey(final CacheRebuildRequest inRebuild)
+    {
+        return CacheKeys.CACHE_REBUILD_CHUNKS + inRebuild.getGeneration() + ":" + inRebuild.getWarmerNumber();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+/**
+ * Computes the new value of a cache entry from its current value, for {@link Cache#updateCAS}. May be called more than
+ * once for one update (once per attempt), each time with a freshly read copy of the value.
+ */
+public interface CacheValueUpdater
+{
+    /**
+     * Computes the new value of a cache entry.
+     *
+     * @param inCurrent
+     *            the current value (never null); may be modified and returned.
+     * @return the value to store, or null to leave the entry unchanged.
+     */
+    Object update(Object inCurrent);
+}
@@ -15,7 +15,6 @@
  */
 package org.eurekastreams.server.persistence.mappers.cache;
 
-import java.util.Iterator;
 import java.util.Set;
 
 import org.eurekastreams.server.persistence.mappers.stream.BaseArgCachedDomainMapper;
@@ -37,14 +36,7 @@ public class DeleteCacheKeys extends BaseArgCachedDomainMapper<Set<String>, Bool
     @Override
     public Boolean execute(final Set<String> inRequest)
     {
-        Cache cache = getCache();
-
-        // unfortunately cannot do bulk deletes have to loop thorough.
-        Iterator<String> it = inRequest.iterator();
-        while (it.hasNext())
-        {
-            cache.delete(it.next());
-        }
+        getCache().multiDelete(inRequest);
         return Boolean.TRUE;
     }
 
@@ -0,0 +1,649 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.domain.CacheGeneration;
+import org.eurekastreams.server.persistence.mappers.db.CacheGenerationDbMapper;
+
+/**
+ * Cache decorator that keeps all keys in a generation namespace, so the cache can be rebuilt without flushing it.
+ *
+ * The active generation (and the pending one while a rebuild is in progress) is stored in the database, so every server
+ * agrees on it and an eviction cannot send servers back to an old generation; each server re-reads it at most once per
+ * check interval. Reads always use the active generation. While a rebuild is pending, every write is applied to both
+ * generations, so the new one is filled by the cache warmers and kept current by normal traffic while users are still
+ * served from the old one. The warmers start one check interval after the rebuild (see
+ * {@link #waitForPendingGeneration()}), once every server writes to the new generation. Activating the new generation
+ * is a single update; each server keeps writing to the old generation for one check interval after it sees the
+ * switch, so servers which have not seen it yet still read current values. After that, keys of the old generation are
+ * never touched again and age out of memcached.
+ *
+ * Generation 0 uses the bare keys, so a cache populated before this decorator was introduced stays valid; it is the
+ * active generation until the first rebuild is started.
+ */
+public class GenerationalCache implements Cache
+{
+    /**
+     * Separator between the generation and the key.
+     */
+    private static final String GENERATION_SEPARATOR = ":";
+
+    /**
+     * Prefix of generation namespaces.
+     */
+    private static final String GENERATION_PREFIX = "G";
+
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * The cache being decorated.
+     */
+    private final Cache wrappedCache;
+
+    /**
+     * Mapper reading and changing the generations in the database.
+     */
+    private final CacheGenerationDbMapper generationMapper;
+
+    /**
+     * How long (ms) the generations read from the database are trusted before being read again.
+     */
+    private final long generationCheckInterval;
+
+    /**
+     * Active generation, as last read.
+     */
+    private volatile long activeGeneration;
+
+    /**
+     * Generation being rebuilt, as last read; null if no rebuild is in progress.
+     */
+    private volatile Long pendingGeneration;
+
+    /**
+     * Generation which was active before the last switch seen, still written until {@link #retiringUntil}; null if
+     * none.
+     */
+    private volatile Long retiringGeneration;
+
+    /**
+     * When (ms) to stop writing to the retiring generation.
+     */
+    private volatile long retiringUntil;
+
+    /**
+     * Whether the generations have been read yet.
+     */
+    private volatile boolean generationsRead = false;
+
+    /**
+     * When (ms) the generations are next to be read from the database.
+     */
+    private volatile long nextGenerationCheck;
+
+    /**
+     * Constructor.
+     *
+     * @param inWrappedCache
+     *            The cache being decorated.
+     * @param inGenerationMapper
+     *            Mapper reading and changing the generations in the database.
+     * @param inGenerationCheckInterval
+     *            How long (ms) the generations read from the database are trusted before being read again.
+     */
+    public GenerationalCache(final Cache inWrappedCache, final CacheGenerationDbMapper inGenerationMapper,
+            final long inGenerationCheckInterval)
+    {
+        wrappedCache = inWrappedCache;
+        generationMapper = inGenerationMapper;
+        generationCheckInterval = inGenerationCheckInterval;
+    }
+
+    /**
+     * Starts a rebuild: picks a new generation and starts writing to it alongside the active one.
+     *
+     * @return The new generation.
+     */
+    public long beginRebuild()
+    {
+        refreshGenerations(true);
+        long active = activeGeneration;
+        long generation = Math.max(active, pendingGeneration == null ? 0 : pendingGeneration) + 1;
+        if (!generationMapper.beginRebuild(active, generation))
+        {
+            throw new IllegalStateException("Cache generation " + active
+                    + " was replaced while starting a rebuild.");
+        }
+        pendingGeneration = generation;
+        log.info("Started rebuilding cache generation " + generation + "; generation " + activeGeneration
+                + " remains active");
+        return generation;
+    }
+
+    /**
+     * Waits until every server has re-read the generations since a rebuild was started (one check interval), so writes
+     * made anywhere from then on reach the pending generation. Call before warming it, outside of the transaction
+     * which started the rebuild.
+     */
+    public void waitForPendingGeneration()
+    {
+        try
+        {
+            Thread.sleep(generationCheckInterval);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Makes a rebuilt generation the active one, if it is still the one being rebuilt.
+     *
+     * @param inGeneration
+     *            The rebuilt generation.
+     * @return true if the generation was activated.
+     */
+    public boolean activate(final long inGeneration)
+    {
+        if (!generationMapper.activate(inGeneration))
+        {
+            refreshGenerations(true);
+            log.warn("Not activating cache generation " + inGeneration + ": the pending generation is "
+                    + pendingGeneration);
+            return false;
+        }
+        log.info("Activated cache generation " + inGeneration + " in place of " + activeGeneration);
+        setGenerations(inGeneration, null, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * @return The active generation.
+     */
+    public long getActiveGeneration()
+    {
+        refreshGenerations(false);
+        return activeGeneration;
+    }
+
+    /**
+     * @return The generation being rebuilt, null if none.
+     */
+    public Long getPendingGeneration()
+    {
+        refreshGenerations(false);
+        return pendingGeneration;
+    }
+
+    /**
+     * Re-reads the generations from the database when the check interval has passed.
+     *
+     * @param inForce
+     *            Re-read regardless of the check interval.
+     */
+    private void refreshGenerations(final boolean inForce)
+    {
+        long now = System.currentTimeMillis();
+        if (!inForce && now < nextGenerationCheck)
+        {
+            return;
+        }
+        CacheGeneration stored = generationMapper.read();
+        if (stored == null)
+        {
+            // no rebuild was ever started
+            setGenerations(0, null, now);
+        }
+        else
+        {
+            setGenerations(stored.getActiveGeneration(), stored.getPendingGeneration(), now);
+        }
+        nextGenerationCheck = now + generationCheckInterval;
+    }
+
+    /**
+     * Records the generations, keeping the previously active one written for a check interval if it changed.
+     *
+     * @param inActive
+     *            Active generation.
+     * @param inPending
+     *            Pending generation, null if none.
+     * @param inNow
+     *            Current time (ms).
+     */
+    private synchronized void setGenerations(final long inActive, final Long inPending, final long inNow)
+    {
+        if (generationsRead && inActive != activeGeneration)
+        {
+            retiringGeneration = activeGeneration;
+            retiringUntil = inNow + generationCheckInterval;
+        }
+        activeGeneration = inActive;
+        pendingGeneration = inPending != null && inPending > inActive ? inPending : null;
+        generationsRead = true;
+    }
+
+    /**
+     * Builds the key used for a generation.
+     *
+     * @param inGeneration
+     *            The generation.
+     * @param inKey
+     *            The key.
+     * @return The key in the generation's namespace.
+     */
+    private static String key(final long inGeneration, final String inKey)
+    {
+        return inGeneration == 0 ? inKey : GENERATION_PREFIX + inGeneration + GENERATION_SEPARATOR + inKey;
+    }
+
+    /**
+     * @return The generations writes go to: the active one, then the pending one if a rebuild is in progress, then the
+     *         previously active one for a check interval after a switch.
+     */
+    private long[] writeGenerations()
+    {
+        refreshGenerations(false);
+        long active = activeGeneration;
+        Long pending = pendingGeneration;
+        Long retiring = retiringGeneration;
+        if (retiring != null && (System.currentTimeMillis() >= retiringUntil || retiring == active))
+        {
+            retiring = null;
+        }
+        if (pending == null)
+        {
+            return retiring == null ? new long[] { active } : new long[] { active, retiring };
+        }
+        return retiring == null || retiring.equals(pending) ? new long[] { active, pending } : new long[] { active,
+                pending, retiring };
+    }
+
+    /**
+     * Maps keys into a generation.
+     *
+     * @param inGeneration
+     *            The generation.
+     * @param inKeys
+     *            The keys.
+     * @return Map of generation key to key.
+     */
+    private static Map<String, String> keys(final long inGeneration, final Collection<String> inKeys)
+    {
+        Map<String, String> keys = new LinkedHashMap<String, String>();
+        for (String key : inKeys)
+        {
+            keys.put(key(inGeneration, key), key);
+        }
+        return keys;
+    }
+
+    /**
+     * Maps the keys of a multi-get result back out of a generation.
+     *
+     * @param <T>
+     *            Value type.
+     * @param inKeys
+     *            Map of generation key to key.
+     * @param inResults
+     *            Results by generation key.
+     * @return Results by key.
+     */
+    private static <T> Map<String, T> unmapKeys(final Map<String, String> inKeys, final Map<String, T> inResults)
+    {
+        Map<String, T> results = new HashMap<String, T>();
+        for (Entry<String, T> entry : inResults.entrySet())
+        {
+            results.put(inKeys.get(entry.getKey()), entry.getValue());
+        }
+        return results;
+    }
+
+    /**
+     * Maps the keys of a map of values into a generation.
+     *
+     * @param <V>
+     *            The type of the values.
+     * @param inGeneration
+     *            The generation.
+     * @param inValuesByKey
+     *            Values by key.
+     * @return Values by generation key.
+     */
+    private static <V> Map<String, V> mapValues(final long inGeneration, final Map<String, V> inValuesByKey)
+    {
+        Map<String, V> values = new HashMap<String, V>();
+        for (Entry<String, V> entry : inValuesByKey.entrySet())
+        {
+            values.put(key(inGeneration, entry.getKey()), entry.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Clears the whole cache, all generations included.
+     */
+    @Override
+    public void clear()
+    {
+        wrappedCache.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(final String inKey)
+    {
+        return wrappedCache.get(key(getActiveGeneration(), inKey));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> getList(final String inKey, final int inMaximumEntries)
+    {
+        return wrappedCache.getList(key(getActiveGeneration(), inKey), inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> getList(final String inKey)
+    {
+        return wrappedCache.getList(key(getActiveGeneration(), inKey));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> multiGet(final Collection<String> inKeys)
+    {
+        Map<String, String> keys = keys(getActiveGeneration(), inKeys);
+        return unmapKeys(keys, wrappedCache.multiGet(keys.keySet()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, ArrayList<Long>> multiGetList(final Collection<String> inKeys)
+    {
+        Map<String, String> keys = keys(getActiveGeneration(), inKeys);
+        return unmapKeys(keys, wrappedCache.multiGetList(keys.keySet()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] getListArray(final String inKey, final int inMaximumEntries)
+    {
+        return wrappedCache.getListArray(key(getActiveGeneration(), inKey), inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, long[]> multiGetListArrays(final Collection<String> inKeys, final int inMaximumEntries)
+    {
+        Map<String, String> keys = keys(getActiveGeneration(), inKeys);
+        return unmapKeys(keys, wrappedCache.multiGetListArrays(keys.keySet(), inMaximumEntries));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(final String inKey, final Object inValue)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.set(key(generation, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setList(final String inKey, final List<Long> inValue)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.setList(key(generation, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.setLists(mapValues(generation, inValuesByKey));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSet(final Map<String, ?> inValuesByKey)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.multiSet(mapValues(generation, inValuesByKey));
+        }
+    }
+
+    /**
+     * Sets the list in every written generation, returning the result from the active one.
+     *
+     * @param inKey
+     *            The key.
+     * @param inValue
+     *            The list.
+     * @return The list stored in the active generation.
+     */
+    @Override
+    public ArrayList<Long> setListCAS(final String inKey, final List<Long> inValue)
+    {
+        ArrayList<Long> result = null;
+        long[] generations = writeGenerations();
+        for (int i = generations.length - 1; i >= 0; i--)
+        {
+            result = wrappedCache.setListCAS(key(generations[i], inKey), inValue);
+        }
+        return result;
+    }
+
+    /**
+     * Updates an object in every generation being written.
+     *
+     * @param inKey
+     *            The key.
+     * @param inUpdater
+     *            Computes the new value from the current one.
+     * @return The value stored in the active generation.
+     */
+    @Override
+    public Object updateCAS(final String inKey, final CacheValueUpdater inUpdater)
+    {
+        Object result = null;
+        long[] generations = writeGenerations();
+        for (int i = generations.length - 1; i >= 0; i--)
+        {
+            result = wrappedCache.updateCAS(key(generations[i], inKey), inUpdater);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(final String inKey)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.delete(key(generation, inKey));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteList(final String inKey)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.deleteList(key(generation, inKey));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.multiDelete(keys(generation, inKeys).keySet());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfList(final String inKey, final List<Long> inValues)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.addToTopOfList(key(generation, inKey), inValues);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfList(final String inKey, final Long inValue)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.addToTopOfList(key(generation, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.addToTopOfLists(mapValues(generation, inValuesByKey));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromList(final String inKey, final Long inValue)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.removeFromList(key(generation, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromLists(final List<String> inKeys, final List<Long> inValues)
+    {
+        for (long generation : writeGenerations())
+        {
+            List<String> keys = new ArrayList<String>(inKeys.size());
+            for (String key : inKeys)
+            {
+                keys.add(key(generation, key));
+            }
+            wrappedCache.removeFromLists(keys, inValues);
+        }
+    }
+
+    /**
+     * Adds to the set in every written generation, returning the result from the active one.
+     *
+     * @param inKey
+     *            The key.
+     * @param inValue
+     *            The value.
+     * @return The set stored in the active generation.
+     */
+    @Override
+    public Set<Long> addToSet(final String inKey, final Long inValue)
+    {
+        Set<Long> result = null;
+        long[] generations = writeGenerations();
+        for (int i = generations.length - 1; i >= 0; i--)
+        {
+            result = wrappedCache.addToSet(key(generations[i], inKey), inValue);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromSet(final String inKey, final Long inValue)
+    {
+        for (long generation : writeGenerations())
+        {
+            wrappedCache.removeFromSet(key(generation, inKey), inValue);
+        }
+    }
+}
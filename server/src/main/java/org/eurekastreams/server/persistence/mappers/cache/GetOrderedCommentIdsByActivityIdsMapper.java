@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.stream.CachedDomainMapper;
+
+/**
+ * Gets the ordered comment id lists for a batch of activities: one cache multi-get for all of them, one data source
+ * call for the ones not in cache, then writes those back to cache with one bulk write.
+ */
+public class GetOrderedCommentIdsByActivityIdsMapper extends CachedDomainMapper implements
+        DomainMapper<List<Long>, Map<Long, List<Long>>>
+{
+    /**
+     * Mapper to load comment id lists not found in cache.
+     */
+    private final DomainMapper<List<Long>, Map<Long, List<Long>>> dataSourceMapper;
+
+    /**
+     * Constructor.
+     *
+     * @param inDataSourceMapper
+     *            Mapper to load comment id lists not found in cache.
+     */
+    public GetOrderedCommentIdsByActivityIdsMapper(
+            final DomainMapper<List<Long>, Map<Long, List<Long>>> inDataSourceMapper)
+    {
+        dataSourceMapper = inDataSourceMapper;
+    }
+
+    /**
+     * Gets the comment id lists for the given activities.
+     *
+     * @param inActivityIds
+     *            The activity ids.
+     * @return Map of activity id to its ascending list of comment ids.
+     */
+    @Override
+    public Map<Long, List<Long>> execute(final List<Long> inActivityIds)
+    {
+        Map<Long, List<Long>> results = new HashMap<Long, List<Long>>();
+        if (inActivityIds == null || inActivityIds.isEmpty())
+        {
+            return results;
+        }
+
+        List<String> keys = new ArrayList<String>(inActivityIds.size());
+        for (Long activityId : inActivityIds)
+        {
+            keys.add(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
+        }
+        Map<String, ArrayList<Long>> cached = getCache().multiGetList(keys);
+
+        List<Long> missing = new ArrayList<Long>();
+        for (Long activityId : inActivityIds)
+        {
+            List<Long> commentIds = cached.get(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
+            if (commentIds == null)
+            {
+                missing.add(activityId);
+            }
+            else
+            {
+                results.put(activityId, commentIds);
+            }
+        }
+
+        if (!missing.isEmpty())
+        {
+            Map<Long, List<Long>> loaded = dataSourceMapper.execute(missing);
+            Map<String, List<Long>> toCache = new HashMap<String, List<Long>>();
+            for (Long activityId : missing)
+            {
+                List<Long> commentIds = loaded.get(activityId);
+                if (commentIds == null)
+                {
+                    commentIds = new ArrayList<Long>();
+                }
+                toCache.put(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId, commentIds);
+                results.put(activityId, commentIds);
+            }
+            getCache().setLists(toCache);
+        }
+        return results;
+    }
+}
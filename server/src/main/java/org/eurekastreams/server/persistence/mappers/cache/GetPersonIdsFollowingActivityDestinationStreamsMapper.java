@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eurekastreams.server.domain.EntityType;
+import org.eurekastreams.server.domain.stream.ActivityDTO;
+import org.eurekastreams.server.domain.stream.StreamEntityDTO;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.stream.CachedDomainMapper;
+import org.eurekastreams.server.search.modelview.PersonModelView;
+
+/**
+ * Gets the ids of the people following the destination streams of a batch of activities. Destination people are
+ * resolved with one bulk lookup and their follower lists with one cache multi-get; only the follower lists not in
+ * cache are loaded individually.
+ */
+public class GetPersonIdsFollowingActivityDestinationStreamsMapper extends CachedDomainMapper implements
+        DomainMapper<List<ActivityDTO>, Map<Long, List<Long>>>
+{
+    /**
+     * Mapper to get people by account ids.
+     */
+    private final DomainMapper<List<String>, List<PersonModelView>> getPeopleByAccountIdsMapper;
+
+    /**
+     * Mapper to get the followers of a person whose follower list is not in cache.
+     */
+    private final DomainMapper<Long, List<Long>> personFollowersMapper;
+
+    /**
+     * Constructor.
+     * 
+     * @param inGetPeopleByAccountIdsMapper
+     *            Mapper to get people by account ids.
+     * @param inPersonFollowersMapper
+     *            Mapper to get the followers of a person whose follower list is not in cache.
+     */
+    public GetPersonIdsFollowingActivityDestinationStreamsMapper(
+            final DomainMapper<List<String>, List<PersonModelView>> inGetPeopleByAccountIdsMapper,
+            final DomainMapper<Long, List<Long>> inPersonFollowersMapper)
+    {
+        getPeopleByAccountIdsMapper = inGetPeopleByAccountIdsMapper;
+        personFollowersMapper = inPersonFollowersMapper;
+    }
+
+    /**
+     * Returns the followers that get each activity.
+     * 
+     * @param inActivities
+     *            the activities.
+     * @return Map of activity id to the ids of the people following its destination stream.
+     */
+    @Override
+    public Map<Long, List<Long>> execute(final List<ActivityDTO> inActivities)
+    {
+        Map<Long, List<Long>> results = new HashMap<Long, List<Long>>();
+
+        Set<String> accountIds = new HashSet<String>();
+        for (ActivityDTO activity : inActivities)
+        {
+            StreamEntityDTO destinationStream = activity.getDestinationStream();
+            if (destinationStream.getType() == EntityType.PERSON)
+            {
+                accountIds.add(destinationStream.getUniqueIdentifier().toLowerCase());
+            }
+            else if (destinationStream.getType() != EntityType.GROUP)
+            {
+                throw new IllegalArgumentException(
+                        "This mapper does not support the destination stream type supplied.");
+            }
+        }
+
+        Map<String, List<Long>> followersByAccountId = getFollowersByAccountId(accountIds);
+
+        for (ActivityDTO activity : inActivities)
+        {
+            List<Long> followers = followersByAccountId.get(activity.getDestinationStream()
+                    .getUniqueIdentifier().toLowerCase());
+            // Empty for groups, group activity doesn't show up in following streams.
+            if (activity.getDestinationStream().getType() == EntityType.GROUP || followers == null)
+            {
+                followers = new ArrayList<Long>();
+            }
+            results.put(activity.getId(), followers);
+        }
+        return results;
+    }
+
+    /**
+     * Gets the follower ids of the given people.
+     * 
+     * @param inAccountIds
+     *            the account ids of the people.
+     * @return Map of lower-cased account id to follower ids.
+     */
+    private Map<String, List<Long>> getFollowersByAccountId(final Set<String> inAccountIds)
+    {
+        Map<String, List<Long>> results = new HashMap<String, List<Long>>();
+        if (inAccountIds.isEmpty())
+        {
+            return results;
+        }
+
+        List<PersonModelView> people = getPeopleByAccountIdsMapper.execute(new ArrayList<String>(inAccountIds));
+
+        List<String> keys = new ArrayList<String>(people.size());
+        for (PersonModelView person : people)
+        {
+            keys.add(CacheKeys.FOLLOWERS_BY_PERSON + person.getId());
+        }
+        Map<String, ArrayList<Long>> cached = getCache().multiGetList(keys);
+
+        for (PersonModelView person : people)
+        {
+            List<Long> followers = cached.get(CacheKeys.FOLLOWERS_BY_PERSON + person.getId());
+            if (followers == null)
+            {
+                followers = personFollowersMapper.execute(person.getId());
+            }
+            results.put(person.getAccountId().toLowerCase(), followers);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of the lists of ids stored in cache.
+ *
+ * A stored value is a sequence of chunks, so that memcached prepend (which just concatenates bytes) keeps producing a
+ * readable value. Two kinds of chunk may appear in any mix:
+ * <ul>
+ * <li>Segment (current format): the {@link #SEGMENT_MARKER} byte, the entry count as an unsigned varint, the first
+ * value as a zigzag varint, then each following value as the zigzag varint of its difference from the previous one.
+ * Descending id lists therefore cost one or two bytes per entry instead of eight.</li>
+ * <li>Legacy: a single 8-byte big-endian long, as written by earlier releases. The first byte of any id below 2^56 is
+ * zero, so it can never be mistaken for the segment marker.</li>
+ * </ul>
+ */
+public final class LongListCodec
+{
+    /**
+     * First byte of a segment (format version 1).
+     */
+    public static final byte SEGMENT_MARKER = (byte) 0xE1;
+
+    /**
+     * Size in bytes of a legacy entry.
+     */
+    private static final int LEGACY_ENTRY_SIZE = 8;
+
+    /**
+     * Number of payload bits in each varint byte.
+     */
+    private static final int VARINT_SHIFT = 7;
+
+    /**
+     * Mask for the payload bits of a varint byte.
+     */
+    private static final int VARINT_PAYLOAD = 0x7F;
+
+    /**
+     * Continuation bit of a varint byte.
+     */
+    private static final int VARINT_CONTINUE = 0x80;
+
+    /**
+     * Mask to read a byte as unsigned.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Maximum number of bytes in a 64 bit varint.
+     */
+    private static final int MAX_VARINT_BYTES = 10;
+
+    /**
+     * Bit position of the sign bit of a long.
+     */
+    private static final int SIGN_SHIFT = 63;
+
+    /**
+     * Constructor to prevent instantiation.
+     */
+    private LongListCodec()
+    {
+    }
+
+    /**
+     * Encodes a list as a single segment.
+     *
+     * @param inValues
+     *            the values.
+     * @return the encoded bytes, null if the list is null.
+     */
+    public static byte[] encode(final List<Long> inValues)
+    {
+        if (inValues == null)
+        {
+            return null;
+        }
+        long[] values = new long[inValues.size()];
+        int i = 0;
+        for (Long value : inValues)
+        {
+            values[i++] = value;
+        }
+        return encode(values, values.length);
+    }
+
+    /**
+     * Encodes the first entries of an array as a single segment.
+     *
+     * @param values
+     *            the values.
+     * @param count
+     *            the number of entries to encode.
+     * @return the encoded bytes.
+     */
+    public static byte[] encode(final long[] values, final int count)
+    {
+        // worst case every entry takes a full varint
+        byte[] buffer = new byte[1 + MAX_VARINT_BYTES + count * MAX_VARINT_BYTES];
+        int pos = 0;
+        buffer[pos++] = SEGMENT_MARKER;
+        pos = writeVarint(buffer, pos, count);
+        long previous = 0;
+        for (int i = 0; i < count; i++)
+        {
+            pos = writeVarint(buffer, pos, zigzag(previous - values[i]));
+            previous = values[i];
+        }
+        byte[] result = new byte[pos];
+        System.arraycopy(buffer, 0, result, 0, pos);
+        return result;
+    }
+
+    /**
+     * Encodes a list in the legacy fixed-width format, for use while servers that cannot read segments are still
+     * running.
+     *
+     * @param inValues
+     *            the values.
+     * @return the encoded bytes, null if the list is null.
+     */
+    public static byte[] encodeLegacy(final List<Long> inValues)
+    {
+        if (inValues == null)
+        {
+            return null;
+        }
+        byte[] result = new byte[inValues.size() * LEGACY_ENTRY_SIZE];
+        int pos = 0;
+        for (Long boxed : inValues)
+        {
+            long value = boxed;
+            for (int shift = (LEGACY_ENTRY_SIZE - 1) * Byte.SIZE; shift >= 0; shift -= Byte.SIZE)
+            {
+                result[pos++] = (byte) (value >>> shift);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a stored value.
+     *
+     * @param bytes
+     *            the stored value.
+     * @return all the entries.
+     * @throws IOException
+     *             if the value is malformed.
+     */
+    public static long[] decode(final byte[] bytes) throws IOException
+    {
+        return decode(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decodes at most the first entries of a stored value, without reading the rest of it.
+     *
+     * @param bytes
+     *            the stored value.
+     * @param maxEntries
+     *            the maximum number of entries to decode.
+     * @return the entries, at most maxEntries of them.
+     * @throws IOException
+     *             if the value is malformed.
+     */
+    public static long[] decode(final byte[] bytes, final int maxEntries) throws IOException
+    {
+        // every entry takes at least one byte
+        long[] values = new long[Math.min(maxEntries, bytes.length)];
+        int count = 0;
+        int[] pos = new int[] { 0 };
+        while (pos[0] < bytes.length && count < maxEntries)
+        {
+            if (bytes[pos[0]] == SEGMENT_MARKER)
+            {
+                pos[0]++;
+                long segmentCount = readVarint(bytes, pos);
+                long previous = 0;
+                for (long i = 0; i < segmentCount && count < maxEntries; i++)
+                {
+                    previous -= unzigzag(readVarint(bytes, pos));
+                    values[count++] = previous;
+                }
+                if (count >= maxEntries)
+                {
+                    break;
+                }
+            }
+            else
+            {
+                if (pos[0] + LEGACY_ENTRY_SIZE > bytes.length)
+                {
+                    throw new IOException("Truncated legacy list entry at byte " + pos[0]);
+                }
+                long value = 0;
+                for (int i = 0; i < LEGACY_ENTRY_SIZE; i++)
+                {
+                    value = (value << Byte.SIZE) | (bytes[pos[0]++] & BYTE_MASK);
+                }
+                values[count++] = value;
+            }
+        }
+
+        if (count == values.length)
+        {
+            return values;
+        }
+        long[] result = new long[count];
+        System.arraycopy(values, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Decodes a stored value into a list.
+     *
+     * @param bytes
+     *            the stored value.
+     * @param maxEntries
+     *            the maximum number of entries to decode.
+     * @return the entries.
+     * @throws IOException
+     *             if the value is malformed.
+     */
+    public static ArrayList<Long> decodeToList(final byte[] bytes, final int maxEntries) throws IOException
+    {
+        long[] values = decode(bytes, maxEntries);
+        ArrayList<Long> list = new ArrayList<Long>(values.length);
+        for (long value : values)
+        {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param buffer
+     *            the buffer.
+     * @param inPos
+     *            position to write at.
+     * @param inValue
+     *            the value.
+     * @return the position after the varint.
+     */
+    private static int writeVarint(final byte[] buffer, final int inPos, final long inValue)
+    {
+        int pos = inPos;
+        long value = inValue;
+        while ((value & ~VARINT_PAYLOAD) != 0)
+        {
+            buffer[pos++] = (byte) ((value & VARINT_PAYLOAD) | VARINT_CONTINUE);
+            value >>>= VARINT_SHIFT;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param bytes
+     *            the bytes.
+     * @param pos
+     *            single-element holder of the read position; advanced past the varint.
+     * @return the value.
+     * @throws IOException
+     *             if the varint is truncated or too long.
+     */
+    private static long readVarint(final byte[] bytes, final int[] pos) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < MAX_VARINT_BYTES * VARINT_SHIFT; shift += VARINT_SHIFT)
+        {
+            if (pos[0] >= bytes.length)
+            {
+                throw new IOException("Truncated list segment at byte " + pos[0]);
+            }
+            int b = bytes[pos[0]++] & BYTE_MASK;
+            value |= ((long) (b & VARINT_PAYLOAD)) << shift;
+            if ((b & VARINT_CONTINUE) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in list segment at byte " + pos[0]);
+    }
+
+    /**
+     * Maps a signed value to an unsigned one so small magnitudes encode in few bytes.
+     *
+     * @param value
+     *            the signed value.
+     * @return the zigzag encoded value.
+     */
+    private static long zigzag(final long value)
+    {
+        return (value << 1) ^ (value >> SIGN_SHIFT);
+    }
+
+    /**
+     * Reverses {@link #zigzag(long)}.
+     *
+     * @param value
+     *            the zigzag encoded value.
+     * @return the signed value.
+     */
+    private static long unzigzag(final long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
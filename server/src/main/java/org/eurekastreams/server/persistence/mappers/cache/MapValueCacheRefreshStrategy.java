@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.chained.RefreshStrategy;
+import org.eurekastreams.server.persistence.mappers.stream.CachedDomainMapper;
+
+/**
+ * Reusable cache refresher for results keyed by request item - uses a CacheKeySuffixTransformer to generate the cache
+ * key of each entry, and writes all the entries with one cache multi-set.
+ *
+ * @param <Key>
+ *            the type of the request items and result keys
+ * @param <Value>
+ *            the type of the result values
+ */
+public class MapValueCacheRefreshStrategy<Key, Value> extends CachedDomainMapper implements
+        RefreshStrategy<Collection<Key>, Map<Key, Value>>
+{
+    /**
+     * Cache key prefix.
+     */
+    private final String cacheKeyPrefix;
+
+    /**
+     * Cache key suffix transformer.
+     */
+    private final Transformer<Key, String> cacheKeySuffixTransformer;
+
+    /**
+     * Constructor.
+     *
+     * @param inCacheKeyPrefix
+     *            cache key prefix
+     * @param inCacheKeySuffixTransformer
+     *            the cache key suffix transformer
+     */
+    public MapValueCacheRefreshStrategy(final String inCacheKeyPrefix,
+            final Transformer<Key, String> inCacheKeySuffixTransformer)
+    {
+        cacheKeyPrefix = inCacheKeyPrefix;
+        cacheKeySuffixTransformer = inCacheKeySuffixTransformer;
+    }
+
+    /**
+     * Caches each entry of the results.
+     *
+     * @param inRequest
+     *            the request items.
+     * @param inResponse
+     *            the results, keyed by request item.
+     */
+    @Override
+    public void refresh(final Collection<Key> inRequest, final Map<Key, Value> inResponse)
+    {
+        Map<String, Value> values = new HashMap<String, Value>();
+        for (Map.Entry<Key, Value> entry : inResponse.entrySet())
+        {
+            String cacheKeySuffix = cacheKeySuffixTransformer.transform(entry.getKey());
+            if (cacheKeySuffix == null)
+            {
+                throw new RuntimeException("Null cache key suffix");
+            }
+            values.put(cacheKeyPrefix + cacheKeySuffix, entry.getValue());
+        }
+        if (!values.isEmpty())
+        {
+            getCache().multiSet(values);
+        }
+    }
+}
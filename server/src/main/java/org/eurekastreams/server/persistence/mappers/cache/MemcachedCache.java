@@ -15,21 +15,25 @@
  */
 package org.eurekastreams.server.persistence.mappers.cache;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import net.spy.memcached.CASMutation;
 import net.spy.memcached.CASMutator;
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
 import net.spy.memcached.MemcachedClient;
 import net.spy.memcached.transcoders.SerializingTranscoder;
 
@@ -56,11 +60,32 @@ public class MemcachedCache implements Cache
      */
     private static final int MAX_EXPIRATION_TIME = 60 * 60 * 24 * 30;
 
+    /**
+     * Default time in milliseconds to wait for the writes of a bulk operation.
+     */
+    private static final long DEFAULT_BULK_WRITE_TIMEOUT = 5000L;
+
+    /**
+     * Number of rounds a bulk list edit makes before giving up on lists that keep being changed concurrently.
+     */
+    private static final int MAX_BULK_CAS_ATTEMPTS = 5;
+
     /**
      * Maximum number of items to keep in any memcached list.
      */
     private int maxListSize;
 
+    /**
+     * Whether lists are written in the compact (delta varint) format. Values in either format are always readable;
+     * leave this off until every server reading the cache can decode the compact format.
+     */
+    private boolean writeCompactLists = false;
+
+    /**
+     * Time in milliseconds to wait for all the writes of a bulk operation to complete.
+     */
+    private long bulkWriteTimeout = DEFAULT_BULK_WRITE_TIMEOUT;
+
     /**
      * Constructor.
      *
@@ -92,6 +117,24 @@ public class MemcachedCache implements Cache
         this.maxListSize = inMaxListSize;
     }
 
+    /**
+     * @param inWriteCompactLists
+     *            whether lists are written in the compact format (true) or the legacy fixed-width one (false).
+     */
+    public void setWriteCompactLists(final boolean inWriteCompactLists)
+    {
+        writeCompactLists = inWriteCompactLists;
+    }
+
+    /**
+     * @param inBulkWriteTimeout
+     *            time in milliseconds to wait for all the writes of a bulk operation to complete.
+     */
+    public void setBulkWriteTimeout(final long inBulkWriteTimeout)
+    {
+        bulkWriteTimeout = inBulkWriteTimeout;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -280,6 +323,26 @@ public class MemcachedCache implements Cache
         this.delete(inKey);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        // queue every delete first so the client can pipeline them, then wait for them together
+        Map<String, Future<Boolean>> pending = new LinkedHashMap<String, Future<Boolean>>();
+        for (String key : inKeys)
+        {
+            pending.put(key, client.delete(key));
+        }
+
+        if (log.isTraceEnabled())
+        {
+            log.trace("Deleting " + pending.size() + " keys");
+        }
+
+        awaitWrites(pending, "delete");
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -319,6 +382,65 @@ public class MemcachedCache implements Cache
         return toReturn;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public long[] getListArray(final String inKey, final int inMaximumEntries)
+    {
+        if (log.isTraceEnabled())
+        {
+            log.trace("Getting top " + inMaximumEntries + " of list " + inKey);
+        }
+        return getArrayFromBytes(inKey, client.get(inKey), inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, long[]> multiGetListArrays(final Collection<String> inKeys, final int inMaximumEntries)
+    {
+        Map<String, Object> multiGetMap = this.multiGet(inKeys);
+
+        Map<String, long[]> toReturn = new HashMap<String, long[]>();
+        for (Map.Entry<String, Object> entry : multiGetMap.entrySet())
+        {
+            long[] value = getArrayFromBytes(entry.getKey(), entry.getValue(), inMaximumEntries);
+            if (value != null)
+            {
+                toReturn.put(entry.getKey(), value);
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Decode the first entries of a memcached list value into an array.
+     *
+     * @param inKey
+     *            the key the value was stored under (for logging).
+     * @param inBytesOfLongs
+     *            the stored value.
+     * @param inMaximumEntries
+     *            the maximum number of entries to decode.
+     * @return the entries, or null if the value is missing or cannot be decoded.
+     */
+    private long[] getArrayFromBytes(final String inKey, final Object inBytesOfLongs, final int inMaximumEntries)
+    {
+        if (inBytesOfLongs == null)
+        {
+            return null;
+        }
+        try
+        {
+            return LongListCodec.decode((byte[]) inBytesOfLongs, inMaximumEntries);
+        }
+        catch (IOException e)
+        {
+            log.error("Error decoding memcached list for key " + inKey + ".  Exception : " + e.toString());
+            return null;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -385,6 +507,125 @@ public class MemcachedCache implements Cache
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void addToTopOfLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        // queue every prepend first so the client can pipeline them, then wait for them together
+        Map<String, Future<Boolean>> pending = new HashMap<String, Future<Boolean>>();
+        for (Map.Entry<String, List<Long>> entry : inValuesByKey.entrySet())
+        {
+            String key = entry.getKey();
+            List<Long> values = entry.getValue();
+            if (values == null || values.isEmpty())
+            {
+                continue;
+            }
+
+            try
+            {
+                pending.put(key, client.prepend(0, key, getBytesFromList(values)));
+            }
+            catch (IOException e)
+            {
+                log.error("Unable to prepend LIST key " + key + " into memcached.  Exception " + e.getMessage());
+            }
+        }
+
+        if (log.isTraceEnabled())
+        {
+            log.trace("Prepending to " + pending.size() + " lists");
+        }
+
+        awaitWrites(pending, "prepend to");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        // queue every set first so the client can pipeline them, then wait for them together
+        Map<String, Future<Boolean>> pending = new HashMap<String, Future<Boolean>>();
+        for (Map.Entry<String, List<Long>> entry : inValuesByKey.entrySet())
+        {
+            String key = entry.getKey();
+            if (entry.getValue() == null)
+            {
+                // cannot pass null to memcached
+                log.warn("In setLists, attempting to pass in NULL to memcached for key " + key);
+                continue;
+            }
+
+            try
+            {
+                pending.put(key, client.set(key, MAX_EXPIRATION_TIME, getBytesFromList(entry.getValue())));
+            }
+            catch (IOException e)
+            {
+                log.error("Error setting memcached list with passed in value for key " + key + ".  Exception : "
+                        + e.toString());
+            }
+        }
+
+        if (log.isTraceEnabled())
+        {
+            log.trace("Setting " + pending.size() + " lists");
+        }
+
+        awaitWrites(pending, "set");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void multiSet(final Map<String, ?> inValuesByKey)
+    {
+        // queue every set first so the client can pipeline them, then wait for them together
+        Map<String, Future<Boolean>> pending = new HashMap<String, Future<Boolean>>();
+        for (Map.Entry<String, ?> entry : inValuesByKey.entrySet())
+        {
+            if (entry.getValue() == null)
+            {
+                // a null really should be a delete of the key
+                log.warn("null passed in as parameter for key " + entry.getKey()
+                        + ".  Deleting key from memcached to force client reload.");
+                delete(entry.getKey());
+                continue;
+            }
+            pending.put(entry.getKey(), client.set(entry.getKey(), MAX_EXPIRATION_TIME, entry.getValue()));
+        }
+
+        if (log.isTraceEnabled())
+        {
+            log.trace("Setting " + pending.size() + " values");
+        }
+
+        awaitWrites(pending, "set");
+    }
+
+    /**
+     * Waits for queued writes to complete, up to the bulk write timeout in total.
+     * 
+     * @param pending
+     *            the write futures, by key.
+     * @param operation
+     *            description of the write, for logging.
+     */
+    private void awaitWrites(final Map<String, Future<Boolean>> pending, final String operation)
+    {
+        long deadline = System.currentTimeMillis() + bulkWriteTimeout;
+        for (Map.Entry<String, Future<Boolean>> entry : pending.entrySet())
+        {
+            await(entry.getValue(), deadline, entry.getKey(), operation);
+            if (Thread.currentThread().isInterrupted())
+            {
+                return;
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -422,7 +663,7 @@ public class MemcachedCache implements Cache
                 // check list size and trim if necessary
                 if (toReturn != null && toReturn.size() > inMaximumEntries)
                 {
-                    ArrayList<Long> trimmed = (ArrayList<Long>) toReturn.subList(0, inMaximumEntries - 1);
+                    ArrayList<Long> trimmed = new ArrayList<Long>(toReturn.subList(0, inMaximumEntries));
 
                     // set the trimmed list back to memcached
                     toReturn = trimmed;
@@ -481,30 +722,7 @@ public class MemcachedCache implements Cache
      */
     protected byte[] getBytesFromList(final List<Long> inListOfLongs) throws IOException
     {
-        if (inListOfLongs == null)
-        {
-            return null;
-        }
-
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        DataOutputStream out = new DataOutputStream(bytes);
-        byte[] toReturn = null;
-        try
-        {
-            for (Long oneLong : inListOfLongs)
-            {
-                out.writeLong(oneLong);
-                out.flush();
-            }
-
-            toReturn = bytes.toByteArray();
-        }
-        finally
-        {
-            out.close();
-        }
-
-        return toReturn;
+        return writeCompactLists ? LongListCodec.encode(inListOfLongs) : LongListCodec.encodeLegacy(inListOfLongs);
     }
 
     /**
@@ -517,29 +735,29 @@ public class MemcachedCache implements Cache
      *             thrown if any errors
      */
     protected ArrayList<Long> getListFromBytes(final Object inBytesOfLongs) throws IOException
+    {
+        return getListFromBytes(inBytesOfLongs, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Convert the first entries of the memcached object into a List&lt;Long&gt;, without decoding the rest.
+     *
+     * @param inBytesOfLongs
+     *            the byte[] to convert
+     * @param inMaximumEntries
+     *            the maximum number of entries to convert
+     * @return the byte[] as List&lt;Long&gt;, null if not valid or empty bytes
+     * @throws IOException
+     *             thrown if any errors
+     */
+    protected ArrayList<Long> getListFromBytes(final Object inBytesOfLongs, final int inMaximumEntries)
+            throws IOException
     {
         if (inBytesOfLongs == null)
         {
             return null;
         }
-
-        ArrayList<Long> toReturn = new ArrayList<Long>();
-
-        ByteArrayInputStream bytes = new ByteArrayInputStream((byte[]) inBytesOfLongs);
-        DataInputStream input = new DataInputStream(bytes);
-        try
-        {
-            while (input.available() > 0)
-            {
-                toReturn.add(input.readLong());
-            }
-        }
-        finally
-        {
-            input.close();
-        }
-
-        return toReturn;
+        return LongListCodec.decodeToList((byte[]) inBytesOfLongs, inMaximumEntries);
     }
 
     /**
@@ -604,59 +822,172 @@ public class MemcachedCache implements Cache
      */
     public void removeFromLists(final List<String> inKeys, final List<Long> inValues)
     {
-        Map<String, ArrayList<Long>> results = multiGetList(inKeys);
-        for (final String key : results.keySet())
+        if (inKeys.isEmpty() || inValues.isEmpty())
         {
-            if (log.isTraceEnabled())
+            return;
+        }
+        if (log.isTraceEnabled())
+        {
+            log.trace("Removing from lists " + inKeys + ", values: " + inValues);
+        }
+
+        Set<Long> values = new HashSet<Long>(inValues);
+        Collection<String> keys = new LinkedHashSet<String>(inKeys);
+        for (int attempt = 1; attempt <= MAX_BULK_CAS_ATTEMPTS && !keys.isEmpty(); attempt++)
+        {
+            keys = casRemoveFromLists(keys, values);
+        }
+        if (!keys.isEmpty())
+        {
+            log.warn("Gave up removing " + inValues + " from " + keys.size() + " lists changed concurrently "
+                    + MAX_BULK_CAS_ATTEMPTS + " times: " + keys);
+        }
+    }
+
+    /**
+     * One round of a bulk list removal: reads all the lists, then writes back the ones that changed with a CAS each.
+     * Reads and writes are each pipelined and waited for together, up to the bulk write timeout in total.
+     * 
+     * @param inKeys
+     *            the keys of the lists.
+     * @param inValues
+     *            the values to remove.
+     * @return the keys whose lists were changed by someone else in the meantime and need another round.
+     */
+    private List<String> casRemoveFromLists(final Collection<String> inKeys, final Set<Long> inValues)
+    {
+        long deadline = System.currentTimeMillis() + bulkWriteTimeout;
+        List<String> conflicts = new ArrayList<String>();
+
+        Map<String, Future<CASValue<Object>>> reads = new LinkedHashMap<String, Future<CASValue<Object>>>();
+        for (String key : inKeys)
+        {
+            reads.put(key, client.asyncGets(key));
+        }
+
+        Map<String, Future<CASResponse>> writes = new LinkedHashMap<String, Future<CASResponse>>();
+        for (Map.Entry<String, Future<CASValue<Object>>> entry : reads.entrySet())
+        {
+            String key = entry.getKey();
+            CASValue<Object> current = await(entry.getValue(), deadline, key, "read");
+            if (Thread.currentThread().isInterrupted())
             {
-                log.trace("Removing from list '" + key + "', values: " + inValues);
+                return conflicts;
             }
-
-            CASMutation<Object> mutation = new CASMutation<Object>()
+            if (current == null)
             {
-                // This is only invoked when a list already exists.
-                public Object getNewValue(final Object current)
+                // not in cache: nothing to remove
+                continue;
+            }
+            try
+            {
+                ArrayList<Long> list = getListFromBytes(current.getValue());
+                if (list != null && list.removeAll(inValues))
                 {
-                    Object toReturn = current;
-                    List<Long> list;
-                    try
-                    {
-                        list = getListFromBytes(current);
-                        if (list != null)
-                        {
-                            list.removeAll(inValues);
-                        }
-
-                        // always convert back to byte[] to return to memcached
-                        toReturn = getBytesFromList(list);
-                    }
-                    catch (IOException e)
-                    {
-                        // we had a problem serializing from cache ... log an error
-                        // and continue assuming the app will reload from database for the next reader
-                        log.error("Unable to retrieve key " + key + " from memcached.  Not able to delete " + inValues
-                                + " from list.");
-                    }
-                    return toReturn;
+                    writes.put(key, client.asyncCAS(key, current.getCas(), MAX_EXPIRATION_TIME,
+                            getBytesFromList(list), client.getTranscoder()));
                 }
-            };
+            }
+            catch (IOException e)
+            {
+                // the app will reload the list from the database for the next reader
+                log.error("Unable to retrieve key " + key + " from memcached.  Not able to delete " + inValues
+                        + " from list.");
+            }
+        }
 
-            SerializingTranscoder transcoder = new SerializingTranscoder();
-            CASMutator<Object> mutator = new CASMutator<Object>(client, transcoder);
+        for (Map.Entry<String, Future<CASResponse>> entry : writes.entrySet())
+        {
+            CASResponse response = await(entry.getValue(), deadline, entry.getKey(), "write");
+            if (Thread.currentThread().isInterrupted())
+            {
+                return conflicts;
+            }
+            if (response == CASResponse.EXISTS)
+            {
+                conflicts.add(entry.getKey());
+            }
+        }
 
-            // This returns whatever value was successfully stored within the cache,
-            // either the initial list or a mutated existing one
-            try
+        if (log.isTraceEnabled())
+        {
+            log.trace("Bulk list removal: read " + reads.size() + " lists, wrote " + writes.size() + ", "
+                    + conflicts.size() + " to retry");
+        }
+        return conflicts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object updateCAS(final String inKey, final CacheValueUpdater inUpdater)
+    {
+        for (int attempt = 1; attempt <= MAX_BULK_CAS_ATTEMPTS; attempt++)
+        {
+            long deadline = System.currentTimeMillis() + bulkWriteTimeout;
+            CASValue<Object> current = await(client.asyncGets(inKey), deadline, inKey, "read");
+            if (current == null || current.getValue() == null)
+            {
+                return null;
+            }
+            Object value = inUpdater.update(current.getValue());
+            if (value == null)
             {
-                byte[] initialValue = null;
-                mutator.cas(key, initialValue, MAX_EXPIRATION_TIME, mutation);
+                return null;
             }
-            catch (Exception e)
+            CASResponse response = await(client.asyncCAS(inKey, current.getCas(), MAX_EXPIRATION_TIME, value,
+                    client.getTranscoder()), deadline, inKey, "write");
+            if (response == CASResponse.OK)
             {
-                log.error("Nothing to delete from memcached for key - " + key, e);
+                return value;
             }
+            if (response != CASResponse.EXISTS)
+            {
+                // not found (evicted meanwhile), timed out or interrupted
+                return null;
+            }
+        }
+        log.warn("Gave up updating key " + inKey + " changed concurrently " + MAX_BULK_CAS_ATTEMPTS + " times");
+        return null;
+    }
 
+    /**
+     * Waits for a queued operation, up to a deadline.
+     * 
+     * @param <T>
+     *            the result type.
+     * @param inFuture
+     *            the operation.
+     * @param inDeadline
+     *            the deadline (ms).
+     * @param inKey
+     *            the key operated on, for logging.
+     * @param inOperation
+     *            description of the operation, for logging.
+     * @return the result, null if the operation failed or did not complete in time.
+     */
+    private <T> T await(final Future<T> inFuture, final long inDeadline, final String inKey,
+            final String inOperation)
+    {
+        try
+        {
+            return inFuture.get(Math.max(0, inDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            log.warn("Timed out waiting to " + inOperation + " key " + inKey);
+        }
+        catch (InterruptedException e)
+        {
+            log.warn("Interrupted waiting to " + inOperation + " key " + inKey);
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            log.error("Unable to " + inOperation + " key " + inKey + " in memcached.  Exception "
+                    + e.getMessage());
         }
+        return null;
     }
 
     /**
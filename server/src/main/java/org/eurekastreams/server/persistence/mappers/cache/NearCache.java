@@ -0,0 +1,725 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+
+/**
+ * Cache decorator that keeps a bounded, in-process copy of hot values in front of another (remote) cache.
+ *
+ * Only values fetched with get/multiGet whose key starts with one of the configured prefixes are kept locally, each
+ * for at most that prefix's time-to-live. Any write through this client drops the local copy of the keys it touches
+ * once the write has completed; writes made by other servers are only seen once the local copy expires, so the
+ * time-to-live bounds how stale a value can be.
+ *
+ * Immutable values (strings, boxed primitives, enums) are shared as they are. Other values (e.g. model views, which
+ * callers are free to modify) are held in serialized form and deserialized on every hit, so callers get their own copy
+ * just as they would from memcached; this costs a local deserialization instead of a network round trip plus the same
+ * deserialization, and the time spent on it is reported by {@link #getCopyNanos()}.
+ */
+public class NearCache implements Cache
+{
+    /**
+     * Load factor of the local map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Number of write version stripes (a power of 2).
+     */
+    private static final int VERSION_STRIPES = 256;
+
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * The cache being decorated.
+     */
+    private final Cache wrappedCache;
+
+    /**
+     * Time-to-live in milliseconds of local entries, by cache key prefix.
+     */
+    private final Map<String, Long> timeToLiveByKeyPrefix;
+
+    /**
+     * Local entries, in least-recently-used order.
+     */
+    private final Map<String, LocalEntry> entries;
+
+    /**
+     * Number of lookups answered locally.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Number of lookups of near-cached keys that had to go to the wrapped cache.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Number of local entries dropped because of a write through this client.
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Time in nanoseconds spent copying values for local hits.
+     */
+    private final AtomicLong copyNanos = new AtomicLong();
+
+    /**
+     * Write versions by stripe of the key space; a write increments the version of its key's stripe. A value read from
+     * the wrapped cache is only kept locally if no write to its stripe happened while it was being read, so a read
+     * racing a write cannot re-populate the old value, while writes to other keys (almost always in other stripes)
+     * do not stop it from being kept.
+     */
+    private final long[] writeVersions = new long[VERSION_STRIPES];
+
+    /**
+     * Constructor.
+     *
+     * @param inWrappedCache
+     *            the cache being decorated.
+     * @param inTimeToLiveByKeyPrefix
+     *            time-to-live in milliseconds of local entries, by cache key prefix (e.g. CacheKeys.PERSON_BY_ID).
+     *            Keys matching none of the prefixes are never kept locally.
+     * @param inMaxEntries
+     *            maximum number of entries kept locally; the least recently used are dropped first.
+     */
+    public NearCache(final Cache inWrappedCache, final Map<String, Long> inTimeToLiveByKeyPrefix,
+            final int inMaxEntries)
+    {
+        wrappedCache = inWrappedCache;
+        timeToLiveByKeyPrefix = new HashMap<String, Long>(inTimeToLiveByKeyPrefix);
+        entries = new LinkedHashMap<String, LocalEntry>(inMaxEntries, LOAD_FACTOR, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, LocalEntry> inEldest)
+            {
+                return size() > inMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the number of lookups answered locally.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups of near-cached keys that had to go to the wrapped cache.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of local entries dropped because of a write through this client.
+     */
+    public long getInvalidationCount()
+    {
+        return invalidationCount.get();
+    }
+
+    /**
+     * @return the time in nanoseconds spent copying values for local hits.
+     */
+    public long getCopyNanos()
+    {
+        return copyNanos.get();
+    }
+
+    /**
+     * @return the number of entries currently held locally (including expired ones not yet dropped).
+     */
+    public int getLocalSize()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        wrappedCache.clear();
+        synchronized (entries)
+        {
+            for (int i = 0; i < VERSION_STRIPES; i++)
+            {
+                writeVersions[i]++;
+            }
+            entries.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(final String inKey)
+    {
+        Long timeToLive = getTimeToLive(inKey);
+        if (timeToLive == null)
+        {
+            return wrappedCache.get(inKey);
+        }
+
+        LocalEntry entry = getLocal(inKey);
+        if (entry != null)
+        {
+            hitCount.incrementAndGet();
+            return copy(entry);
+        }
+
+        missCount.incrementAndGet();
+        long version = getWriteVersion(inKey);
+        Object value = wrappedCache.get(inKey);
+        putLocal(inKey, value, timeToLive, version);
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> multiGet(final Collection<String> inKeys)
+    {
+        Map<String, Object> results = new HashMap<String, Object>();
+        List<String> remoteKeys = new ArrayList<String>();
+        for (String key : inKeys)
+        {
+            if (getTimeToLive(key) == null)
+            {
+                remoteKeys.add(key);
+                continue;
+            }
+            LocalEntry entry = getLocal(key);
+            if (entry != null)
+            {
+                hitCount.incrementAndGet();
+                results.put(key, copy(entry));
+            }
+            else
+            {
+                missCount.incrementAndGet();
+                remoteKeys.add(key);
+            }
+        }
+
+        if (!remoteKeys.isEmpty())
+        {
+            Map<String, Long> versions = new HashMap<String, Long>();
+            for (String key : remoteKeys)
+            {
+                versions.put(key, getWriteVersion(key));
+            }
+            Map<String, Object> remoteResults = wrappedCache.multiGet(remoteKeys);
+            for (Map.Entry<String, Object> remote : remoteResults.entrySet())
+            {
+                Long timeToLive = getTimeToLive(remote.getKey());
+                Long version = versions.get(remote.getKey());
+                if (timeToLive != null && version != null)
+                {
+                    putLocal(remote.getKey(), remote.getValue(), timeToLive, version);
+                }
+            }
+            results.putAll(remoteResults);
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> getList(final String inKey, final int inMaximumEntries)
+    {
+        return wrappedCache.getList(inKey, inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> getList(final String inKey)
+    {
+        return wrappedCache.getList(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, ArrayList<Long>> multiGetList(final Collection<String> inKeys)
+    {
+        return wrappedCache.multiGetList(inKeys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] getListArray(final String inKey, final int inMaximumEntries)
+    {
+        return wrappedCache.getListArray(inKey, inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, long[]> multiGetListArrays(final Collection<String> inKeys, final int inMaximumEntries)
+    {
+        return wrappedCache.multiGetListArrays(inKeys, inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(final String inKey, final Object inValue)
+    {
+        wrappedCache.set(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setList(final String inKey, final List<Long> inValue)
+    {
+        wrappedCache.setList(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> setListCAS(final String inKey, final List<Long> inValue)
+    {
+        ArrayList<Long> result = wrappedCache.setListCAS(inKey, inValue);
+        invalidate(inKey);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object updateCAS(final String inKey, final CacheValueUpdater inUpdater)
+    {
+        Object result = wrappedCache.updateCAS(inKey, inUpdater);
+        invalidate(inKey);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(final String inKey)
+    {
+        wrappedCache.delete(inKey);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteList(final String inKey)
+    {
+        wrappedCache.deleteList(inKey);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        wrappedCache.multiDelete(inKeys);
+        for (String key : inKeys)
+        {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfList(final String inKey, final List<Long> inValues)
+    {
+        wrappedCache.addToTopOfList(inKey, inValues);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfList(final String inKey, final Long inValue)
+    {
+        wrappedCache.addToTopOfList(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        wrappedCache.addToTopOfLists(inValuesByKey);
+        for (String key : inValuesByKey.keySet())
+        {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        wrappedCache.setLists(inValuesByKey);
+        for (String key : inValuesByKey.keySet())
+        {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSet(final Map<String, ?> inValuesByKey)
+    {
+        wrappedCache.multiSet(inValuesByKey);
+        for (String key : inValuesByKey.keySet())
+        {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromList(final String inKey, final Long inValue)
+    {
+        wrappedCache.removeFromList(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromLists(final List<String> inKeys, final List<Long> inValues)
+    {
+        wrappedCache.removeFromLists(inKeys, inValues);
+        for (String key : inKeys)
+        {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Long> addToSet(final String inKey, final Long inValue)
+    {
+        Set<Long> result = wrappedCache.addToSet(inKey, inValue);
+        invalidate(inKey);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromSet(final String inKey, final Long inValue)
+    {
+        wrappedCache.removeFromSet(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * @return the current time in milliseconds (overridable for testing).
+     */
+    protected long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Finds the local time-to-live for a key.
+     *
+     * @param inKey
+     *            the cache key.
+     * @return the time-to-live in milliseconds, or null if the key is not kept locally.
+     */
+    private Long getTimeToLive(final String inKey)
+    {
+        for (Map.Entry<String, Long> policy : timeToLiveByKeyPrefix.entrySet())
+        {
+            if (inKey.startsWith(policy.getKey()))
+            {
+                return policy.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets an unexpired local entry.
+     *
+     * @param inKey
+     *            the cache key.
+     * @return the entry, or null if there is none or it has expired.
+     */
+    private LocalEntry getLocal(final String inKey)
+    {
+        synchronized (entries)
+        {
+            LocalEntry entry = entries.get(inKey);
+            if (entry != null && entry.getExpiration() <= currentTimeMillis())
+            {
+                entries.remove(inKey);
+                entry = null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Gets the value of a local entry for a caller, timing the copy.
+     *
+     * @param inEntry
+     *            the entry.
+     * @return the value (a fresh copy unless immutable).
+     */
+    private Object copy(final LocalEntry inEntry)
+    {
+        if (inEntry.isShared())
+        {
+            return inEntry.getValue();
+        }
+        long start = System.nanoTime();
+        Object value = inEntry.getValue();
+        copyNanos.addAndGet(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * Checks if a value can be shared between callers as it is.
+     *
+     * @param inValue
+     *            the value.
+     * @return true if the value is immutable.
+     */
+    private static boolean isImmutable(final Object inValue)
+    {
+        return inValue instanceof String || inValue instanceof Long || inValue instanceof Integer
+                || inValue instanceof Short || inValue instanceof Byte || inValue instanceof Double
+                || inValue instanceof Float || inValue instanceof Boolean || inValue instanceof Character
+                || inValue instanceof Enum;
+    }
+
+    /**
+     * Stores a value locally. Missing values and values that cannot be copied are not stored.
+     *
+     * @param inKey
+     *            the cache key.
+     * @param inValue
+     *            the value from the wrapped cache.
+     * @param inTimeToLive
+     *            time-to-live in milliseconds.
+     * @param inWriteVersion
+     *            the write version from before the value was read.
+     */
+    private void putLocal(final String inKey, final Object inValue, final long inTimeToLive,
+            final long inWriteVersion)
+    {
+        if (inValue == null || !(inValue instanceof Serializable))
+        {
+            return;
+        }
+        LocalEntry entry;
+        if (isImmutable(inValue))
+        {
+            entry = new LocalEntry(inValue, null, currentTimeMillis() + inTimeToLive);
+        }
+        else
+        {
+            try
+            {
+                entry = new LocalEntry(null, SerializationUtils.serialize((Serializable) inValue), currentTimeMillis()
+                        + inTimeToLive);
+            }
+            catch (RuntimeException ex)
+            {
+                log.warn("Unable to keep a local copy of " + inKey, ex);
+                return;
+            }
+        }
+        synchronized (entries)
+        {
+            if (writeVersions[stripe(inKey)] == inWriteVersion)
+            {
+                entries.put(inKey, entry);
+            }
+        }
+    }
+
+    /**
+     * Finds the write version stripe of a key.
+     *
+     * @param inKey
+     *            the cache key.
+     * @return the stripe index.
+     */
+    private static int stripe(final String inKey)
+    {
+        int hash = inKey.hashCode();
+        return (hash ^ (hash >>> (Integer.SIZE / 2))) & (VERSION_STRIPES - 1);
+    }
+
+    /**
+     * @param inKey
+     *            the cache key.
+     * @return the current write version of the key's stripe.
+     */
+    private long getWriteVersion(final String inKey)
+    {
+        synchronized (entries)
+        {
+            return writeVersions[stripe(inKey)];
+        }
+    }
+
+    /**
+     * Drops the local copy of a key.
+     *
+     * @param inKey
+     *            the cache key.
+     */
+    private void invalidate(final String inKey)
+    {
+        synchronized (entries)
+        {
+            writeVersions[stripe(inKey)]++;
+            if (entries.remove(inKey) != null)
+            {
+                invalidationCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A locally held value.
+     */
+    private static class LocalEntry
+    {
+        /**
+         * The value itself, if immutable.
+         */
+        private final Object sharedValue;
+
+        /**
+         * The serialized value, if not immutable.
+         */
+        private final byte[] serializedValue;
+
+        /**
+         * Time (in milliseconds) at which the entry expires.
+         */
+        private final long expiration;
+
+        /**
+         * Constructor.
+         *
+         * @param inSharedValue
+         *            the value itself, if immutable (else null).
+         * @param inSerializedValue
+         *            the serialized value, if not immutable (else null).
+         * @param inExpiration
+         *            time (in milliseconds) at which the entry expires.
+         */
+        public LocalEntry(final Object inSharedValue, final byte[] inSerializedValue, final long inExpiration)
+        {
+            sharedValue = inSharedValue;
+            serializedValue = inSerializedValue;
+            expiration = inExpiration;
+        }
+
+        /**
+         * @return true if the value is immutable and shared as it is.
+         */
+        public boolean isShared()
+        {
+            return serializedValue == null;
+        }
+
+        /**
+         * @return the value, or a fresh copy of it if not immutable.
+         */
+        public Object getValue()
+        {
+            return serializedValue == null ? sharedValue : SerializationUtils.deserialize(serializedValue);
+        }
+
+        /**
+         * @return time (in milliseconds) at which the entry expires.
+         */
+        public long getExpiration()
+        {
+            return expiration;
+        }
+    }
+}
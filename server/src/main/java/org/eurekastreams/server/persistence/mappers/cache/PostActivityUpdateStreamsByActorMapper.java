@@ -15,7 +15,10 @@
  */
 package org.eurekastreams.server.persistence.mappers.cache;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.eurekastreams.server.domain.EntityType;
 import org.eurekastreams.server.domain.stream.ActivityDTO;
@@ -74,7 +77,47 @@ public class PostActivityUpdateStreamsByActorMapper extends CachedDomainMapper
      */
     public void execute(final ActivityDTO activity)
     {
-        long activityId = activity.getId();
+        for (Long scopeId : getStreamScopeIds(activity))
+        {
+            getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + scopeId, activity.getId());
+        }
+    }
+
+    /**
+     * Records the entity stream updates for the provided {@link ActivityDTO} instead of writing them, so that the
+     * caller can send the updates for many activities to cache together.
+     * 
+     * @param activity
+     *            - {@link ActivityDTO} to be posted into the streams.
+     * @param inPrependsByKey
+     *            - the pending list prepends, keyed by cache key; the activity id is appended to the entry of each
+     *            stream it belongs in.
+     */
+    public void execute(final ActivityDTO activity, final Map<String, List<Long>> inPrependsByKey)
+    {
+        for (Long scopeId : getStreamScopeIds(activity))
+        {
+            String key = CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + scopeId;
+            List<Long> ids = inPrependsByKey.get(key);
+            if (ids == null)
+            {
+                ids = new ArrayList<Long>();
+                inPrependsByKey.put(key, ids);
+            }
+            ids.add(activity.getId());
+        }
+    }
+
+    /**
+     * Gets the ids of the stream scopes whose entity streams the activity is to be added to.
+     * 
+     * @param activity
+     *            - the activity.
+     * @return the stream scope ids.
+     */
+    private List<Long> getStreamScopeIds(final ActivityDTO activity)
+    {
+        List<Long> scopeIds = new ArrayList<Long>(2);
 
         // Add to the appropriate entity stream.
         EntityType streamType = activity.getDestinationStream().getType();
@@ -86,18 +129,18 @@ public class PostActivityUpdateStreamsByActorMapper extends CachedDomainMapper
             DomainGroupModelView group = bulkDomainGroupsByShortNameMapper
                     .execute(Collections.singletonList(uniqueKey)).get(0);
 
-            getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + group.getStreamId(), activityId);
+            scopeIds.add(group.getStreamId());
             break;
         case PERSON:
             PersonModelView person = getPersonModelViewByAccountIdMapper.execute(uniqueKey);
 
-            getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + person.getStreamId(), activityId);
+            scopeIds.add(person.getStreamId());
             break;
         case RESOURCE:
             StreamScope scope = getResourceStreamScopeIdByKeyMapper.execute(uniqueKey);
             if (scope != null)
             {
-                getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + scope.getId(), activityId);
+                scopeIds.add(scope.getId());
             }
 
             // if showInStream is true and author is person, add to actors (author)'s stream also.
@@ -105,12 +148,13 @@ public class PostActivityUpdateStreamsByActorMapper extends CachedDomainMapper
             {
                 PersonModelView actor = getPersonModelViewByAccountIdMapper.execute(activity.getActor()
                         .getUniqueIdentifier());
-                getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + actor.getStreamId(), activityId);
+                scopeIds.add(actor.getStreamId());
             }
 
             break;
         default:
             break;
         }
+        return scopeIds;
     }
 }
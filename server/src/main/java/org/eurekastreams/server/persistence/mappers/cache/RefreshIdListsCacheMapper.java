@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.stream.CachedDomainMapper;
+
+/**
+ * Loads the cached id lists of a batch of entities from the data source and writes them to cache together.
+ */
+public class RefreshIdListsCacheMapper extends CachedDomainMapper implements DomainMapper<List<Long>, Boolean>
+{
+    /**
+     * Cache key prefix of the lists.
+     */
+    private final String cacheKeyPrefix;
+
+    /**
+     * Mapper to load the lists.
+     */
+    private final DomainMapper<List<Long>, Map<Long, List<Long>>> dataSourceMapper;
+
+    /**
+     * Constructor.
+     * 
+     * @param inCacheKeyPrefix
+     *            Cache key prefix of the lists.
+     * @param inDataSourceMapper
+     *            Mapper to load the lists.
+     */
+    public RefreshIdListsCacheMapper(final String inCacheKeyPrefix,
+            final DomainMapper<List<Long>, Map<Long, List<Long>>> inDataSourceMapper)
+    {
+        cacheKeyPrefix = inCacheKeyPrefix;
+        dataSourceMapper = inDataSourceMapper;
+    }
+
+    /**
+     * Refreshes the lists of the given entities.
+     * 
+     * @param inIds
+     *            The entity ids.
+     * @return true.
+     */
+    @Override
+    public Boolean execute(final List<Long> inIds)
+    {
+        Map<Long, List<Long>> loaded = dataSourceMapper.execute(inIds);
+        Map<String, List<Long>> listsByKey = new HashMap<String, List<Long>>();
+        for (Map.Entry<Long, List<Long>> entry : loaded.entrySet())
+        {
+            listsByKey.put(cacheKeyPrefix + entry.getKey(), entry.getValue());
+        }
+        getCache().setLists(listsByKey);
+        return Boolean.TRUE;
+    }
+}
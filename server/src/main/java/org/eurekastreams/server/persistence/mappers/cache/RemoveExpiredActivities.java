@@ -15,6 +15,7 @@
  */
 package org.eurekastreams.server.persistence.mappers.cache;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eurekastreams.server.persistence.mappers.stream.CachedDomainMapper;
@@ -43,21 +44,26 @@ public class RemoveExpiredActivities extends CachedDomainMapper
         getEntityManager().createQuery("DELETE FROM Comment c WHERE c.target.id in (:expiredActivityIds)")
                 .setParameter("expiredActivityIds", expiredActivityIds).executeUpdate();
 
-        // delete comments for activities from cache
+        // delete comments for activities from cache: one multi-get for the comment id lists, one bulk delete
+        List<String> commentListKeys = new ArrayList<String>(expiredActivityIds.size());
+        List<String> deleteKeys = new ArrayList<String>();
         for (long activityId : expiredActivityIds)
         {
-            // get comment ids
-            List<Long> commentIds = getCache().getList(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
-            if (commentIds != null && commentIds.size() > 0)
+            commentListKeys.add(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
+            deleteKeys.add(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
+            deleteKeys.add(CacheKeys.ACTIVITY_BY_ID + activityId);
+        }
+        for (List<Long> commentIds : getCache().multiGetList(commentListKeys).values())
+        {
+            if (commentIds != null)
             {
                 for (long commentId : commentIds)
                 {
-                    getCache().delete(CacheKeys.COMMENT_BY_ID + commentId);
+                    deleteKeys.add(CacheKeys.COMMENT_BY_ID + commentId);
                 }
             }
-            getCache().delete(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
-            getCache().delete(CacheKeys.ACTIVITY_BY_ID + activityId);
         }
+        getCache().multiDelete(deleteKeys);
 
         // delete any hashtags stored to streams on behalf of this activity
         getEntityManager().createQuery("DELETE FROM StreamHashTag WHERE activity.id in (:expiredActivityIds)")
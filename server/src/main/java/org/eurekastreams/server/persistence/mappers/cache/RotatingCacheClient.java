@@ -80,6 +80,33 @@ public class RotatingCacheClient implements Cache
         writeCacheRotator.getNext().addToTopOfList(inKey, inValue);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        writeCacheRotator.getNext().addToTopOfLists(inValuesByKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        writeCacheRotator.getNext().setLists(inValuesByKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSet(final Map<String, ?> inValuesByKey)
+    {
+        writeCacheRotator.getNext().multiSet(inValuesByKey);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -107,6 +134,15 @@ public class RotatingCacheClient implements Cache
         writeCacheRotator.getNext().deleteList(inKey);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        writeCacheRotator.getNext().multiDelete(inKeys);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -149,6 +185,24 @@ public class RotatingCacheClient implements Cache
         return readCacheRotator.getNext().multiGetList(inKeys);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] getListArray(final String inKey, final int inMaximumEntries)
+    {
+        return readCacheRotator.getNext().getListArray(inKey, inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, long[]> multiGetListArrays(final Collection<String> inKeys, final int inMaximumEntries)
+    {
+        return readCacheRotator.getNext().multiGetListArrays(inKeys, inMaximumEntries);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -203,4 +257,13 @@ public class RotatingCacheClient implements Cache
         return writeCacheRotator.getNext().setListCAS(inKey, inValue);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object updateCAS(final String inKey, final CacheValueUpdater inUpdater)
+    {
+        return writeCacheRotator.getNext().updateCAS(inKey, inUpdater);
+    }
+
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.action.request.stream.StreamPopularHashTagsRequest;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.stream.CachedDomainMapper;
+import org.eurekastreams.server.persistence.mappers.stream.StreamHashTagCounter;
+import org.eurekastreams.server.persistence.mappers.stream.StreamPopularHashTagsReportDTO;
+
+/**
+ * Keeps the sliding-window hashtag counts of each stream in cache, producing the popular hashtags reports from them and
+ * applying new hashtag uses to them as activities are posted. The counts are only loaded from the database when
+ * missing from cache; the counts missing for a request are all loaded with one database call. Increments are applied
+ * with compare-and-set so concurrent posts to a stream are not lost.
+ */
+public class StreamHashTagCounterMapper extends CachedDomainMapper implements
+        DomainMapper<List<StreamPopularHashTagsRequest>, List<StreamPopularHashTagsReportDTO>>
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Mapper to load the counts of several streams from the database.
+     */
+    private final DomainMapper<List<StreamPopularHashTagsRequest>, List<StreamHashTagCounter>> counterDbMapper;
+
+    /**
+     * Transformer from request to cache key suffix.
+     */
+    private final StreamPopularHashTagsRequestCacheKeySuffixTransformer keySuffixTransformer =
+            new StreamPopularHashTagsRequestCacheKeySuffixTransformer();
+
+    /**
+     * Constructor.
+     *
+     * @param inCounterDbMapper
+     *            mapper to load the counts of several streams from the database
+     */
+    public StreamHashTagCounterMapper(
+            final DomainMapper<List<StreamPopularHashTagsRequest>, List<StreamHashTagCounter>> inCounterDbMapper)
+    {
+        counterDbMapper = inCounterDbMapper;
+    }
+
+    /**
+     * Get the popular hashtags for the input streams from their counts, storing the reports in cache.
+     *
+     * @param inRequests
+     *            type of stream and unique key of each entity stream
+     * @return the popular hashtags reports, in request order
+     */
+    @Override
+    public List<StreamPopularHashTagsReportDTO> execute(final List<StreamPopularHashTagsRequest> inRequests)
+    {
+        Date now = new Date();
+
+        List<String> counterKeys = new ArrayList<String>(inRequests.size());
+        for (StreamPopularHashTagsRequest request : inRequests)
+        {
+            counterKeys.add(CacheKeys.HASH_TAG_COUNTER_BY_STREAM_TYPE_AND_SHORT_NAME
+                    + keySuffixTransformer.transform(request));
+        }
+        Map<String, Object> cachedCounters = getCache().multiGet(counterKeys);
+
+        List<StreamPopularHashTagsRequest> missingRequests = new ArrayList<StreamPopularHashTagsRequest>();
+        for (int i = 0; i < inRequests.size(); i++)
+        {
+            if (cachedCounters.get(counterKeys.get(i)) == null)
+            {
+                missingRequests.add(inRequests.get(i));
+            }
+        }
+        Map<String, Object> loadedCounters = new HashMap<String, Object>();
+        if (!missingRequests.isEmpty())
+        {
+            if (log.isInfoEnabled())
+            {
+                log.info("Loading hashtag counts for " + missingRequests.size() + " streams from the database.");
+            }
+            List<StreamHashTagCounter> counters = counterDbMapper.execute(missingRequests);
+            for (int i = 0; i < missingRequests.size(); i++)
+            {
+                loadedCounters.put(CacheKeys.HASH_TAG_COUNTER_BY_STREAM_TYPE_AND_SHORT_NAME
+                        + keySuffixTransformer.transform(missingRequests.get(i)), counters.get(i));
+            }
+            getCache().multiSet(loadedCounters);
+        }
+
+        List<StreamPopularHashTagsReportDTO> reports = new ArrayList<StreamPopularHashTagsReportDTO>(inRequests
+                .size());
+        Map<String, Object> reportsByKey = new HashMap<String, Object>();
+        for (int i = 0; i < inRequests.size(); i++)
+        {
+            StreamHashTagCounter counter = (StreamHashTagCounter) cachedCounters.get(counterKeys.get(i));
+            if (counter == null)
+            {
+                counter = (StreamHashTagCounter) loadedCounters.get(counterKeys.get(i));
+            }
+            counter.advanceTo(now);
+
+            StreamPopularHashTagsReportDTO report = new StreamPopularHashTagsReportDTO(counter.getTopHashTags(), now);
+            reports.add(report);
+            reportsByKey.put(CacheKeys.POPULAR_HASH_TAGS_BY_STREAM_TYPE_AND_SHORT_NAME
+                    + keySuffixTransformer.transform(inRequests.get(i)), report);
+        }
+        getCache().multiSet(reportsByKey);
+        return reports;
+    }
+
+    /**
+     * Applies the hashtags of a newly posted activity to the counts of a stream and stores the resulting popular
+     * hashtags report. The hashtags must already be stored as StreamHashTags, since if the counts are not in cache
+     * they are loaded from the database instead.
+     *
+     * @param inRequest
+     *            type of stream and unique key of the entity stream
+     * @param inHashTags
+     *            the hashtags used by the activity
+     * @param inActivityDate
+     *            when the activity was posted
+     */
+    public void addHashTags(final StreamPopularHashTagsRequest inRequest, final List<String> inHashTags,
+            final Date inActivityDate)
+    {
+        final Date now = new Date();
+        String counterKey = CacheKeys.HASH_TAG_COUNTER_BY_STREAM_TYPE_AND_SHORT_NAME
+                + keySuffixTransformer.transform(inRequest);
+
+        StreamHashTagCounter counter = (StreamHashTagCounter) getCache().updateCAS(counterKey,
+                new CacheValueUpdater()
+                {
+                    public Object update(final Object inCurrent)
+                    {
+                        StreamHashTagCounter current = (StreamHashTagCounter) inCurrent;
+                        current.advanceTo(now);
+                        for (String hashTag : inHashTags)
+                        {
+                            current.increment(hashTag, inActivityDate);
+                        }
+                        return current;
+                    }
+                });
+        if (counter == null)
+        {
+            // not in cache, or lost too many races: the database already has this activity's hashtags
+            counter = counterDbMapper.execute(Collections.singletonList(inRequest)).get(0);
+            getCache().set(counterKey, counter);
+        }
+
+        getCache().set(CacheKeys.POPULAR_HASH_TAGS_BY_STREAM_TYPE_AND_SHORT_NAME
+                + keySuffixTransformer.transform(inRequest),
+                new StreamPopularHashTagsReportDTO(counter.getTopHashTags(), now));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.List;
+
+import org.eurekastreams.server.domain.CacheGeneration;
+import org.eurekastreams.server.persistence.mappers.BaseDomainMapper;
+
+/**
+ * Reads and changes the cache generations kept in the database. Changes are conditional updates, so two servers cannot
+ * both start a rebuild or activate a superseded generation.
+ */
+public class CacheGenerationDbMapper extends BaseDomainMapper
+{
+    /**
+     * Reads the cache generations.
+     *
+     * @return The generations (not attached to the persistence context), null if none were ever stored.
+     */
+    @SuppressWarnings("unchecked")
+    public CacheGeneration read()
+    {
+        // scalars rather than the entity, so a value loaded earlier in the same session is never returned
+        List<Object[]> rows = getEntityManager().createQuery(
+                "select activeGeneration, pendingGeneration from CacheGeneration").getResultList();
+        if (rows.isEmpty())
+        {
+            return null;
+        }
+        return new CacheGeneration((Long) rows.get(0)[0], (Long) rows.get(0)[1]);
+    }
+
+    /**
+     * Starts rebuilding a generation, if the active generation is still the one expected.
+     *
+     * @param inActiveGeneration
+     *            The active generation expected.
+     * @param inPendingGeneration
+     *            The generation to rebuild.
+     * @return true if the rebuild was started.
+     */
+    public boolean beginRebuild(final long inActiveGeneration, final long inPendingGeneration)
+    {
+        int updated = getEntityManager().createQuery(
+                "update CacheGeneration set pendingGeneration = :pending where activeGeneration = :active")
+                .setParameter("pending", inPendingGeneration).setParameter("active", inActiveGeneration)
+                .executeUpdate();
+        if (updated == 0 && inActiveGeneration == 0 && read() == null)
+        {
+            getEntityManager().persist(new CacheGeneration(0, inPendingGeneration));
+            return true;
+        }
+        return updated > 0;
+    }
+
+    /**
+     * Makes a rebuilt generation the active one, if it is still the one being rebuilt.
+     *
+     * @param inGeneration
+     *            The rebuilt generation.
+     * @return true if the generation was activated.
+     */
+    public boolean activate(final long inGeneration)
+    {
+        return getEntityManager().createQuery(
+                "update CacheGeneration set activeGeneration = :generation, pendingGeneration = null "
+                        + "where pendingGeneration = :generation").setParameter("generation", inGeneration)
+                .executeUpdate() > 0;
+    }
+}
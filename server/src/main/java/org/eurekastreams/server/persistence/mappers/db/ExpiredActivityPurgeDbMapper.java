@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.Date;
+import java.util.List;
+
+import org.eurekastreams.server.domain.stream.ExpiredActivityPurge;
+import org.eurekastreams.server.persistence.mappers.BaseDomainMapper;
+
+/**
+ * Reads and changes the progress of the expired activity purge kept in the database. Changes are conditional updates
+ * of the single row: a purge is only started if none is in progress, and a chunk is only claimed by the one run which
+ * finds the checkpoint unchanged, so two servers never purge the same activities.
+ */
+public class ExpiredActivityPurgeDbMapper extends BaseDomainMapper
+{
+    /**
+     * Reads the progress of the purge.
+     *
+     * @return The progress (not attached to the persistence context), null if none was ever stored.
+     */
+    @SuppressWarnings("unchecked")
+    public ExpiredActivityPurge read()
+    {
+        List<Object[]> rows = getEntityManager().createQuery(
+                "select expirationDate, lastActivityId from ExpiredActivityPurge").getResultList();
+        if (rows.isEmpty())
+        {
+            return null;
+        }
+        return new ExpiredActivityPurge((Date) rows.get(0)[0], (Long) rows.get(0)[1]);
+    }
+
+    /**
+     * Starts a purge, unless one is already in progress.
+     *
+     * @param inExpirationDate
+     *            Activities posted before this date are to be purged.
+     * @return true if the purge was started.
+     */
+    public boolean start(final Date inExpirationDate)
+    {
+        int updated = getEntityManager().createQuery(
+                "update ExpiredActivityPurge set expirationDate = :expirationDate, lastActivityId = 0 "
+                        + "where expirationDate is null").setParameter("expirationDate", inExpirationDate)
+                .executeUpdate();
+        if (updated == 0 && read() == null)
+        {
+            getEntityManager().persist(new ExpiredActivityPurge(inExpirationDate, 0));
+            return true;
+        }
+        return updated > 0;
+    }
+
+    /**
+     * Claims the chunk after a checkpoint by moving the checkpoint past it, if the checkpoint is still the one
+     * expected. Rolled back with the rest of the transaction if deleting the chunk fails.
+     *
+     * @param inExpirationDate
+     *            Expiration date of the purge.
+     * @param inLastActivityId
+     *            The checkpoint expected.
+     * @param inNewLastActivityId
+     *            The new checkpoint: the id of the last activity of the chunk.
+     * @return true if the chunk was claimed.
+     */
+    public boolean advance(final Date inExpirationDate, final long inLastActivityId, final long inNewLastActivityId)
+    {
+        return getEntityManager().createQuery(
+                "update ExpiredActivityPurge set lastActivityId = :newLastActivityId "
+                        + "where expirationDate = :expirationDate and lastActivityId = :lastActivityId")
+                .setParameter("newLastActivityId", inNewLastActivityId)
+                .setParameter("expirationDate", inExpirationDate).setParameter("lastActivityId", inLastActivityId)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Ends a purge, if it is still the one in progress.
+     *
+     * @param inExpirationDate
+     *            Expiration date of the purge.
+     * @return true if the purge was ended.
+     */
+    public boolean finish(final Date inExpirationDate)
+    {
+        return getEntityManager().createQuery(
+                "update ExpiredActivityPurge set expirationDate = null where expirationDate = :expirationDate")
+                .setParameter("expirationDate", inExpirationDate).executeUpdate() > 0;
+    }
+}
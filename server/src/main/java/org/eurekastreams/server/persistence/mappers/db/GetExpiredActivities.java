@@ -45,4 +45,27 @@ public class GetExpiredActivities extends BaseDomainMapper
                 .setParameter("expirationDate", expirationDate);
         return q.getResultList();
     }
+
+    /**
+     * Finds the next page of expired activities that are not starred, in ascending id order, starting after a given
+     * id. Paging by id (rather than by offset) keeps every page a cheap index range scan however far the purge has
+     * got, and is unaffected by the rows earlier pages deleted.
+     *
+     * @param expirationDate
+     *            the date an activity is considered to expire.
+     * @param afterId
+     *            only activities with a greater id are returned.
+     * @param maxResults
+     *            the maximum number of ids to return.
+     * @return the expired activity ids, ascending.
+     */
+    public List<Long> execute(final Date expirationDate, final long afterId, final int maxResults)
+    {
+        Query q = getEntityManager()
+                .createQuery("select id from Activity where postedTime < :expirationDate and id > :afterId "
+                        + "and id not in (select pk.activityId from StarredActivity) order by id")
+                .setParameter("expirationDate", expirationDate).setParameter("afterId", afterId)
+                .setMaxResults(maxResults);
+        return q.getResultList();
+    }
 }
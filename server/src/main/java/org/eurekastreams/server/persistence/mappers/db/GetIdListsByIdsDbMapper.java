@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+
+/**
+ * Db Mapper to return an id list for each of several owner ids in a single query, such as the followers of many people
+ * at once. The query selects (owner id, value id) pairs and takes the owner ids as the ":ids" parameter.
+ */
+public class GetIdListsByIdsDbMapper extends BaseArgDomainMapper<List<Long>, Map<Long, List<Long>>>
+{
+    /**
+     * The query.
+     */
+    private final String query;
+
+    /**
+     * Constructor.
+     * 
+     * @param inQuery
+     *            JPQL query selecting (owner id, value id) pairs for the owner ids in ":ids".
+     */
+    public GetIdListsByIdsDbMapper(final String inQuery)
+    {
+        query = inQuery;
+    }
+
+    /**
+     * Returns the id list of each owner id. Every requested id is present in the result map; owners without values
+     * map to an empty list.
+     * 
+     * @param inIds
+     *            The owner ids.
+     * @return Map of owner id to its list of ids.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<Long, List<Long>> execute(final List<Long> inIds)
+    {
+        Map<Long, List<Long>> results = new HashMap<Long, List<Long>>();
+        if (inIds == null || inIds.isEmpty())
+        {
+            return results;
+        }
+
+        for (Long id : inIds)
+        {
+            results.put(id, new ArrayList<Long>());
+        }
+
+        List<Object[]> rows = getEntityManager().createQuery(query).setParameter("ids", inIds).getResultList();
+        for (Object[] row : rows)
+        {
+            results.get(row[0]).add((Long) row[1]);
+        }
+        return results;
+    }
+}
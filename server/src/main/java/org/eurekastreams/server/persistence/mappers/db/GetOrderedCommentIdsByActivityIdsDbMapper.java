@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+
+/**
+ * Db Mapper to return the ordered comment id lists for several activities in a single query.
+ */
+public class GetOrderedCommentIdsByActivityIdsDbMapper extends
+        BaseArgDomainMapper<List<Long>, Map<Long, List<Long>>>
+{
+    /**
+     * Returns the comment ids (ascending) for each of the given activity ids. Every requested activity id is present
+     * in the result map; activities without comments map to an empty list.
+     *
+     * @param inActivityIds
+     *            The activity ids.
+     * @return Map of activity id to its ascending list of comment ids.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<Long, List<Long>> execute(final List<Long> inActivityIds)
+    {
+        Map<Long, List<Long>> results = new HashMap<Long, List<Long>>();
+        if (inActivityIds == null || inActivityIds.isEmpty())
+        {
+            return results;
+        }
+
+        for (Long activityId : inActivityIds)
+        {
+            results.put(activityId, new ArrayList<Long>());
+        }
+
+        List<Object[]> rows = getEntityManager().createQuery(
+                "SELECT c.target.id, c.id FROM Comment c WHERE c.target.id IN (:activityIds) "
+                        + "ORDER BY c.id ASC").setParameter("activityIds", inActivityIds).getResultList();
+        for (Object[] row : rows)
+        {
+            results.get(row[0]).add((Long) row[1]);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+
+/**
+ * Returns the recorded directory digest of every user with matching locked status, keyed by account id.
+ */
+public class GetPersonDirectoryDigestsByLockedStatus extends BaseArgDomainMapper<Boolean, Map<String, String>>
+{
+    /**
+     * Returns the recorded directory digest of every user with matching locked status.
+     * 
+     * @param inLockedStatus
+     *            The locked status to match.
+     * @return Map of account id to directory digest; the digest is null for users that have none recorded.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<String, String> execute(final Boolean inLockedStatus)
+    {
+        List<Object[]> rows = getEntityManager().createQuery(
+                "SELECT accountId, directoryDigest FROM Person WHERE accountLocked = :lockedStatus").setParameter(
+                "lockedStatus", inLockedStatus).getResultList();
+
+        Map<String, String> results = new HashMap<String, String>(rows.size());
+        for (Object[] row : rows)
+        {
+            results.put((String) row[0], (String) row[1]);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.action.request.stream.StreamPopularHashTagsRequest;
+import org.eurekastreams.server.domain.stream.StreamScope.ScopeType;
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+import org.eurekastreams.server.persistence.mappers.stream.StreamHashTagCounter;
+
+/**
+ * Mapper to load the sliding-window hashtag counts for several streams from their StreamHashTag records, with one
+ * query per stream scope type returning the counts grouped by stream, hashtag and hour.
+ */
+public class StreamHashTagCounterDbMapper extends
+        BaseArgDomainMapper<List<StreamPopularHashTagsRequest>, List<StreamHashTagCounter>>
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Number of minutes to look through activities for popular hashtags.
+     */
+    private final int popularHashTagWindowInMinutes;
+
+    /**
+     * Max number of popular hashtags to keep.
+     */
+    private final int maxNumberOfPopularHashTags;
+
+    /**
+     * Constructor.
+     *
+     * @param inPopularHashTagWindowInMinutes
+     *            number of minutes to look for popular hashtags
+     * @param inMaxNumberOfPopularHashTags
+     *            max number of popular hashtags to keep
+     */
+    public StreamHashTagCounterDbMapper(final Integer inPopularHashTagWindowInMinutes,
+            final Integer inMaxNumberOfPopularHashTags)
+    {
+        popularHashTagWindowInMinutes = inPopularHashTagWindowInMinutes;
+        maxNumberOfPopularHashTags = inMaxNumberOfPopularHashTags;
+    }
+
+    /**
+     * Count the hashtags used in the input Group/Person streams within the window.
+     *
+     * @param inRequests
+     *            type of stream and unique key of each entity stream to count hashtags for
+     * @return the hashtag counts, in request order
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<StreamHashTagCounter> execute(final List<StreamPopularHashTagsRequest> inRequests)
+    {
+        Date now = new Date();
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(now);
+        calendar.add(Calendar.MINUTE, 0 - popularHashTagWindowInMinutes);
+        Date minActivityTime = calendar.getTime();
+
+        Map<ScopeType, Map<String, StreamHashTagCounter>> countersByTypeAndKey =
+                new HashMap<ScopeType, Map<String, StreamHashTagCounter>>();
+        List<StreamHashTagCounter> results = new ArrayList<StreamHashTagCounter>(inRequests.size());
+        for (StreamPopularHashTagsRequest request : inRequests)
+        {
+            Map<String, StreamHashTagCounter> countersByKey = countersByTypeAndKey.get(request
+                    .getStreamEntityScopeType());
+            if (countersByKey == null)
+            {
+                countersByKey = new HashMap<String, StreamHashTagCounter>();
+                countersByTypeAndKey.put(request.getStreamEntityScopeType(), countersByKey);
+            }
+            StreamHashTagCounter counter = countersByKey.get(request.getStreamEntityUniqueKey());
+            if (counter == null)
+            {
+                counter = new StreamHashTagCounter(popularHashTagWindowInMinutes, maxNumberOfPopularHashTags, now);
+                countersByKey.put(request.getStreamEntityUniqueKey(), counter);
+            }
+            results.add(counter);
+        }
+
+        for (Map.Entry<ScopeType, Map<String, StreamHashTagCounter>> type : countersByTypeAndKey.entrySet())
+        {
+            List<Object[]> rows = getEntityManager().createQuery(
+                    "SELECT streamEntityUniqueKey, hashTag.content, year(activityDate), month(activityDate), "
+                            + "day(activityDate), hour(activityDate), count(*) FROM StreamHashTag "
+                            + "WHERE streamScopeType = :streamScopeType AND activityDate >= :activityDate "
+                            + "AND streamEntityUniqueKey IN (:streamEntityUniqueKeys) "
+                            + "GROUP BY streamEntityUniqueKey, hashTag.content, year(activityDate), "
+                            + "month(activityDate), day(activityDate), hour(activityDate)")
+                    .setParameter("streamScopeType", type.getKey())
+                    .setParameter("activityDate", minActivityTime)
+                    .setParameter("streamEntityUniqueKeys", type.getValue().keySet()).getResultList();
+
+            for (Object[] row : rows)
+            {
+                calendar.clear();
+                calendar.set(((Number) row[2]).intValue(), ((Number) row[3]).intValue() - 1, ((Number) row[4])
+                        .intValue(), ((Number) row[5]).intValue(), 0);
+                type.getValue().get(row[0]).increment((String) row[1], calendar.getTime(),
+                        ((Number) row[6]).intValue());
+            }
+
+            if (log.isDebugEnabled())
+            {
+                log.debug("Loaded " + rows.size() + " hourly hashtag counts for " + type.getValue().size() + " "
+                        + type.getKey() + " streams");
+            }
+        }
+        return results;
+    }
+}
@@ -18,7 +18,8 @@ package org.eurekastreams.server.persistence.mappers.db;
 import java.io.InputStream;
 import java.io.StringWriter;
 
-import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
@@ -46,6 +47,11 @@ public class ThemeCssDbMapper implements DomainMapper<String, String>
      */
     private DomainMapper<String, String> getThemeXmlUrlByUuidDbMapper;
 
+    /**
+     * The compiled XSLT (thread safe, unlike the transformers created from it); compiled on first use.
+     */
+    private volatile Templates xsltTemplates;
+
     /**
      * Constructor.
      * 
@@ -74,20 +80,14 @@ public class ThemeCssDbMapper implements DomainMapper<String, String>
     @Override
     public String execute(final String inRequest)
     {
-        InputStream xsltInputStream = null;
         InputStream xmlInputStream = null;
         try
         {
             // grab theme url from db
             String themeUrl = getThemeXmlUrlByUuidDbMapper.execute(inRequest.toLowerCase());
 
-            // Load the XSLT
-            xsltInputStream = getClass().getResourceAsStream(xsltPath);
-            Source xsltSource = new StreamSource(xsltInputStream);
-
             // Create the transformer
-            TransformerFactory transFactory = TransformerFactory.newInstance();
-            javax.xml.transform.Transformer transformer = transFactory.newTransformer(xsltSource);
+            javax.xml.transform.Transformer transformer = getXsltTemplates().newTransformer();
 
             // Transform theme xml to css string
             StreamResult cssResult = new StreamResult(new StringWriter());
@@ -104,10 +104,6 @@ public class ThemeCssDbMapper implements DomainMapper<String, String>
         {
             try
             {
-                if (xsltInputStream != null)
-                {
-                    xsltInputStream.close();
-                }
                 if (xmlInputStream != null)
                 {
                     xmlInputStream.close();
@@ -120,4 +116,47 @@ public class ThemeCssDbMapper implements DomainMapper<String, String>
 
         }
     }
+
+    /**
+     * Gets the compiled XSLT, compiling it if not done yet.
+     *
+     * @return The compiled XSLT.
+     * @throws TransformerConfigurationException
+     *             If the XSLT cannot be compiled.
+     */
+    private Templates getXsltTemplates() throws TransformerConfigurationException
+    {
+        Templates result = xsltTemplates;
+        if (result == null)
+        {
+            synchronized (this)
+            {
+                result = xsltTemplates;
+                if (result == null)
+                {
+                    InputStream xsltInputStream = getClass().getResourceAsStream(xsltPath);
+                    try
+                    {
+                        result = TransformerFactory.newInstance().newTemplates(new StreamSource(xsltInputStream));
+                    }
+                    finally
+                    {
+                        try
+                        {
+                            if (xsltInputStream != null)
+                            {
+                                xsltInputStream.close();
+                            }
+                        }
+                        catch (Exception e)
+                        {
+                            throw new RuntimeException("Unable to close streams", e);
+                        }
+                    }
+                    xsltTemplates = result;
+                }
+            }
+        }
+        return result;
+    }
 }
@@ -20,6 +20,7 @@ import java.util.HashMap;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
 import org.eurekastreams.server.persistence.mappers.requests.UpdatePersonResponse;
+import org.eurekastreams.server.service.utility.PersonDirectoryDigest;
 
 /**
  * Mapper to update the person in the DB with any additional properties found from ldap or updated last name.
@@ -109,7 +110,16 @@ public class UpdatePersonMapper extends BaseArgDomainMapper<Person, UpdatePerson
             wasPersonUpdated = true;
         }
 
-        if (wasPersonUpdated)
+        // Records what the directory said so the next membership refresh can skip this person if nothing changed.
+        // The digest is not part of the cached person, so it does not count as an update.
+        String digest = PersonDirectoryDigest.compute(ldapPerson);
+        boolean wasDigestUpdated = !digest.equals(dbPerson.getDirectoryDigest());
+        if (wasDigestUpdated)
+        {
+            dbPerson.setDirectoryDigest(digest);
+        }
+
+        if (wasPersonUpdated || wasDigestUpdated)
         {
             getEntityManager().flush();
         }
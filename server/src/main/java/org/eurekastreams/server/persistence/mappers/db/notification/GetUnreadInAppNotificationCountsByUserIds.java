@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db.notification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.domain.UnreadInAppNotificationCountDTO;
+import org.eurekastreams.server.persistence.mappers.ReadMapper;
+
+/**
+ * This mapper queries for the current counts of unread notifications for several users with one grouped query per
+ * chunk of users.
+ */
+public class GetUnreadInAppNotificationCountsByUserIds extends
+        ReadMapper<Collection<Long>, Map<Long, UnreadInAppNotificationCountDTO>>
+{
+    /** Maximum number of users queried per statement. */
+    private final int batchSize;
+
+    /**
+     * Constructor.
+     *
+     * @param inBatchSize
+     *            Maximum number of users queried per statement.
+     */
+    public GetUnreadInAppNotificationCountsByUserIds(final int inBatchSize)
+    {
+        batchSize = inBatchSize;
+    }
+
+    /**
+     * Makes the database call to get unread in-app notification counts.
+     *
+     * @param userIds
+     *            users to get notification counts for.
+     * @return the counts of notifications by user id; every requested user is present.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<Long, UnreadInAppNotificationCountDTO> execute(final Collection<Long> userIds)
+    {
+        Map<Long, UnreadInAppNotificationCountDTO> results = new HashMap<Long, UnreadInAppNotificationCountDTO>();
+        if (userIds.isEmpty())
+        {
+            return results;
+        }
+        for (Long userId : userIds)
+        {
+            results.put(userId, new UnreadInAppNotificationCountDTO(0, 0));
+        }
+
+        String q = "select recipient.id, highPriority, count(id) from InAppNotification "
+                + "where recipient.id in (:userIds) and isRead = false group by recipient.id, highPriority";
+        List<Long> ids = new ArrayList<Long>(results.keySet());
+        for (int start = 0; start < ids.size(); start += batchSize)
+        {
+            List<Object[]> rows = getEntityManager().createQuery(q).setParameter("userIds",
+                    ids.subList(start, Math.min(start + batchSize, ids.size()))).getResultList();
+            for (Object[] row : rows)
+            {
+                UnreadInAppNotificationCountDTO counts = results.get(row[0]);
+                int count = ((Long) row[2]).intValue();
+                if ((Boolean) row[1])
+                {
+                    counts.setHighPriority(count);
+                }
+                else
+                {
+                    counts.setNormalPriority(count);
+                }
+            }
+        }
+        return results;
+    }
+}
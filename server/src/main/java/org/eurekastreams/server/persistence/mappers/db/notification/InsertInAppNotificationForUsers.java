@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Query;
+
+import org.eurekastreams.server.domain.InAppNotificationEntity;
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+
+/**
+ * Inserts copies of an in-app notification for a set of users, a chunk of users per statement.
+ */
+public class InsertInAppNotificationForUsers extends
+        BaseArgDomainMapper<InsertInAppNotificationForUsersRequest, Integer>
+{
+    /** Maximum number of recipients inserted per statement. */
+    private final int batchSize;
+
+    /**
+     * Constructor.
+     *
+     * @param inBatchSize
+     *            Maximum number of recipients inserted per statement.
+     */
+    public InsertInAppNotificationForUsers(final int inBatchSize)
+    {
+        batchSize = inBatchSize;
+    }
+
+    /**
+     * Inserts the notification for each recipient that exists.
+     *
+     * @param inRequest
+     *            The notification and recipients.
+     * @return Number of notifications inserted.
+     */
+    @Override
+    public Integer execute(final InsertInAppNotificationForUsersRequest inRequest)
+    {
+        List<Long> recipientIds = new ArrayList<Long>(inRequest.getRecipientIds());
+        if (recipientIds.isEmpty())
+        {
+            return 0;
+        }
+
+        // insert the notification into the DB as a template, without a recipient
+        InAppNotificationEntity dbNotif = new InAppNotificationEntity(inRequest.getNotification());
+        dbNotif.setRecipient(null);
+        getEntityManager().persist(dbNotif);
+
+        // use bulk inserts to duplicate it for the recipients
+        String q = "insert into InAppNotification (recipient, notificationType, notificationDate, message, url, "
+                + "highPriority, isRead, sourceType, sourceUniqueId, sourceName, avatarOwnerType, "
+                + "avatarOwnerUniqueId) "
+                + "select p, n.notificationType, n.notificationDate, n.message, n.url, n.highPriority, n.isRead, "
+                + "n.sourceType, n.sourceUniqueId, n.sourceName, n.avatarOwnerType, n.avatarOwnerUniqueId "
+                + "from Person p, InAppNotification n where n.id = :id and p.id in (:recipientIds)";
+        int count = 0;
+        for (int start = 0; start < recipientIds.size(); start += batchSize)
+        {
+            Query query = getEntityManager().createQuery(q).setParameter("id", dbNotif.getId()).setParameter(
+                    "recipientIds", recipientIds.subList(start, Math.min(start + batchSize, recipientIds.size())));
+            count += query.executeUpdate();
+        }
+
+        // delete the template notification
+        getEntityManager().remove(dbNotif);
+
+        return count;
+    }
+}
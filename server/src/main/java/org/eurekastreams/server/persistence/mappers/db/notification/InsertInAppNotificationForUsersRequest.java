@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db.notification;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+import org.eurekastreams.server.domain.InAppNotificationEntity;
+
+/**
+ * Request to insert copies of an in-app notification for a set of recipients.
+ */
+public class InsertInAppNotificationForUsersRequest implements Serializable
+{
+    /** Fingerprint. */
+    private static final long serialVersionUID = -2386025151742350874L;
+
+    /** The notification to copy; its recipient is ignored. */
+    private InAppNotificationEntity notification;
+
+    /** Ids of the recipients. */
+    private Collection<Long> recipientIds;
+
+    /**
+     * Constructor.
+     *
+     * @param inNotification
+     *            The notification to copy; its recipient is ignored.
+     * @param inRecipientIds
+     *            Ids of the recipients.
+     */
+    public InsertInAppNotificationForUsersRequest(final InAppNotificationEntity inNotification,
+            final Collection<Long> inRecipientIds)
+    {
+        notification = inNotification;
+        recipientIds = inRecipientIds;
+    }
+
+    /**
+     * @return the notification
+     */
+    public InAppNotificationEntity getNotification()
+    {
+        return notification;
+    }
+
+    /**
+     * @return the recipientIds
+     */
+    public Collection<Long> getRecipientIds()
+    {
+        return recipientIds;
+    }
+}
@@ -15,6 +15,9 @@
  */
 package org.eurekastreams.server.persistence.mappers.ldap;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.naming.directory.SearchControls;
 
 import org.apache.commons.logging.Log;
@@ -56,4 +59,23 @@ public class DefaultLdapSearchStrategy implements LdapSearchStrategy
             logger.trace("Completed direct search of ldap with " + inHandler.getList().size() + " results.");
         }
     }
+
+    /**
+     * {@inheritDoc}.
+     *
+     * Without paging the whole result set is delivered as a single page.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int searchLdap(final LdapTemplate inLdapTemplate, final String inEncodedFilter,
+            final SearchControls inSearchControls, final CollectingNameClassPairCallbackHandler inHandler,
+            final PageHandler<Object> inPageHandler)
+    {
+        searchLdap(inLdapTemplate, inEncodedFilter, inSearchControls, inHandler);
+
+        List<Object> page = new ArrayList<Object>(inHandler.getList());
+        inHandler.getList().clear();
+        inPageHandler.handlePage(page);
+        return page.size();
+    }
 }
@@ -131,4 +131,53 @@ public class LdapLookup<Type> implements DomainMapper<LdapLookupRequest, List<Ty
         return results;
     }
 
+    /**
+     * Execute an ldap query like {@link #execute(LdapLookupRequest)}, but pass the results to a handler a page at a
+     * time instead of returning them all at once. Whether results arrive in one page or several depends on the
+     * configured {@link LdapSearchStrategy}.
+     * 
+     * @param inRequest
+     *            {@link LdapLookupRequest}.
+     * @param inPageHandler
+     *            Receives each page of (non-null) results.
+     * @return Number of results found.
+     */
+    public int execute(final LdapLookupRequest inRequest, final PageHandler<Type> inPageHandler)
+    {
+        LdapTemplate template = ldapTemplateRetriever.getLdapTemplate(inRequest);
+
+        SearchControls searchControls = new SearchControls();
+        searchControls.setCountLimit(inRequest.getSearchUpperBound());
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+
+        AbstractFilter abstractFilter = filterCreator.getFilter(inRequest.getQueryString());
+        CollectingNameClassPairCallbackHandler collectingHandler = handlerFactory.getCallbackHandler();
+
+        final int[] count = new int[1];
+        ldapSearchStrategy.searchLdap(template, abstractFilter.encode(), searchControls, collectingHandler,
+                new PageHandler<Object>()
+                {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public void handlePage(final List<Object> inPage)
+                    {
+                        // Pages contain nulls if the context/attribute mappers were unable to create objects.
+                        List<Type> results = new ArrayList<Type>(inPage.size());
+                        for (Object o : inPage)
+                        {
+                            if (o != null)
+                            {
+                                results.add((Type) o);
+                            }
+                        }
+                        count[0] += results.size();
+                        if (!results.isEmpty())
+                        {
+                            inPageHandler.handlePage(results);
+                        }
+                    }
+                });
+
+        return count[0];
+    }
 }
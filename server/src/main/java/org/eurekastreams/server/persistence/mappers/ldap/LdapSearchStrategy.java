@@ -42,4 +42,23 @@ public interface LdapSearchStrategy
      */
     void searchLdap(LdapTemplate inLdapTemplate, String inEncodedFilter, SearchControls inSearchControls,
             CollectingNameClassPairCallbackHandler inHandler);
+
+    /**
+     * Searches ldap, passing the results to a {@link PageHandler} as they are retrieved instead of accumulating them
+     * all in the {@link CollectingNameClassPairCallbackHandler}.
+     *
+     * @param inLdapTemplate
+     *            - provides the ldap search functionality from within spring.
+     * @param inEncodedFilter
+     *            - encoded string based filter used to search ldap.
+     * @param inSearchControls
+     *            - controls on how the search is performed.
+     * @param inHandler
+     *            - strategy for collecting results and converting them to a domain object; emptied after each page.
+     * @param inPageHandler
+     *            - receives each page of results (which may contain nulls for entries that could not be converted).
+     * @return the number of results retrieved.
+     */
+    int searchLdap(LdapTemplate inLdapTemplate, String inEncodedFilter, SearchControls inSearchControls,
+            CollectingNameClassPairCallbackHandler inHandler, PageHandler<Object> inPageHandler);
 }
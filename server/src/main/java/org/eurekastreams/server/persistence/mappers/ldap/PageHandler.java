@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.ldap;
+
+import java.util.List;
+
+/**
+ * Receives the results of a search a page at a time, so that large directories do not have to be held in memory.
+ * 
+ * @param <Type>
+ *            Type of the results.
+ */
+public interface PageHandler<Type>
+{
+    /**
+     * Handles one page of results.
+     * 
+     * @param inPage
+     *            The results in the page; the list is not used again by the caller.
+     */
+    void handlePage(List<Type> inPage);
+}
@@ -15,6 +15,9 @@
  */
 package org.eurekastreams.server.persistence.mappers.ldap;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.naming.directory.SearchControls;
 
 import org.apache.commons.logging.Log;
@@ -102,4 +105,42 @@ public class PagedLdapSearchStrategy implements LdapSearchStrategy
             logger.trace("Paged ldap search complete with " + inHandler.getList().size() + " results retrieved");
         }
     }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Each page is handed off as soon as it is retrieved, so only one page of results is held at a time.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int searchLdap(final LdapTemplate inLdapTemplate, final String inEncodedFilter,
+            final SearchControls inSearchControls, final CollectingNameClassPairCallbackHandler inHandler,
+            final PageHandler<Object> inPageHandler)
+    {
+        PagedResultsDirContextProcessor pager = new PagedResultsDirContextProcessor(resultsPerPage);
+        int count = 0;
+        int pages = 0;
+
+        do
+        {
+            inLdapTemplate.search("", inEncodedFilter, inSearchControls, inHandler, pager);
+
+            List<Object> page = new ArrayList<Object>(inHandler.getList());
+            inHandler.getList().clear();
+            count += page.size();
+            pages++;
+            inPageHandler.handlePage(page);
+
+            pager = new PagedResultsDirContextProcessor(resultsPerPage, pager.getCookie());
+        }
+        while (pager.getCookie() != null && pager.getCookie().getCookie() != null
+                && count < inSearchControls.getCountLimit());
+
+        if (logger.isTraceEnabled())
+        {
+            logger.trace("Paged ldap search complete with " + count + " results retrieved in " + pages
+                    + " pages.  Filter: " + inEncodedFilter);
+        }
+        return count;
+    }
 }
@@ -16,13 +16,15 @@
 package org.eurekastreams.server.persistence.mappers.stream;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.hibernate.ModelViewResultTransformer;
+import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.server.domain.EntityType;
 import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.ActivityDTO;
@@ -39,15 +41,16 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
 /**
- * Gets a list of ActivityDTO objects for a given list of activity ids.
+ * Gets a list of ActivityDTO objects for a given list of activity ids. The people, groups and comments referenced by
+ * the activities are each loaded with a single bulk call for the whole list rather than per activity.
  */
 public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List<ActivityDTO>> implements
         DomainMapper<List<Long>, List<ActivityDTO>>
 {
     /**
-     * Mapper to get PersonModelView by account id.
+     * Logger.
      */
-    private final DomainMapper<String, PersonModelView> getPersonModelViewByAccountIdMapper;
+    private final Log log = LogFactory.make();
 
     /**
      * Mapper to get PersonModelViews by account ids.
@@ -60,9 +63,9 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
     private final GetDomainGroupsByShortNames groupMapper;
 
     /**
-     * DAO for comment id list.
+     * DAO for comment id lists, keyed by activity id.
      */
-    private final DomainMapper<Long, List<Long>> commentIdListDAO;
+    private final DomainMapper<List<Long>, Map<Long, List<Long>>> commentIdListsDAO;
 
     /**
      * DAO for comments by id.
@@ -70,26 +73,24 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
     private final DomainMapper<List<Long>, List<CommentDTO>> commentsByIdDAO;
 
     /**
-     * @param inGetPersonModelViewByAccountIdMapper
-     *            Mapper to get single PersonModelView by account id.
      * @param inGetPersonModelViewsByAccountIdsMapper
      *            Mapper to get multiple PersonModelViews by account ids.
      * @param inGroupMapper
      *            mapper to get domain groups by short name
-     * @param inCommentIdListDAO
-     *            comment ID list DAO.
+     * @param inCommentIdListsDAO
+     *            DAO for the comment ID lists of several activities.
      * @param inCommentsByIdDAO
      *            comments by ID DAO.
      */
-    public BulkActivitiesDbMapper(final DomainMapper<String, PersonModelView> inGetPersonModelViewByAccountIdMapper,
+    public BulkActivitiesDbMapper(
             final DomainMapper<List<String>, List<PersonModelView>> inGetPersonModelViewsByAccountIdsMapper,
-            final GetDomainGroupsByShortNames inGroupMapper, final DomainMapper<Long, List<Long>> inCommentIdListDAO,
+            final GetDomainGroupsByShortNames inGroupMapper,
+            final DomainMapper<List<Long>, Map<Long, List<Long>>> inCommentIdListsDAO,
             final DomainMapper<List<Long>, List<CommentDTO>> inCommentsByIdDAO)
     {
-        getPersonModelViewByAccountIdMapper = inGetPersonModelViewByAccountIdMapper;
         getPersonModelViewsByAccountIdsMapper = inGetPersonModelViewsByAccountIdsMapper;
         groupMapper = inGroupMapper;
-        commentIdListDAO = inCommentIdListDAO;
+        commentIdListsDAO = inCommentIdListsDAO;
         commentsByIdDAO = inCommentsByIdDAO;
     }
 
@@ -132,91 +133,90 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
         criteria.setProjection(fields);
         criteria.add(Restrictions.in("this.id", activityIds));
 
-        final Map<Long, ActivityDTO> activityMap = new HashMap<Long, ActivityDTO>();
-
         ModelViewResultTransformer<ActivityDTO> resultTransformer = new ModelViewResultTransformer<ActivityDTO>(
                 new ActivityDTOFactory());
         criteria.setResultTransformer(resultTransformer);
         List<ActivityDTO> results = criteria.list();
+
+        // gather everything the page refers to so each kind can be resolved with a single bulk call
+        Set<String> accountIds = new HashSet<String>();
+        Set<String> groupShortNames = new HashSet<String>();
+        List<Long> foundActivityIds = new ArrayList<Long>(results.size());
         for (ActivityDTO activity : results)
         {
-            activityMap.put(activity.getId(), activity);
+            foundActivityIds.add(activity.getId());
+            collectEntityKey(activity.getDestinationStream(), accountIds, groupShortNames);
+            collectEntityKey(activity.getActor(), accountIds, groupShortNames);
+            if (activity.getOriginalActor() != null && activity.getOriginalActor().getType() == EntityType.PERSON)
+            {
+                collectEntityKey(activity.getOriginalActor(), accountIds, groupShortNames);
+            }
+        }
 
-            // fills in data from cached view of stream
-            List<Long> streamIds = new ArrayList<Long>();
-            streamIds.add(activity.getDestinationStream().getId());
+        Map<String, PersonModelView> peopleByAccountId = loadPeople(accountIds);
+        Map<String, DomainGroupModelView> groupsByShortName = loadGroups(groupShortNames);
+        Map<Long, List<Long>> commentIdsByActivityId = foundActivityIds.isEmpty() ? new HashMap<Long, List<Long>>()
+                : commentIdListsDAO.execute(foundActivityIds);
+        Map<Long, CommentDTO> firstLastComments = loadFirstLastComments(commentIdsByActivityId);
 
-            // get the display name for the destination stream
-            if (activity.getDestinationStream().getUniqueIdentifier() != null)
+        final Map<Long, ActivityDTO> activityMap = new HashMap<Long, ActivityDTO>();
+        for (ActivityDTO activity : results)
+        {
+            // get the display name for the destination stream; an activity whose destination is gone (e.g. deleted)
+            // is left off the page rather than failing it
+            final StreamEntityDTO destination = activity.getDestinationStream();
+            if (destination.getUniqueIdentifier() != null)
             {
-                if (activity.getDestinationStream().getType() == EntityType.PERSON)
-                {
-                    PersonModelView person = getPersonModelViewByAccountIdMapper.execute(activity
-                            .getDestinationStream().getUniqueIdentifier());
-                    activity.getDestinationStream().setDisplayName(person.getDisplayName());
-
-                }
-                else if (activity.getDestinationStream().getType() == EntityType.GROUP)
+                String key = destination.getUniqueIdentifier().toLowerCase();
+                boolean found = true;
+                if (destination.getType() == EntityType.PERSON)
                 {
-                    DomainGroupModelView group = groupMapper.fetchUniqueResult(activity.getDestinationStream()
-                            .getUniqueIdentifier());
-                    activity.getDestinationStream().setDisplayName(group.getName());
+                    PersonModelView person = peopleByAccountId.get(key);
+                    found = person != null;
+                    if (found)
+                    {
+                        destination.setDisplayName(person.getDisplayName());
+                    }
                 }
-            }
-
-            final StreamEntityDTO actor = activity.getActor();
-            if (actor.getType() == EntityType.PERSON)
-            {
-                List<PersonModelView> people = getPersonModelViewsByAccountIdsMapper.execute(Collections
-                        .singletonList(actor.getUniqueIdentifier()));
-                if (!people.isEmpty())
+                else if (destination.getType() == EntityType.GROUP)
                 {
-                    final PersonModelView person = people.get(0);
-                    actor.setId(person.getEntityId());
-                    actor.setDestinationEntityId(person.getEntityId());
-                    actor.setDisplayName(person.getDisplayName());
-                    actor.setAvatarId(person.getAvatarId());
+                    DomainGroupModelView group = groupsByShortName.get(key);
+                    found = group != null;
+                    if (found)
+                    {
+                        destination.setDisplayName(group.getName());
+                    }
                 }
-            }
-            else if (actor.getType() == EntityType.GROUP)
-            {
-                List<DomainGroupModelView> groups = groupMapper.execute(Collections.singletonList(actor
-                        .getUniqueIdentifier()));
-                if (!groups.isEmpty())
+                if (!found)
                 {
-                    final DomainGroupModelView group = groups.get(0);
-                    actor.setId(group.getEntityId());
-                    actor.setDestinationEntityId(group.getEntityId());
-                    actor.setDisplayName(group.getName());
-                    actor.setAvatarId(group.getAvatarId());
+                    log.warn("Skipping activity " + activity.getId() + ": could not find destination "
+                            + destination.getType() + " " + destination.getUniqueIdentifier());
+                    continue;
                 }
             }
+            activityMap.put(activity.getId(), activity);
+
+            populateEntity(activity.getActor(), peopleByAccountId, groupsByShortName);
+
             // fills in data from cached view of original actor
             final StreamEntityDTO originalActor = activity.getOriginalActor();
             if (originalActor != null && originalActor.getType() == EntityType.PERSON)
             {
-                List<PersonModelView> people = getPersonModelViewsByAccountIdsMapper.execute(Collections
-                        .singletonList(originalActor.getUniqueIdentifier()));
-                if (!people.isEmpty())
-                {
-                    final PersonModelView person = people.get(0);
-                    originalActor.setId(person.getEntityId());
-                    originalActor.setDestinationEntityId(person.getEntityId());
-                    originalActor.setDisplayName(person.getDisplayName());
-                    originalActor.setAvatarId(person.getAvatarId());
-                }
+                populateEntity(originalActor, peopleByAccountId, groupsByShortName);
             }
 
-            loadCommentInfo(activity); // set the first/last comment and comment count.
+            // set the first/last comment and comment count.
+            loadCommentInfo(activity, commentIdsByActivityId.get(activity.getId()), firstLastComments);
         }
 
-        final List<ActivityDTO> orderedResults = new LinkedList<ActivityDTO>();
+        final List<ActivityDTO> orderedResults = new ArrayList<ActivityDTO>(activityMap.size());
 
-        for (int i = 0; i < activityIds.size(); i++)
+        for (Long activityId : activityIds)
         {
-            if (activityMap.containsKey(activityIds.get(i)))
+            ActivityDTO activity = activityMap.get(activityId);
+            if (activity != null)
             {
-                orderedResults.add(activityMap.get(activityIds.get(i)));
+                orderedResults.add(activity);
             }
         }
 
@@ -224,15 +224,162 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
     }
 
     /**
-     * Load the first/last comments of an activity if present, also sets the comment count.
+     * Adds the key of a person or group stream entity to the appropriate set of keys to load.
+     *
+     * @param entity
+     *            the stream entity.
+     * @param accountIds
+     *            set of person account ids to load.
+     * @param groupShortNames
+     *            set of group short names to load.
+     */
+    private void collectEntityKey(final StreamEntityDTO entity, final Set<String> accountIds,
+            final Set<String> groupShortNames)
+    {
+        if (entity == null || entity.getUniqueIdentifier() == null)
+        {
+            return;
+        }
+        if (entity.getType() == EntityType.PERSON)
+        {
+            accountIds.add(entity.getUniqueIdentifier().toLowerCase());
+        }
+        else if (entity.getType() == EntityType.GROUP)
+        {
+            groupShortNames.add(entity.getUniqueIdentifier().toLowerCase());
+        }
+    }
+
+    /**
+     * Loads all the people referenced by the page with one mapper call.
+     *
+     * @param accountIds
+     *            the (lower-cased) account ids.
+     * @return people keyed by lower-cased account id.
+     */
+    private Map<String, PersonModelView> loadPeople(final Set<String> accountIds)
+    {
+        Map<String, PersonModelView> people = new HashMap<String, PersonModelView>();
+        if (!accountIds.isEmpty())
+        {
+            for (PersonModelView person : getPersonModelViewsByAccountIdsMapper.execute(new ArrayList<String>(
+                    accountIds)))
+            {
+                people.put(person.getAccountId().toLowerCase(), person);
+            }
+        }
+        return people;
+    }
+
+    /**
+     * Loads all the groups referenced by the page with one mapper call.
+     *
+     * @param shortNames
+     *            the (lower-cased) group short names.
+     * @return groups keyed by lower-cased short name.
+     */
+    private Map<String, DomainGroupModelView> loadGroups(final Set<String> shortNames)
+    {
+        Map<String, DomainGroupModelView> groups = new HashMap<String, DomainGroupModelView>();
+        if (!shortNames.isEmpty())
+        {
+            for (DomainGroupModelView group : groupMapper.execute(new ArrayList<String>(shortNames)))
+            {
+                groups.put(group.getShortName().toLowerCase(), group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Fills in the id, display name and avatar of an actor from the preloaded people and groups.
+     *
+     * @param entity
+     *            the actor to populate.
+     * @param peopleByAccountId
+     *            preloaded people.
+     * @param groupsByShortName
+     *            preloaded groups.
+     */
+    private void populateEntity(final StreamEntityDTO entity, final Map<String, PersonModelView> peopleByAccountId,
+            final Map<String, DomainGroupModelView> groupsByShortName)
+    {
+        if (entity.getUniqueIdentifier() == null)
+        {
+            return;
+        }
+        String key = entity.getUniqueIdentifier().toLowerCase();
+        if (entity.getType() == EntityType.PERSON)
+        {
+            final PersonModelView person = peopleByAccountId.get(key);
+            if (person != null)
+            {
+                entity.setId(person.getEntityId());
+                entity.setDestinationEntityId(person.getEntityId());
+                entity.setDisplayName(person.getDisplayName());
+                entity.setAvatarId(person.getAvatarId());
+            }
+        }
+        else if (entity.getType() == EntityType.GROUP)
+        {
+            final DomainGroupModelView group = groupsByShortName.get(key);
+            if (group != null)
+            {
+                entity.setId(group.getEntityId());
+                entity.setDestinationEntityId(group.getEntityId());
+                entity.setDisplayName(group.getName());
+                entity.setAvatarId(group.getAvatarId());
+            }
+        }
+    }
+
+    /**
+     * Loads the first and last comments of every activity on the page with one mapper call.
+     *
+     * @param commentIdsByActivityId
+     *            the ordered comment ids of each activity.
+     * @return the first/last comments keyed by comment id.
+     */
+    private Map<Long, CommentDTO> loadFirstLastComments(final Map<Long, List<Long>> commentIdsByActivityId)
+    {
+        List<Long> firstLastCommentIds = new ArrayList<Long>();
+        for (List<Long> commentIds : commentIdsByActivityId.values())
+        {
+            if (!commentIds.isEmpty())
+            {
+                firstLastCommentIds.add(commentIds.get(0));
+                if (commentIds.size() > 1)
+                {
+                    firstLastCommentIds.add(commentIds.get(commentIds.size() - 1));
+                }
+            }
+        }
+
+        Map<Long, CommentDTO> comments = new HashMap<Long, CommentDTO>();
+        if (!firstLastCommentIds.isEmpty())
+        {
+            for (CommentDTO comment : commentsByIdDAO.execute(firstLastCommentIds))
+            {
+                comments.put(comment.getId(), comment);
+            }
+        }
+        return comments;
+    }
+
+    /**
+     * Sets the first/last comments of an activity if present, also sets the comment count.
      *
      * @param activity
      *            ActivityDTO to load comment info for.
+     * @param commentIds
+     *            the ordered comment ids of the activity.
+     * @param firstLastComments
+     *            preloaded first/last comments keyed by comment id.
      */
-    private void loadCommentInfo(final ActivityDTO activity)
+    private void loadCommentInfo(final ActivityDTO activity, final List<Long> commentIds,
+            final Map<Long, CommentDTO> firstLastComments)
     {
-        List<Long> commentIds = commentIdListDAO.execute(activity.getId());
-        int numOfComments = commentIds.size();
+        int numOfComments = commentIds == null ? 0 : commentIds.size();
         activity.setCommentCount(numOfComments);
 
         // short circuit if nothing to do.
@@ -241,28 +388,20 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
             return;
         }
 
-        // get the ids for the first and last comments.
-        ArrayList<Long> firstLastCommentIds = new ArrayList<Long>();
-        firstLastCommentIds.add(commentIds.get(0));
-        if (numOfComments > 1)
-        {
-            firstLastCommentIds.add(commentIds.get(commentIds.size() - 1));
-        }
-
-        // get the commentDTOs.
-        List<CommentDTO> firstLastCommentDTOs = commentsByIdDAO.execute(firstLastCommentIds);
+        CommentDTO firstComment = firstLastComments.get(commentIds.get(0));
+        CommentDTO lastComment = numOfComments > 1 ? firstLastComments.get(commentIds.get(numOfComments - 1)) : null;
 
         // make sure we got what we asked for.
-        if (firstLastCommentDTOs.size() != firstLastCommentIds.size())
+        if (firstComment == null || (numOfComments > 1 && lastComment == null))
         {
             throw new RuntimeException("Error loading first/last comments for Activity: " + activity.getId());
         }
 
         // set the commentDTOs in the activity appropriately.
-        activity.setFirstComment(firstLastCommentDTOs.get(0));
-        if (firstLastCommentDTOs.size() > 1)
+        activity.setFirstComment(firstComment);
+        if (lastComment != null)
         {
-            activity.setLastComment(firstLastCommentDTOs.get(1));
+            activity.setLastComment(lastComment);
         }
     }
 }
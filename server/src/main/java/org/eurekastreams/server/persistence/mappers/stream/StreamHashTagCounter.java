@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.stream;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Sliding-window hashtag counts for one stream, kept in hourly buckets along with the running totals over the window
+ * and the current top hashtags, so the popular hashtags can be read without aggregating and updated one hashtag at a
+ * time. Ties are broken by hashtag content, as the database query did. Not thread safe.
+ */
+public class StreamHashTagCounter implements Serializable
+{
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = -3904872125447290616L;
+
+    /**
+     * Minutes in a bucket.
+     */
+    private static final int MINUTES_PER_BUCKET = 60;
+
+    /**
+     * Milliseconds in a bucket.
+     */
+    private static final long BUCKET_MILLIS = MINUTES_PER_BUCKET * 60L * 1000L;
+
+    /**
+     * Number of buckets in the window.
+     */
+    private int windowBuckets;
+
+    /**
+     * Maximum number of top hashtags to keep.
+     */
+    private int maxTopHashTags;
+
+    /**
+     * Index of the newest bucket in the window.
+     */
+    private long newestBucket;
+
+    /**
+     * Hashtag counts by bucket index.
+     */
+    private HashMap<Long, HashMap<String, Integer>> buckets = new HashMap<Long, HashMap<String, Integer>>();
+
+    /**
+     * Hashtag counts over the whole window.
+     */
+    private HashMap<String, Integer> totals = new HashMap<String, Integer>();
+
+    /**
+     * The top hashtags, most popular first.
+     */
+    private ArrayList<String> topHashTags = new ArrayList<String>();
+
+    /**
+     * When the counts were loaded from the database.
+     */
+    private Date seedDate;
+
+    /**
+     * Constructor for serialization.
+     */
+    @SuppressWarnings("unused")
+    private StreamHashTagCounter()
+    {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inWindowInMinutes
+     *            length of the window in minutes; rounded up to whole hours.
+     * @param inMaxTopHashTags
+     *            maximum number of top hashtags to keep.
+     * @param inNow
+     *            the current time, which becomes the seed date and the end of the window.
+     */
+    public StreamHashTagCounter(final int inWindowInMinutes, final int inMaxTopHashTags, final Date inNow)
+    {
+        windowBuckets = Math.max(1, (inWindowInMinutes + MINUTES_PER_BUCKET - 1) / MINUTES_PER_BUCKET);
+        maxTopHashTags = inMaxTopHashTags;
+        seedDate = inNow;
+        newestBucket = bucketOf(inNow);
+    }
+
+    /**
+     * Counts a use of a hashtag.
+     *
+     * @param inHashTag
+     *            the hashtag content.
+     * @param inActivityDate
+     *            when the activity using it was posted; uses older than the window are ignored.
+     */
+    public void increment(final String inHashTag, final Date inActivityDate)
+    {
+        increment(inHashTag, inActivityDate, 1);
+    }
+
+    /**
+     * Counts several uses of a hashtag made within the same hour.
+     *
+     * @param inHashTag
+     *            the hashtag content.
+     * @param inActivityDate
+     *            when the activities using it were posted; uses older than the window are ignored.
+     * @param inCount
+     *            the number of uses.
+     */
+    public void increment(final String inHashTag, final Date inActivityDate, final int inCount)
+    {
+        long bucket = bucketOf(inActivityDate);
+        if (bucket > newestBucket)
+        {
+            advanceTo(inActivityDate);
+        }
+        else if (bucket <= newestBucket - windowBuckets)
+        {
+            return;
+        }
+
+        HashMap<String, Integer> bucketCounts = buckets.get(bucket);
+        if (bucketCounts == null)
+        {
+            bucketCounts = new HashMap<String, Integer>();
+            buckets.put(bucket, bucketCounts);
+        }
+        bucketCounts.put(inHashTag, countOf(bucketCounts, inHashTag) + inCount);
+        totals.put(inHashTag, countOf(totals, inHashTag) + inCount);
+
+        promote(inHashTag);
+    }
+
+    /**
+     * Moves the end of the window up to the given time, dropping the counts of buckets that fall out of it.
+     *
+     * @param inNow
+     *            the current time.
+     */
+    public void advanceTo(final Date inNow)
+    {
+        long bucket = bucketOf(inNow);
+        if (bucket <= newestBucket)
+        {
+            return;
+        }
+        newestBucket = bucket;
+
+        boolean dropped = false;
+        for (Iterator<Map.Entry<Long, HashMap<String, Integer>>> iter = buckets.entrySet().iterator(); iter
+                .hasNext();)
+        {
+            Map.Entry<Long, HashMap<String, Integer>> entry = iter.next();
+            if (entry.getKey() <= newestBucket - windowBuckets)
+            {
+                for (Map.Entry<String, Integer> count : entry.getValue().entrySet())
+                {
+                    int remaining = countOf(totals, count.getKey()) - count.getValue();
+                    if (remaining > 0)
+                    {
+                        totals.put(count.getKey(), remaining);
+                    }
+                    else
+                    {
+                        totals.remove(count.getKey());
+                    }
+                }
+                iter.remove();
+                dropped = true;
+            }
+        }
+        if (dropped)
+        {
+            rebuildTopHashTags();
+        }
+    }
+
+    /**
+     * @return the top hashtags, most popular first.
+     */
+    public List<String> getTopHashTags()
+    {
+        return new ArrayList<String>(topHashTags);
+    }
+
+    /**
+     * @return when the counts were loaded from the database.
+     */
+    public Date getSeedDate()
+    {
+        return seedDate;
+    }
+
+    /**
+     * Moves a hashtag whose count just went up into its place in the top hashtags.
+     *
+     * @param inHashTag
+     *            the hashtag.
+     */
+    private void promote(final String inHashTag)
+    {
+        int index = topHashTags.indexOf(inHashTag);
+        if (index < 0)
+        {
+            if (topHashTags.size() < maxTopHashTags)
+            {
+                topHashTags.add(inHashTag);
+                index = topHashTags.size() - 1;
+            }
+            else if (maxTopHashTags > 0 && ranksAbove(inHashTag, topHashTags.get(maxTopHashTags - 1)))
+            {
+                index = maxTopHashTags - 1;
+                topHashTags.set(index, inHashTag);
+            }
+            else
+            {
+                return;
+            }
+        }
+        while (index > 0 && ranksAbove(inHashTag, topHashTags.get(index - 1)))
+        {
+            Collections.swap(topHashTags, index, index - 1);
+            index--;
+        }
+    }
+
+    /**
+     * Recomputes the top hashtags from the totals with a bounded heap.
+     */
+    private void rebuildTopHashTags()
+    {
+        topHashTags.clear();
+        if (maxTopHashTags <= 0)
+        {
+            return;
+        }
+
+        // min-heap on rank: the head is the weakest of the best seen so far
+        PriorityQueue<String> heap = new PriorityQueue<String>(maxTopHashTags, new Comparator<String>()
+        {
+            public int compare(final String inA, final String inB)
+            {
+                if (inA.equals(inB))
+                {
+                    return 0;
+                }
+                return ranksAbove(inA, inB) ? 1 : -1;
+            }
+        });
+        for (String hashTag : totals.keySet())
+        {
+            if (heap.size() < maxTopHashTags)
+            {
+                heap.add(hashTag);
+            }
+            else if (ranksAbove(hashTag, heap.peek()))
+            {
+                heap.poll();
+                heap.add(hashTag);
+            }
+        }
+        while (!heap.isEmpty())
+        {
+            topHashTags.add(heap.poll());
+        }
+        Collections.reverse(topHashTags);
+    }
+
+    /**
+     * Checks whether one hashtag ranks above another: higher count first, then content ascending.
+     *
+     * @param inA
+     *            a hashtag.
+     * @param inB
+     *            another hashtag.
+     * @return true if inA ranks above inB.
+     */
+    private boolean ranksAbove(final String inA, final String inB)
+    {
+        int countA = countOf(totals, inA);
+        int countB = countOf(totals, inB);
+        return countA != countB ? countA > countB : inA.compareTo(inB) < 0;
+    }
+
+    /**
+     * Gets a count from a map of counts.
+     *
+     * @param inCounts
+     *            the counts.
+     * @param inHashTag
+     *            the hashtag.
+     * @return the count, 0 if absent.
+     */
+    private static int countOf(final Map<String, Integer> inCounts, final String inHashTag)
+    {
+        Integer count = inCounts.get(inHashTag);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Gets the bucket index of a time.
+     *
+     * @param inDate
+     *            the time.
+     * @return the bucket index.
+     */
+    private static long bucketOf(final Date inDate)
+    {
+        return inDate.getTime() / BUCKET_MILLIS;
+    }
+}
@@ -20,9 +20,13 @@ import java.awt.image.RenderedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -32,6 +36,8 @@ import org.eurekastreams.server.persistence.mappers.UpdateMapper;
 import org.eurekastreams.server.persistence.mappers.db.DeleteImage;
 import org.eurekastreams.server.persistence.mappers.db.GetImageByIdentifier;
 import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Writes and reads (misnomer?) to the disk for images. Could be interfaced and replaced with something that reads and
@@ -40,6 +46,21 @@ import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
  */
 public class ImageWriter
 {
+    /**
+     * The signature every PNG file starts with.
+     */
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    /**
+     * Milliseconds per second.
+     */
+    private static final long MILLISECONDS_PER_SECOND = 1000L;
+
+    /**
+     * Load factor of the stored image cache.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
     /**
      * The logger.
      */
@@ -62,6 +83,37 @@ public class ImageWriter
      */
     private GetImageByIdentifier getMapper;
 
+    /**
+     * Stored images by identifier, least recently used first; null if not caching.
+     */
+    private final Map<String, CachedImage> storedImages;
+
+    /**
+     * Maximum number of stored images kept in memory.
+     */
+    private final int maxCachedImages;
+
+    /**
+     * Maximum total size (in bytes) of the stored images kept in memory.
+     */
+    private final long maxCachedBytes;
+
+    /**
+     * Total size (in bytes) of the stored images in memory.
+     */
+    private long cachedBytes = 0;
+
+    /**
+     * How long (in milliseconds) a cached stored image is served before it is reloaded. Bounds how long an image
+     * changed by another server can be served stale.
+     */
+    private final long timeToLive;
+
+    /**
+     * Number of cache invalidations; lets a load which raced a change avoid caching what it read.
+     */
+    private long invalidationCount = 0;
+
     /**
      * Constructor.
      * @param inInsertMapper insert mapper.
@@ -71,11 +123,33 @@ public class ImageWriter
      */
     public ImageWriter(final InsertMapper<Image> inInsertMapper, final UpdateMapper<Image> inUpdateMapper,
             final DeleteImage inDeleteMapper, final GetImageByIdentifier inGetMapper)
+    {
+        this(inInsertMapper, inUpdateMapper, inDeleteMapper, inGetMapper, 0, 0L, 0L);
+    }
+
+    /**
+     * Constructor.
+     * @param inInsertMapper insert mapper.
+     * @param inUpdateMapper update mapper.
+     * @param inDeleteMapper delete mapper.
+     * @param inGetMapper get mapper.
+     * @param inMaxCachedImages maximum number of stored images kept in memory (0 to not cache).
+     * @param inMaxCachedBytes maximum total size (in bytes) of the stored images kept in memory.
+     * @param inTimeToLive how long (in milliseconds) a cached stored image is served before it is reloaded.
+     */
+    public ImageWriter(final InsertMapper<Image> inInsertMapper, final UpdateMapper<Image> inUpdateMapper,
+            final DeleteImage inDeleteMapper, final GetImageByIdentifier inGetMapper, final int inMaxCachedImages,
+            final long inMaxCachedBytes, final long inTimeToLive)
     {
         insertMapper = inInsertMapper;
         updateMapper = inUpdateMapper;
         deleteMapper = inDeleteMapper;
         getMapper = inGetMapper;
+        timeToLive = inTimeToLive;
+        maxCachedImages = inMaxCachedImages;
+        maxCachedBytes = inMaxCachedBytes;
+        storedImages = inMaxCachedImages > 0 && inMaxCachedBytes > 0 ? new LinkedHashMap<String, CachedImage>(
+                inMaxCachedImages, LOAD_FACTOR, true) : null;
     }
 
     /**
@@ -105,6 +179,7 @@ public class ImageWriter
                 imageInDb.setImageBlob(baos.toByteArray());
                 updateMapper.execute(new PersistenceRequest<Image>(imageInDb));
             }
+            forget(identifier);
         }
         catch (Exception ex)
         {
@@ -135,6 +210,7 @@ public class ImageWriter
             imageInDb.setImageBlob(fileItem.get());
             updateMapper.execute(new PersistenceRequest<Image>(imageInDb));
         }
+        forget(identifier);
 
     }
 
@@ -147,6 +223,7 @@ public class ImageWriter
     public void delete(final String identifier)
     {
         deleteMapper.execute(identifier);
+        forget(identifier);
     }
 
     /**
@@ -162,6 +239,8 @@ public class ImageWriter
         Image image = getMapper.execute(orig);
         image.setImageIdentifier(newIdentifier);
         updateMapper.execute(new PersistenceRequest<Image>(image));
+        forget(orig);
+        forget(newIdentifier);
     }
 
     /**
@@ -188,6 +267,206 @@ public class ImageWriter
         }
     }
 
+    /**
+     * Reads a stored image as PNG bytes without decoding it (unless it was stored in another format), using the stored
+     * image cache if enabled.
+     *
+     * @param identifier
+     *            the path to read from.
+     * @return the stored image, null if not found or unreadable.
+     */
+    public StoredImage readStoredImage(final String identifier)
+    {
+        if (storedImages == null)
+        {
+            return loadStoredImage(identifier, null);
+        }
+
+        CachedImage cached;
+        long startingInvalidationCount;
+        synchronized (storedImages)
+        {
+            cached = storedImages.get(identifier);
+            startingInvalidationCount = invalidationCount;
+        }
+        if (cached != null && cached.getExpiration() > System.currentTimeMillis())
+        {
+            return cached.getImage();
+        }
+
+        StoredImage image = loadStoredImage(identifier, cached == null ? null : cached.getImage());
+        synchronized (storedImages)
+        {
+            if (image == null)
+            {
+                uncache(identifier);
+            }
+            else if (invalidationCount == startingInvalidationCount)
+            {
+                cache(identifier, new CachedImage(image, System.currentTimeMillis() + timeToLive));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Adds an image to the stored image cache, evicting the least recently used images until the cache is within its
+     * limits. Must be called while holding the cache's lock.
+     *
+     * @param identifier
+     *            the path of the image.
+     * @param entry
+     *            the cache entry.
+     */
+    private void cache(final String identifier, final CachedImage entry)
+    {
+        uncache(identifier);
+        long size = entry.getImage().getBytes().length;
+        if (size > maxCachedBytes)
+        {
+            return;
+        }
+        storedImages.put(identifier, entry);
+        cachedBytes += size;
+
+        Iterator<CachedImage> eldest = storedImages.values().iterator();
+        while (storedImages.size() > maxCachedImages || cachedBytes > maxCachedBytes)
+        {
+            cachedBytes -= eldest.next().getImage().getBytes().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes an image from the stored image cache. Must be called while holding the cache's lock.
+     *
+     * @param identifier
+     *            the path of the image.
+     */
+    private void uncache(final String identifier)
+    {
+        CachedImage removed = storedImages.remove(identifier);
+        if (removed != null)
+        {
+            cachedBytes -= removed.getImage().getBytes().length;
+        }
+    }
+
+    /**
+     * Loads a stored image from the database.
+     *
+     * @param identifier
+     *            the path to read from.
+     * @param previous
+     *            the previously loaded version of the image (if any), reused if the bytes are unchanged.
+     * @return the stored image, null if not found or unreadable.
+     */
+    private StoredImage loadStoredImage(final String identifier, final StoredImage previous)
+    {
+        try
+        {
+            Image image = getMapper.execute(identifier);
+            if (image == null || image.getImageBlob() == null)
+            {
+                return null;
+            }
+
+            byte[] bytes = image.getImageBlob();
+            if (!isPng(bytes))
+            {
+                // uploaded files are stored as received; convert once so they are served the same as the others
+                RenderedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes));
+                if (decoded == null)
+                {
+                    log.error("Unrecognized image format: " + identifier);
+                    return null;
+                }
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ImageIO.write(decoded, "png", baos);
+                bytes = baos.toByteArray();
+            }
+
+            String etag = "\"" + DigestUtils.md5Hex(bytes) + "\"";
+            if (previous != null && previous.getEtag().equals(etag))
+            {
+                return previous;
+            }
+            long now = System.currentTimeMillis();
+            return new StoredImage(bytes, etag, now - now % MILLISECONDS_PER_SECOND);
+        }
+        catch (Exception ex)
+        {
+            log.error("Error reading file from disk: " + identifier, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if image bytes are PNG encoded.
+     *
+     * @param bytes
+     *            the image bytes.
+     * @return if the bytes start with the PNG signature.
+     */
+    private static boolean isPng(final byte[] bytes)
+    {
+        if (bytes.length < PNG_SIGNATURE.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < PNG_SIGNATURE.length; i++)
+        {
+            if (bytes[i] != PNG_SIGNATURE[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops an image from the stored image cache. When called within a transaction, the image is dropped again once
+     * the transaction completes, so a load which read the old image after the first drop (but before the commit) is
+     * not left serving it.
+     *
+     * @param identifier
+     *            the path of the image.
+     */
+    private void forget(final String identifier)
+    {
+        if (storedImages == null)
+        {
+            return;
+        }
+        invalidate(identifier);
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCompletion(final int inStatus)
+                {
+                    invalidate(identifier);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes an image from the stored image cache and prevents in-progress loads from caching what they read.
+     *
+     * @param identifier
+     *            the path of the image.
+     */
+    private void invalidate(final String identifier)
+    {
+        synchronized (storedImages)
+        {
+            uncache(identifier);
+            invalidationCount++;
+        }
+    }
+
     /**
      * Get an Image from a File.
      * @param file the file.
@@ -199,4 +478,50 @@ public class ImageWriter
         ByteArrayInputStream baos = new ByteArrayInputStream(file.get());
         return ImageIO.read(baos);
     }
+
+    /**
+     * A stored image in the cache.
+     */
+    private static class CachedImage
+    {
+        /**
+         * The stored image.
+         */
+        private final StoredImage image;
+
+        /**
+         * Time (in milliseconds) at which the entry expires.
+         */
+        private final long expiration;
+
+        /**
+         * Constructor.
+         *
+         * @param inImage
+         *            the stored image.
+         * @param inExpiration
+         *            time (in milliseconds) at which the entry expires.
+         */
+        public CachedImage(final StoredImage inImage, final long inExpiration)
+        {
+            image = inImage;
+            expiration = inExpiration;
+        }
+
+        /**
+         * @return the stored image.
+         */
+        public StoredImage getImage()
+        {
+            return image;
+        }
+
+        /**
+         * @return time (in milliseconds) at which the entry expires.
+         */
+        public long getExpiration()
+        {
+            return expiration;
+        }
+    }
 }
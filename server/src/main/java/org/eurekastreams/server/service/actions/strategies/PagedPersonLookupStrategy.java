@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies;
+
+import org.eurekastreams.server.domain.Person;
+import org.eurekastreams.server.persistence.mappers.ldap.PageHandler;
+
+/**
+ * Looks up employees by a search string, optionally delivering them a page at a time.
+ */
+public interface PagedPersonLookupStrategy extends PersonLookupStrategy
+{
+    /**
+     * Finds all people matching a search string, passing them to a handler a page at a time instead of returning
+     * them all at once. Each person is delivered at most once.
+     * 
+     * @param searchString
+     *            the string to search for.
+     * @param handler
+     *            receives each page of people.
+     * @return the number of people found.
+     */
+    int findPeople(String searchString, PageHandler<Person> handler);
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies;
+
+/**
+ * An image as stored (PNG encoded), with the validators used for HTTP caching.
+ */
+public class StoredImage
+{
+    /**
+     * The PNG bytes.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Strong ETag (quoted) of the bytes.
+     */
+    private final String etag;
+
+    /**
+     * Time (in milliseconds, whole seconds) the bytes were first seen with this ETag.
+     */
+    private final long lastModified;
+
+    /**
+     * Constructor.
+     *
+     * @param inBytes
+     *            The PNG bytes.
+     * @param inEtag
+     *            Strong ETag (quoted) of the bytes.
+     * @param inLastModified
+     *            Time (in milliseconds, whole seconds) the bytes were first seen with this ETag.
+     */
+    public StoredImage(final byte[] inBytes, final String inEtag, final long inLastModified)
+    {
+        bytes = inBytes;
+        etag = inEtag;
+        lastModified = inLastModified;
+    }
+
+    /**
+     * @return The PNG bytes; not to be modified.
+     */
+    public byte[] getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return Strong ETag (quoted) of the bytes.
+     */
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    /**
+     * @return Time (in milliseconds, whole seconds) the bytes were first seen with this ETag.
+     */
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eurekastreams.server.service.utility.LongHashSet;
+
+/**
+ * Collides (AND) a list sorted in descending order with an unsorted one, returning the common items in the order of
+ * the unsorted list.
+ * 
+ * When the unsorted list is small compared to the sorted one, its items are sorted and located in the sorted list with
+ * a galloping (exponential then binary) search that resumes where the previous item was found, so each lookup costs
+ * O(log d) where d is the distance from the previous match. When both lists are large the sorted list is loaded into
+ * a hash set instead and each item is probed in constant time. Either way the searches work on primitive arrays and do
+ * not depend on how the ids are distributed.
+ */
+public class GallopingListCollider implements ListCollider
+{
+    /**
+     * Use the hash probe once the galloping searches would cost this many times the size of the sorted list.
+     */
+    private static final int HASH_PROBE_FACTOR = 2;
+
+    /**
+     * Collide (AND) two lists and return the results.
+     * 
+     * Behavior is undefined if sorted list is unsorted. Unchecked in method for performance reasons.
+     * 
+     * @param sorted
+     *            list sorted in descending order.
+     * @param unsorted
+     *            unsorted list.
+     * @param maxResults
+     *            the max results to find.
+     * @return common items, in the order of the unsorted list.
+     */
+    public List<Long> collide(final List<Long> sorted, final List<Long> unsorted, final int maxResults)
+    {
+        final ArrayList<Long> commonItems = new ArrayList<Long>();
+        if (sorted.isEmpty() || unsorted.isEmpty() || maxResults <= 0)
+        {
+            return commonItems;
+        }
+
+        long[] sortedValues = toArray(sorted);
+
+        LongHashSet matches;
+        if ((long) unsorted.size() * log2(sortedValues.length) >= (long) HASH_PROBE_FACTOR * sortedValues.length)
+        {
+            matches = new LongHashSet(sortedValues.length);
+            for (long value : sortedValues)
+            {
+                matches.add(value);
+            }
+        }
+        else
+        {
+            matches = gallop(sortedValues, toArray(unsorted));
+        }
+
+        for (Long item : unsorted)
+        {
+            if (matches.contains(item))
+            {
+                commonItems.add(item);
+
+                if (commonItems.size() == maxResults)
+                {
+                    // break loop and return
+                    return commonItems;
+                }
+            }
+        }
+
+        return commonItems;
+    }
+
+    /**
+     * Finds which of the probe values are in the sorted values.
+     * 
+     * @param sortedValues
+     *            values sorted in descending order.
+     * @param probes
+     *            the values to look for, in any order; reordered by this method.
+     * @return the probe values found.
+     */
+    private static LongHashSet gallop(final long[] sortedValues, final long[] probes)
+    {
+        LongHashSet matches = new LongHashSet(probes.length);
+
+        // walk the probes in descending order so the search in the sorted values only ever moves forward
+        Arrays.sort(probes);
+        int cursor = 0;
+        for (int p = probes.length - 1; p >= 0 && cursor < sortedValues.length; p--)
+        {
+            long probe = probes[p];
+
+            // exponential search for a window ending at the first value not greater than the probe
+            int low = cursor;
+            int step = 1;
+            int high = cursor;
+            while (high < sortedValues.length && sortedValues[high] > probe)
+            {
+                low = high + 1;
+                high = cursor + step;
+                step <<= 1;
+            }
+            if (low >= sortedValues.length)
+            {
+                // every remaining sorted value is greater than the remaining probes
+                break;
+            }
+            high = Math.min(high, sortedValues.length - 1);
+
+            // binary search in the window
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+                if (sortedValues[mid] > probe)
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid;
+                }
+            }
+
+            if (sortedValues[low] == probe)
+            {
+                matches.add(probe);
+            }
+            cursor = low;
+        }
+        return matches;
+    }
+
+    /**
+     * Unboxes a list.
+     * 
+     * @param list
+     *            the list.
+     * @return the values.
+     */
+    private static long[] toArray(final List<Long> list)
+    {
+        long[] values = new long[list.size()];
+        int i = 0;
+        for (Long value : list)
+        {
+            values[i++] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Computes the number of bits needed to represent a positive value, i.e. the cost of a binary search over that
+     * many items.
+     * 
+     * @param value
+     *            the value.
+     * @return floor(log2(value)) + 1.
+     */
+    private static int log2(final int value)
+    {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderCursor;
+
+/**
+ * Merges (OR) lists sorted in descending order a batch at a time. A max-heap holds the current head of each list, so
+ * each id costs O(log k) whatever the number of lists k; nothing is copied besides the ids returned and duplicates are
+ * dropped. Lists are expected to be random access. Not thread safe.
+ */
+public class KWayMergeCursor implements DescendingOrderCursor
+{
+    /**
+     * The lists.
+     */
+    private final List<List<Long>> lists;
+
+    /**
+     * The current head of each list, by list index.
+     */
+    private final long[] heads;
+
+    /**
+     * The position of the next item to read from each list, by list index.
+     */
+    private final int[] positions;
+
+    /**
+     * Max-heap of list indexes ordered by their heads.
+     */
+    private final int[] heap;
+
+    /**
+     * Number of entries in the heap.
+     */
+    private int heapSize;
+
+    /**
+     * Whether any id has been returned yet.
+     */
+    private boolean started;
+
+    /**
+     * The last id returned.
+     */
+    private long last;
+
+    /**
+     * Constructor for a merge from the start of the lists.
+     * 
+     * @param inLists
+     *            the lists, each sorted in descending order; null or empty lists are ignored.
+     */
+    public KWayMergeCursor(final List<List<Long>> inLists)
+    {
+        this(inLists, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param inLists
+     *            the lists, each sorted in descending order; null or empty lists are ignored.
+     * @param beforeId
+     *            the merge starts with the first id lower than this one; null to start from the top of the lists.
+     */
+    public KWayMergeCursor(final List<List<Long>> inLists, final Long beforeId)
+    {
+        lists = inLists;
+        int listCount = lists.size();
+        heads = new long[listCount];
+        positions = new int[listCount];
+        heap = new int[listCount];
+
+        for (int i = 0; i < listCount; i++)
+        {
+            List<Long> list = lists.get(i);
+            if (list != null)
+            {
+                int start = beforeId == null ? 0 : firstIndexBelow(list, beforeId);
+                if (start < list.size())
+                {
+                    heads[i] = list.get(start);
+                    positions[i] = start + 1;
+                    heap[heapSize++] = i;
+                }
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--)
+        {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Long> next(final int count)
+    {
+        List<Long> results = new ArrayList<Long>(Math.max(0, count));
+        while (heapSize > 0 && results.size() < count)
+        {
+            int top = heap[0];
+            long value = heads[top];
+
+            // the merged sequence is descending, so duplicates are always adjacent
+            if (!started || value != last)
+            {
+                results.add(value);
+                last = value;
+                started = true;
+            }
+
+            List<Long> list = lists.get(top);
+            if (positions[top] < list.size())
+            {
+                heads[top] = list.get(positions[top]++);
+            }
+            else
+            {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(0);
+        }
+        return results;
+    }
+
+    /**
+     * Binary search for the first entry of a descending list lower than a value.
+     * 
+     * @param list
+     *            the list.
+     * @param value
+     *            the value.
+     * @return the index of the first entry lower than the value, or the list size if there is none.
+     */
+    private static int firstIndexBelow(final List<Long> list, final long value)
+    {
+        int low = 0;
+        int high = list.size();
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid) >= value)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Restores the heap property below an entry whose head may have decreased.
+     * 
+     * @param inIndex
+     *            the heap position to sift down from.
+     */
+    private void siftDown(final int inIndex)
+    {
+        if (heapSize == 0)
+        {
+            return;
+        }
+        int index = inIndex;
+        int entry = heap[index];
+        while (true)
+        {
+            int child = 2 * index + 1;
+            if (child >= heapSize)
+            {
+                break;
+            }
+            if (child + 1 < heapSize && heads[heap[child + 1]] > heads[heap[child]])
+            {
+                child++;
+            }
+            if (heads[heap[child]] <= heads[entry])
+            {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = entry;
+    }
+}
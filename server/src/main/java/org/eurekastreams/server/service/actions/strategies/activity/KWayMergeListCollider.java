@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderCursor;
+
+/**
+ * Collides (OR) any number of lists sorted in descending order with a k-way merge (see {@link KWayMergeCursor}). The
+ * merge stops as soon as maxResults items have been found, and duplicates are dropped.
+ */
+public class KWayMergeListCollider implements ListCollider, MultiListCollider
+{
+    /**
+     * Collides (OR) two lists that are both sorted in descending order.
+     * 
+     * @param listA
+     *            sorted list.
+     * @param listB
+     *            sorted list.
+     * @param maxResults
+     *            the max results to find.
+     * @return OR of items, without duplicates.
+     */
+    public List<Long> collide(final List<Long> listA, final List<Long> listB, final int maxResults)
+    {
+        List<List<Long>> lists = new ArrayList<List<Long>>(2);
+        lists.add(listA);
+        lists.add(listB);
+        return collide(lists, maxResults);
+    }
+
+    /**
+     * Collides (OR) lists that are all sorted in descending order.
+     * 
+     * @param lists
+     *            sorted lists.
+     * @param maxResults
+     *            the max results to find.
+     * @return OR of items in descending order, without duplicates.
+     */
+    public List<Long> collide(final List<List<Long>> lists, final int maxResults)
+    {
+        return new KWayMergeCursor(lists).next(maxResults);
+    }
+
+    /**
+     * Opens a cursor merging (OR) lists that are all sorted in descending order.
+     * 
+     * @param lists
+     *            sorted lists.
+     * @param beforeId
+     *            the merge starts with the first id lower than this one.
+     * @return the cursor.
+     */
+    public DescendingOrderCursor openCursor(final List<List<Long>> lists, final long beforeId)
+    {
+        return new KWayMergeCursor(lists, beforeId);
+    }
+}
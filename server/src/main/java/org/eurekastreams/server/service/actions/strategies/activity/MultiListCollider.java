@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity;
+
+import java.util.List;
+
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderCursor;
+
+/**
+ * Collides any number of lists in one pass and returns the results.
+ */
+public interface MultiListCollider
+{
+    /**
+     * Collide the lists and return the results.
+     * 
+     * @param lists
+     *            the lists.
+     * @param maxResults
+     *            max results to return.
+     * @return the collided items.
+     */
+    List<Long> collide(final List<List<Long>> lists, final int maxResults);
+
+    /**
+     * Opens a cursor over the collided items, for callers that read them a batch at a time.
+     * 
+     * @param lists
+     *            the lists.
+     * @param beforeId
+     *            the cursor starts with the first collided item lower than this one.
+     * @return the cursor.
+     */
+    DescendingOrderCursor openCursor(final List<List<Long>> lists, final long beforeId);
+}
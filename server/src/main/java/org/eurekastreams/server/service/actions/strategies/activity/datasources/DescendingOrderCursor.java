@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity.datasources;
+
+import java.util.List;
+
+/**
+ * Reads the activity ids of a {@link DescendingOrderDataSource} a batch at a time, each batch continuing after the
+ * last id of the previous one.
+ */
+public interface DescendingOrderCursor
+{
+    /**
+     * Gets the next activity ids.
+     * 
+     * @param count
+     *            the number of ids wanted.
+     * @return up to count ids, in descending order, all lower than any id returned before. Fewer than count (possibly
+     *         none) once the data set is exhausted.
+     */
+    List<Long> next(final int count);
+}
@@ -35,4 +35,18 @@ public interface DescendingOrderDataSource
      * @return the activity IDs.
      */
     List<Long> fetch(final JSONObject request, final Long userEntityId);
+
+    /**
+     * Opens a cursor over the activities, so a caller paging through them can read just as many as it needs and
+     * continue where it stopped, instead of fetching a longer prefix each time.
+     * 
+     * @param request
+     *            the JSON request.
+     * @param userEntityId
+     *            the user entity ID.
+     * @param beforeId
+     *            the cursor starts with the first activity id lower than this one.
+     * @return the cursor, or null if this data source does not handle the request.
+     */
+    DescendingOrderCursor openCursor(final JSONObject request, final Long userEntityId, final long beforeId);
 }
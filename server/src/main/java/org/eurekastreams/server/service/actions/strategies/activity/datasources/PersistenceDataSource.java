@@ -22,7 +22,7 @@ import java.util.List;
 import net.sf.json.JSONObject;
 
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
-import org.eurekastreams.server.service.actions.strategies.activity.ListCollider;
+import org.eurekastreams.server.service.actions.strategies.activity.MultiListCollider;
 
 /**
  * Gets activity IDs from memcache based on the query.
@@ -45,9 +45,9 @@ public class PersistenceDataSource implements DescendingOrderDataSource
      */
     private DomainMapper<Object, List<Long>> everyoneMapper;
     /**
-     * The or collider.
+     * The or collider, merging all the data sets in one pass.
      */
-    private ListCollider orCollider;
+    private MultiListCollider orCollider;
 
     /**
      * The max we want this data source to return.
@@ -69,7 +69,7 @@ public class PersistenceDataSource implements DescendingOrderDataSource
     public PersistenceDataSource(final DomainMapper<Object, List<Long>> inEveryoneMapper,
             final HashMap<String, DomainMapper<Object, List<?>>> inMappers,
             final HashMap<String, PersistenceDataSourceRequestTransformer> inTransformers,
-            final ListCollider inOrCollider)
+            final MultiListCollider inOrCollider)
     {
         everyoneMapper = inEveryoneMapper;
         mappers = inMappers;
@@ -88,14 +88,60 @@ public class PersistenceDataSource implements DescendingOrderDataSource
      */
     public List<Long> fetch(final JSONObject request, final Long userEntityId)
     {
-        boolean unHandled = false;
-        List<List<Long>> returnedDataSets = new ArrayList<List<Long>>();
-
         JSONObject jsonQuery = request.getJSONObject("query");
 
-        if (jsonQuery.size() == 0
-                || (jsonQuery.size() == 1 && jsonQuery.containsKey("sortBy") && jsonQuery.getString("sortBy").equals(
-                        "date")))
+        List<List<Long>> returnedDataSets = getDataSets(jsonQuery, userEntityId);
+        if (returnedDataSets == null)
+        {
+            return null;
+        }
+
+        Integer maxCount = request.getInt("count");
+
+        if (hasUnhandledParams(jsonQuery))
+        {
+            maxCount = MAXITEMS;
+        }
+
+        return orCollider.collide(returnedDataSets, maxCount);
+    }
+
+    /**
+     * Given the request, open a cursor over all the results relevant from memcache.
+     * 
+     * @param request
+     *            the JSON request from the user.
+     * @param userEntityId
+     *            the user entity ID.
+     * @param beforeId
+     *            the cursor starts with the first activity id lower than this one.
+     * @return the cursor, or null if the request isn't handled.
+     */
+    public DescendingOrderCursor openCursor(final JSONObject request, final Long userEntityId, final long beforeId)
+    {
+        List<List<Long>> returnedDataSets = getDataSets(request.getJSONObject("query"), userEntityId);
+        if (returnedDataSets == null)
+        {
+            return null;
+        }
+        return orCollider.openCursor(returnedDataSets, beforeId);
+    }
+
+    /**
+     * Gets the activity id lists for the query.
+     * 
+     * @param jsonQuery
+     *            the query.
+     * @param userEntityId
+     *            the user entity ID.
+     * @return the lists, or null if the query isn't empty but we don't handle any of it.
+     */
+    @SuppressWarnings("unchecked")
+    private List<List<Long>> getDataSets(final JSONObject jsonQuery, final Long userEntityId)
+    {
+        List<List<Long>> returnedDataSets = new ArrayList<List<Long>>();
+
+        if (isEveryoneQuery(jsonQuery))
         {
             // get everyone list
             returnedDataSets.add(everyoneMapper.execute(null));
@@ -137,10 +183,6 @@ public class PersistenceDataSource implements DescendingOrderDataSource
                         }
                     }
                 }
-                else
-                {
-                    unHandled = true;
-                }
             }
             if (returnedDataSets.size() == 0)
             {
@@ -148,22 +190,44 @@ public class PersistenceDataSource implements DescendingOrderDataSource
                 return null;
             }
         }
+        return returnedDataSets;
+    }
 
-        List<Long> returned = new ArrayList<Long>();
+    /**
+     * Checks whether the query asks for the everyone list.
+     * 
+     * @param jsonQuery
+     *            the query.
+     * @return true if the query is empty or only sorts by date.
+     */
+    private boolean isEveryoneQuery(final JSONObject jsonQuery)
+    {
+        return jsonQuery.size() == 0
+                || (jsonQuery.size() == 1 && jsonQuery.containsKey("sortBy") && jsonQuery.getString("sortBy").equals(
+                        "date"));
+    }
 
-        for (List<Long> dataSet : returnedDataSets)
+    /**
+     * Checks whether the query has parameters this data source doesn't handle, meaning the results will be collided
+     * with another data source's.
+     * 
+     * @param jsonQuery
+     *            the query.
+     * @return true if some parameter has no mapper.
+     */
+    private boolean hasUnhandledParams(final JSONObject jsonQuery)
+    {
+        if (isEveryoneQuery(jsonQuery))
         {
-
-            Integer maxCount = request.getInt("count");
-
-            if (unHandled)
+            return false;
+        }
+        for (Object objParam : jsonQuery.keySet())
+        {
+            if (mappers.get(objParam) == null)
             {
-                maxCount = MAXITEMS;
+                return true;
             }
-
-            returned = orCollider.collide(dataSet, returned, maxCount);
         }
-
-        return returned;
+        return false;
     }
 }
@@ -19,14 +19,15 @@ import java.util.List;
 
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.persistence.mappers.ldap.LdapLookup;
+import org.eurekastreams.server.persistence.mappers.ldap.PageHandler;
 import org.eurekastreams.server.persistence.mappers.requests.LdapLookupRequest;
-import org.eurekastreams.server.service.actions.strategies.PersonLookupStrategy;
+import org.eurekastreams.server.service.actions.strategies.PagedPersonLookupStrategy;
 
 /**
  * Find people via LDAP attribute.
  * 
  */
-public class PersonLookupViaAttribute implements PersonLookupStrategy
+public class PersonLookupViaAttribute implements PagedPersonLookupStrategy
 {
 
     /**
@@ -70,4 +71,31 @@ public class PersonLookupViaAttribute implements PersonLookupStrategy
         return results;
     }
 
+    /**
+     * Streams the people matching an ldap attribute query a page at a time.
+     * 
+     * @param inSearchString
+     *            the value to be matched to an ldap attribue.
+     * @param inHandler
+     *            receives each page of people.
+     * @return the number of people found.
+     */
+    @Override
+    public int findPeople(final String inSearchString, final PageHandler<Person> inHandler)
+    {
+        return ldapLookup.execute(new LdapLookupRequest(inSearchString), new PageHandler<Person>()
+        {
+            @Override
+            public void handlePage(final List<Person> inPage)
+            {
+                // set sourcelist criteria on results.
+                for (Person p : inPage)
+                {
+                    p.getSourceList().add(inSearchString);
+                }
+                inHandler.handlePage(inPage);
+            }
+        });
+    }
+
 }
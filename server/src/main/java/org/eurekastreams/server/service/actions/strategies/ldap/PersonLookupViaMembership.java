@@ -19,22 +19,25 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.persistence.mappers.ldap.LdapGroup;
 import org.eurekastreams.server.persistence.mappers.ldap.LdapLookup;
+import org.eurekastreams.server.persistence.mappers.ldap.PageHandler;
 import org.eurekastreams.server.persistence.mappers.requests.LdapLookupRequest;
-import org.eurekastreams.server.service.actions.strategies.PersonLookupStrategy;
+import org.eurekastreams.server.service.actions.strategies.PagedPersonLookupStrategy;
 import org.springframework.ldap.core.DistinguishedName;
 
 /**
  * Person lookup strategy that, given an ldap group, returns all members of that group and subgroups.
  * 
  */
-public class PersonLookupViaMembership implements PersonLookupStrategy
+public class PersonLookupViaMembership implements PagedPersonLookupStrategy
 {
     /**
      * Logger.
@@ -124,6 +127,56 @@ public class PersonLookupViaMembership implements PersonLookupStrategy
         return new ArrayList<Person>(personBucket.values());
     }
 
+    /**
+     * Streams the people in the provided ldap group and its subgroups a page at a time. Only the account ids seen so
+     * far are held in memory, to drop people who are members of several of the groups.
+     * 
+     * @param inSearchString
+     *            the value to be matched to an ldap attribue.
+     * @param inHandler
+     *            receives each page of people.
+     * @return the number of people found.
+     */
+    @Override
+    public int findPeople(final String inSearchString, final PageHandler<Person> inHandler)
+    {
+        Collection<LdapGroup> allGroups = getGroups(inSearchString);
+        final Set<String> seenAccountIds = new HashSet<String>();
+
+        for (final LdapGroup lg : allGroups)
+        {
+            directGroupMemberMapper.execute(new LdapLookupRequest(getFullDnAsString(lg), lg.getDistinguishedName()
+                    .toCompactString()), new PageHandler<Person>()
+            {
+                @Override
+                public void handlePage(final List<Person> inPage)
+                {
+                    List<Person> unique = new ArrayList<Person>(inPage.size());
+                    for (Person p : inPage)
+                    {
+                        if (seenAccountIds.add(p.getAccountId()))
+                        {
+                            p.setSourceList(lg.getSourceList());
+                            unique.add(p);
+                        }
+                    }
+                    if (!unique.isEmpty())
+                    {
+                        inHandler.handlePage(unique);
+                    }
+                }
+            });
+        }
+
+        if (log.isInfoEnabled())
+        {
+            log.info("Found " + seenAccountIds.size() + " unique people from searching " + allGroups.size()
+                    + " groups.");
+        }
+
+        return seenAccountIds.size();
+    }
+
     /**
      * Method to return {@link LdapGroup}s and subgroups for given searchString.
      * 
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2010 Lockheed Martin Corporation
+ * Copyright (c) 2010-2011 Lockheed Martin Corporation
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,13 +15,10 @@
  */
 package org.eurekastreams.server.service.servlets;
 
-import java.awt.image.RenderedImage;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 
-import javax.imageio.ImageIO;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -30,12 +27,13 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eurekastreams.server.service.actions.strategies.ImageWriter;
+import org.eurekastreams.server.service.actions.strategies.StoredImage;
 import org.springframework.context.ApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 /**
- * Get an Image via a Servlet.
- * 
+ * Get an Image via a Servlet. Sends the stored PNG bytes as they are, with an ETag and Last-Modified so browsers can
+ * revalidate with a conditional GET.
  */
 public class GetImageServlet extends HttpServlet
 {
@@ -48,11 +46,21 @@ public class GetImageServlet extends HttpServlet
      */
     private ApplicationContext springContext;
 
+    /**
+     * Reads the stored images.
+     */
+    private ImageWriter imageWriter;
+
     /**
      * Serial.
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * 304 - the client's copy is current.
+     */
+    private static final int NOT_MODIFIED = 304;
+
     /**
      * 404 is a magic number, he lived by the sea.
      */
@@ -78,68 +86,97 @@ public class GetImageServlet extends HttpServlet
     protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException,
             IOException
     {
-        springContext = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
-        ImageWriter imageWriter = (ImageWriter) springContext.getBean("imageWriter");
-        RenderedImage image = imageWriter.read(request.getParameter("img"));
+        if (imageWriter == null)
+        {
+            springContext = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
+            imageWriter = (ImageWriter) springContext.getBean("imageWriter");
+        }
+        StoredImage image = imageWriter.readStoredImage(request.getParameter("img"));
 
         // show a 404 page
         if (image == null)
         {
             httpError(NOTFOUND, response);
+            return;
         }
-        else
-        {
-            BufferedOutputStream bos = null;
-            ByteArrayOutputStream baos = null;
-
-            try
-            {
-                baos = new ByteArrayOutputStream();
-                ImageIO.write(image, "png", baos);
-
-                bos = new BufferedOutputStream(response.getOutputStream());
 
-                response.setContentType("image/png");
-                response.setContentLength(baos.toByteArray().length);
+        response.setHeader("ETag", image.getEtag());
+        response.setDateHeader("Last-Modified", image.getLastModified());
+        if (isNotModified(request, image))
+        {
+            response.setStatus(NOT_MODIFIED);
+            return;
+        }
 
-                bos.write(baos.toByteArray());
+        // the stored bytes are already PNG encoded: send them as they are
+        byte[] bytes = image.getBytes();
+        response.setContentType("image/png");
+        response.setContentLength(bytes.length);
 
-            }
-            catch (Exception e)
-            {
-                // Tell the user there was some internal server error.\
-                // 500 - Internal server error.
-                httpError(ERROR, response);
-            }
-            finally
+        OutputStream out = null;
+        try
+        {
+            out = response.getOutputStream();
+            out.write(bytes);
+        }
+        catch (Exception e)
+        {
+            // Tell the user there was some internal server error.
+            // 500 - Internal server error.
+            httpError(ERROR, response);
+        }
+        finally
+        {
+            if (out != null)
             {
-                if (baos != null)
+                try
                 {
-                    try
-                    {
-                        baos.close();
-                    }
-                    catch (IOException e)
-                    {
-                        log.error(e);
-                        // To late to do anything about it now, we may have already sent some data to user.
-                    }
+                    out.close();
                 }
-                if (bos != null)
+                catch (IOException e)
                 {
-                    try
-                    {
-                        bos.close();
-                    }
-                    catch (IOException e)
-                    {
-                        log.error(e);
-                        // To late to do anything about it now, we may have already sent some data to user.
-                    }
+                    log.error(e);
+                    // To late to do anything about it now, we may have already sent some data to user.
                 }
             }
         }
+    }
 
+    /**
+     * Checks the conditional GET headers to see if the client's copy of the image is current. If-None-Match takes
+     * precedence over If-Modified-Since.
+     *
+     * @param request
+     *            the request.
+     * @param image
+     *            the image.
+     * @return If the client's copy is current.
+     */
+    private boolean isNotModified(final HttpServletRequest request, final StoredImage image)
+    {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null)
+        {
+            for (String candidate : ifNoneMatch.split(","))
+            {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(image.getEtag()))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        try
+        {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            return ifModifiedSince >= 0 && ifModifiedSince >= image.getLastModified();
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
     }
 
     /**
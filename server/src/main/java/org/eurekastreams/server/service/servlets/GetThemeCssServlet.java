@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2010 Lockheed Martin Corporation
+ * Copyright (c) 2010-2011 Lockheed Martin Corporation
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,14 +15,20 @@
  */
 package org.eurekastreams.server.service.servlets;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.http.HttpStatus;
@@ -33,8 +39,9 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 /**
- * Servlet for serving out theme css.
- * 
+ * Servlet for serving out theme css. Responses carry a strong ETag made from the md5 hash of the css sent (the same
+ * hash the theme's version is), so browsers revalidate with If-None-Match and get a 304 when the theme is unchanged.
+ * The rendered css is kept in memory (plain and gzipped) per theme until the theme's version changes.
  */
 public class GetThemeCssServlet extends HttpServlet
 {
@@ -58,6 +65,42 @@ public class GetThemeCssServlet extends HttpServlet
      */
     private DomainMapper<String, String> getThemeCssByUuidMapper = null;
 
+    /**
+     * Mapper to get theme version (hash of the css) by uuid.
+     */
+    private DomainMapper<String, String> getThemeVersionByUuidMapper = null;
+
+    /**
+     * Rendered css by theme uuid.
+     */
+    private final ConcurrentMap<String, RenderedCss> renderedCssByUuid = new ConcurrentHashMap<String, RenderedCss>();
+
+    /**
+     * Default constructor; collaborators are fetched from the spring context on the first request.
+     */
+    public GetThemeCssServlet()
+    {
+    }
+
+    /**
+     * Constructor for unit tests.
+     *
+     * @param inRequestUriToThemeUuIdTransformer
+     *            Request uri to theme uuid transformer.
+     * @param inGetThemeCssByUuidMapper
+     *            Mapper to get theme css by uuid.
+     * @param inGetThemeVersionByUuidMapper
+     *            Mapper to get theme version (hash of the css) by uuid.
+     */
+    GetThemeCssServlet(final Transformer<String, String> inRequestUriToThemeUuIdTransformer,
+            final DomainMapper<String, String> inGetThemeCssByUuidMapper,
+            final DomainMapper<String, String> inGetThemeVersionByUuidMapper)
+    {
+        requestUriToThemeUuIdTransformer = inRequestUriToThemeUuIdTransformer;
+        getThemeCssByUuidMapper = inGetThemeCssByUuidMapper;
+        getThemeVersionByUuidMapper = inGetThemeVersionByUuidMapper;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -95,11 +138,31 @@ public class GetThemeCssServlet extends HttpServlet
             return;
         }
 
-        // get the string css by theme uuid, 404 on error.
-        String themeCss = null;
+        // get the theme version (and css if the client's copy is out of date) by theme uuid, 404 on error.
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        RenderedCss css;
         try
         {
-            themeCss = getThemeCssByUuidMapper.execute(themeUuid);
+            String etag = toEtag(getThemeVersionByUuidMapper.execute(themeUuid));
+            if (etagMatches(ifNoneMatch, etag))
+            {
+                notModified(etag, response);
+                return;
+            }
+
+            css = renderedCssByUuid.get(themeUuid);
+            if (css == null || !css.getEtag().equals(etag))
+            {
+                // the ETag comes from the css actually rendered: if the theme changed since the version was read,
+                // this copy is labeled with its own hash and will be replaced on the next request
+                css = new RenderedCss(getThemeCssByUuidMapper.execute(themeUuid));
+                renderedCssByUuid.put(themeUuid, css);
+                if (etagMatches(ifNoneMatch, css.getEtag()))
+                {
+                    notModified(css.getEtag(), response);
+                    return;
+                }
+            }
         }
         catch (Exception e)
         {
@@ -107,14 +170,122 @@ public class GetThemeCssServlet extends HttpServlet
             return;
         }
 
-        response.setContentType("text/css");
-        response.setContentLength(themeCss.getBytes().length);
+        byte[] body = css.getBytes();
+        if (acceptsGzip(request.getHeader("Accept-Encoding")))
+        {
+            body = css.getGzippedBytes();
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setHeader("Vary", "Accept-Encoding");
+        response.setHeader("ETag", css.getEtag());
+        response.setContentType("text/css; charset=" + RenderedCss.CHARSET);
+        response.setContentLength(body.length);
 
-        PrintWriter out = response.getWriter();
-        out.write(themeCss);
+        OutputStream out = response.getOutputStream();
+        out.write(body);
         out.flush();
     }
 
+    /**
+     * Builds the (strong) ETag for a version hash.
+     *
+     * @param version
+     *            The version hash.
+     * @return The quoted ETag.
+     */
+    private static String toEtag(final String version)
+    {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Sends a 304 Not Modified.
+     *
+     * @param etag
+     *            The current ETag.
+     * @param response
+     *            The response.
+     */
+    private void notModified(final String etag, final HttpServletResponse response)
+    {
+        response.setStatus(HttpStatus.SC_NOT_MODIFIED);
+        response.setHeader("ETag", etag);
+    }
+
+    /**
+     * Determines whether an Accept-Encoding header allows a gzipped response. Honors q-values, so "gzip;q=0" (or "*"
+     * with a zero q-value and no explicit gzip entry) refuses it.
+     *
+     * @param acceptEncoding
+     *            The Accept-Encoding header value (may be null).
+     * @return If the response may be gzipped.
+     */
+    static boolean acceptsGzip(final String acceptEncoding)
+    {
+        if (acceptEncoding == null)
+        {
+            return false;
+        }
+        Boolean gzip = null;
+        boolean wildcard = false;
+        for (String entry : acceptEncoding.split(","))
+        {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++)
+            {
+                String param = parts[i].trim();
+                if (param.startsWith("q="))
+                {
+                    try
+                    {
+                        accepted = Float.parseFloat(param.substring(2).trim()) > 0;
+                    }
+                    catch (NumberFormatException ex)
+                    {
+                        accepted = false;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip"))
+            {
+                gzip = accepted;
+            }
+            else if (coding.equals("*"))
+            {
+                wildcard = accepted;
+            }
+        }
+        return gzip != null ? gzip : wildcard;
+    }
+
+    /**
+     * Checks whether an If-None-Match header matches an ETag.
+     *
+     * @param ifNoneMatch
+     *            The If-None-Match header value (may be null).
+     * @param etag
+     *            The current ETag (quoted).
+     * @return If the client's copy is current.
+     */
+    private boolean etagMatches(final String ifNoneMatch, final String etag)
+    {
+        if (ifNoneMatch == null)
+        {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(","))
+        {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Initialize object from spring context if needed.
      */
@@ -122,7 +293,8 @@ public class GetThemeCssServlet extends HttpServlet
     private void initializeSpringObjects()
     {
         // grab items from spring context if not initialized, 500 error if unable
-        if (requestUriToThemeUuIdTransformer == null || getThemeCssByUuidMapper == null)
+        if (requestUriToThemeUuIdTransformer == null || getThemeCssByUuidMapper == null
+                || getThemeVersionByUuidMapper == null)
         {
             ApplicationContext springContext = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
 
@@ -131,6 +303,9 @@ public class GetThemeCssServlet extends HttpServlet
                     .getBean("requestUriToThemeUuidTransformer");
 
             getThemeCssByUuidMapper = (DomainMapper<String, String>) springContext.getBean("getThemeCssByUuid");
+
+            getThemeVersionByUuidMapper = (DomainMapper<String, String>) springContext
+                    .getBean("getThemeVersionByUuid");
         }
     }
 
@@ -157,4 +332,74 @@ public class GetThemeCssServlet extends HttpServlet
             log.error(e);
         }
     }
+
+    /**
+     * A theme's css, encoded and ready to send.
+     */
+    private static class RenderedCss
+    {
+        /**
+         * Character set the css is sent in.
+         */
+        static final String CHARSET = "UTF-8";
+
+        /**
+         * ETag of the css.
+         */
+        private final String etag;
+
+        /**
+         * The encoded css.
+         */
+        private final byte[] bytes;
+
+        /**
+         * The encoded css, gzipped.
+         */
+        private final byte[] gzippedBytes;
+
+        /**
+         * Constructor.
+         *
+         * @param css
+         *            The css.
+         * @throws IOException
+         *             Shouldn't.
+         */
+        public RenderedCss(final String css) throws IOException
+        {
+            etag = toEtag(DigestUtils.md5Hex(css));
+            bytes = css.getBytes(CHARSET);
+
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream(bytes.length);
+            GZIPOutputStream gzip = new GZIPOutputStream(gzipped);
+            gzip.write(bytes);
+            gzip.close();
+            gzippedBytes = gzipped.toByteArray();
+        }
+
+        /**
+         * @return ETag of the css.
+         */
+        public String getEtag()
+        {
+            return etag;
+        }
+
+        /**
+         * @return The encoded css.
+         */
+        public byte[] getBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * @return The encoded css, gzipped.
+         */
+        public byte[] getGzippedBytes()
+        {
+            return gzippedBytes;
+        }
+    }
 }
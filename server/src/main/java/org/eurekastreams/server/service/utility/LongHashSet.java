@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.utility;
+
+/**
+ * Set of primitive longs using open addressing with linear probing. Avoids the boxing and per-entry node allocation
+ * of a HashSet&lt;Long&gt; for the large id sets used on the stream paths. Not thread safe.
+ */
+public class LongHashSet
+{
+    /**
+     * Minimum table size.
+     */
+    private static final int MIN_CAPACITY = 8;
+
+    /**
+     * Value used to mark free slots; 0 itself is tracked separately.
+     */
+    private static final long FREE = 0L;
+
+    /**
+     * Multiplier used to spread the bits of the keys (golden ratio).
+     */
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The table.
+     */
+    private long[] table;
+
+    /**
+     * Mask for indexing into the table (table length - 1).
+     */
+    private int mask;
+
+    /**
+     * Number of non-zero values stored in the table.
+     */
+    private int tableCount;
+
+    /**
+     * Whether the value 0 is in the set.
+     */
+    private boolean containsFree;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedSize
+     *            number of values expected to be added.
+     */
+    public LongHashSet(final int expectedSize)
+    {
+        int capacity = MIN_CAPACITY;
+        // keep the load factor at or below one half
+        while (capacity < expectedSize * 2)
+        {
+            capacity <<= 1;
+        }
+        table = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value
+     *            the value.
+     * @return true if the value was not already present.
+     */
+    public boolean add(final long value)
+    {
+        if (value == FREE)
+        {
+            boolean added = !containsFree;
+            containsFree = true;
+            return added;
+        }
+        int index = slot(value, mask);
+        while (table[index] != FREE)
+        {
+            if (table[index] == value)
+            {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        tableCount++;
+        if (tableCount * 2 > table.length)
+        {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Checks for a value.
+     *
+     * @param value
+     *            the value.
+     * @return true if the value is in the set.
+     */
+    public boolean contains(final long value)
+    {
+        if (value == FREE)
+        {
+            return containsFree;
+        }
+        int index = slot(value, mask);
+        while (table[index] != FREE)
+        {
+            if (table[index] == value)
+            {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of values in the set.
+     */
+    public int size()
+    {
+        return tableCount + (containsFree ? 1 : 0);
+    }
+
+    /**
+     * @return true if the set is empty.
+     */
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Doubles the table and rehashes the values.
+     */
+    private void grow()
+    {
+        long[] oldTable = table;
+        table = new long[oldTable.length * 2];
+        mask = table.length - 1;
+        for (long value : oldTable)
+        {
+            if (value != FREE)
+            {
+                int index = slot(value, mask);
+                while (table[index] != FREE)
+                {
+                    index = (index + 1) & mask;
+                }
+                table[index] = value;
+            }
+        }
+    }
+
+    /**
+     * Computes the home slot of a value.
+     *
+     * @param value
+     *            the value.
+     * @param inMask
+     *            the table mask.
+     * @return the slot.
+     */
+    private static int slot(final long value, final int inMask)
+    {
+        long hash = value * MIX;
+        return (int) (hash ^ (hash >>> (Integer.SIZE))) & inMask;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.utility;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.eurekastreams.server.domain.Person;
+
+/**
+ * Computes a digest of the person attributes that are sourced from the directory (last name, company name and
+ * additional properties). Two people with the same digest would not be changed by {@code UpdatePersonMapper}, so the
+ * membership refresh only needs to queue work for people whose digest differs from the one recorded in the database.
+ */
+public final class PersonDirectoryDigest
+{
+    /**
+     * Marker written for null values, distinct from any length-prefixed value.
+     */
+    private static final char NULL_MARKER = '-';
+
+    /**
+     * Separator between a value's length and its content.
+     */
+    private static final char LENGTH_SEPARATOR = ':';
+
+    /**
+     * Constructor to prevent instantiation.
+     */
+    private PersonDirectoryDigest()
+    {
+    }
+
+    /**
+     * Computes the digest of a person's directory-sourced attributes.
+     * 
+     * @param inPerson
+     *            the person.
+     * @return the digest (32 hex characters).
+     */
+    public static String compute(final Person inPerson)
+    {
+        StringBuilder sb = new StringBuilder();
+        append(sb, inPerson.getLastName());
+        append(sb, inPerson.getCompanyName());
+
+        // additional property values are compared case-insensitively and an empty map is the same as none
+        HashMap<String, String> properties = inPerson.getAdditionalProperties();
+        if (properties != null && !properties.isEmpty())
+        {
+            for (Map.Entry<String, String> entry : new TreeMap<String, String>(properties).entrySet())
+            {
+                append(sb, entry.getKey());
+                append(sb, entry.getValue() == null ? null : entry.getValue().toLowerCase());
+            }
+        }
+
+        try
+        {
+            return DigestUtils.md5Hex(sb.toString().getBytes("UTF-8"));
+        }
+        catch (UnsupportedEncodingException ex)
+        {
+            throw new IllegalStateException("UTF-8 is not supported.", ex);
+        }
+    }
+
+    /**
+     * Appends a value so that no two different sequences of values produce the same text.
+     * 
+     * @param sb
+     *            the builder.
+     * @param value
+     *            the value.
+     */
+    private static void append(final StringBuilder sb, final String value)
+    {
+        if (value == null)
+        {
+            sb.append(NULL_MARKER);
+        }
+        else
+        {
+            sb.append(value.length()).append(LENGTH_SEPARATOR).append(value);
+        }
+    }
+}
@@ -15,16 +15,27 @@
  */
 package org.eurekastreams.commons.messaging;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
 import org.eurekastreams.commons.server.UserActionRequest;
 import org.eurekastreams.commons.task.QueueTaskHandler;
+import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.security.userdetails.UserDetails;
 
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
+import javax.jms.MessageProducer;
+import javax.jms.ObjectMessage;
 import javax.jms.Queue;
+import javax.jms.Session;
 
 /**
  * Test for MessageConsumer class.
@@ -85,6 +96,66 @@ public class QueueTaskHandlerTest
     {
     	//TODO: Understand the best way to implement a test for this very simple class/method.
     	//sut.execute(userActionRequestMock);
-    }    
-    
+    }
+
+    /**
+     * Test handleTasks sends all the requests on one producer and commits once.
+     * @throws Exception  not expected
+     */
+    @Test
+    public void testHandleTasks() throws Exception
+    {
+        final Connection connection = context.mock(Connection.class);
+        final Session session = context.mock(Session.class);
+        final MessageProducer producer = context.mock(MessageProducer.class);
+        final ObjectMessage objectMessage = context.mock(ObjectMessage.class);
+        final BytesMessage bytesMessage = context.mock(BytesMessage.class);
+        final UserActionRequest request1 = new UserActionRequest("action1", null, 5L);
+        final UserActionRequest request2 = new UserActionRequest("action2", userDetailsMock(), null);
+
+        sut.setCompactSerialization(true);
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(connectionFactoryMock).createConnection();
+                will(returnValue(connection));
+                allowing(connection).createSession(true, Session.AUTO_ACKNOWLEDGE);
+                will(returnValue(session));
+                allowing(connection).start();
+                allowing(connection).stop();
+                allowing(connection).close();
+                allowing(session).close();
+
+                oneOf(session).createProducer(queueMock);
+                will(returnValue(producer));
+
+                // request without a user goes compact, the other as an object
+                oneOf(session).createBytesMessage();
+                will(returnValue(bytesMessage));
+                oneOf(bytesMessage).writeBytes(with(any(byte[].class)));
+                oneOf(session).createObjectMessage(request2);
+                will(returnValue(objectMessage));
+
+                oneOf(producer).send(bytesMessage);
+                oneOf(producer).send(objectMessage);
+                oneOf(session).commit();
+                oneOf(producer).close();
+            }
+        });
+
+        sut.handleTasks(Arrays.asList(request1, request2));
+
+        context.assertIsSatisfied();
+        assertEquals(2, sut.getMessageCount());
+        assertEquals(1, sut.getSendCount());
+    }
+
+    /**
+     * @return a mock user.
+     */
+    private UserDetails userDetailsMock()
+    {
+        return context.mock(UserDetails.class);
+    }
 }
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eurekastreams.commons.client.ActionRequest;
+import org.eurekastreams.commons.client.ActionRequestImpl;
+import org.eurekastreams.commons.exceptions.GeneralException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests ParallelActionRunner.
+ */
+public class ParallelActionRunnerTest
+{
+    /** Test data. */
+    private static final long TIMEOUT = 2000L;
+
+    /** Test data. */
+    private static final long SHORT_TIMEOUT = 50L;
+
+    /** Test data. */
+    private static final long BUDGET = 500L;
+
+    /** Test data. */
+    private static final long ACTION_TIME = 300L;
+
+    /** Test data. */
+    private static final int THREADS = 2;
+
+    /** Test data. */
+    private static final int REQUEST_ID = 7;
+
+    /** Executor. */
+    private ExecutorService executor;
+
+    /** SUT. */
+    private ParallelActionRunner sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        executor = Executors.newFixedThreadPool(THREADS);
+        sut = new ParallelActionRunner(executor, TIMEOUT, true);
+    }
+
+    /**
+     * Cleanup after each test.
+     */
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Builds a task which records the thread it ran on as the response.
+     *
+     * @param request
+     *            the request.
+     * @return the task.
+     */
+    @SuppressWarnings("unchecked")
+    private Callable<ActionRequest> threadRecordingTask(final ActionRequest request)
+    {
+        return new Callable<ActionRequest>()
+        {
+            public ActionRequest call()
+            {
+                request.setResponse(Thread.currentThread().getName());
+                return request;
+            }
+        };
+    }
+
+    /**
+     * Tests parallel actions run on the executor, the others on the calling thread, and the order is kept.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecuteMixed()
+    {
+        ActionRequest[] requests = new ActionRequest[] { new ActionRequestImpl("a", null),
+                new ActionRequestImpl("b", null), new ActionRequestImpl("c", null) };
+        List<Callable<ActionRequest>> tasks = new ArrayList<Callable<ActionRequest>>();
+        for (ActionRequest request : requests)
+        {
+            tasks.add(threadRecordingTask(request));
+        }
+
+        ActionRequest[] results = sut.execute(requests, tasks, new boolean[] { true, false, true });
+
+        String caller = Thread.currentThread().getName();
+        assertEquals(requests.length, results.length);
+        for (int i = 0; i < requests.length; i++)
+        {
+            assertSame(requests[i], results[i]);
+        }
+        assertFalse(caller.equals(results[0].getResponse()));
+        assertEquals(caller, results[1].getResponse());
+        assertFalse(caller.equals(results[2].getResponse()));
+    }
+
+    /**
+     * Tests a parallel action which does not finish in time gets an error response on a copy of its request.
+     *
+     * @throws InterruptedException
+     *             Shouldn't.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecuteTimeout() throws InterruptedException
+    {
+        sut = new ParallelActionRunner(executor, SHORT_TIMEOUT, true);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ActionRequest request = new ActionRequestImpl("slow", "params");
+        request.setId(REQUEST_ID);
+        request.setSessionId("session");
+        List<Callable<ActionRequest>> tasks = new ArrayList<Callable<ActionRequest>>();
+        tasks.add(new Callable<ActionRequest>()
+        {
+            public ActionRequest call() throws InterruptedException
+            {
+                release.await();
+                return request;
+            }
+        });
+
+        ActionRequest[] results = sut.execute(new ActionRequest[] { request }, tasks, new boolean[] { true });
+        release.countDown();
+
+        assertNotSame(request, results[0]);
+        assertEquals(REQUEST_ID, results[0].getId().intValue());
+        assertEquals("slow", results[0].getActionKey());
+        assertEquals("session", results[0].getSessionId());
+        assertNull(results[0].getParam());
+        assertTrue(results[0].getResponse() instanceof GeneralException);
+    }
+
+    /**
+     * Tests a parallel action's time budget starts when it starts running, so time spent waiting for a thread (here,
+     * behind another action of the same batch) does not count against it.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecuteTimeoutPerAction()
+    {
+        executor = Executors.newSingleThreadExecutor();
+        sut = new ParallelActionRunner(executor, BUDGET, true);
+        ActionRequest[] requests = new ActionRequest[] { new ActionRequestImpl("a", null),
+                new ActionRequestImpl("b", null) };
+        List<Callable<ActionRequest>> tasks = new ArrayList<Callable<ActionRequest>>();
+        for (final ActionRequest request : requests)
+        {
+            tasks.add(new Callable<ActionRequest>()
+            {
+                public ActionRequest call() throws InterruptedException
+                {
+                    Thread.sleep(ACTION_TIME);
+                    return request;
+                }
+            });
+        }
+
+        // together the two actions take longer than the budget, but each alone is within it
+        ActionRequest[] results = sut.execute(requests, tasks, new boolean[] { true, true });
+
+        assertSame(requests[0], results[0]);
+        assertSame(requests[1], results[1]);
+    }
+
+    /**
+     * Tests the enabled flag is exposed.
+     */
+    @Test
+    public void testIsEnabled()
+    {
+        assertTrue(sut.isEnabled());
+        assertFalse(new ParallelActionRunner(executor, TIMEOUT, false).isEnabled());
+    }
+
+    /**
+     * Tests a failing parallel action gets an error response.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecuteFailure()
+    {
+        ActionRequest request = new ActionRequestImpl("bad", null);
+        List<Callable<ActionRequest>> tasks = new ArrayList<Callable<ActionRequest>>();
+        tasks.add(new Callable<ActionRequest>()
+        {
+            public ActionRequest call()
+            {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        ActionRequest[] results = sut.execute(new ActionRequest[] { request }, tasks, new boolean[] { true });
+
+        assertTrue(results[0].getResponse() instanceof GeneralException);
+    }
+
+    /**
+     * Tests parallel actions run on the calling thread when the executor rejects them.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecuteRejected()
+    {
+        executor.shutdown();
+        ActionRequest request = new ActionRequestImpl("a", null);
+        List<Callable<ActionRequest>> tasks = new ArrayList<Callable<ActionRequest>>();
+        tasks.add(threadRecordingTask(request));
+
+        ActionRequest[] results = sut.execute(new ActionRequest[] { request }, tasks, new boolean[] { true });
+
+        assertSame(request, results[0]);
+        assertEquals(Thread.currentThread().getName(), results[0].getResponse());
+    }
+
+    /**
+     * Tests parallel actions run on the calling thread when the executor's threads and queue are all taken.
+     *
+     * @throws InterruptedException
+     *             Shouldn't.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecuteSaturated() throws InterruptedException
+    {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1));
+        sut = new ParallelActionRunner(executor, TIMEOUT, true);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = new Runnable()
+        {
+            public void run()
+            {
+                started.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute(blocker);
+        started.await();
+        executor.execute(blocker);
+
+        ActionRequest request = new ActionRequestImpl("a", null);
+        List<Callable<ActionRequest>> tasks = new ArrayList<Callable<ActionRequest>>();
+        tasks.add(threadRecordingTask(request));
+
+        ActionRequest[] results;
+        try
+        {
+            results = sut.execute(new ActionRequest[] { request }, tasks, new boolean[] { true });
+        }
+        finally
+        {
+            release.countDown();
+        }
+
+        assertSame(request, results[0]);
+        assertEquals(Thread.currentThread().getName(), results[0].getResponse());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.UncategorizedJmsException;
+
+/**
+ * Tests LaneTaskExecutor and TaskLane.
+ */
+public class LaneTaskExecutorTest
+{
+    /** Context for building mock objects. */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Fixture: executor actually running the tasks. */
+    private final TaskExecutor taskExecutor = context.mock(TaskExecutor.class);
+
+    /** Fixture: handler sending tasks to the lane's queue. */
+    private final QueueTaskHandler queueTaskHandler = context.mock(QueueTaskHandler.class);
+
+    /** Fixture: lane. */
+    private TaskLane lane;
+
+    /** SUT. */
+    private LaneTaskExecutor sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        lane = new TaskLane("test", queueTaskHandler, taskExecutor);
+        Map<TaskLane, List<String>> keysByLane = new HashMap<TaskLane, List<String>>();
+        keysByLane.put(lane, Arrays.asList("bulkAction"));
+        sut = new LaneTaskExecutor(taskExecutor, keysByLane);
+    }
+
+    /**
+     * Tests actions without a lane run on the calling thread.
+     */
+    @Test
+    public void testExecuteUnrouted()
+    {
+        final UserActionRequest request = new UserActionRequest("otherAction", null, null);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(taskExecutor).execute(request);
+            }
+        });
+
+        sut.execute(request);
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests routed actions are sent to the lane's queue instead of being run.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testExecuteRouted() throws Exception
+    {
+        final UserActionRequest request = new UserActionRequest("bulkAction", null, null);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(queueTaskHandler).handleTask(request);
+            }
+        });
+
+        sut.execute(request);
+
+        context.assertIsSatisfied();
+        assertEquals(1, lane.getRoutedCount());
+        assertEquals(0, lane.getCompletedCount());
+        assertEquals(Arrays.asList(lane), sut.getLanes());
+    }
+
+    /**
+     * Tests routed actions which cannot be sent to the lane's queue run on the calling thread.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testExecuteRoutedSendFails() throws Exception
+    {
+        final UserActionRequest request = new UserActionRequest("bulkAction", null, null);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(queueTaskHandler).handleTask(request);
+                will(throwException(new UncategorizedJmsException("broker down")));
+
+                oneOf(taskExecutor).execute(request);
+            }
+        });
+
+        sut.execute(request);
+
+        context.assertIsSatisfied();
+        assertEquals(0, lane.getRoutedCount());
+    }
+
+    /**
+     * Tests the lane runs tasks received from its queue before returning, keeping its metrics.
+     */
+    @Test
+    public void testLaneExecute()
+    {
+        final UserActionRequest request = new UserActionRequest("bulkAction", null, null);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(taskExecutor).execute(request);
+            }
+        });
+
+        lane.execute(request);
+
+        context.assertIsSatisfied();
+        assertEquals(1, lane.getCompletedCount());
+        assertEquals(0, lane.getActiveCount());
+    }
+
+    /**
+     * Tests the lane's queue depth is read from its queue.
+     */
+    @Test
+    public void testGetQueueDepth()
+    {
+        final int depth = 7;
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(queueTaskHandler).getQueueDepth();
+                will(returnValue(depth));
+            }
+        });
+
+        assertEquals(depth, lane.getQueueDepth());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests an action key cannot be routed to two lanes.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructDuplicateKey()
+    {
+        TaskLane other = new TaskLane("other", queueTaskHandler, taskExecutor);
+        Map<TaskLane, List<String>> keysByLane = new HashMap<TaskLane, List<String>>();
+        keysByLane.put(lane, Arrays.asList("bulkAction"));
+        keysByLane.put(other, Arrays.asList("bulkAction"));
+        new LaneTaskExecutor(taskExecutor, keysByLane);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.springframework.security.userdetails.UserDetails;
+
+/**
+ * Tests UserActionRequestCodec.
+ */
+public class UserActionRequestCodecTest
+{
+    /** Context for building mock objects. */
+    private final Mockery context = new JUnit4Mockery();
+
+    /** Test data. */
+    private static final long LONG_PARAM = 1234567890123L;
+
+    /** Test data. */
+    private static final int INT_PARAM = 42;
+
+    /**
+     * Encodes and decodes a request.
+     *
+     * @param params
+     *            the parameter.
+     * @return the decoded request.
+     * @throws IOException
+     *             Shouldn't.
+     */
+    private UserActionRequest roundTrip(final Serializable params) throws IOException
+    {
+        UserActionRequest decoded = UserActionRequestCodec.decode(UserActionRequestCodec
+                .encode(new UserActionRequest("someAction", null, params)));
+        assertEquals("someAction", decoded.getActionKey());
+        assertNull(decoded.getUser());
+        return decoded;
+    }
+
+    /**
+     * Tests a null parameter.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testNull() throws IOException
+    {
+        assertNull(roundTrip(null).getParams());
+    }
+
+    /**
+     * Tests a Long parameter.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testLong() throws IOException
+    {
+        assertEquals(LONG_PARAM, roundTrip(LONG_PARAM).getParams());
+    }
+
+    /**
+     * Tests an Integer parameter.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testInteger() throws IOException
+    {
+        assertEquals(INT_PARAM, roundTrip(INT_PARAM).getParams());
+    }
+
+    /**
+     * Tests a String parameter.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testString() throws IOException
+    {
+        assertEquals("caf\u00e9 key", roundTrip("caf\u00e9 key").getParams());
+    }
+
+    /**
+     * Tests a parameter which must be serialized.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testSerialized() throws IOException
+    {
+        ArrayList<Long> params = new ArrayList<Long>();
+        params.add(1L);
+        params.add(2L);
+        assertEquals(params, roundTrip(params).getParams());
+    }
+
+    /**
+     * Tests requests with a user cannot be encoded.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeWithUser() throws IOException
+    {
+        UserActionRequest request = new UserActionRequest("someAction", context.mock(UserDetails.class), null);
+        assertFalse(UserActionRequestCodec.canEncode(request));
+        UserActionRequestCodec.encode(request);
+    }
+
+    /**
+     * Tests an unknown format version is rejected.
+     *
+     * @throws IOException
+     *             Expected.
+     */
+    @Test(expected = IOException.class)
+    public void testDecodeUnknownVersion() throws IOException
+    {
+        UserActionRequestCodec.decode(new byte[] { 2, 0, 0, 0 });
+    }
+}
@@ -23,7 +23,9 @@ import java.util.List;
 
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.CacheRebuildRequest;
 import org.eurekastreams.server.persistence.mappers.cache.Cache;
+import org.eurekastreams.server.persistence.mappers.cache.CacheRebuildTracker;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
@@ -53,6 +55,11 @@ public class InitializeCacheExecutionTest
      */
     private Cache cache = context.mock(Cache.class);
 
+    /**
+     * Rebuild tracker mock.
+     */
+    private CacheRebuildTracker rebuildTracker = context.mock(CacheRebuildTracker.class);
+
     /**
      * Test.
      */
@@ -80,6 +87,40 @@ public class InitializeCacheExecutionTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test hot-swap mode: no clearing, each warmer gets its part of the rebuild.
+     */
+    @Test
+    public void testHotSwap()
+    {
+        final long generation = 4L;
+        InitializeCacheExecution sut = new InitializeCacheExecution(new ArrayList<String>(Arrays.asList("key", "",
+                "key1")), rebuildTracker);
+
+        final List<UserActionRequest> list = new ArrayList<UserActionRequest>();
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(rebuildTracker).beginRebuild();
+                will(returnValue(generation));
+
+                allowing(actionContext).getUserActionRequests();
+                will(returnValue(list));
+            }
+        });
+
+        sut.execute(actionContext);
+
+        assertEquals(2, list.size());
+        CacheRebuildRequest rebuild = (CacheRebuildRequest) list.get(1).getParams();
+        assertEquals("key1", list.get(1).getActionKey());
+        assertEquals(generation, rebuild.getGeneration());
+        assertEquals(2, rebuild.getWarmerNumber());
+        assertEquals(2, rebuild.getWarmerCount());
+
+        context.assertIsSatisfied();
+    }
+
     /**
      * Test.
      */
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.CacheWarmingChunkRequest;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Test for QueueCacheWarmingChunksExecution.
+ */
+public class QueueCacheWarmingChunksExecutionTest
+{
+    /** Used for mocking objects. */
+    private JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Test data. */
+    private static final int CHUNK_SIZE = 2;
+
+    /** Mapper to get the ids of the entities to warm. */
+    private DomainMapper<Serializable, List<Serializable>> idMapper = context.mock(DomainMapper.class);
+
+    /** {@link TaskHandlerActionContext}. */
+    private TaskHandlerActionContext<ActionContext> taskHandlerContext = context.mock(TaskHandlerActionContext.class);
+
+    /** {@link ActionContext}. */
+    private ActionContext actionContext = context.mock(ActionContext.class);
+
+    /** Ids returned by the mapper, unordered. */
+    private final List<Serializable> ids = new ArrayList<Serializable>(Arrays.asList(5L, 1L, 4L, 2L, 3L));
+
+    /** SUT. */
+    private QueueCacheWarmingChunksExecution sut = new QueueCacheWarmingChunksExecution("warmChunk", idMapper,
+            CHUNK_SIZE);
+
+    /**
+     * Runs the SUT.
+     *
+     * @param params
+     *            the action's params.
+     * @return the queued tasks.
+     */
+    private List<UserActionRequest> runWithParams(final Serializable params)
+    {
+        final List<UserActionRequest> list = new ArrayList<UserActionRequest>();
+        context.checking(new Expectations()
+        {
+            {
+                allowing(taskHandlerContext).getActionContext();
+                will(returnValue(actionContext));
+
+                allowing(actionContext).getParams();
+                will(returnValue(params));
+
+                oneOf(idMapper).execute(null);
+                will(returnValue(ids));
+
+                allowing(taskHandlerContext).getUserActionRequests();
+                will(returnValue(list));
+            }
+        });
+
+        sut.execute(taskHandlerContext);
+        context.assertIsSatisfied();
+        return list;
+    }
+
+    /**
+     * Checks a queued chunk.
+     *
+     * @param task
+     *            the task.
+     * @param number
+     *            expected chunk number.
+     * @param count
+     *            expected chunk count.
+     * @param chunkIds
+     *            expected ids.
+     */
+    private void assertChunk(final UserActionRequest task, final int number, final int count,
+            final List<Long> chunkIds)
+    {
+        assertEquals("warmChunk", task.getActionKey());
+        CacheWarmingChunkRequest request = (CacheWarmingChunkRequest) task.getParams();
+        assertEquals(number, request.getChunkNumber());
+        assertEquals(count, request.getChunkCount());
+        assertEquals(chunkIds, request.getIds());
+    }
+
+    /**
+     * Tests queueing all the ids in ascending chunks.
+     */
+    @Test
+    public void testExecute()
+    {
+        List<UserActionRequest> tasks = runWithParams(null);
+
+        assertEquals(3, tasks.size());
+        assertChunk(tasks.get(0), 1, 3, Arrays.asList(1L, 2L));
+        assertChunk(tasks.get(1), 2, 3, Arrays.asList(3L, 4L));
+        assertChunk(tasks.get(2), 3, 3, Arrays.asList(5L));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.server.action.request.CacheWarmingChunkRequest;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Test for WarmCacheChunkExecution.
+ */
+public class WarmCacheChunkExecutionTest
+{
+    /** Used for mocking objects. */
+    private JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Bulk loader. */
+    private DomainMapper<List<Long>, Boolean> bulkLoader = context.mock(DomainMapper.class, "bulkLoader");
+
+    /** Single loader. */
+    private DomainMapper<Long, Object> singleLoader = context.mock(DomainMapper.class, "singleLoader");
+
+    /** {@link ActionContext}. */
+    private ActionContext actionContext = context.mock(ActionContext.class);
+
+    /**
+     * Builds the SUT.
+     *
+     * @return the SUT.
+     */
+    private WarmCacheChunkExecution buildSut()
+    {
+        List<DomainMapper<List<Long>, ? >> bulkLoaders = new ArrayList<DomainMapper<List<Long>, ? >>();
+        bulkLoaders.add(bulkLoader);
+        List<DomainMapper<Long, ? >> singleLoaders = new ArrayList<DomainMapper<Long, ? >>();
+        singleLoaders.add(singleLoader);
+        return new WarmCacheChunkExecution(bulkLoaders, singleLoaders);
+    }
+
+    /**
+     * Tests bulk loaders get the chunk once and single loaders each id.
+     */
+    @Test
+    public void testExecute()
+    {
+        final List<Long> ids = Arrays.asList(1L, 2L);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(actionContext).getParams();
+                will(returnValue(new CacheWarmingChunkRequest(ids, 1, 1)));
+
+                oneOf(bulkLoader).execute(ids);
+                oneOf(singleLoader).execute(1L);
+                oneOf(singleLoader).execute(2L);
+            }
+        });
+
+        buildSut().execute(actionContext);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests an empty chunk loads nothing.
+     */
+    @Test
+    public void testExecuteEmpty()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                allowing(actionContext).getParams();
+                will(returnValue(new CacheWarmingChunkRequest(new ArrayList<Long>(), 1, 1)));
+            }
+        });
+
+        buildSut().execute(actionContext);
+        context.assertIsSatisfied();
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.notification;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.execution.notification.filter.LockedUserRecipientFilter;
+import org.eurekastreams.server.action.execution.notification.filter.RecipientFilter;
+import org.eurekastreams.server.action.execution.notification.notifier.Notifier;
+import org.eurekastreams.server.action.execution.notification.translator.NotificationTranslator;
+import org.eurekastreams.server.action.request.notification.CreateNotificationsRequest;
+import org.eurekastreams.server.action.request.notification.CreateNotificationsRequest.RequestType;
+import org.eurekastreams.server.domain.NotificationFilterPreference.Category;
+import org.eurekastreams.server.domain.NotificationFilterPreferenceDTO;
+import org.eurekastreams.server.domain.NotificationType;
+import org.eurekastreams.server.domain.Property;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.db.GetNotificationFilterPreferencesByPeopleIds;
+import org.eurekastreams.server.search.modelview.PersonModelView;
+import org.eurekastreams.server.testing.TestContextCreator;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests CreateNotificationsExecution.
+ */
+public class CreateNotificationsExecutionTest
+{
+    /** Test data. */
+    private static final String APP_ALERT = "APP_ALERT";
+
+    /** Test data. */
+    private static final String EMAIL = "EMAIL";
+
+    /** Test data. */
+    private static final long OPTED_OUT_ID = 2L;
+
+    /** Test data. */
+    private static final long LOCKED_ID = 3L;
+
+    /** Test data. */
+    private static final List<Long> RECIPIENT_IDS = Arrays.asList(1L, OPTED_OUT_ID, LOCKED_ID);
+
+    /** Used for mocking objects. */
+    private final JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Translator. */
+    private final NotificationTranslator translator = context.mock(NotificationTranslator.class);
+
+    /** Notifier. */
+    private final Notifier appAlertNotifier = context.mock(Notifier.class, "appAlertNotifier");
+
+    /** Notifier. */
+    private final Notifier emailNotifier = context.mock(Notifier.class, "emailNotifier");
+
+    /** Preferences mapper. */
+    private final GetNotificationFilterPreferencesByPeopleIds preferencesMapper = context
+            .mock(GetNotificationFilterPreferencesByPeopleIds.class);
+
+    /** Single person mapper. */
+    private final DomainMapper<Long, PersonModelView> personMapper = context.mock(DomainMapper.class,
+            "personMapper");
+
+    /** Bulk person mapper. */
+    private final DomainMapper<List<Long>, List<PersonModelView>> bulkPersonMapper = context.mock(
+            DomainMapper.class, "bulkPersonMapper");
+
+    /** SUT. */
+    private CreateNotificationsExecution sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        Map<String, Notifier> notifiers = new LinkedHashMap<String, Notifier>();
+        notifiers.put(APP_ALERT, appAlertNotifier);
+        notifiers.put(EMAIL, emailNotifier);
+
+        Iterable<RecipientFilter> filters = Collections
+                .singletonList((RecipientFilter) new LockedUserRecipientFilter());
+        Map<String, Iterable<RecipientFilter>> recipientFilters = new HashMap<String, Iterable<RecipientFilter>>();
+        recipientFilters.put(APP_ALERT, filters);
+        recipientFilters.put(EMAIL, filters);
+
+        sut = new CreateNotificationsExecution(Collections.singletonMap(RequestType.COMMENT, translator), notifiers,
+                preferencesMapper, personMapper, bulkPersonMapper, Collections.singletonMap(
+                        NotificationType.COMMENT_TO_PERSONAL_POST, Category.COMMENT), recipientFilters,
+                new HashMap<String, Property<Object>>(), new HashMap<Class, DomainMapper<Serializable, Object>>());
+    }
+
+    /**
+     * Tests that opt-outs are applied per notifier and that recipients are loaded once for all notifiers.
+     */
+    @Test
+    public void testExecuteFiltersRecipients()
+    {
+        final CreateNotificationsRequest request = new CreateNotificationsRequest(RequestType.COMMENT, 1L, 2L, 3L);
+        final List<PersonModelView> people = new ArrayList<PersonModelView>();
+        for (long id : RECIPIENT_IDS)
+        {
+            PersonModelView person = new PersonModelView();
+            person.setEntityId(id);
+            person.setAccountLocked(id == LOCKED_ID);
+            people.add(person);
+        }
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(translator).translate(request);
+                will(returnValue(new NotificationBatch(NotificationType.COMMENT_TO_PERSONAL_POST, RECIPIENT_IDS)));
+
+                allowing(preferencesMapper).execute(RECIPIENT_IDS);
+                will(returnValue(Collections.singletonList(new NotificationFilterPreferenceDTO(OPTED_OUT_ID, EMAIL,
+                        Category.COMMENT))));
+
+                oneOf(bulkPersonMapper).execute(with(any(List.class)));
+                will(returnValue(people));
+
+                oneOf(appAlertNotifier).notify(with(equal(NotificationType.COMMENT_TO_PERSONAL_POST)),
+                        with(equal(Arrays.asList(1L, OPTED_OUT_ID))), with(any(Map.class)));
+                will(returnValue(null));
+
+                oneOf(emailNotifier).notify(with(equal(NotificationType.COMMENT_TO_PERSONAL_POST)),
+                        with(equal(Arrays.asList(1L))), with(any(Map.class)));
+                will(returnValue(null));
+            }
+        });
+
+        TaskHandlerActionContext<ActionContext> ctx = TestContextCreator.createTaskHandlerAsyncContext(request);
+        assertEquals(Boolean.TRUE, sut.execute(ctx));
+        assertEquals(Collections.<UserActionRequest> emptyList(), ctx.getUserActionRequests());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that recipients the bulk load did not return are skipped rather than handed to the filters.
+     */
+    @Test
+    public void testExecuteSkipsMissingRecipients()
+    {
+        final CreateNotificationsRequest request = new CreateNotificationsRequest(RequestType.COMMENT, 1L, 2L, 3L);
+        final List<PersonModelView> people = new ArrayList<PersonModelView>();
+        for (long id : Arrays.asList(OPTED_OUT_ID, LOCKED_ID))
+        {
+            PersonModelView person = new PersonModelView();
+            person.setEntityId(id);
+            person.setAccountLocked(id == LOCKED_ID);
+            people.add(person);
+        }
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(translator).translate(request);
+                will(returnValue(new NotificationBatch(NotificationType.COMMENT_TO_PERSONAL_POST, RECIPIENT_IDS)));
+
+                allowing(preferencesMapper).execute(RECIPIENT_IDS);
+                will(returnValue(Collections.singletonList(new NotificationFilterPreferenceDTO(OPTED_OUT_ID, EMAIL,
+                        Category.COMMENT))));
+
+                oneOf(bulkPersonMapper).execute(with(any(List.class)));
+                will(returnValue(people));
+
+                oneOf(appAlertNotifier).notify(with(equal(NotificationType.COMMENT_TO_PERSONAL_POST)),
+                        with(equal(Arrays.asList(OPTED_OUT_ID))), with(any(Map.class)));
+                will(returnValue(null));
+            }
+        });
+
+        TaskHandlerActionContext<ActionContext> ctx = TestContextCreator.createTaskHandlerAsyncContext(request);
+        assertEquals(Boolean.TRUE, sut.execute(ctx));
+        context.assertIsSatisfied();
+    }
+}
@@ -29,7 +29,6 @@ import java.util.Map;
 
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.context.Context;
 import org.eurekastreams.commons.server.UserActionRequest;
 import org.eurekastreams.server.action.execution.email.NotificationEmailDTO;
@@ -94,12 +93,15 @@ public class EmailNotifierTest
         }
     };
 
-    /** Apache Velocity templating engine. */
-    private final VelocityEngine velocityEngine = context.mock(VelocityEngine.class);
+    /** Parsed Apache Velocity templates. */
+    private final VelocityTemplateRegistry templateRegistry = context.mock(VelocityTemplateRegistry.class);
 
     /** Global context for Apache Velocity templating engine. (Holds system-wide properties.) */
     private final Context velocityGlobalContext = context.mock(Context.class);
 
+    /** Fixture: velocity template. */
+    private final Template subjectTemplate = context.mock(Template.class, "subjectTemplate");
+
     /** Fixture: velocity template. */
     private final Template textBodyTemplate = context.mock(Template.class, "textBodyTemplate");
 
@@ -144,7 +146,7 @@ public class EmailNotifierTest
     @Before
     public void setUp()
     {
-        sut = new EmailNotifier(velocityEngine, velocityGlobalContext, templates, personsMapper, PREFIX);
+        sut = new EmailNotifier(templateRegistry, velocityGlobalContext, templates, personsMapper, PREFIX);
     }
 
     /**
@@ -172,21 +174,23 @@ public class EmailNotifierTest
         context.checking(new Expectations()
         {
             {
-                oneOf(velocityEngine).getTemplate(HTML_BODY_RESOURCE);
+                oneOf(templateRegistry).getTemplate(HTML_BODY_RESOURCE);
                 will(returnValue(htmlBodyTemplate));
 
-                oneOf(velocityEngine).getTemplate(TEXT_BODY_RESOURCE);
+                oneOf(templateRegistry).getTemplate(TEXT_BODY_RESOURCE);
                 will(returnValue(textBodyTemplate));
 
-                oneOf(velocityEngine).evaluate(with(any(VelocityContext.class)), with(any(StringWriter.class)),
-                        with(equal("EmailSubject-COMMENT_TO_COMMENTED_POST")), with(equal(SUBJECT_TEMPLATE)));
+                oneOf(templateRegistry).getInlineTemplate("EmailSubject-COMMENT_TO_COMMENTED_POST", SUBJECT_TEMPLATE);
+                will(returnValue(subjectTemplate));
+
+                oneOf(subjectTemplate).merge(with(any(VelocityContext.class)), with(any(StringWriter.class)));
                 will(new Action()
                 {
                     @Override
                     public Object invoke(final Invocation inv) throws Throwable
                     {
                         ((StringWriter) inv.getParameter(1)).append(SUBJECT_RENDERED);
-                        return true;
+                        return null;
                     }
 
                     @Override
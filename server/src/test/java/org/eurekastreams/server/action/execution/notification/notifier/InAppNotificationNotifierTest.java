@@ -24,8 +24,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.context.Context;
 import org.eurekastreams.commons.server.UserActionRequest;
 import org.eurekastreams.commons.test.EasyMatcher;
@@ -34,10 +34,9 @@ import org.eurekastreams.server.domain.EntityType;
 import org.eurekastreams.server.domain.Identifiable;
 import org.eurekastreams.server.domain.InAppNotificationEntity;
 import org.eurekastreams.server.domain.NotificationType;
-import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.domain.UnreadInAppNotificationCountDTO;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
-import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
+import org.eurekastreams.server.persistence.mappers.db.notification.InsertInAppNotificationForUsersRequest;
 import org.hamcrest.Description;
 import org.jmock.Expectations;
 import org.jmock.States;
@@ -76,31 +75,24 @@ public class InAppNotificationNotifierTest
         }
     };
 
-    /** Apache Velocity templating engine. */
-    private final VelocityEngine velocityEngine = context.mock(VelocityEngine.class);
+    /** Parsed Apache Velocity templates. */
+    private final VelocityTemplateRegistry templateRegistry = context.mock(VelocityTemplateRegistry.class);
+
+    /** Fixture: velocity template. */
+    private final Template messageTemplate = context.mock(Template.class);
 
     /**
      * Global context for Apache Velocity templating engine. (Holds system-wide properties.)
      */
     private final Context velocityGlobalContext = context.mock(Context.class);
 
-    /** Mapper to persist the notification. */
-    private final DomainMapper<PersistenceRequest<InAppNotificationEntity>, Boolean> insertMapper = context.mock(
-            DomainMapper.class, "insertMapper");
-
-    /** Mapper to sync unread alert count in cache. */
-    private final DomainMapper<Long, UnreadInAppNotificationCountDTO> syncMapper = context.mock(DomainMapper.class,
-            "syncMapper");
-
-    /** Provides a dummy person object for persisting the in-app entity. */
-    private final DomainMapper<Long, Person> placeholderPersonMapper = context.mock(DomainMapper.class,
-            "placeholderPersonMapper");
+    /** Mapper to persist the notification for all recipients at once. */
+    private final DomainMapper<InsertInAppNotificationForUsersRequest, Integer> bulkInsertMapper = context.mock(
+            DomainMapper.class, "bulkInsertMapper");
 
-    /** Dummy person. */
-    private final Person person1 = context.mock(Person.class, "person1");
-
-    /** Dummy person. */
-    private final Person person2 = context.mock(Person.class, "person2");
+    /** Mapper to sync unread alert counts in cache for all recipients at once. */
+    private final DomainMapper<Collection<Long>, Map<Long, UnreadInAppNotificationCountDTO>> bulkSyncMapper = context
+            .mock(DomainMapper.class, "bulkSyncMapper");
 
     /** SUT. */
     private InAppNotificationNotifier sut;
@@ -118,8 +110,8 @@ public class InAppNotificationNotifierTest
     @Before
     public void setUp()
     {
-        sut = new InAppNotificationNotifier(velocityEngine, velocityGlobalContext, templates, insertMapper,
-                syncMapper, placeholderPersonMapper);
+        sut = new InAppNotificationNotifier(templateRegistry, velocityGlobalContext, templates, bulkInsertMapper,
+                bulkSyncMapper);
     }
 
     /**
@@ -147,15 +139,17 @@ public class InAppNotificationNotifierTest
         context.checking(new Expectations()
         {
             {
-                oneOf(velocityEngine).evaluate(with(any(VelocityContext.class)), with(any(StringWriter.class)),
-                        with(equal("InAppNotification-COMMENT_TO_COMMENTED_POST")), with(equal(TEMPLATE)));
+                oneOf(templateRegistry).getInlineTemplate("InAppNotification-COMMENT_TO_COMMENTED_POST", TEMPLATE);
+                will(returnValue(messageTemplate));
+
+                oneOf(messageTemplate).merge(with(any(VelocityContext.class)), with(any(StringWriter.class)));
                 will(new Action()
                 {
                     @Override
                     public Object invoke(final Invocation inv) throws Throwable
                     {
                         ((StringWriter) inv.getParameter(1)).append(RENDERED);
-                        return true;
+                        return null;
                     }
 
                     @Override
@@ -169,7 +163,7 @@ public class InAppNotificationNotifierTest
     }
 
     /**
-     * Tests notify.
+     * Tests notify: the notification is inserted for all recipients at once, then their counts are synced at once.
      *
      * @throws Exception
      *             Won't.
@@ -184,51 +178,25 @@ public class InAppNotificationNotifierTest
         context.checking(new Expectations()
         {
             {
-                oneOf(placeholderPersonMapper).execute(RECIPIENT1);
-                will(returnValue(person1));
-                then(state.is("person1"));
-
-                oneOf(insertMapper).execute(with(new EasyMatcher<PersistenceRequest>()
+                oneOf(bulkInsertMapper).execute(with(new EasyMatcher<InsertInAppNotificationForUsersRequest>()
                 {
                     @Override
-                    protected boolean isMatch(final PersistenceRequest testObject)
+                    protected boolean isMatch(final InsertInAppNotificationForUsersRequest testObject)
                     {
-                        InAppNotificationEntity notif = (InAppNotificationEntity) testObject.getDomainEnity();
-                        return person1 == notif.getRecipient() && RENDERED.equals(notif.getMessage())
-                                && OK_TYPE == notif.getNotificationType() && notif.getUrl() == null
-                                && !notif.isHighPriority() && notif.getSourceType() == EntityType.NOTSET
-                                && notif.getSourceUniqueId() == null && notif.getSourceName() == null
-                                && notif.getAvatarOwnerType() == EntityType.NOTSET
+                        InAppNotificationEntity notif = testObject.getNotification();
+                        return recipients.equals(testObject.getRecipientIds()) && notif.getRecipient() == null
+                                && RENDERED.equals(notif.getMessage()) && OK_TYPE == notif.getNotificationType()
+                                && notif.getUrl() == null && !notif.isHighPriority()
+                                && notif.getSourceType() == EntityType.NOTSET && notif.getSourceUniqueId() == null
+                                && notif.getSourceName() == null && notif.getAvatarOwnerType() == EntityType.NOTSET
                                 && notif.getAvatarOwnerUniqueId() == null;
                     }
                 }));
-                when(state.is("person1"));
-
-                oneOf(syncMapper).execute(RECIPIENT1);
-                when(state.is("person1"));
+                will(returnValue(2));
+                then(state.is("inserted"));
 
-                oneOf(placeholderPersonMapper).execute(RECIPIENT2);
-                will(returnValue(person2));
-                then(state.is("person2"));
-
-                oneOf(insertMapper).execute(with(new EasyMatcher<PersistenceRequest>()
-                {
-                    @Override
-                    protected boolean isMatch(final PersistenceRequest testObject)
-                    {
-                        InAppNotificationEntity notif = (InAppNotificationEntity) testObject.getDomainEnity();
-                        return person2 == notif.getRecipient() && RENDERED.equals(notif.getMessage())
-                                && OK_TYPE == notif.getNotificationType() && notif.getUrl() == null
-                                && !notif.isHighPriority() && notif.getSourceType() == EntityType.NOTSET
-                                && notif.getSourceUniqueId() == null && notif.getSourceName() == null
-                                && notif.getAvatarOwnerType() == EntityType.NOTSET
-                                && notif.getAvatarOwnerUniqueId() == null;
-                    }
-                }));
-                when(state.is("person2"));
-
-                oneOf(syncMapper).execute(RECIPIENT2);
-                when(state.is("person2"));
+                oneOf(bulkSyncMapper).execute(recipients);
+                when(state.is("inserted"));
             }
         });
 
@@ -264,26 +232,25 @@ public class InAppNotificationNotifierTest
         context.checking(new Expectations()
         {
             {
-                oneOf(placeholderPersonMapper).execute(RECIPIENT1);
-                will(returnValue(person1));
-
-                oneOf(insertMapper).execute(with(new EasyMatcher<PersistenceRequest>()
+                oneOf(bulkInsertMapper).execute(with(new EasyMatcher<InsertInAppNotificationForUsersRequest>()
                 {
                     @Override
-                    protected boolean isMatch(final PersistenceRequest testObject)
+                    protected boolean isMatch(final InsertInAppNotificationForUsersRequest testObject)
                     {
-                        InAppNotificationEntity notif = (InAppNotificationEntity) testObject.getDomainEnity();
-                        return person1 == notif.getRecipient() && RENDERED.equals(notif.getMessage())
-                                && OK_TYPE == notif.getNotificationType() && url.equals(notif.getUrl())
-                                && notif.isHighPriority() && notif.getSourceType() == EntityType.GROUP
+                        InAppNotificationEntity notif = testObject.getNotification();
+                        return Collections.singletonList(RECIPIENT1).equals(testObject.getRecipientIds())
+                                && RENDERED.equals(notif.getMessage()) && OK_TYPE == notif.getNotificationType()
+                                && url.equals(notif.getUrl()) && notif.isHighPriority()
+                                && notif.getSourceType() == EntityType.GROUP
                                 && sourceUniqueId.equals(notif.getSourceUniqueId())
                                 && sourceName.equals(notif.getSourceName())
                                 && notif.getAvatarOwnerType() == EntityType.PERSON
                                 && actorUniqueId.equals(notif.getAvatarOwnerUniqueId());
                     }
                 }));
+                will(returnValue(1));
 
-                oneOf(syncMapper).execute(RECIPIENT1);
+                oneOf(bulkSyncMapper).execute(Collections.singletonList(RECIPIENT1));
 
                 allowing(source).getDisplayName();
                 will(returnValue(sourceName));
@@ -313,7 +280,7 @@ public class InAppNotificationNotifierTest
     }
 
     /**
-     * Tests notify.
+     * Tests notify with a recipient that does not exist: it is left to the insert mapper to skip.
      *
      * @throws Exception
      *             Won't.
@@ -326,8 +293,10 @@ public class InAppNotificationNotifierTest
         context.checking(new Expectations()
         {
             {
-                oneOf(placeholderPersonMapper).execute(RECIPIENT1);
-                will(returnValue(null));
+                oneOf(bulkInsertMapper).execute(with(any(InsertInAppNotificationForUsersRequest.class)));
+                will(returnValue(0));
+
+                oneOf(bulkSyncMapper).execute(Collections.singletonList(RECIPIENT1));
             }
         });
 
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.notification.notifier;
+
+import static org.junit.Assert.assertSame;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests VelocityTemplateRegistry.
+ */
+public class VelocityTemplateRegistryTest
+{
+    /** Test data. */
+    private static final String RESOURCE_PATH = "/org/eurekastreams/server/conf/templates/body.vm";
+
+    /** Test data. */
+    private static final String NAME = "EmailSubject-COMMENT_TO_COMMENTED_POST";
+
+    /** Test data. */
+    private static final String TEXT = "$actor.displayName commented";
+
+    /** Used for mocking objects. */
+    private final JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Apache Velocity templating engine. */
+    private final VelocityEngine velocityEngine = context.mock(VelocityEngine.class);
+
+    /** Repository the engine reads inline templates from. */
+    private final StringResourceRepository stringRepository = context.mock(StringResourceRepository.class);
+
+    /** Fixture: velocity template. */
+    private final Template template = context.mock(Template.class);
+
+    /** SUT. */
+    private VelocityTemplateRegistry sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new VelocityTemplateRegistry(velocityEngine, stringRepository);
+    }
+
+    /**
+     * Tests that a resource template is only loaded and parsed once.
+     */
+    @Test
+    public void testGetTemplate()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(velocityEngine).getTemplate(RESOURCE_PATH);
+                will(returnValue(template));
+            }
+        });
+
+        assertSame(template, sut.getTemplate(RESOURCE_PATH));
+        assertSame(template, sut.getTemplate(RESOURCE_PATH));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that an inline template is only registered and parsed once.
+     */
+    @Test
+    public void testGetInlineTemplate()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(stringRepository).putStringResource(NAME, TEXT);
+
+                oneOf(velocityEngine).getTemplate(NAME);
+                will(returnValue(template));
+            }
+        });
+
+        assertSame(template, sut.getInlineTemplate(NAME, TEXT));
+        assertSame(template, sut.getInlineTemplate(NAME, TEXT));
+        context.assertIsSatisfied();
+    }
+}
@@ -15,18 +15,32 @@
  */
 package org.eurekastreams.server.action.execution.settings;
 
+import static org.junit.Assert.assertEquals;
+
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eurekastreams.commons.exceptions.ExecutionException;
 
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.domain.dto.MembershipCriteriaDTO;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.ldap.PageHandler;
 import org.eurekastreams.server.persistence.mappers.requests.MapperRequest;
+import org.eurekastreams.server.service.actions.strategies.PagedPersonLookupStrategy;
 import org.eurekastreams.server.service.actions.strategies.PersonLookupStrategy;
 import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
 import org.junit.Test;
 
 /**
@@ -77,6 +91,23 @@ public class PersonSourceLDAPTest
     private List<MembershipCriteriaDTO> criteriaList = // \n
     new ArrayList<MembershipCriteriaDTO>(Arrays.asList(membershipCriteria));
 
+    /**
+     * Paged group lookup strategy.
+     */
+    private PagedPersonLookupStrategy pagedGroupLookupStrategy = context.mock(PagedPersonLookupStrategy.class,
+            "pagedGroup");
+
+    /**
+     * Paged attribute-based lookup strategy.
+     */
+    private PagedPersonLookupStrategy pagedAttributeLookupStrategy = context.mock(PagedPersonLookupStrategy.class,
+            "pagedAttrib");
+
+    /**
+     * Executor for the concurrent queries.
+     */
+    private ExecutorService executor = Executors.newSingleThreadExecutor();
+
     /**
      * Test.
      */
@@ -127,4 +158,161 @@ public class PersonSourceLDAPTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Shuts down the executor.
+     */
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Builds a person with the given account id.
+     * 
+     * @param accountId
+     *            The account id.
+     * @return The person.
+     */
+    private Person person(final String accountId)
+    {
+        final Person person = context.mock(Person.class, accountId);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(person).getAccountId();
+                will(returnValue(accountId));
+            }
+        });
+        return person;
+    }
+
+    /**
+     * Builds an action which delivers the given pages to the page handler parameter.
+     * 
+     * @param pages
+     *            The pages.
+     * @return The action.
+     */
+    private Action deliverPages(final List<Person>... pages)
+    {
+        return new CustomAction("deliver pages")
+        {
+            public Object invoke(final Invocation inInvocation)
+            {
+                int count = 0;
+                for (List<Person> page : pages)
+                {
+                    ((PageHandler<Person>) inInvocation.getParameter(1)).handlePage(new ArrayList<Person>(page));
+                    count += page.size();
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Test concurrent paged enumeration: all pages of all criteria are delivered, each person once.
+     */
+    @Test
+    public void testPagedConcurrent()
+    {
+        PersonSourceLDAP pagedSut = new PersonSourceLDAP(membershipCriteriaDAO, pagedGroupLookupStrategy,
+                pagedAttributeLookupStrategy, executor);
+
+        final MembershipCriteriaDTO groupCriteria = context.mock(MembershipCriteriaDTO.class, "groupCriteria");
+        final Person p1 = person("p1");
+        final Person p2 = person("p2");
+        final Person p3 = person("p3");
+        final List<Person> delivered = new ArrayList<Person>();
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(membershipCriteriaDAO).execute(null);
+                will(returnValue(Arrays.asList(membershipCriteria, groupCriteria)));
+
+                allowing(membershipCriteria).getCriteria();
+                will(returnValue("a=b"));
+
+                allowing(groupCriteria).getCriteria();
+                will(returnValue("group"));
+
+                oneOf(pagedAttributeLookupStrategy).findPeople(with(equal("a=b")), with(any(PageHandler.class)));
+                will(deliverPages(Arrays.asList(p1), Arrays.asList(p2)));
+
+                oneOf(pagedGroupLookupStrategy).findPeople(with(equal("group")), with(any(PageHandler.class)));
+                will(deliverPages(Arrays.asList(p2, p3)));
+            }
+        });
+
+        pagedSut.getPeople(new PageHandler<Person>()
+        {
+            public void handlePage(final List<Person> inPage)
+            {
+                delivered.addAll(inPage);
+            }
+        });
+
+        context.assertIsSatisfied();
+        assertEquals(3, delivered.size());
+        assertEquals(new HashSet<Person>(Arrays.asList(p1, p2, p3)), new HashSet<Person>(delivered));
+    }
+
+    /**
+     * Test that a failed query fails the whole enumeration.
+     */
+    @Test(expected = ExecutionException.class)
+    public void testPagedQueryFails()
+    {
+        PersonSourceLDAP pagedSut = new PersonSourceLDAP(membershipCriteriaDAO, pagedGroupLookupStrategy,
+                pagedAttributeLookupStrategy, executor);
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(membershipCriteriaDAO).execute(null);
+                will(returnValue(criteriaList));
+
+                allowing(membershipCriteria).getCriteria();
+                will(returnValue("group"));
+
+                oneOf(pagedGroupLookupStrategy).findPeople(with(equal("group")), with(any(PageHandler.class)));
+                will(throwException(new RuntimeException("LDAP is down")));
+            }
+        });
+
+        pagedSut.getPeople();
+    }
+
+    /**
+     * Test the set view collects all the people.
+     */
+    @Test
+    public void testGetPeopleSet()
+    {
+        PersonSourceLDAP pagedSut = new PersonSourceLDAP(membershipCriteriaDAO, pagedGroupLookupStrategy,
+                pagedAttributeLookupStrategy, executor);
+        final Person p1 = person("p1");
+        final Person p2 = person("p2");
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(membershipCriteriaDAO).execute(null);
+                will(returnValue(criteriaList));
+
+                allowing(membershipCriteria).getCriteria();
+                will(returnValue("group"));
+
+                oneOf(pagedGroupLookupStrategy).findPeople(with(equal("group")), with(any(PageHandler.class)));
+                will(deliverPages(Arrays.asList(p1), Arrays.asList(p2)));
+            }
+        });
+
+        Set<Person> people = pagedSut.getPeople();
+
+        context.assertIsSatisfied();
+        assertEquals(2, people.size());
+    }
 }
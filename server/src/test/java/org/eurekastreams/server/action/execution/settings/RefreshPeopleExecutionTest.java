@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
@@ -31,9 +32,14 @@ import org.eurekastreams.server.action.request.SetPersonLockedStatusRequest;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.domain.SystemSettings;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.ldap.PageHandler;
 import org.eurekastreams.server.persistence.mappers.requests.MapperRequest;
+import org.eurekastreams.server.service.utility.PersonDirectoryDigest;
 import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.Test;
 
@@ -78,6 +84,12 @@ public class RefreshPeopleExecutionTest
     private final DomainMapper<MapperRequest, SystemSettings> settingsMapper = context.mock(DomainMapper.class,
             "settingsMapper");
 
+    /**
+     * Directory digest mapper.
+     */
+    private final DomainMapper<Boolean, Map<String, String>> directoryDigestsDAO = context.mock(DomainMapper.class,
+            "directoryDigestsDAO");
+
     /**
      * Person.
      */
@@ -109,6 +121,25 @@ public class RefreshPeopleExecutionTest
     private final RefreshPeopleExecution sut = new RefreshPeopleExecution(source, "create", "lock", "refresh",
             personIdsByLockedStatusDAO, settingsMapper);
 
+    /**
+     * Builds an action which delivers people to the page handler given to the source.
+     *
+     * @param people
+     *            The people.
+     * @return The action.
+     */
+    private Action deliverPeople(final Set<Person> people)
+    {
+        return new CustomAction("deliver people")
+        {
+            public Object invoke(final Invocation inInvocation)
+            {
+                ((PageHandler<Person>) inInvocation.getParameter(0)).handlePage(new ArrayList<Person>(people));
+                return null;
+            }
+        };
+    }
+
     /**
      * Test.
      */
@@ -125,8 +156,8 @@ public class RefreshPeopleExecutionTest
         context.checking(new Expectations()
         {
             {
-                allowing(source).getPeople();
-                will(returnValue(people));
+                allowing(source).getPeople(with(any(PageHandler.class)));
+                will(deliverPeople(people));
 
                 allowing(personIdsByLockedStatusDAO).execute(false);
                 will(returnValue(new ArrayList<String>()));
@@ -191,8 +222,8 @@ public class RefreshPeopleExecutionTest
         context.checking(new Expectations()
         {
             {
-                allowing(source).getPeople();
-                will(returnValue(people));
+                allowing(source).getPeople(with(any(PageHandler.class)));
+                will(deliverPeople(people));
 
                 allowing(personIdsByLockedStatusDAO).execute(false);
                 will(returnValue(new ArrayList<String>()));
@@ -254,8 +285,8 @@ public class RefreshPeopleExecutionTest
         context.checking(new Expectations()
         {
             {
-                allowing(source).getPeople();
-                will(returnValue(people));
+                allowing(source).getPeople(with(any(PageHandler.class)));
+                will(deliverPeople(people));
 
                 allowing(personIdsByLockedStatusDAO).execute(false);
                 will(returnValue(unlocked));
@@ -331,8 +362,8 @@ public class RefreshPeopleExecutionTest
         context.checking(new Expectations()
         {
             {
-                allowing(source).getPeople();
-                will(returnValue(people));
+                allowing(source).getPeople(with(any(PageHandler.class)));
+                will(deliverPeople(people));
 
                 allowing(personIdsByLockedStatusDAO).execute(false);
                 will(returnValue(unlocked));
@@ -393,8 +424,8 @@ public class RefreshPeopleExecutionTest
         context.checking(new Expectations()
         {
             {
-                allowing(source).getPeople();
-                will(returnValue(people));
+                allowing(source).getPeople(with(any(PageHandler.class)));
+                will(deliverPeople(people));
 
                 allowing(personIdsByLockedStatusDAO).execute(false);
                 will(returnValue(unlocked));
@@ -468,8 +499,8 @@ public class RefreshPeopleExecutionTest
         context.checking(new Expectations()
         {
             {
-                allowing(source).getPeople();
-                will(returnValue(people));
+                allowing(source).getPeople(with(any(PageHandler.class)));
+                will(deliverPeople(people));
 
                 allowing(personIdsByLockedStatusDAO).execute(false);
                 will(returnValue(unlocked));
@@ -512,4 +543,86 @@ public class RefreshPeopleExecutionTest
 
         context.assertIsSatisfied();
     }
+
+    /**
+     * Test that only people whose directory attributes changed are refreshed, in batches.
+     */
+    @Test
+    public void testRefreshOnlyChanged()
+    {
+        RefreshPeopleExecution tempSut = new RefreshPeopleExecution(source, "create", "lock", "refresh",
+                personIdsByLockedStatusDAO, settingsMapper, directoryDigestsDAO, 2);
+
+        final Set<Person> people = new HashSet<Person>();
+        final Map<String, String> digests = new HashMap<String, String>();
+        final List<UserActionRequest> list = new ArrayList<UserActionRequest>();
+
+        people.add(person1);
+        people.add(person2);
+        people.add(person3);
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(source).getPeople(with(any(PageHandler.class)));
+                will(deliverPeople(people));
+
+                allowing(directoryDigestsDAO).execute(false);
+                will(returnValue(digests));
+
+                allowing(personIdsByLockedStatusDAO).execute(true);
+                will(returnValue(new ArrayList<String>()));
+
+                allowing(settingsMapper).execute(null);
+                will(returnValue(settings));
+
+                allowing(settings).getSendWelcomeEmails();
+                will(returnValue(false));
+
+                allowing(person1).getAccountId();
+                will(returnValue("p1"));
+                allowing(person1).getLastName();
+                will(returnValue("One"));
+                allowing(person1).getCompanyName();
+                will(returnValue("Company"));
+                allowing(person1).getAdditionalProperties();
+                will(returnValue(null));
+
+                allowing(person2).getAccountId();
+                will(returnValue("p2"));
+                allowing(person2).getLastName();
+                will(returnValue("Two"));
+                allowing(person2).getCompanyName();
+                will(returnValue("Company"));
+                allowing(person2).getAdditionalProperties();
+                will(returnValue(null));
+
+                allowing(person3).getAccountId();
+                will(returnValue("p3"));
+                allowing(person3).getLastName();
+                will(returnValue("Three"));
+                allowing(person3).getCompanyName();
+                will(returnValue(null));
+                allowing(person3).getAdditionalProperties();
+                will(returnValue(null));
+
+                allowing(actionContext).getUserActionRequests();
+                will(returnValue(list));
+            }
+        });
+
+        // p1 unchanged, p2 changed, p3 never recorded
+        digests.put("p1", PersonDirectoryDigest.compute(person1));
+        digests.put("p2", "stale");
+        digests.put("p3", null);
+
+        tempSut.execute(actionContext);
+
+        assertEquals(1, list.size());
+        assertEquals("refresh", list.get(0).getActionKey());
+        List<Person> batch = (List<Person>) list.get(0).getParams();
+        assertEquals(new HashSet<Person>(Arrays.asList(person2, person3)), new HashSet<Person>(batch));
+
+        context.assertIsSatisfied();
+    }
 }
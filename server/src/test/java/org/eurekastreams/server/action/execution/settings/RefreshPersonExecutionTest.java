@@ -18,6 +18,7 @@ package org.eurekastreams.server.action.execution.settings;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eurekastreams.commons.actions.context.ActionContext;
@@ -100,6 +101,41 @@ public class RefreshPersonExecutionTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test refreshing a batch of people.
+     */
+    @Test
+    public void testExecuteBatch()
+    {
+        final Person ldapPerson2 = context.mock(Person.class, "person2");
+        final List<UserActionRequest> requests = new ArrayList<UserActionRequest>();
+        context.checking(new Expectations()
+        {
+            {
+                allowing(taskHandlerActionContext).getActionContext();
+                will(returnValue(actionContext));
+
+                allowing(actionContext).getParams();
+                will(returnValue(new ArrayList<Person>(Arrays.asList(ldapPerson, ldapPerson2))));
+
+                oneOf(updatePersonMapper).execute(with(ldapPerson));
+                will(returnValue(new UpdatePersonResponse(1L, false)));
+
+                oneOf(updatePersonMapper).execute(with(ldapPerson2));
+                will(returnValue(new UpdatePersonResponse(2L, true)));
+
+                oneOf(taskHandlerActionContext).getUserActionRequests();
+                will(returnValue(requests));
+            }
+        });
+
+        sut.execute(taskHandlerActionContext);
+
+        assertEquals(1, requests.size());
+        assertEquals(2L, requests.get(0).getParams());
+        context.assertIsSatisfied();
+    }
+
     /**
      * Test where no cache update is needed.
      */
@@ -18,8 +18,10 @@ package org.eurekastreams.server.action.execution.stream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import junit.framework.Assert;
@@ -223,4 +225,56 @@ public class ActivitySecurityTrimmerTest
         Assert.assertEquals(0, sut.trim(Arrays.asList(activityId), userId).size());
         context.assertIsSatisfied();
     }
+
+    /**
+     * Test that the visible groups are only looked up once when trimming several batches with the same memo, and that
+     * the input order is preserved.
+     */
+    @Test
+    public void testVisibleGroupsMemoizedAcrossTrims()
+    {
+        final ActivitySecurityDTO asd2 = context.mock(ActivitySecurityDTO.class, "asd2");
+        final Long activityId2 = activityId + 1;
+
+        final Collection<ActivitySecurityDTO> asdCollection = new ArrayList<ActivitySecurityDTO>();
+        asdCollection.add(asd2);
+        asdCollection.add(asd);
+
+        final Set<Long> visibleDestinationEntityIds = new HashSet<Long>();
+        visibleDestinationEntityIds.add(destinationEntityId);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(getVisibleGroupsForUserMapper).execute(userId);
+                will(returnValue(visibleDestinationEntityIds));
+
+                allowing(securityMapper).execute(with(any(List.class)));
+                will(returnValue(asdCollection));
+
+                allowing(asd).isDestinationStreamPublic();
+                will(returnValue(false));
+                allowing(asd).getDestinationEntityId();
+                will(returnValue(destinationEntityId));
+                allowing(asd).getExists();
+                will(returnValue(true));
+                allowing(asd).getId();
+                will(returnValue(activityId));
+
+                allowing(asd2).isDestinationStreamPublic();
+                will(returnValue(true));
+                allowing(asd2).getExists();
+                will(returnValue(true));
+                allowing(asd2).getId();
+                will(returnValue(activityId2));
+            }
+        });
+
+        Map<Long, Set<Long>> memo = new HashMap<Long, Set<Long>>();
+        Assert.assertEquals(Arrays.asList(activityId, activityId2), sut.trim(Arrays.asList(activityId, activityId2),
+                userId, memo));
+        Assert.assertEquals(Arrays.asList(activityId2, activityId), sut.trim(Arrays.asList(activityId2, activityId),
+                userId, memo));
+        context.assertIsSatisfied();
+    }
 }
@@ -16,6 +16,7 @@
 package org.eurekastreams.server.action.execution.stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -85,6 +86,7 @@ public class DeleteActivitiesByIdsExecutionTest
     /**
      * Test the execution fo the {@link DeleteActivitiesByIdsExecution} class.
      */
+    @SuppressWarnings("unchecked")
     @Test
     public void testExecute()
     {
@@ -115,14 +117,16 @@ public class DeleteActivitiesByIdsExecutionTest
 
         sut.execute(actionContext);
         // assert that the UserActionRequest list that came out is valid.
-        assertEquals(8, actionContext.getUserActionRequests().size());
+        assertEquals(3, actionContext.getUserActionRequests().size());
         assertEquals("deleteFromSearchIndexAction", actionContext.getUserActionRequests().get(0).getActionKey());
         assertEquals("deleteIdsFromLists", actionContext.getUserActionRequests().get(1).getActionKey());
-        // There should be four individual deleteCacheKeysAction UserActionRequests, 2 for the two activities,
-        // and 2 for the 2 comments to be deleted.
+        // A single deleteCacheKeysAction UserActionRequest with all the keys: 2 activities, 2 activity security
+        // records and 2 comments.
         assertEquals("deleteCacheKeysAction", actionContext.getUserActionRequests().get(2).getActionKey());
-        assertEquals("deleteCacheKeysAction", actionContext.getUserActionRequests().get(3).getActionKey());
-        assertEquals("deleteCacheKeysAction", actionContext.getUserActionRequests().get(4).getActionKey());
-        assertEquals("deleteCacheKeysAction", actionContext.getUserActionRequests().get(5).getActionKey());
+        Set<String> deleteKeys = (Set<String>) actionContext.getUserActionRequests().get(2).getParams();
+        assertEquals(6, deleteKeys.size());
+        assertTrue(deleteKeys.contains(CacheKeys.ACTIVITY_BY_ID + 1L));
+        assertTrue(deleteKeys.contains(CacheKeys.ACTIVITY_SECURITY_BY_ID + 2L));
+        assertTrue(deleteKeys.contains(CacheKeys.COMMENT_BY_ID + 2L));
     }
 }
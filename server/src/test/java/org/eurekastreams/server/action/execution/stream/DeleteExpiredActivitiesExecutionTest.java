@@ -18,20 +18,15 @@ package org.eurekastreams.server.action.execution.stream;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import org.eurekastreams.commons.actions.context.PrincipalActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.server.UserActionRequest;
-import org.eurekastreams.server.action.request.DeleteFromSearchIndexRequest;
 import org.eurekastreams.server.domain.SystemSettings;
-import org.eurekastreams.server.domain.stream.Activity;
-import org.eurekastreams.server.persistence.mappers.DeleteFromSearchIndex;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
-import org.eurekastreams.server.persistence.mappers.cache.RemoveExpiredActivities;
-import org.eurekastreams.server.persistence.mappers.db.GetExpiredActivities;
-import org.eurekastreams.server.persistence.mappers.db.GetListsContainingActivities;
+import org.eurekastreams.server.persistence.mappers.db.ExpiredActivityPurgeDbMapper;
 import org.eurekastreams.server.persistence.mappers.requests.MapperRequest;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -59,8 +54,7 @@ public class DeleteExpiredActivitiesExecutionTest
     /**
      * ActionContext mock.
      */
-    @SuppressWarnings("unchecked")
-    private TaskHandlerActionContext actionContext = context.mock(TaskHandlerActionContext.class);
+    private PrincipalActionContext principalContext = context.mock(PrincipalActionContext.class);
 
     /**
      * {@link FindSystemSettings} mock.
@@ -68,34 +62,14 @@ public class DeleteExpiredActivitiesExecutionTest
     private DomainMapper<MapperRequest, SystemSettings> settingsMapper = context.mock(DomainMapper.class);
 
     /**
-     * {@link GetExpiredActivities} mock.
+     * {@link ExpiredActivityPurgeDbMapper} mock.
      */
-    private GetExpiredActivities expiredActivitiesMapper = context.mock(GetExpiredActivities.class);
+    private ExpiredActivityPurgeDbMapper purgeMapper = context.mock(ExpiredActivityPurgeDbMapper.class);
 
     /**
-     * {@link GetListsContainingActivities} mock.
+     * Queued requests.
      */
-    private GetListsContainingActivities listsMapper = context.mock(GetListsContainingActivities.class);
-
-    /**
-     * {@link RemoveExpiredActivities} mock.
-     */
-    private RemoveExpiredActivities deleteMapper = context.mock(RemoveExpiredActivities.class);
-
-    /**
-     * {@link DeleteFromSearchIndex} mock.
-     */
-    private DeleteFromSearchIndex indexDeleteMapper = context.mock(DeleteFromSearchIndex.class);
-
-    /**
-     * Test chunk size.
-     */
-    private int chunkSize = 2;
-
-    /**
-     * {@link Activity} mock.
-     */
-    private Activity activity = context.mock(Activity.class);
+    private List<UserActionRequest> requests = new ArrayList<UserActionRequest>();
 
     /**
      * The system under test.
@@ -108,91 +82,78 @@ public class DeleteExpiredActivitiesExecutionTest
     @Before
     public void setUp()
     {
-        sut = new DeleteExpiredActivitiesExecution(settingsMapper, expiredActivitiesMapper, chunkSize);
+        sut = new DeleteExpiredActivitiesExecution(settingsMapper, purgeMapper);
     }
 
     /**
-     * Test execute method.
+     * Sets up the settings mapper.
      *
-     * @throws Exception
-     *             not expected.
+     * @param expireDays
+     *            the content expiration.
      */
-    @SuppressWarnings("unchecked")
-    @Test
-    public void testPerformAction() throws Exception
+    private void expectSettings(final int expireDays)
     {
         context.checking(new Expectations()
         {
             {
-                final int expireDays = 20;
                 SystemSettings settings = new SystemSettings();
                 settings.setContentExpiration(expireDays);
                 allowing(settingsMapper).execute(null);
                 will(returnValue(settings));
+            }
+        });
+    }
 
-                List<Long> activities = new ArrayList<Long>();
-                activities.add(1L);
-                activities.add(2L);
-                activities.add(3L);
-
-                allowing(expiredActivitiesMapper).execute(with(any(Date.class)));
-                will(returnValue(activities));
-
-                // first chunk
-                allowing(listsMapper).execute(with(any(List.class)));
-                will(returnValue(Arrays.asList("cacheKey1", "cacheKey2")));
-
-                allowing(deleteMapper).execute(with(any(List.class)));
-
-                List<UserActionRequest> requests = new ArrayList<UserActionRequest>();
-                oneOf(actionContext).getUserActionRequests();
-                will(returnValue(requests));
-
-                allowing(indexDeleteMapper).execute(with(any(DeleteFromSearchIndexRequest.class)));
-
-                // second chunk
-                allowing(listsMapper).execute(with(any(List.class)));
-                will(returnValue(Arrays.asList("cacheKey3")));
-
-                allowing(deleteMapper).execute(with(any(List.class)));
-
-                requests = new ArrayList<UserActionRequest>();
-                oneOf(actionContext).getUserActionRequests();
-                will(returnValue(requests));
-
-                allowing(indexDeleteMapper).execute(with(any(DeleteFromSearchIndexRequest.class)));
+    /**
+     * Test a purge is started.
+     */
+    @Test
+    public void testStart()
+    {
+        expectSettings(20);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(purgeMapper).start(with(any(Date.class)));
+                will(returnValue(true));
             }
         });
 
-        Boolean result = sut.execute(actionContext);
+        assertTrue(sut.execute(new TaskHandlerActionContext<PrincipalActionContext>(principalContext, requests)));
         context.assertIsSatisfied();
-        assertTrue(result);
+        assertTrue(requests.isEmpty());
     }
 
     /**
-     * Test execute method with no work to do.
-     *
-     * @throws Exception
-     *             not expected.
+     * Test nothing changes when a purge is already in progress.
      */
-    @SuppressWarnings("unchecked")
     @Test
-    public void testPerformActionNoWork() throws Exception
+    public void testStartWhileInProgress()
     {
+        expectSettings(20);
         context.checking(new Expectations()
         {
             {
-                final int expireDays = 0;
-                SystemSettings settings = new SystemSettings();
-                settings.setContentExpiration(expireDays);
-                allowing(settingsMapper).execute(null);
-                will(returnValue(settings));
+                oneOf(purgeMapper).start(with(any(Date.class)));
+                will(returnValue(false));
             }
         });
 
-        Boolean result = sut.execute(actionContext);
+        assertTrue(sut.execute(new TaskHandlerActionContext<PrincipalActionContext>(principalContext, requests)));
         context.assertIsSatisfied();
-        assertTrue(result);
+        assertTrue(requests.isEmpty());
     }
 
+    /**
+     * Test execute method with no work to do.
+     */
+    @Test
+    public void testPerformActionNoWork()
+    {
+        expectSettings(0);
+
+        assertTrue(sut.execute(new TaskHandlerActionContext<PrincipalActionContext>(principalContext, requests)));
+        context.assertIsSatisfied();
+        assertTrue(requests.isEmpty());
+    }
 }
@@ -15,9 +15,6 @@
  */
 package org.eurekastreams.server.action.execution.stream;
 
-import java.util.Arrays;
-import java.util.List;
-
 import junit.framework.Assert;
 
 import org.eurekastreams.commons.actions.context.Principal;
@@ -55,14 +52,17 @@ public class GetActivityCountTest
     private GetActivityIdsByJson getIdsMock = context.mock(GetActivityIdsByJson.class);
 
     /**
-     * Test. Put in 3 things, get a count of 3.
+     * Most activities to count.
+     */
+    private static final int MAX_COUNT = 100;
+
+    /**
+     * Test. Counter finds 3 things, get a count of 3.
      */
     @Test
     public void execute()
     {
-        final List<Long> activities = Arrays.asList(1L, 2L, 3L);
-
-        sut = new GetActivityCount(getIdsMock);
+        sut = new GetActivityCount(getIdsMock, MAX_COUNT);
 
         final PrincipalActionContext actionContext = context.mock(PrincipalActionContext.class);
         final String request = "{}";
@@ -82,8 +82,8 @@ public class GetActivityCountTest
                 oneOf(principle).getId();
                 will(returnValue(userId));
                 
-                oneOf(getIdsMock).execute(request, userId);
-                will(returnValue(activities));
+                oneOf(getIdsMock).count(request, userId, MAX_COUNT);
+                will(returnValue(3));
             }
         });
 
@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import net.sf.json.JSONObject;
 
@@ -32,6 +33,7 @@ import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.search.modelview.PersonModelView;
 import org.eurekastreams.server.service.actions.strategies.activity.ActivityFilter;
 import org.eurekastreams.server.service.actions.strategies.activity.ListCollider;
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderCursor;
 import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderDataSource;
 import org.eurekastreams.server.service.actions.strategies.activity.datasources.SortedDataSource;
 import org.jmock.Expectations;
@@ -82,6 +84,11 @@ public class GetActivityIdsByJsonTest
      */
     private DescendingOrderDataSource memcacheDS = context.mock(DescendingOrderDataSource.class, "memcache");
 
+    /**
+     * Cursor over the memcache data source.
+     */
+    private DescendingOrderCursor memcacheCursor = context.mock(DescendingOrderCursor.class);
+
     /**
      * Lucene Data source.
      */
@@ -118,6 +125,46 @@ public class GetActivityIdsByJsonTest
      */
     private static final int THENUMBERTWENTY = 20;
 
+    /**
+     * Max id used by the paging test.
+     */
+    private static final long MAX_ID = 2817L;
+
+    /**
+     * First batch size of the paging test.
+     */
+    private static final int BATCH_ONE = 4;
+
+    /**
+     * Second batch size of the paging test.
+     */
+    private static final int BATCH_TWO = 8;
+
+    /**
+     * Third batch size of the paging test.
+     */
+    private static final int BATCH_THREE = 16;
+
+    /**
+     * Batch size for a count of three.
+     */
+    private static final int BATCH_SIX = 6;
+
+    /**
+     * Max id used by the private activities test.
+     */
+    private static final long SEVEN = 7L;
+
+    /**
+     * Most activities to count in the counting tests.
+     */
+    private static final int MAX_COUNT = 100;
+
+    /**
+     * Limit used by the counting limit test.
+     */
+    private static final int COUNT_LIMIT = 3;
+
     /**
      * Setup text fixtures.
      */
@@ -160,6 +207,7 @@ public class GetActivityIdsByJsonTest
                 memcacheIds.add(2L);
 
                 ArrayList<Long> luceneIds = new ArrayList<Long>();
+                luceneIds.add(2L);
 
                 ActivityDTO dto = new ActivityDTO();
                 dto.setId(3);
@@ -169,17 +217,22 @@ public class GetActivityIdsByJsonTest
                 ArrayList<Long> combinedIds = new ArrayList<Long>();
                 combinedIds.add(2L);
 
-                oneOf(memcacheDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                oneOf(memcacheDS).openCursor(with(any(JSONObject.class)), with(any(Long.class)),
+                        with(equal(Long.MAX_VALUE)));
+                will(returnValue(memcacheCursor));
+
+                oneOf(memcacheCursor).next(THENUMBERTEN * 2);
                 will(returnValue(memcacheIds));
 
                 oneOf(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
                 will(returnValue(luceneIds));
 
                 oneOf(andCollider).collide(with(equalInternally(memcacheIds)), with(equalInternally(luceneIds)),
-                        with(equalInternally(THENUMBERTEN * 2)));
+                        with(equal(1)));
                 will(returnValue(combinedIds));
 
-                oneOf(securityTrimmer).trim(combinedIds, personId);
+                oneOf(securityTrimmer).trim(with(equal(combinedIds)), with(equal(personId)),
+                        with(any(Map.class)));
                 will(returnValue(combinedIds));
             }
         });
@@ -214,6 +267,7 @@ public class GetActivityIdsByJsonTest
                 memcacheIds.add(2L);
 
                 ArrayList<Long> luceneIds = new ArrayList<Long>();
+                luceneIds.add(2L);
 
                 ActivityDTO dto = new ActivityDTO();
                 dto.setId(3);
@@ -223,7 +277,11 @@ public class GetActivityIdsByJsonTest
                 ArrayList<Long> combinedIds = new ArrayList<Long>();
                 combinedIds.add(2L);
 
-                oneOf(memcacheDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                oneOf(memcacheDS).openCursor(with(any(JSONObject.class)), with(any(Long.class)),
+                        with(equal(Long.MAX_VALUE)));
+                will(returnValue(memcacheCursor));
+
+                oneOf(memcacheCursor).next(THENUMBERTEN * 2);
                 will(returnValue(memcacheIds));
 
                 oneOf(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
@@ -236,10 +294,11 @@ public class GetActivityIdsByJsonTest
                 will(returnValue("acctid"));
 
                 oneOf(andCollider).collide(with(equalInternally(memcacheIds)), with(equalInternally(luceneIds)),
-                        with(equalInternally(THENUMBERTEN * 2)));
+                        with(equal(1)));
                 will(returnValue(combinedIds));
 
-                oneOf(securityTrimmer).trim(combinedIds, personId);
+                oneOf(securityTrimmer).trim(with(equal(combinedIds)), with(equal(personId)),
+                        with(any(Map.class)));
                 will(returnValue(combinedIds));
             }
         });
@@ -250,6 +309,49 @@ public class GetActivityIdsByJsonTest
         assertEquals(1, results.size());
     }
 
+    /**
+     * Test the results keep the sorted data source's order when its ids span several reads of the cursor.
+     */
+    @Test
+    public void testPerformActionSortedAcrossBatches()
+    {
+        final String request = "{ \"count\": 2, \"query\": { \"keywords\": \"foo\" } }";
+
+        final List<Long> luceneIds = Arrays.asList(1L, 9L, 5L);
+        final List<Long> firstRead = allActivityIds.subList(0, BATCH_ONE);
+        final List<Long> secondRead = allActivityIds.subList(BATCH_ONE, allActivityIds.size());
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                will(returnValue(luceneIds));
+
+                oneOf(memcacheDS).openCursor(with(any(JSONObject.class)), with(any(Long.class)),
+                        with(equal(Long.MAX_VALUE)));
+                will(returnValue(memcacheCursor));
+
+                oneOf(memcacheCursor).next(BATCH_ONE);
+                will(returnValue(firstRead));
+
+                oneOf(memcacheCursor).next(BATCH_TWO);
+                will(returnValue(secondRead));
+
+                oneOf(andCollider).collide(with(equal(allActivityIds)), with(equal(luceneIds)),
+                        with(equal(luceneIds.size())));
+                will(returnValue(luceneIds));
+
+                oneOf(securityTrimmer).trim(with(equal(luceneIds)), with(equal(personId)), with(any(Map.class)));
+                will(returnValue(luceneIds));
+            }
+        });
+
+        List<Long> results = sut.execute(request, personId);
+
+        context.assertIsSatisfied();
+        assertEquals(Arrays.asList(1L, 9L), results);
+    }
+
     /**
      * Test executing a page of data where the user needs three batches to get a full page of activities he can see.
      */
@@ -258,47 +360,21 @@ public class GetActivityIdsByJsonTest
     {
         final String request = "{ \"count\": 2, \"maxId\": 2817 }";
 
+        // the cursor continues where the previous batch stopped, so each batch only holds new ids
         final ArrayList<Long> activityIdsFirstPass = new ArrayList<Long>();
         activityIdsFirstPass.add(allActivityIds.get(0)); // 9 // 2 * 2^1 = 4
         activityIdsFirstPass.add(allActivityIds.get(1)); // 8
         activityIdsFirstPass.add(allActivityIds.get(2)); // 7
         activityIdsFirstPass.add(allActivityIds.get(3)); // 6
 
-        final ArrayList<Long> activityIdsFirstPassNewItems = new ArrayList<Long>();
-        activityIdsFirstPassNewItems.add(allActivityIds.get(0)); // 9
-        activityIdsFirstPassNewItems.add(allActivityIds.get(1)); // 8
-        activityIdsFirstPassNewItems.add(allActivityIds.get(2)); // 7
-        activityIdsFirstPassNewItems.add(allActivityIds.get(3)); // 6
-
         final ArrayList<Long> activityIdsSecondPass = new ArrayList<Long>();
-        activityIdsSecondPass.add(allActivityIds.get(0)); // 9 // 2 * 2^2 + 1 = 9
-        activityIdsSecondPass.add(allActivityIds.get(1)); // 8
-        activityIdsSecondPass.add(allActivityIds.get(2)); // 7
-        activityIdsSecondPass.add(allActivityIds.get(3)); // 6
-        activityIdsSecondPass.add(allActivityIds.get(4)); // 5
+        activityIdsSecondPass.add(allActivityIds.get(4)); // 5 // 2 * 2^2 = 8
         activityIdsSecondPass.add(allActivityIds.get(5)); // 4
         activityIdsSecondPass.add(allActivityIds.get(6)); // 3
         activityIdsSecondPass.add(allActivityIds.get(7)); // 2
 
-        final ArrayList<Long> activityIdsSecondPassNewItems = new ArrayList<Long>();
-        activityIdsSecondPassNewItems.add(allActivityIds.get(4)); // 5
-        activityIdsSecondPassNewItems.add(allActivityIds.get(5)); // 4
-        activityIdsSecondPassNewItems.add(allActivityIds.get(6)); // 3
-        activityIdsSecondPassNewItems.add(allActivityIds.get(7)); // 2
-
         final ArrayList<Long> activityIdsThirdPass = new ArrayList<Long>();
-        activityIdsThirdPass.add(allActivityIds.get(0)); // 9 // 2 * 2^3 +1 = 17 (we only have 9)
-        activityIdsThirdPass.add(allActivityIds.get(1)); // 8
-        activityIdsThirdPass.add(allActivityIds.get(2)); // 7
-        activityIdsThirdPass.add(allActivityIds.get(3)); // 6
-        activityIdsThirdPass.add(allActivityIds.get(4)); // 5
-        activityIdsThirdPass.add(allActivityIds.get(5)); // 4
-        activityIdsThirdPass.add(allActivityIds.get(6)); // 3
-        activityIdsThirdPass.add(allActivityIds.get(7)); // 2
-        activityIdsThirdPass.add(allActivityIds.get(8)); // 1 // ran out
-
-        final ArrayList<Long> activityIdsThirdPassNewItems = new ArrayList<Long>();
-        activityIdsThirdPassNewItems.add(allActivityIds.get(8)); // 1
+        activityIdsThirdPass.add(allActivityIds.get(8)); // 1 // 2 * 2^3 = 16, ran out
 
         context.checking(new Expectations()
         {
@@ -306,25 +382,32 @@ public class GetActivityIdsByJsonTest
                 allowing(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
                 will(returnValue(null));
 
+                oneOf(memcacheDS).openCursor(with(any(JSONObject.class)), with(any(Long.class)),
+                        with(equal(MAX_ID)));
+                will(returnValue(memcacheCursor));
+
                 // first pass
-                oneOf(memcacheDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                oneOf(memcacheCursor).next(BATCH_ONE);
                 will(returnValue(activityIdsFirstPass));
 
-                oneOf(securityTrimmer).trim(activityIdsFirstPassNewItems, personId);
+                oneOf(securityTrimmer).trim(with(equal(activityIdsFirstPass)), with(equal(personId)),
+                        with(any(Map.class)));
                 will(returnValue(Arrays.asList(9L)));
 
                 // second pass
-                oneOf(memcacheDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                oneOf(memcacheCursor).next(BATCH_TWO);
                 will(returnValue(activityIdsSecondPass));
 
-                oneOf(securityTrimmer).trim(activityIdsSecondPassNewItems, personId);
+                oneOf(securityTrimmer).trim(with(equal(activityIdsSecondPass)), with(equal(personId)),
+                        with(any(Map.class)));
                 will(returnValue(new ArrayList<Long>()));
 
                 // third pass
-                oneOf(memcacheDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                oneOf(memcacheCursor).next(BATCH_THREE);
                 will(returnValue(activityIdsThirdPass));
 
-                oneOf(securityTrimmer).trim(activityIdsThirdPassNewItems, personId);
+                oneOf(securityTrimmer).trim(with(equal(activityIdsThirdPass)), with(equal(personId)),
+                        with(any(Map.class)));
                 will(returnValue(Arrays.asList(1L)));
             }
         });
@@ -358,10 +441,15 @@ public class GetActivityIdsByJsonTest
                 allowing(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
                 will(returnValue(null));
 
-                oneOf(memcacheDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                oneOf(memcacheDS).openCursor(with(any(JSONObject.class)), with(any(Long.class)),
+                        with(equal(SEVEN)));
+                will(returnValue(memcacheCursor));
+
+                oneOf(memcacheCursor).next(BATCH_SIX);
                 will(returnValue(activityIds));
 
-                oneOf(securityTrimmer).trim(activityIds, personId);
+                oneOf(securityTrimmer).trim(with(equal(activityIds)), with(equal(personId)),
+                        with(any(Map.class)));
                 will(returnValue(activityIds));
             }
         });
@@ -377,4 +465,116 @@ public class GetActivityIdsByJsonTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test counting stops at the request's min id and only trims the ids above it.
+     */
+    @Test
+    public void testCountStopsAtMinId()
+    {
+        final String request = "{ \"count\": 10, \"minId\": 6 }";
+
+        final List<Long> batch = allActivityIds.subList(0, 5); // 9 to 5
+        final List<Long> candidates = allActivityIds.subList(0, 3); // 9 to 7
+        final List<Long> visible = Arrays.asList(9L, 7L);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                will(returnValue(null));
+
+                oneOf(memcacheDS).openCursor(with(any(JSONObject.class)), with(any(Long.class)),
+                        with(equal(Long.MAX_VALUE)));
+                will(returnValue(memcacheCursor));
+
+                oneOf(memcacheCursor).next(THENUMBERTEN);
+                will(returnValue(batch));
+
+                oneOf(securityTrimmer).trim(with(equal(candidates)), with(equal(personId)), with(any(Map.class)));
+                will(returnValue(visible));
+            }
+        });
+
+        assertEquals(2, sut.count(request, personId, MAX_COUNT));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test counting reads no more ids than could still change the count, and stops at the limit.
+     */
+    @Test
+    public void testCountStopsAtLimit()
+    {
+        final String request = "{ \"count\": 50 }";
+
+        final List<Long> firstBatch = allActivityIds.subList(0, COUNT_LIMIT); // 9 to 7
+        final List<Long> firstVisible = Arrays.asList(9L, 7L);
+        final List<Long> secondBatch = allActivityIds.subList(COUNT_LIMIT, COUNT_LIMIT + 1); // 6
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                will(returnValue(null));
+
+                oneOf(memcacheDS).openCursor(with(any(JSONObject.class)), with(any(Long.class)),
+                        with(equal(Long.MAX_VALUE)));
+                will(returnValue(memcacheCursor));
+
+                oneOf(memcacheCursor).next(COUNT_LIMIT);
+                will(returnValue(firstBatch));
+
+                oneOf(securityTrimmer).trim(with(equal(firstBatch)), with(equal(personId)), with(any(Map.class)));
+                will(returnValue(firstVisible));
+
+                oneOf(memcacheCursor).next(1);
+                will(returnValue(secondBatch));
+
+                oneOf(securityTrimmer).trim(with(equal(secondBatch)), with(equal(personId)), with(any(Map.class)));
+                will(returnValue(secondBatch));
+            }
+        });
+
+        assertEquals(COUNT_LIMIT, sut.count(request, personId, COUNT_LIMIT));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test counting a request that needs the sorted data source goes through the full pipeline.
+     */
+    @Test
+    public void testCountWithSortedDataSource()
+    {
+        final String request = "{ \"count\": 10, \"query\": { \"keywords\": \"foo\" } }";
+
+        final ArrayList<Long> memcacheIds = new ArrayList<Long>();
+        memcacheIds.add(2L);
+        final ArrayList<Long> luceneIds = new ArrayList<Long>();
+        luceneIds.add(2L);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                will(returnValue(luceneIds));
+
+                oneOf(memcacheDS).openCursor(with(any(JSONObject.class)), with(any(Long.class)),
+                        with(equal(Long.MAX_VALUE)));
+                will(returnValue(memcacheCursor));
+
+                oneOf(memcacheCursor).next(THENUMBERTEN * 2);
+                will(returnValue(memcacheIds));
+
+                oneOf(andCollider).collide(with(equalInternally(memcacheIds)), with(equalInternally(luceneIds)),
+                        with(equal(1)));
+                will(returnValue(memcacheIds));
+
+                oneOf(securityTrimmer).trim(with(equal(memcacheIds)), with(equal(personId)), with(any(Map.class)));
+                will(returnValue(memcacheIds));
+            }
+        });
+
+        assertEquals(1, sut.count(request, personId, MAX_COUNT));
+        context.assertIsSatisfied();
+    }
 }
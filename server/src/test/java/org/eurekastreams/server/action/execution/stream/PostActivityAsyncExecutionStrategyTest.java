@@ -15,11 +15,15 @@
  */
 package org.eurekastreams.server.action.execution.stream;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.eurekastreams.commons.actions.context.async.AsyncActionContext;
 import org.eurekastreams.commons.test.IsEqualInternally;
 import org.eurekastreams.server.action.request.stream.PostActivityRequest;
 import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.ActivityDTO;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.persistence.mappers.FindByIdMapper;
 import org.eurekastreams.server.persistence.mappers.requests.FindByIdRequest;
 import org.eurekastreams.server.persistence.mappers.stream.PostCachedActivity;
@@ -34,6 +38,7 @@ import org.junit.Test;
  * Test suite for the {@link PostActivityAsyncExecutionStrategy} class.
  * 
  */
+@SuppressWarnings("unchecked")
 public class PostActivityAsyncExecutionStrategyTest
 {
     /**
@@ -82,6 +87,11 @@ public class PostActivityAsyncExecutionStrategyTest
     private final StoreStreamHashTagsForActivityStrategyImpl storeStreamHashTagStrategy = context
             .mock(StoreStreamHashTagsForActivityStrategyImpl.class);
 
+    /**
+     * Mapper to load activities into cache.
+     */
+    private final DomainMapper<List<Long>, List<ActivityDTO>> activitiesMapper = context.mock(DomainMapper.class);
+
     /**
      * Setup the sut for the test suite.
      */
@@ -160,4 +170,46 @@ public class PostActivityAsyncExecutionStrategyTest
 
         context.assertIsSatisfied();
     }
+
+    /**
+     * Test a post which deferred loading the activity into cache has it loaded.
+     */
+    @Test
+    public void testExecuteDeferredHydration()
+    {
+        sut = new PostActivityAsyncExecutionStrategy(postCachedActivityMapperMock, findByIdMapper,
+                storeStreamHashTagStrategy, activitiesMapper);
+        final Activity activityMock = context.mock(Activity.class);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(asyncActionContextMock).getParams();
+                will(returnValue(postActivityRequestMock));
+
+                oneOf(postActivityRequestMock).getActivityDTO();
+                will(returnValue(activityDTOMock));
+
+                allowing(postActivityRequestMock).isCacheHydrationDeferred();
+                will(returnValue(true));
+
+                allowing(activityDTOMock).getId();
+                will(returnValue(3L));
+
+                oneOf(findByIdMapper).execute(
+                        with(IsEqualInternally.equalInternally(new FindByIdRequest("Activity", 3L))));
+                will(returnValue(activityMock));
+
+                oneOf(activitiesMapper).execute(Collections.singletonList(3L));
+
+                oneOf(postCachedActivityMapperMock).execute(activityMock);
+
+                oneOf(storeStreamHashTagStrategy).execute(activityMock);
+            }
+        });
+
+        sut.execute(asyncActionContextMock);
+
+        context.assertIsSatisfied();
+    }
 }
@@ -30,9 +30,13 @@ import org.eurekastreams.commons.server.UserActionRequest;
 import org.eurekastreams.server.action.request.SharedResourceRequest;
 import org.eurekastreams.server.action.request.stream.PostActivityRequest;
 import org.eurekastreams.server.action.validation.stream.PostActivityTestHelpers;
+import org.eurekastreams.server.domain.EntityType;
 import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.ActivityDTO;
 import org.eurekastreams.server.domain.stream.SharedResource;
+import org.eurekastreams.server.domain.stream.StreamEntityDTO;
+import org.eurekastreams.server.domain.stream.StreamScope;
+import org.eurekastreams.server.domain.stream.StreamScope.ScopeType;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.persistence.mappers.InsertMapper;
 import org.eurekastreams.server.persistence.mappers.cache.Cache;
@@ -42,6 +46,7 @@ import org.eurekastreams.server.persistence.mappers.requests.InsertActivityComme
 import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
 import org.eurekastreams.server.persistence.mappers.stream.InsertActivityComment;
 import org.eurekastreams.server.search.modelview.CommentDTO;
+import org.eurekastreams.server.search.modelview.PersonModelView;
 import org.eurekastreams.server.service.actions.strategies.RecipientRetriever;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -137,6 +142,31 @@ public class PostActivityExecutionStrategyTest
      */
     private Cache cache = context.mock(Cache.class);
 
+    /**
+     * Mapper to get a person by account id (fast-ack).
+     */
+    private DomainMapper<String, PersonModelView> actorMapper = context.mock(DomainMapper.class, "actorMapper");
+
+    /**
+     * Builds a person.
+     *
+     * @param id
+     *            the person id.
+     * @param displayName
+     *            the display name.
+     * @param avatarId
+     *            the avatar id.
+     * @return the person.
+     */
+    private PersonModelView buildPerson(final long id, final String displayName, final String avatarId)
+    {
+        PersonModelView person = new PersonModelView();
+        person.setEntityId(id);
+        person.setDisplayName(displayName);
+        person.setAvatarId(avatarId);
+        return person;
+    }
+
     /**
      * Prepare the test suite.
      */
@@ -327,4 +357,93 @@ public class PostActivityExecutionStrategyTest
 
         context.assertIsSatisfied();
     }
+
+    /**
+     * Tests a fast-ack share: the response is assembled from the posted DTO, the recipient scope and the cached
+     * actor and original actor, the entity streams are updated right away, and loading the activity into cache is
+     * deferred to the async action.
+     */
+    @Test
+    public void testFastAckShare()
+    {
+        final long originalActorId = 7L;
+        final long scopeId = 9L;
+        final ActivityDTO currentActivity = PostActivityTestHelpers.buildActivityDTO(
+                PostActivityTestHelpers.DestinationStreamTestState.VALID, true, testComment, DESTINATION_ID);
+        StreamEntityDTO originalActor = new StreamEntityDTO();
+        originalActor.setType(EntityType.PERSON);
+        originalActor.setUniqueIdentifier("originalactor");
+        currentActivity.setOriginalActor(originalActor);
+
+        final CommentDTO insertedComment = new CommentDTO();
+        final PostActivityRequest request = new PostActivityRequest(currentActivity);
+        final Principal currentPrincipal = new DefaultPrincipal(ACCOUNT_ID, OPENSOCIAL_ID, USER_ID);
+        final ServiceActionContext actionContext = new ServiceActionContext(request, currentPrincipal);
+
+        sut = new PostActivityExecutionStrategy(activityInsertMapperMock, commentInsertMapperMock,
+                activitiesMapperMock, recipientRetrieverMock, updateStreamsByActorMapperMock,
+                findOrInsertSharedResourceMapper, cache, actorMapper);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(recipientRetrieverMock).getStreamScope(currentActivity);
+                will(returnValue(new StreamScope("Destination", ScopeType.PERSON, "destStream", scopeId,
+                        DESTINATION_ID)));
+
+                oneOf(recipientRetrieverMock).isDestinationStreamPublic(currentActivity);
+                will(returnValue(true));
+
+                oneOf(activityInsertMapperMock).execute(with(any(PersistenceRequest.class)));
+
+                oneOf(activityInsertMapperMock).flush();
+
+                allowing(actorMapper).execute(ACCOUNT_ID);
+                will(returnValue(buildPerson(USER_ID, "Poster", "posterAvatar")));
+
+                allowing(actorMapper).execute("originalactor");
+                will(returnValue(buildPerson(originalActorId, "Original", "originalAvatar")));
+
+                never(activitiesMapperMock).execute(with(any(List.class)));
+
+                oneOf(updateStreamsByActorMapperMock).execute(with(any(ActivityDTO.class)));
+
+                oneOf(testComment).getBody();
+
+                oneOf(commentInsertMapperMock).execute(with(any(InsertActivityCommentRequest.class)));
+                will(returnValue(insertedComment));
+            }
+        });
+
+        TaskHandlerActionContext<PrincipalActionContext> currentTaskHandlerActionContext //
+        = new TaskHandlerActionContext<PrincipalActionContext>(actionContext, new ArrayList<UserActionRequest>());
+        ActivityDTO result = (ActivityDTO) sut.execute(currentTaskHandlerActionContext);
+
+        context.assertIsSatisfied();
+
+        Assert.assertEquals(USER_ID.longValue(), result.getActor().getId());
+        Assert.assertEquals("Poster", result.getActor().getDisplayName());
+        Assert.assertEquals("posterAvatar", result.getActor().getAvatarId());
+        Assert.assertEquals(ACCOUNT_ID, result.getActor().getUniqueIdentifier());
+        Assert.assertEquals(originalActorId, result.getOriginalActor().getId());
+        Assert.assertEquals("Original", result.getOriginalActor().getDisplayName());
+        Assert.assertEquals("originalAvatar", result.getOriginalActor().getAvatarId());
+        Assert.assertEquals(scopeId, result.getDestinationStream().getId());
+        Assert.assertEquals(DESTINATION_ID, result.getDestinationStream().getDestinationEntityId());
+        Assert.assertEquals(EntityType.PERSON, result.getDestinationStream().getType());
+        Assert.assertSame(insertedComment, result.getFirstComment());
+        Assert.assertEquals(1, result.getCommentCount());
+
+        PostActivityRequest asyncRequest = null;
+        for (UserActionRequest req : currentTaskHandlerActionContext.getUserActionRequests())
+        {
+            if (req.getActionKey().equals("postActivityAsyncAction"))
+            {
+                asyncRequest = (PostActivityRequest) req.getParams();
+            }
+        }
+        Assert.assertNotNull(asyncRequest);
+        Assert.assertTrue(asyncRequest.isCacheHydrationDeferred());
+        Assert.assertSame(result, asyncRequest.getActivityDTO());
+    }
 }
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.stream;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.PrincipalActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.domain.stream.ExpiredActivityPurge;
+import org.eurekastreams.server.persistence.mappers.db.ExpiredActivityPurgeDbMapper;
+import org.eurekastreams.server.persistence.mappers.db.GetExpiredActivities;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for PurgeExpiredActivitiesChunkExecution.
+ */
+public class PurgeExpiredActivitiesChunkExecutionTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Test chunk size.
+     */
+    private static final int CHUNK_SIZE = 2;
+
+    /**
+     * Test checkpoint.
+     */
+    private static final long CHECKPOINT = 5L;
+
+    /**
+     * Test expiration date.
+     */
+    private final Date expirationDate = new Date();
+
+    /**
+     * ActionContext mock.
+     */
+    private PrincipalActionContext principalContext = context.mock(PrincipalActionContext.class);
+
+    /**
+     * {@link ExpiredActivityPurgeDbMapper} mock.
+     */
+    private ExpiredActivityPurgeDbMapper purgeMapper = context.mock(ExpiredActivityPurgeDbMapper.class);
+
+    /**
+     * {@link GetExpiredActivities} mock.
+     */
+    private GetExpiredActivities expiredActivitiesMapper = context.mock(GetExpiredActivities.class);
+
+    /**
+     * Delete execution mock.
+     */
+    private TaskHandlerExecutionStrategy<ActionContext> deleteExecution = context
+            .mock(TaskHandlerExecutionStrategy.class);
+
+    /**
+     * Queued requests.
+     */
+    private List<UserActionRequest> requests = new ArrayList<UserActionRequest>();
+
+    /**
+     * The system under test.
+     */
+    private PurgeExpiredActivitiesChunkExecution sut;
+
+    /**
+     * Setup sut.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new PurgeExpiredActivitiesChunkExecution(purgeMapper, expiredActivitiesMapper, deleteExecution,
+                CHUNK_SIZE);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(principalContext).getPrincipal();
+            }
+        });
+    }
+
+    /**
+     * Runs the sut.
+     *
+     * @param purge
+     *            the progress of the purge in the database.
+     * @return the result.
+     */
+    private Boolean run(final ExpiredActivityPurge purge)
+    {
+        context.checking(new Expectations()
+        {
+            {
+                allowing(purgeMapper).read();
+                will(returnValue(purge));
+            }
+        });
+        return sut.execute(new TaskHandlerActionContext<PrincipalActionContext>(principalContext, requests));
+    }
+
+    /**
+     * Test nothing is done when no purge is in progress.
+     */
+    @Test
+    public void testNoPurge()
+    {
+        assertTrue(run(new ExpiredActivityPurge(null, CHECKPOINT)));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test nothing is done when the purge progress row is missing.
+     */
+    @Test
+    public void testNoRow()
+    {
+        assertTrue(run(null));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test a full chunk is claimed and deleted, leaving the purge in progress.
+     */
+    @Test
+    public void testFullChunk()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(expiredActivitiesMapper).execute(expirationDate, CHECKPOINT, CHUNK_SIZE);
+                will(returnValue(Arrays.asList(CHECKPOINT + 1, CHECKPOINT + 2)));
+
+                oneOf(purgeMapper).advance(expirationDate, CHECKPOINT, CHECKPOINT + 2);
+                will(returnValue(true));
+
+                oneOf(deleteExecution).execute(with(any(TaskHandlerActionContext.class)));
+            }
+        });
+
+        assertTrue(run(new ExpiredActivityPurge(expirationDate, CHECKPOINT)));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test a partial chunk is deleted and ends the purge.
+     */
+    @Test
+    public void testLastChunk()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(expiredActivitiesMapper).execute(expirationDate, CHECKPOINT, CHUNK_SIZE);
+                will(returnValue(Arrays.asList(CHECKPOINT + 1)));
+
+                oneOf(purgeMapper).advance(expirationDate, CHECKPOINT, CHECKPOINT + 1);
+                will(returnValue(true));
+
+                oneOf(deleteExecution).execute(with(any(TaskHandlerActionContext.class)));
+
+                oneOf(purgeMapper).finish(expirationDate);
+                will(returnValue(true));
+            }
+        });
+
+        assertTrue(run(new ExpiredActivityPurge(expirationDate, CHECKPOINT)));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test the purge ends when nothing is left.
+     */
+    @Test
+    public void testNothingLeft()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(expiredActivitiesMapper).execute(expirationDate, CHECKPOINT, CHUNK_SIZE);
+                will(returnValue(new ArrayList<Long>()));
+
+                oneOf(purgeMapper).finish(expirationDate);
+                will(returnValue(true));
+            }
+        });
+
+        assertTrue(run(new ExpiredActivityPurge(expirationDate, CHECKPOINT)));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test a chunk already claimed by another run is not deleted again.
+     */
+    @Test
+    public void testChunkClaimedElsewhere()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(expiredActivitiesMapper).execute(expirationDate, CHECKPOINT, CHUNK_SIZE);
+                will(returnValue(Arrays.asList(CHECKPOINT + 1, CHECKPOINT + 2)));
+
+                oneOf(purgeMapper).advance(expirationDate, CHECKPOINT, CHECKPOINT + 2);
+                will(returnValue(false));
+
+                never(deleteExecution).execute(with(any(TaskHandlerActionContext.class)));
+            }
+        });
+
+        assertTrue(run(new ExpiredActivityPurge(expirationDate, CHECKPOINT)));
+        context.assertIsSatisfied();
+    }
+}
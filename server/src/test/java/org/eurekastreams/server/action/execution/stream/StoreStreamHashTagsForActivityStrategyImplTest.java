@@ -16,10 +16,12 @@
 package org.eurekastreams.server.action.execution.stream;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 
+import org.eurekastreams.server.action.request.stream.StreamPopularHashTagsRequest;
 import org.eurekastreams.server.domain.strategies.HashTagExtractor;
 import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.BaseObjectType;
@@ -28,6 +30,7 @@ import org.eurekastreams.server.domain.stream.StreamHashTag;
 import org.eurekastreams.server.domain.stream.StreamScope;
 import org.eurekastreams.server.domain.stream.StreamScope.ScopeType;
 import org.eurekastreams.server.persistence.mappers.InsertMapper;
+import org.eurekastreams.server.persistence.mappers.cache.StreamHashTagCounterMapper;
 import org.eurekastreams.server.persistence.mappers.chained.DecoratedPartialResponseDomainMapper;
 import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
 import org.eurekastreams.server.persistence.mappers.stream.ActivityContentExtractor;
@@ -78,6 +81,11 @@ public class StoreStreamHashTagsForActivityStrategyImplTest
      */
     private final Activity activity = context.mock(Activity.class);
 
+    /**
+     * Mapper to update the popular hashtag counts.
+     */
+    private final StreamHashTagCounterMapper hashTagCounterMapper = context.mock(StreamHashTagCounterMapper.class);
+
     /**
      * Stream scope.
      */
@@ -277,6 +285,69 @@ public class StoreStreamHashTagsForActivityStrategyImplTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test execute updates the popular hashtag counts of the recipient stream with the stored hashtags.
+     */
+    @Test
+    public void testExecuteUpdatesCounts()
+    {
+        final String groupShortName = "sdlkjfsd";
+        final String content = "hi #there #potato";
+        final Date postedTime = new Date();
+        final List<String> hashTagContents = new ArrayList<String>();
+        hashTagContents.add("#there");
+        hashTagContents.add("#potato");
+
+        final List<HashTag> hashTags = new ArrayList<HashTag>();
+        hashTags.add(new HashTag("#there"));
+        hashTags.add(new HashTag("#potato"));
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(activity).getId();
+                will(returnValue(3L));
+
+                allowing(activity).getRecipientStreamScope();
+                will(returnValue(streamScope));
+
+                oneOf(streamScope).getScopeType();
+                will(returnValue(ScopeType.GROUP));
+
+                oneOf(streamScope).getUniqueKey();
+                will(returnValue(groupShortName));
+
+                oneOf(activity).getBaseObjectType();
+                will(returnValue(BaseObjectType.NOTE));
+
+                oneOf(activity).getBaseObject();
+                will(returnValue(baseObject));
+
+                allowing(activity).getPostedTime();
+                will(returnValue(postedTime));
+
+                oneOf(contentExtractor).extractContent(BaseObjectType.NOTE, baseObject);
+                will(returnValue(content));
+
+                oneOf(hashTagExtractor).extractAll(content);
+                will(returnValue(hashTagContents));
+
+                oneOf(hashTagMapper).execute(hashTagContents);
+                will(returnValue(hashTags));
+
+                exactly(2).of(streamHashTagInsertMapper).execute(with(any(PersistenceRequest.class)));
+
+                oneOf(hashTagCounterMapper).addHashTags(with(any(StreamPopularHashTagsRequest.class)),
+                        with(equal(Arrays.asList("#there", "#potato"))), with(equal(postedTime)));
+            }
+        });
+
+        StoreStreamHashTagsForActivityStrategy sut = new StoreStreamHashTagsForActivityStrategyImpl(
+                hashTagExtractor, contentExtractor, hashTagMapper, streamHashTagInsertMapper, hashTagCounterMapper);
+        sut.execute(activity);
+        context.assertIsSatisfied();
+    }
+
     /**
      * Build the system under test.
      * 
@@ -15,9 +15,11 @@
  */
 package org.eurekastreams.server.persistence.mappers.cache;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.eurekastreams.server.domain.stream.ActivityDTO;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
@@ -60,10 +62,11 @@ public class AddBufferedActivitiesToCacheTest
             .mock(PostActivityUpdateStreamsByActorMapper.class);
 
     /**
-     * Mapper to get a list of all ids of people following destination stream of an activity.
+     * Mapper to get the ids of people following the destination streams of activities.
      */
-    private DomainMapper<ActivityDTO, List<Long>> getIdsOfPeopleFollowingActivityDestinationStreamMapper = context
-            .mock(DomainMapper.class, "getIdsOfPeopleFollowingActivityDestinationStreamMapper");
+    private DomainMapper<List<ActivityDTO>, Map<Long, List<Long>>> //
+    getIdsOfPeopleFollowingActivityDestinationStreamMapper = context.mock(DomainMapper.class,
+            "getIdsOfPeopleFollowingActivityDestinationStreamMapper");
 
     /**
      * Test the execution.
@@ -93,6 +96,17 @@ public class AddBufferedActivitiesToCacheTest
         followerIdsForAct2.add(2L);
         followerIdsForAct2.add(4L);
 
+        final Map<Long, List<Long>> followersByActivity = new HashMap<Long, List<Long>>();
+        followersByActivity.put(7L, followerIdsForAct1);
+        followersByActivity.put(8L, followerIdsForAct2);
+
+        final Map<String, List<Long>> expectedPrepends = new HashMap<String, List<Long>>();
+        expectedPrepends.put(CacheKeys.EVERYONE_ACTIVITY_IDS, Arrays.asList(7L, 8L));
+        expectedPrepends.put(CacheKeys.ACTIVITIES_BY_FOLLOWING + 1L, Arrays.asList(7L, 8L));
+        expectedPrepends.put(CacheKeys.ACTIVITIES_BY_FOLLOWING + 2L, Arrays.asList(7L, 8L));
+        expectedPrepends.put(CacheKeys.ACTIVITIES_BY_FOLLOWING + 3L, Arrays.asList(7L));
+        expectedPrepends.put(CacheKeys.ACTIVITIES_BY_FOLLOWING + 4L, Arrays.asList(8L));
+
         context.checking(new Expectations()
         {
             {
@@ -108,15 +122,13 @@ public class AddBufferedActivitiesToCacheTest
                 oneOf(bulkActivitiesMapper).execute(activityIds);
                 will(returnValue(activities));
 
-                allowing(updateActorActivityStreamMapper).execute(with(any(ActivityDTO.class)));
-
-                oneOf(getIdsOfPeopleFollowingActivityDestinationStreamMapper).execute(activity1);
-                will(returnValue(followerIdsForAct1));
+                allowing(updateActorActivityStreamMapper).execute(with(any(ActivityDTO.class)),
+                        with(any(Map.class)));
 
-                oneOf(getIdsOfPeopleFollowingActivityDestinationStreamMapper).execute(activity2);
-                will(returnValue(followerIdsForAct2));
+                oneOf(getIdsOfPeopleFollowingActivityDestinationStreamMapper).execute(activities);
+                will(returnValue(followersByActivity));
 
-                exactly(5).of(cache).addToTopOfList(with(any(String.class)), with(any(ArrayList.class)));
+                oneOf(cache).addToTopOfLists(with(equal(expectedPrepends)));
             }
         });
 
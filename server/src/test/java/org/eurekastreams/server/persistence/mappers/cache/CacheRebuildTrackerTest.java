@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.eurekastreams.server.action.request.CacheRebuildRequest;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Tests CacheRebuildTracker.
+ */
+public class CacheRebuildTrackerTest
+{
+    /** Used for mocking objects. */
+    private final JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Test data. */
+    private static final long GENERATION = 7L;
+
+    /** Tracking cache. */
+    private final Cache trackingCache = context.mock(Cache.class);
+
+    /** Generational cache. */
+    private final GenerationalCache generationalCache = context.mock(GenerationalCache.class);
+
+    /** SUT. */
+    private final CacheRebuildTracker sut = new CacheRebuildTracker(trackingCache, generationalCache);
+
+    /** Second of two warmers. */
+    private final CacheRebuildRequest rebuild = new CacheRebuildRequest(GENERATION, 2, 2);
+
+    /**
+     * Tests beginning a rebuild.
+     */
+    @Test
+    public void testBeginRebuild()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(generationalCache).beginRebuild();
+                will(returnValue(GENERATION));
+                oneOf(trackingCache).set(CacheKeys.CACHE_REBUILD_WARMERS + GENERATION, new HashSet<Long>());
+            }
+        });
+
+        assertEquals(GENERATION, sut.beginRebuild());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests a chunk which is not the last one.
+     */
+    @Test
+    public void testChunkFinishedNotLast()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(trackingCache).addToSet(CacheKeys.CACHE_REBUILD_CHUNKS + GENERATION + ":2", 1L);
+                will(returnValue(new HashSet<Long>(Arrays.asList(1L))));
+            }
+        });
+
+        sut.chunkFinished(rebuild, 1, 2);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests the last chunk of the last warmer activates the generation.
+     */
+    @Test
+    public void testLastChunkActivates()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(trackingCache).addToSet(CacheKeys.CACHE_REBUILD_CHUNKS + GENERATION + ":2", 2L);
+                will(returnValue(new HashSet<Long>(Arrays.asList(1L, 2L))));
+                oneOf(trackingCache).addToSet(CacheKeys.CACHE_REBUILD_WARMERS + GENERATION, 2L);
+                will(returnValue(new HashSet<Long>(Arrays.asList(1L, 2L))));
+                oneOf(generationalCache).activate(GENERATION);
+                will(returnValue(true));
+            }
+        });
+
+        sut.chunkFinished(rebuild, 2, 2);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests a lost update does not activate the generation.
+     */
+    @Test
+    public void testLostUpdate()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(trackingCache).addToSet(CacheKeys.CACHE_REBUILD_WARMERS + GENERATION, 2L);
+                will(returnValue(null));
+            }
+        });
+
+        sut.warmerFinished(rebuild);
+        context.assertIsSatisfied();
+    }
+}
@@ -56,7 +56,7 @@ public class DeleteCacheKeysTest
     @Test
     public void testExecute()
     {
-        Set<String> params = new HashSet<String>(2);
+        final Set<String> params = new HashSet<String>(2);
         params.add("foo");
         params.add("bar");
 
@@ -66,8 +66,7 @@ public class DeleteCacheKeysTest
         context.checking(new Expectations()
         {
             {
-                oneOf(cache).delete("foo");
-                oneOf(cache).delete("bar");
+                oneOf(cache).multiDelete(params);
             }
         });
 
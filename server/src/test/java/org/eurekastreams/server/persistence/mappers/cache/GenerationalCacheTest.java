@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.domain.CacheGeneration;
+import org.eurekastreams.server.persistence.mappers.db.CacheGenerationDbMapper;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Tests GenerationalCache.
+ */
+public class GenerationalCacheTest
+{
+    /** Used for mocking objects. */
+    private final JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Test data. */
+    private static final long CHECK_INTERVAL = 60000L;
+
+    /** Wrapped cache. */
+    private final Cache wrappedCache = context.mock(Cache.class);
+
+    /** Mapper for the generations in the database. */
+    private final CacheGenerationDbMapper generationMapper = context.mock(CacheGenerationDbMapper.class);
+
+    /** SUT. */
+    private final GenerationalCache sut = new GenerationalCache(wrappedCache, generationMapper, CHECK_INTERVAL);
+
+    /**
+     * Sets up the generations stored in the database.
+     *
+     * @param active
+     *            Active generation, null if no row was ever stored.
+     * @param pending
+     *            Pending generation, null if none.
+     */
+    private void expectGenerations(final Long active, final Long pending)
+    {
+        final CacheGeneration stored = active == null ? null : new CacheGeneration(active, pending);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(generationMapper).read();
+                will(returnValue(stored));
+            }
+        });
+    }
+
+    /**
+     * Tests generation 0 uses the bare keys.
+     */
+    @Test
+    public void testGenerationZeroUsesBareKeys()
+    {
+        expectGenerations(null, null);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(wrappedCache).get("Key");
+                will(returnValue("V"));
+                oneOf(wrappedCache).set("Key", "W");
+            }
+        });
+
+        assertEquals("V", sut.get("Key"));
+        sut.set("Key", "W");
+        assertEquals(0L, sut.getActiveGeneration());
+        assertNull(sut.getPendingGeneration());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests reads go to the active generation and writes to both during a rebuild.
+     */
+    @Test
+    public void testRebuildInProgress()
+    {
+        expectGenerations(2L, 3L);
+        final Map<String, Object> found = new HashMap<String, Object>();
+        found.put("G2:A", "a");
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(wrappedCache).multiGet(Arrays.asList("G2:A", "G2:B"));
+                will(returnValue(found));
+
+                oneOf(wrappedCache).delete("G2:Key");
+                oneOf(wrappedCache).delete("G3:Key");
+
+                oneOf(wrappedCache).removeFromLists(Arrays.asList("G2:L1", "G2:L2"), Arrays.asList(1L, 2L));
+                oneOf(wrappedCache).removeFromLists(Arrays.asList("G3:L1", "G3:L2"), Arrays.asList(1L, 2L));
+
+                oneOf(wrappedCache).setLists(
+                        Collections.singletonMap("G2:L", (List<Long>) Arrays.asList(5L)));
+                oneOf(wrappedCache).setLists(
+                        Collections.singletonMap("G3:L", (List<Long>) Arrays.asList(5L)));
+            }
+        });
+
+        Map<String, Object> results = sut.multiGet(Arrays.asList("A", "B"));
+        assertEquals(1, results.size());
+        assertEquals("a", results.get("A"));
+        sut.delete("Key");
+        sut.removeFromLists(Arrays.asList("L1", "L2"), Arrays.asList(1L, 2L));
+        sut.setLists(Collections.singletonMap("L", (List<Long>) Arrays.asList(5L)));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests beginning a rebuild and activating it; the old generation keeps being written for a check interval.
+     */
+    @Test
+    public void testBeginRebuildAndActivate()
+    {
+        expectGenerations(1L, null);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(generationMapper).beginRebuild(1L, 2L);
+                will(returnValue(true));
+                oneOf(generationMapper).activate(2L);
+                will(returnValue(true));
+
+                oneOf(wrappedCache).get("G2:Key");
+                oneOf(wrappedCache).set("G2:Key", "V");
+                oneOf(wrappedCache).set("G1:Key", "V");
+            }
+        });
+
+        assertEquals(2L, sut.beginRebuild());
+        assertEquals((Long) 2L, sut.getPendingGeneration());
+        assertTrue(sut.activate(2L));
+        assertEquals(2L, sut.getActiveGeneration());
+        assertNull(sut.getPendingGeneration());
+        sut.get("Key");
+        sut.set("Key", "V");
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests a rebuild is refused when the active generation was changed by another server.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testBeginRebuildRace()
+    {
+        expectGenerations(1L, null);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(generationMapper).beginRebuild(1L, 2L);
+                will(returnValue(false));
+            }
+        });
+
+        sut.beginRebuild();
+    }
+
+    /**
+     * Tests a generation which is no longer pending is not activated.
+     */
+    @Test
+    public void testActivateSuperseded()
+    {
+        expectGenerations(1L, 3L);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(generationMapper).activate(2L);
+                will(returnValue(false));
+            }
+        });
+
+        assertFalse(sut.activate(2L));
+        context.assertIsSatisfied();
+    }
+}
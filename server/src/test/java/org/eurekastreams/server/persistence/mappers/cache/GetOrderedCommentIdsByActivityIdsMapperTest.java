@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test fixture for GetOrderedCommentIdsByActivityIdsMapper.
+ */
+public class GetOrderedCommentIdsByActivityIdsMapperTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Cache.
+     */
+    private final Cache cache = context.mock(Cache.class);
+
+    /**
+     * Data source mapper.
+     */
+    private final DomainMapper<List<Long>, Map<Long, List<Long>>> dataSourceMapper = context.mock(
+            DomainMapper.class, "dataSourceMapper");
+
+    /**
+     * System under test.
+     */
+    private GetOrderedCommentIdsByActivityIdsMapper sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new GetOrderedCommentIdsByActivityIdsMapper(dataSourceMapper);
+        sut.setCache(cache);
+    }
+
+    /**
+     * Test when everything is in cache.
+     */
+    @Test
+    public void testExecuteAllCached()
+    {
+        final Map<String, ArrayList<Long>> cached = new HashMap<String, ArrayList<Long>>();
+        cached.put(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + 1L, new ArrayList<Long>(Arrays.asList(10L, 11L)));
+        cached.put(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + 2L, new ArrayList<Long>());
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(cache).multiGetList(
+                        Arrays.asList(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + 1L,
+                                CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + 2L));
+                will(returnValue(cached));
+            }
+        });
+
+        Map<Long, List<Long>> results = sut.execute(Arrays.asList(1L, 2L));
+
+        assertEquals(2, results.size());
+        assertEquals(Arrays.asList(10L, 11L), results.get(1L));
+        assertEquals(0, results.get(2L).size());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test when some lists are missing from cache: they are loaded in one call and written back in one.
+     */
+    @Test
+    public void testExecuteSomeMissing()
+    {
+        final Map<String, ArrayList<Long>> cached = new HashMap<String, ArrayList<Long>>();
+        cached.put(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + 1L, new ArrayList<Long>(Arrays.asList(10L)));
+
+        final Map<Long, List<Long>> loaded = new HashMap<Long, List<Long>>();
+        loaded.put(2L, Arrays.asList(20L, 21L));
+
+        final Map<String, List<Long>> toCache = new HashMap<String, List<Long>>();
+        toCache.put(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + 2L, Arrays.asList(20L, 21L));
+        toCache.put(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + 3L, new ArrayList<Long>());
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(cache).multiGetList(with(any(List.class)));
+                will(returnValue(cached));
+
+                oneOf(dataSourceMapper).execute(Arrays.asList(2L, 3L));
+                will(returnValue(loaded));
+
+                oneOf(cache).setLists(toCache);
+            }
+        });
+
+        Map<Long, List<Long>> results = sut.execute(Arrays.asList(1L, 2L, 3L));
+
+        assertEquals(3, results.size());
+        assertEquals(Arrays.asList(10L), results.get(1L));
+        assertEquals(Arrays.asList(20L, 21L), results.get(2L));
+        assertEquals(0, results.get(3L).size());
+        context.assertIsSatisfied();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.domain.EntityType;
+import org.eurekastreams.server.domain.stream.ActivityDTO;
+import org.eurekastreams.server.domain.stream.StreamEntityDTO;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.search.modelview.PersonModelView;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test fixture for GetPersonIdsFollowingActivityDestinationStreamsMapper.
+ */
+@SuppressWarnings("unchecked")
+public class GetPersonIdsFollowingActivityDestinationStreamsMapperTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Mapper to get people by account ids.
+     */
+    private final DomainMapper<List<String>, List<PersonModelView>> peopleMapper = context.mock(DomainMapper.class,
+            "peopleMapper");
+
+    /**
+     * Mapper to get followers of a person.
+     */
+    private final DomainMapper<Long, List<Long>> followersMapper = context.mock(DomainMapper.class,
+            "followersMapper");
+
+    /**
+     * Cache.
+     */
+    private final Cache cache = context.mock(Cache.class);
+
+    /**
+     * System under test.
+     */
+    private GetPersonIdsFollowingActivityDestinationStreamsMapper sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new GetPersonIdsFollowingActivityDestinationStreamsMapper(peopleMapper, followersMapper);
+        sut.setCache(cache);
+    }
+
+    /**
+     * Builds an activity.
+     *
+     * @param id
+     *            activity id.
+     * @param type
+     *            destination stream type.
+     * @param uniqueId
+     *            destination stream unique id.
+     * @return the activity.
+     */
+    private ActivityDTO buildActivity(final long id, final EntityType type, final String uniqueId)
+    {
+        ActivityDTO activity = new ActivityDTO();
+        activity.setId(id);
+        StreamEntityDTO destination = new StreamEntityDTO();
+        destination.setType(type);
+        destination.setUniqueIdentifier(uniqueId);
+        activity.setDestinationStream(destination);
+        return activity;
+    }
+
+    /**
+     * Tests each destination person is looked up once and followers not in cache come from the mapper.
+     */
+    @Test
+    public void testExecute()
+    {
+        final PersonModelView jdoe = new PersonModelView();
+        jdoe.setEntityId(1L);
+        jdoe.setAccountId("jdoe");
+        final PersonModelView bsmith = new PersonModelView();
+        bsmith.setEntityId(2L);
+        bsmith.setAccountId("bsmith");
+
+        final Map<String, ArrayList<Long>> cached = new HashMap<String, ArrayList<Long>>();
+        cached.put(CacheKeys.FOLLOWERS_BY_PERSON + 1L, new ArrayList<Long>(Arrays.asList(5L, 6L)));
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(peopleMapper).execute(with(any(List.class)));
+                will(returnValue(Arrays.asList(jdoe, bsmith)));
+
+                oneOf(cache).multiGetList(with(any(List.class)));
+                will(returnValue(cached));
+
+                oneOf(followersMapper).execute(2L);
+                will(returnValue(Arrays.asList(7L)));
+            }
+        });
+
+        Map<Long, List<Long>> results = sut.execute(Arrays.asList(buildActivity(10L, EntityType.PERSON, "jdoe"),
+                buildActivity(11L, EntityType.PERSON, "bsmith"), buildActivity(12L, EntityType.PERSON, "jdoe"),
+                buildActivity(13L, EntityType.GROUP, "group")));
+
+        context.assertIsSatisfied();
+        assertEquals(4, results.size());
+        assertEquals(Arrays.asList(5L, 6L), results.get(10L));
+        assertEquals(Arrays.asList(7L), results.get(11L));
+        assertEquals(Arrays.asList(5L, 6L), results.get(12L));
+        assertEquals(Collections.EMPTY_LIST, results.get(13L));
+    }
+
+    /**
+     * Tests account ids are matched regardless of case.
+     */
+    @Test
+    public void testExecuteMixedCase()
+    {
+        final PersonModelView jdoe = new PersonModelView();
+        jdoe.setEntityId(1L);
+        jdoe.setAccountId("jdoe");
+
+        final Map<String, ArrayList<Long>> cached = new HashMap<String, ArrayList<Long>>();
+        cached.put(CacheKeys.FOLLOWERS_BY_PERSON + 1L, new ArrayList<Long>(Arrays.asList(5L)));
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(peopleMapper).execute(Arrays.asList("jdoe"));
+                will(returnValue(Arrays.asList(jdoe)));
+
+                oneOf(cache).multiGetList(with(any(List.class)));
+                will(returnValue(cached));
+            }
+        });
+
+        Map<Long, List<Long>> results = sut.execute(Arrays.asList(buildActivity(10L, EntityType.PERSON, "JDoe")));
+
+        context.assertIsSatisfied();
+        assertEquals(Arrays.asList(5L), results.get(10L));
+    }
+
+    /**
+     * Tests unsupported destination types are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testExecuteBadType()
+    {
+        sut.execute(Arrays.asList(buildActivity(10L, EntityType.RESOURCE, "res")));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests LongListCodec.
+ */
+public class LongListCodecTest
+{
+    /** Test data: a typical descending id list plus edge values. */
+    private static final List<Long> IDS = Arrays.asList(1000000L, 999990L, 999989L, 5L, 0L, Long.MAX_VALUE, 1L);
+
+    /** Size of a legacy entry. */
+    private static final int LEGACY_ENTRY_SIZE = 8;
+
+    /**
+     * Tests a round trip through the compact format.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        byte[] bytes = LongListCodec.encode(IDS);
+        assertEquals(LongListCodec.SEGMENT_MARKER, bytes[0]);
+        assertEquals(IDS, LongListCodec.decodeToList(bytes, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Tests that descending ids encode much smaller than the legacy format.
+     */
+    @Test
+    public void testCompactness()
+    {
+        List<Long> ids = new ArrayList<Long>();
+        for (long id = 5000000L; id > 4999000L; id -= 3)
+        {
+            ids.add(id);
+        }
+        assertTrue(LongListCodec.encode(ids).length * 4 < ids.size() * LEGACY_ENTRY_SIZE);
+    }
+
+    /**
+     * Tests legacy values are still readable.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testDecodeLegacy() throws IOException
+    {
+        byte[] bytes = LongListCodec.encodeLegacy(Arrays.asList(7L, 8L, 9L));
+        assertEquals(3 * LEGACY_ENTRY_SIZE, bytes.length);
+        assertTrue(Arrays.equals(new long[] { 7L, 8L, 9L }, LongListCodec.decode(bytes)));
+    }
+
+    /**
+     * Tests values built by prepending compact segments to legacy values and vice versa (as memcached prepend does
+     * during a rollout).
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testDecodeMixed() throws IOException
+    {
+        byte[] newer = LongListCodec.encode(Arrays.asList(12L, 11L));
+        byte[] legacy = LongListCodec.encodeLegacy(Arrays.asList(10L, 9L));
+        byte[] oldest = LongListCodec.encode(Arrays.asList(8L));
+
+        byte[] all = new byte[newer.length + legacy.length + oldest.length];
+        System.arraycopy(newer, 0, all, 0, newer.length);
+        System.arraycopy(legacy, 0, all, newer.length, legacy.length);
+        System.arraycopy(oldest, 0, all, newer.length + legacy.length, oldest.length);
+
+        assertTrue(Arrays.equals(new long[] { 12L, 11L, 10L, 9L, 8L }, LongListCodec.decode(all)));
+    }
+
+    /**
+     * Tests decoding stops after the requested number of entries.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testDecodeLimited() throws IOException
+    {
+        byte[] bytes = LongListCodec.encode(IDS);
+        assertTrue(Arrays.equals(new long[] { 1000000L, 999990L, 999989L }, LongListCodec.decode(bytes, 3)));
+        assertEquals(0, LongListCodec.decode(bytes, 0).length);
+    }
+
+    /**
+     * Tests empty and null lists.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testEmpty() throws IOException
+    {
+        assertNull(LongListCodec.encode((List<Long>) null));
+        assertEquals(0, LongListCodec.decode(LongListCodec.encode(new ArrayList<Long>())).length);
+        assertEquals(0, LongListCodec.decode(new byte[0]).length);
+    }
+
+    /**
+     * Tests a truncated value is reported.
+     *
+     * @throws IOException
+     *             expected.
+     */
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException
+    {
+        byte[] bytes = LongListCodec.encode(IDS);
+        LongListCodec.decode(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+}
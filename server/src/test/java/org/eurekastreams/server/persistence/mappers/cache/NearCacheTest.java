@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test fixture for NearCache.
+ */
+public class NearCacheTest
+{
+    /** Time-to-live used for the near-cached prefix. */
+    private static final long TTL = 1000L;
+
+    /** Maximum local entries. */
+    private static final int MAX_ENTRIES = 2;
+
+    /** A near-cached key. */
+    private static final String KEY = CacheKeys.PERSON_BY_ID + "5";
+
+    /** Another near-cached key. */
+    private static final String KEY2 = CacheKeys.PERSON_BY_ID + "6";
+
+    /** A key that is not near-cached. */
+    private static final String OTHER_KEY = CacheKeys.ACTIVITY_BY_ID + "5";
+
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Wrapped cache.
+     */
+    private final Cache wrappedCache = context.mock(Cache.class);
+
+    /**
+     * Fake clock.
+     */
+    private long now = 0;
+
+    /**
+     * System under test.
+     */
+    private NearCache sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        Map<String, Long> policies = new HashMap<String, Long>();
+        policies.put(CacheKeys.PERSON_BY_ID, TTL);
+        sut = new NearCache(wrappedCache, policies, MAX_ENTRIES)
+        {
+            @Override
+            protected long currentTimeMillis()
+            {
+                return now;
+            }
+        };
+    }
+
+    /**
+     * Tests a near-cached key is only fetched once, and each hit returns a copy.
+     */
+    @Test
+    public void testGetHit()
+    {
+        final ArrayList<String> value = new ArrayList<String>(Arrays.asList("a"));
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(wrappedCache).get(KEY);
+                will(returnValue(value));
+            }
+        });
+
+        assertEquals(value, sut.get(KEY));
+        Object hit = sut.get(KEY);
+        assertEquals(value, hit);
+        assertNotSame(value, hit);
+        assertEquals(1, sut.getHitCount());
+        assertEquals(1, sut.getMissCount());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests immutable values are shared without copying.
+     */
+    @Test
+    public void testGetHitImmutable()
+    {
+        final String value = "a";
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(wrappedCache).get(KEY);
+                will(returnValue(value));
+            }
+        });
+
+        sut.get(KEY);
+        assertSame(value, sut.get(KEY));
+        assertEquals(0, sut.getCopyNanos());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests keys without a policy always go to the wrapped cache.
+     */
+    @Test
+    public void testGetNotNearCached()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(wrappedCache).get(OTHER_KEY);
+                will(returnValue("x"));
+            }
+        });
+
+        sut.get(OTHER_KEY);
+        sut.get(OTHER_KEY);
+        assertEquals(0, sut.getHitCount());
+        assertEquals(0, sut.getLocalSize());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests local entries expire.
+     */
+    @Test
+    public void testExpiration()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(wrappedCache).get(KEY);
+                will(returnValue("x"));
+            }
+        });
+
+        sut.get(KEY);
+        now += TTL;
+        sut.get(KEY);
+        assertEquals(2, sut.getMissCount());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests a write through the client drops the local entry.
+     */
+    @Test
+    public void testWriteInvalidates()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(wrappedCache).get(KEY);
+                will(returnValue("x"));
+
+                oneOf(wrappedCache).set(KEY, "y");
+            }
+        });
+
+        sut.get(KEY);
+        sut.set(KEY, "y");
+        sut.get(KEY);
+        assertEquals(1, sut.getInvalidationCount());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests a value loaded while the same key is written is not kept locally.
+     */
+    @Test
+    public void testWriteToSameKeyDuringLoad()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(wrappedCache).get(KEY);
+                will(writeDuringLoad(KEY));
+
+                oneOf(wrappedCache).set(KEY, "y");
+            }
+        });
+
+        sut.get(KEY);
+        assertEquals(0, sut.getLocalSize());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests a value loaded while another key is written is still kept locally.
+     */
+    @Test
+    public void testWriteToOtherKeyDuringLoad()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(wrappedCache).get(KEY);
+                will(writeDuringLoad(KEY2));
+
+                oneOf(wrappedCache).set(KEY2, "y");
+            }
+        });
+
+        sut.get(KEY);
+        assertEquals("x", sut.get(KEY));
+        assertEquals(1, sut.getHitCount());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Builds an action which writes a key through the near cache while returning a loaded value.
+     *
+     * @param inWrittenKey
+     *            the key to write.
+     * @return the action.
+     */
+    private Action writeDuringLoad(final String inWrittenKey)
+    {
+        return new CustomAction("write during load")
+        {
+            public Object invoke(final Invocation inInvocation)
+            {
+                sut.set(inWrittenKey, "y");
+                return "x";
+            }
+        };
+    }
+
+    /**
+     * Tests multiGet serves local hits and only asks the wrapped cache for the rest.
+     */
+    @Test
+    public void testMultiGet()
+    {
+        final Map<String, Object> remote = new HashMap<String, Object>();
+        remote.put(KEY2, "b");
+        remote.put(OTHER_KEY, "c");
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(wrappedCache).get(KEY);
+                will(returnValue("a"));
+
+                oneOf(wrappedCache).multiGet(Arrays.asList(KEY2, OTHER_KEY));
+                will(returnValue(remote));
+            }
+        });
+
+        sut.get(KEY);
+        Map<String, Object> results = sut.multiGet(Arrays.asList(KEY, KEY2, OTHER_KEY));
+
+        assertEquals(3, results.size());
+        assertEquals("a", results.get(KEY));
+        assertEquals("b", results.get(KEY2));
+        assertEquals("c", results.get(OTHER_KEY));
+        assertEquals(2, sut.getLocalSize());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests the local tier is bounded.
+     */
+    @Test
+    public void testBounded()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                allowing(wrappedCache).get(with(any(String.class)));
+                will(returnValue("x"));
+            }
+        });
+
+        for (int i = 0; i <= MAX_ENTRIES; i++)
+        {
+            sut.get(CacheKeys.PERSON_BY_ID + i);
+        }
+        assertEquals(MAX_ENTRIES, sut.getLocalSize());
+        context.assertIsSatisfied();
+    }
+}
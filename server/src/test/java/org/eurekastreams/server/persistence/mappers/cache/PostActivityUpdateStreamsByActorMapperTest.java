@@ -17,6 +17,11 @@ package org.eurekastreams.server.persistence.mappers.cache;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.eurekastreams.server.domain.EntityType;
 import org.eurekastreams.server.domain.stream.ActivityDTO;
 import org.eurekastreams.server.domain.stream.StreamEntityDTO;
@@ -201,4 +206,30 @@ public class PostActivityUpdateStreamsByActorMapperTest extends CachedMapperTest
         assertEquals(null, getCache().get(cacheKey));
     }
 
+    /**
+     * Tests the collecting execute method records the updates without writing to cache.
+     */
+    @Test
+    public void testExecuteCollectingUpdates()
+    {
+        final long activityId = 98768L;
+        final long scopeId = 4;
+
+        ActivityDTO activity = new ActivityDTO();
+        StreamEntityDTO destinationStream = new StreamEntityDTO();
+        destinationStream.setType(EntityType.PERSON);
+        destinationStream.setUniqueIdentifier("mrburns");
+        activity.setDestinationStream(destinationStream);
+        activity.setId(activityId);
+
+        final String cacheKey = CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + scopeId;
+        Map<String, List<Long>> prepends = new HashMap<String, List<Long>>();
+
+        sut.execute(activity, prepends);
+
+        assertEquals(1, prepends.size());
+        assertEquals(Collections.singletonList(activityId), prepends.get(cacheKey));
+        assertEquals(null, getCache().get(cacheKey));
+    }
+
 }
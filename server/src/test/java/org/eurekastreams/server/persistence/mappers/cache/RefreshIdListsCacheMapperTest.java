@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Test for RefreshIdListsCacheMapper.
+ */
+public class RefreshIdListsCacheMapperTest
+{
+    /** Used for mocking objects. */
+    private JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Data source mapper. */
+    private DomainMapper<List<Long>, Map<Long, List<Long>>> dataSourceMapper = context.mock(DomainMapper.class);
+
+    /** Cache. */
+    private Cache cache = context.mock(Cache.class);
+
+    /**
+     * Tests the loaded lists are written with one multi-set.
+     */
+    @Test
+    public void testExecute()
+    {
+        final List<Long> ids = Arrays.asList(1L, 2L);
+        final Map<Long, List<Long>> loaded = new HashMap<Long, List<Long>>();
+        loaded.put(1L, Arrays.asList(5L, 6L));
+        loaded.put(2L, Arrays.<Long> asList());
+        final Map<String, List<Long>> expected = new HashMap<String, List<Long>>();
+        expected.put("Pre:1", Arrays.asList(5L, 6L));
+        expected.put("Pre:2", Arrays.<Long> asList());
+
+        RefreshIdListsCacheMapper sut = new RefreshIdListsCacheMapper("Pre:", dataSourceMapper);
+        sut.setCache(cache);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(dataSourceMapper).execute(ids);
+                will(returnValue(loaded));
+
+                oneOf(cache).setLists(expected);
+            }
+        });
+
+        sut.execute(ids);
+        context.assertIsSatisfied();
+    }
+}
@@ -401,4 +401,44 @@ public class RotatingCacheClientTest
         context.assertIsSatisfied();
     }
 
+
+    /**
+     * Test.
+     */
+    @Test
+    public void testgetListArray()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(readRotator).getNext();
+                will(returnValue(cache));
+
+                oneOf(cache).getListArray("key", 5);
+            }
+        });
+
+        sut.getListArray("key", 5);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test.
+     */
+    @Test
+    public void testmultiGetListArrays()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(readRotator).getNext();
+                will(returnValue(cache));
+
+                oneOf(cache).multiGetListArrays(null, 5);
+            }
+        });
+
+        sut.multiGetListArrays(null, 5);
+        context.assertIsSatisfied();
+    }
 }
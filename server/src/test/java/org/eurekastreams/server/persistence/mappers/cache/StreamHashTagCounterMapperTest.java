@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.eurekastreams.server.action.request.stream.StreamPopularHashTagsRequest;
+import org.eurekastreams.server.domain.stream.StreamScope.ScopeType;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.cache.testhelpers.SimpleMemoryCache;
+import org.eurekastreams.server.persistence.mappers.stream.StreamHashTagCounter;
+import org.eurekastreams.server.persistence.mappers.stream.StreamPopularHashTagsReportDTO;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test fixture for StreamHashTagCounterMapper.
+ */
+public class StreamHashTagCounterMapperTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Window of a day, in minutes.
+     */
+    private static final int WINDOW_MINUTES = 1440;
+
+    /**
+     * Mapper to load the counts from the database.
+     */
+    private final DomainMapper<List<StreamPopularHashTagsRequest>, List<StreamHashTagCounter>> counterDbMapper =
+            context.mock(DomainMapper.class);
+
+    /**
+     * Cache.
+     */
+    private SimpleMemoryCache cache;
+
+    /**
+     * A group stream.
+     */
+    private final StreamPopularHashTagsRequest group1 = new StreamPopularHashTagsRequest(ScopeType.GROUP, "g1");
+
+    /**
+     * Another group stream.
+     */
+    private final StreamPopularHashTagsRequest group2 = new StreamPopularHashTagsRequest(ScopeType.GROUP, "g2");
+
+    /**
+     * A third group stream.
+     */
+    private final StreamPopularHashTagsRequest group3 = new StreamPopularHashTagsRequest(ScopeType.GROUP, "g3");
+
+    /**
+     * System under test.
+     */
+    private StreamHashTagCounterMapper sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        cache = new SimpleMemoryCache();
+        sut = new StreamHashTagCounterMapper(counterDbMapper);
+        sut.setCache(cache);
+    }
+
+    /**
+     * Builds a counter with the given hashtags used once each, now.
+     *
+     * @param inHashTags
+     *            the hashtags.
+     * @return the counter.
+     */
+    private StreamHashTagCounter buildCounter(final String... inHashTags)
+    {
+        Date now = new Date();
+        StreamHashTagCounter counter = new StreamHashTagCounter(WINDOW_MINUTES, 2, now);
+        for (String hashTag : inHashTags)
+        {
+            counter.increment(hashTag, now);
+        }
+        return counter;
+    }
+
+    /**
+     * Builds the counter cache key for a stream.
+     *
+     * @param inRequest
+     *            the stream.
+     * @return the key.
+     */
+    private String counterKey(final StreamPopularHashTagsRequest inRequest)
+    {
+        return CacheKeys.HASH_TAG_COUNTER_BY_STREAM_TYPE_AND_SHORT_NAME
+                + new StreamPopularHashTagsRequestCacheKeySuffixTransformer().transform(inRequest);
+    }
+
+    /**
+     * Builds the report cache key for a stream.
+     *
+     * @param inRequest
+     *            the stream.
+     * @return the key.
+     */
+    private String reportKey(final StreamPopularHashTagsRequest inRequest)
+    {
+        return CacheKeys.POPULAR_HASH_TAGS_BY_STREAM_TYPE_AND_SHORT_NAME
+                + new StreamPopularHashTagsRequestCacheKeySuffixTransformer().transform(inRequest);
+    }
+
+    /**
+     * Tests the counts missing from cache are loaded with one call, and the counts and reports are cached.
+     */
+    @Test
+    public void testExecuteLoadsMissingInOneCall()
+    {
+        cache.set(counterKey(group2), buildCounter("#cached"));
+        final StreamHashTagCounter loaded1 = buildCounter("#one");
+        final StreamHashTagCounter loaded3 = buildCounter("#three");
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(counterDbMapper).execute(Arrays.asList(group1, group3));
+                will(returnValue(Arrays.asList(loaded1, loaded3)));
+            }
+        });
+
+        List<StreamPopularHashTagsReportDTO> results = sut.execute(Arrays.asList(group1, group2, group3));
+
+        context.assertIsSatisfied();
+        assertEquals(Arrays.asList("#one"), results.get(0).getPopularHashTags());
+        assertEquals(Arrays.asList("#cached"), results.get(1).getPopularHashTags());
+        assertEquals(Arrays.asList("#three"), results.get(2).getPopularHashTags());
+        assertSame(loaded3, cache.get(counterKey(group3)));
+        assertSame(results.get(1), cache.get(reportKey(group2)));
+    }
+
+    /**
+     * Tests adding hashtags updates the cached counts and report without touching the database.
+     */
+    @Test
+    public void testAddHashTagsCached()
+    {
+        cache.set(counterKey(group1), buildCounter("#a"));
+
+        sut.addHashTags(group1, Arrays.asList("#b", "#b"), new Date());
+
+        context.assertIsSatisfied();
+        assertEquals(Arrays.asList("#b", "#a"), ((StreamHashTagCounter) cache.get(counterKey(group1)))
+                .getTopHashTags());
+        assertEquals(Arrays.asList("#b", "#a"), ((StreamPopularHashTagsReportDTO) cache.get(reportKey(group1)))
+                .getPopularHashTags());
+    }
+
+    /**
+     * Tests adding hashtags for a stream whose counts are not cached loads them from the database instead.
+     */
+    @Test
+    public void testAddHashTagsNotCached()
+    {
+        final StreamHashTagCounter loaded = buildCounter("#b");
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(counterDbMapper).execute(Collections.singletonList(group1));
+                will(returnValue(Arrays.asList(loaded)));
+            }
+        });
+
+        sut.addHashTags(group1, Arrays.asList("#b"), new Date());
+
+        context.assertIsSatisfied();
+        assertSame(loaded, cache.get(counterKey(group1)));
+        assertEquals(Arrays.asList("#b"), ((StreamPopularHashTagsReportDTO) cache.get(reportKey(group1)))
+                .getPopularHashTags());
+    }
+}
@@ -31,6 +31,7 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eurekastreams.server.persistence.mappers.cache.Cache;
+import org.eurekastreams.server.persistence.mappers.cache.CacheValueUpdater;
 
 /**
  * Simple Cache implementation for integration tests, storing the cached information in memory, rather than engaging an
@@ -177,6 +178,50 @@ public class SimpleMemoryCache implements Cache
         return toReturn;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public long[] getListArray(final String inKey, final int inMaximumEntries)
+    {
+        ArrayList<Long> list;
+        try
+        {
+            list = getListFromBytes(cache.get(inKey));
+        }
+        catch (IOException e)
+        {
+            log.error("Error getListFromBytes getListArray for key " + inKey + ".  Exception : " + e.toString());
+            return null;
+        }
+        if (list == null)
+        {
+            return null;
+        }
+        long[] toReturn = new long[Math.min(list.size(), inMaximumEntries)];
+        for (int i = 0; i < toReturn.length; i++)
+        {
+            toReturn[i] = list.get(i);
+        }
+        return toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, long[]> multiGetListArrays(final Collection<String> inKeys, final int inMaximumEntries)
+    {
+        Map<String, long[]> toReturn = new HashMap<String, long[]>();
+        for (String key : inKeys)
+        {
+            long[] value = getListArray(key, inMaximumEntries);
+            if (value != null)
+            {
+                toReturn.put(key, value);
+            }
+        }
+        return toReturn;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -229,6 +274,24 @@ public class SimpleMemoryCache implements Cache
         return toReturn;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Object updateCAS(final String inKey, final CacheValueUpdater inUpdater)
+    {
+        Object current = cache.get(inKey);
+        if (current == null)
+        {
+            return null;
+        }
+        Object value = inUpdater.update(current);
+        if (value != null)
+        {
+            cache.put(inKey, value);
+        }
+        return value;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -335,6 +398,17 @@ public class SimpleMemoryCache implements Cache
         this.delete(inKey);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        for (String key : inKeys)
+        {
+            delete(key);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -386,6 +460,39 @@ public class SimpleMemoryCache implements Cache
         this.addToTopOfList(inKey, longs);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void addToTopOfLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        for (Map.Entry<String, List<Long>> entry : inValuesByKey.entrySet())
+        {
+            addToTopOfList(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setLists(final Map<String, List<Long>> inValuesByKey)
+    {
+        for (Map.Entry<String, List<Long>> entry : inValuesByKey.entrySet())
+        {
+            setList(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void multiSet(final Map<String, ?> inValuesByKey)
+    {
+        for (Map.Entry<String, ?> entry : inValuesByKey.entrySet())
+        {
+            set(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -57,4 +57,29 @@ public class GetExpiredActivityIdsTest extends MapperTest
         results = sut.execute(dateFormat.parse("10/29/2008"));
         assertEquals(0, results.size());
     }
+
+    /**
+     * Test paging through the expired activities by id.
+     *
+     * @throws Exception
+     *             on error.
+     */
+    @Test
+    public void testExecutePage() throws Exception
+    {
+        final Long activity1 = new Long(6791L);
+        final Long activity2 = new Long(6792L);
+
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        List<Long> results = sut.execute(dateFormat.parse("10/29/2009"), 0L, 1);
+        assertEquals(1, results.size());
+        assertEquals(activity1, results.get(0));
+
+        results = sut.execute(dateFormat.parse("10/29/2009"), activity1, 1);
+        assertEquals(1, results.size());
+        assertEquals(activity2, results.get(0));
+
+        results = sut.execute(dateFormat.parse("10/29/2009"), activity2, 1);
+        assertEquals(0, results.size());
+    }
 }
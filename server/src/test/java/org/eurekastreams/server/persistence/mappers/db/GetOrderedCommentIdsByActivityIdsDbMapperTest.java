@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.MapperTest;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Test for GetOrderedCommentIdsByActivityIdsDbMapper.
+ */
+public class GetOrderedCommentIdsByActivityIdsDbMapperTest extends MapperTest
+{
+    /**
+     * Activity with three comments (from dataset.xml).
+     */
+    private static final long ACTIVITY_ID_1 = 6789L;
+
+    /**
+     * Activity with three comments (from dataset.xml).
+     */
+    private static final long ACTIVITY_ID_2 = 6790L;
+
+    /**
+     * Activity id with no comments.
+     */
+    private static final long ACTIVITY_ID_NO_COMMENTS = 9999999L;
+
+    /**
+     * System under test.
+     */
+    @Autowired
+    private GetOrderedCommentIdsByActivityIdsDbMapper sut;
+
+    /**
+     * test.
+     */
+    @Test
+    public void testExecute()
+    {
+        Map<Long, List<Long>> results = sut.execute(Arrays.asList(ACTIVITY_ID_1, ACTIVITY_ID_2,
+                ACTIVITY_ID_NO_COMMENTS));
+
+        assertEquals(3, results.size());
+        assertEquals(Arrays.asList(1L, 2L, 3L), results.get(ACTIVITY_ID_1));
+        assertEquals(Arrays.asList(5L, 6L, 7L), results.get(ACTIVITY_ID_2));
+        assertTrue(results.get(ACTIVITY_ID_NO_COMMENTS).isEmpty());
+    }
+
+    /**
+     * test with an empty request.
+     */
+    @Test
+    public void testExecuteEmpty()
+    {
+        assertTrue(sut.execute(new ArrayList<Long>()).isEmpty());
+    }
+}
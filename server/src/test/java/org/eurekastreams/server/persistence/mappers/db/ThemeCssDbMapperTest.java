@@ -15,6 +15,7 @@
  */
 package org.eurekastreams.server.persistence.mappers.db;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
@@ -82,4 +83,24 @@ public class ThemeCssDbMapperTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test that the compiled XSLT is reused for later transforms.
+     */
+    @Test
+    public void testRepeated()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(getThemeXmlUrlByUuidDbMapper).execute("uuid");
+                will(returnValue("src/test/resources/themes/vegas.xml"));
+            }
+        });
+
+        String first = sut.execute("uuid");
+        assertEquals(first, sut.execute("uuid"));
+        assertTrue(first.contains("div.banner-container"));
+
+        context.assertIsSatisfied();
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db.notification;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.eurekastreams.server.domain.UnreadInAppNotificationCountDTO;
+import org.eurekastreams.server.persistence.mappers.MapperTest;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests mapper to get unread alert counts for several users.
+ */
+public class GetUnreadInAppNotificationCountsByUserIdsTest extends MapperTest
+{
+    /** Users queried per statement; small enough that the test spans several chunks. */
+    private static final int BATCH_SIZE = 3;
+
+    /**
+     * System under test.
+     */
+    private GetUnreadInAppNotificationCountsByUserIds sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new GetUnreadInAppNotificationCountsByUserIds(BATCH_SIZE);
+        sut.setEntityManager(getEntityManager());
+    }
+
+    /**
+     * Tests execute method across more than one chunk of users.
+     */
+    @Test
+    public void testExecute()
+    {
+        final long id42 = 42L;
+        final long id98 = 98L;
+        final long id99 = 99L;
+        final long id142 = 142L;
+        Map<Long, UnreadInAppNotificationCountDTO> results = sut.execute(Arrays.asList(id42, id98, id99, id142));
+
+        assertEquals(4, results.size());
+        assertEquals(1, results.get(id42).getNormalPriority());
+        assertEquals(2, results.get(id42).getHighPriority());
+        assertEquals(1, results.get(id98).getNormalPriority());
+        assertEquals(0, results.get(id98).getHighPriority());
+        assertEquals(0, results.get(id99).getNormalPriority());
+        assertEquals(1, results.get(id99).getHighPriority());
+        assertEquals(0, results.get(id142).getNormalPriority());
+        assertEquals(0, results.get(id142).getHighPriority());
+    }
+}
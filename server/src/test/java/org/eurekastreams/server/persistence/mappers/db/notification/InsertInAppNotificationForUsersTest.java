@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db.notification;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eurekastreams.server.domain.EntityType;
+import org.eurekastreams.server.domain.InAppNotificationEntity;
+import org.eurekastreams.server.domain.NotificationType;
+import org.eurekastreams.server.persistence.mappers.MapperTest;
+import org.junit.Test;
+
+/**
+ * Tests InsertInAppNotificationForUsers.
+ */
+public class InsertInAppNotificationForUsersTest extends MapperTest
+{
+    /** Test data. */
+    private static final String MESSAGE = "The message";
+
+    /** Test data. */
+    private static final String SOURCE_ID = "group1";
+
+    /**
+     * Tests execute inserts one notification per existing recipient, across several chunks.
+     */
+    @Test
+    public void testExecute()
+    {
+        final long id42 = 42L;
+        final long id98 = 98L;
+        final long id99 = 99L;
+        final long missingId = 999999L;
+        final int batchSize = 2;
+
+        InsertInAppNotificationForUsers sut = new InsertInAppNotificationForUsers(batchSize);
+        sut.setEntityManager(getEntityManager());
+
+        long maxId = (Long) getEntityManager().createQuery("SELECT MAX(id) FROM InAppNotification").getSingleResult();
+
+        InAppNotificationEntity notif = new InAppNotificationEntity();
+        notif.setNotificationType(NotificationType.POST_TO_GROUP_STREAM);
+        notif.setMessage(MESSAGE);
+        notif.setSourceType(EntityType.GROUP);
+        notif.setSourceUniqueId(SOURCE_ID);
+
+        int count = sut.execute(new InsertInAppNotificationForUsersRequest(notif, Arrays.asList(id42, id98,
+                missingId, id99)));
+
+        assertEquals(3, count);
+        List<InAppNotificationEntity> results = getEntityManager().createQuery(
+                "FROM InAppNotification WHERE id > :id").setParameter("id", maxId).getResultList();
+        assertEquals(3, results.size());
+        Set<Long> recipients = new HashSet<Long>();
+        for (InAppNotificationEntity result : results)
+        {
+            recipients.add(result.getRecipient().getId());
+            assertEquals(MESSAGE, result.getMessage());
+            assertEquals(EntityType.GROUP, result.getSourceType());
+            assertEquals(SOURCE_ID, result.getSourceUniqueId());
+        }
+        assertEquals(new HashSet<Long>(Arrays.asList(id42, id98, id99)), recipients);
+    }
+}
@@ -15,6 +15,9 @@
  */
 package org.eurekastreams.server.persistence.mappers.ldap;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -126,4 +129,43 @@ public class PagedLdapSearchStrategyTest
 
         context.assertIsSatisfied();
     }
+
+    /**
+     * Test the paged search hands each page to the page handler and empties the collecting handler.
+     */
+    @Test
+    public void testSearchWithPageHandler()
+    {
+        sut = new PagedLdapSearchStrategy(2);
+
+        final List<Object> testPersonList = new ArrayList<Object>();
+        testPersonList.add(new Person());
+        testPersonList.add(null);
+        final List<Object> handled = new ArrayList<Object>();
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(ldapTemplateMock).search(with(any(String.class)), with(any(String.class)),
+                        with(any(SearchControls.class)), with(any(CollectingNameClassPairCallbackHandler.class)),
+                        with(any(PagedResultsDirContextProcessor.class)));
+
+                allowing(handlerMock).getList();
+                will(returnValue(testPersonList));
+            }
+        });
+        int count = sut.searchLdap(ldapTemplateMock, "cn=groupname", searchControlsMock, handlerMock,
+                new PageHandler<Object>()
+                {
+                    public void handlePage(final List<Object> inPage)
+                    {
+                        handled.addAll(inPage);
+                    }
+                });
+
+        assertEquals(2, count);
+        assertEquals(2, handled.size());
+        assertTrue(testPersonList.isEmpty());
+        context.assertIsSatisfied();
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * Tests StreamHashTagCounter.
+ */
+public class StreamHashTagCounterTest
+{
+    /**
+     * Milliseconds in an hour.
+     */
+    private static final long HOUR = 60L * 60L * 1000L;
+
+    /**
+     * Window of three hours, in minutes.
+     */
+    private static final int WINDOW_MINUTES = 180;
+
+    /**
+     * Start time, on an hour boundary.
+     */
+    private static final long START = 1000L * HOUR;
+
+    /**
+     * Tests the top hashtags follow the counts, ties broken by content.
+     */
+    @Test
+    public void testTopHashTags()
+    {
+        StreamHashTagCounter sut = new StreamHashTagCounter(WINDOW_MINUTES, 2, new Date(START));
+        Date now = new Date(START);
+
+        sut.increment("#b", now);
+        sut.increment("#c", now);
+        assertEquals(Arrays.asList("#b", "#c"), sut.getTopHashTags());
+
+        sut.increment("#a", now);
+        assertEquals(Arrays.asList("#a", "#b"), sut.getTopHashTags());
+
+        sut.increment("#c", now);
+        sut.increment("#c", now);
+        sut.increment("#b", now);
+        assertEquals(Arrays.asList("#c", "#b"), sut.getTopHashTags());
+    }
+
+    /**
+     * Tests counting several uses at once ranks the same as counting them one at a time.
+     */
+    @Test
+    public void testIncrementByCount()
+    {
+        final int uses = 3;
+        StreamHashTagCounter sut = new StreamHashTagCounter(WINDOW_MINUTES, 2, new Date(START));
+
+        sut.increment("#a", new Date(START), 2);
+        sut.increment("#b", new Date(START + HOUR), uses);
+        assertEquals(Arrays.asList("#b", "#a"), sut.getTopHashTags());
+
+        sut.advanceTo(new Date(START + 3 * HOUR));
+        assertEquals(Arrays.asList("#b"), sut.getTopHashTags());
+    }
+
+    /**
+     * Tests counts leave the window as it moves, and uses older than the window are ignored.
+     */
+    @Test
+    public void testWindowSlides()
+    {
+        StreamHashTagCounter sut = new StreamHashTagCounter(WINDOW_MINUTES, 2, new Date(START));
+
+        sut.increment("#old", new Date(START));
+        sut.increment("#old", new Date(START));
+        sut.increment("#new", new Date(START + HOUR));
+        assertEquals(Arrays.asList("#old", "#new"), sut.getTopHashTags());
+
+        sut.advanceTo(new Date(START + 3 * HOUR));
+        assertEquals(Arrays.asList("#new"), sut.getTopHashTags());
+
+        sut.increment("#old", new Date(START));
+        assertEquals(Arrays.asList("#new"), sut.getTopHashTags());
+
+        sut.increment("#newer", new Date(START + 5 * HOUR));
+        assertEquals(Arrays.asList("#newer"), sut.getTopHashTags());
+    }
+
+    /**
+     * Tests rebuilding the top hashtags after a bucket leaves the window keeps the heaviest of the rest.
+     */
+    @Test
+    public void testRebuildAfterExpiry()
+    {
+        final int maxTop = 3;
+        final int uses = 5;
+        StreamHashTagCounter sut = new StreamHashTagCounter(WINDOW_MINUTES, maxTop, new Date(START));
+
+        for (int i = 0; i < uses; i++)
+        {
+            sut.increment("#gone", new Date(START));
+        }
+        for (int i = 0; i < uses; i++)
+        {
+            for (int j = 0; j <= i; j++)
+            {
+                sut.increment("#t" + i, new Date(START + HOUR));
+            }
+        }
+        assertTrue(sut.getTopHashTags().contains("#gone"));
+
+        sut.advanceTo(new Date(START + 3 * HOUR));
+        assertEquals(Arrays.asList("#t4", "#t3", "#t2"), sut.getTopHashTags());
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.eurekastreams.server.domain.Image;
+import org.eurekastreams.server.persistence.mappers.InsertMapper;
+import org.eurekastreams.server.persistence.mappers.UpdateMapper;
+import org.eurekastreams.server.persistence.mappers.db.DeleteImage;
+import org.eurekastreams.server.persistence.mappers.db.GetImageByIdentifier;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests ImageWriter.
+ */
+public class ImageWriterTest
+{
+    /** Test data. */
+    private static final String IDENTIFIER = "n1a2b3";
+
+    /** Test data. */
+    private static final int SIZE = 4;
+
+    /** Test data. */
+    private static final String OTHER_IDENTIFIER = "n4c5d6";
+
+    /** Test data. */
+    private static final long TIME_TO_LIVE = 60000L;
+
+    /** Test data. */
+    private static final long MAX_CACHED_BYTES = 1024 * 1024L;
+
+    /** Used for mocking objects. */
+    private final JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Insert mapper. */
+    private final InsertMapper<Image> insertMapper = context.mock(InsertMapper.class);
+
+    /** Update mapper. */
+    private final UpdateMapper<Image> updateMapper = context.mock(UpdateMapper.class);
+
+    /** Delete mapper. */
+    private final DeleteImage deleteMapper = context.mock(DeleteImage.class);
+
+    /** Get mapper. */
+    private final GetImageByIdentifier getMapper = context.mock(GetImageByIdentifier.class);
+
+    /** SUT. */
+    private ImageWriter sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new ImageWriter(insertMapper, updateMapper, deleteMapper, getMapper, 2, MAX_CACHED_BYTES, TIME_TO_LIVE);
+    }
+
+    /**
+     * Encodes a small image.
+     *
+     * @param format
+     *            Image format.
+     * @return The encoded image.
+     * @throws IOException
+     *             Shouldn't.
+     */
+    private byte[] encode(final String format) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB), format, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Tests that stored PNG bytes are served unchanged and cached.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testReadStoredImagePng() throws IOException
+    {
+        final byte[] png = encode("png");
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(getMapper).execute(IDENTIFIER);
+                will(returnValue(new Image(IDENTIFIER, png)));
+            }
+        });
+
+        StoredImage image = sut.readStoredImage(IDENTIFIER);
+        assertSame(png, image.getBytes());
+        assertEquals('"', image.getEtag().charAt(0));
+        assertEquals(0, image.getLastModified() % 1000);
+        assertSame(image, sut.readStoredImage(IDENTIFIER));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that images stored in other formats are converted to PNG.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testReadStoredImageOtherFormat() throws IOException
+    {
+        final byte[] bmp = encode("bmp");
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(getMapper).execute(IDENTIFIER);
+                will(returnValue(new Image(IDENTIFIER, bmp)));
+            }
+        });
+
+        StoredImage image = sut.readStoredImage(IDENTIFIER);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image.getBytes()));
+        assertNotNull(decoded);
+        assertEquals(SIZE, decoded.getWidth());
+        assertEquals((byte) 0x89, image.getBytes()[0]);
+        assertEquals((byte) 'P', image.getBytes()[1]);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests reading a missing image.
+     */
+    @Test
+    public void testReadStoredImageMissing()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(getMapper).execute(IDENTIFIER);
+                will(returnValue(null));
+            }
+        });
+
+        assertNull(sut.readStoredImage(IDENTIFIER));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that deleting an image drops it from the cache.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testDeleteForgetsImage() throws IOException
+    {
+        final byte[] png = encode("png");
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(getMapper).execute(IDENTIFIER);
+                will(returnValue(new Image(IDENTIFIER, png)));
+
+                oneOf(deleteMapper).execute(IDENTIFIER);
+
+                oneOf(getMapper).execute(IDENTIFIER);
+                will(returnValue(null));
+            }
+        });
+
+        assertNotNull(sut.readStoredImage(IDENTIFIER));
+        sut.delete(IDENTIFIER);
+        assertNull(sut.readStoredImage(IDENTIFIER));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that the cache evicts the least recently used images to stay within its byte limit.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testByteLimitEvicts() throws IOException
+    {
+        final byte[] png = encode("png");
+        sut = new ImageWriter(insertMapper, updateMapper, deleteMapper, getMapper, 2, png.length, TIME_TO_LIVE);
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(getMapper).execute(IDENTIFIER);
+                will(returnValue(new Image(IDENTIFIER, png)));
+
+                oneOf(getMapper).execute(OTHER_IDENTIFIER);
+                will(returnValue(new Image(OTHER_IDENTIFIER, png)));
+            }
+        });
+
+        assertNotNull(sut.readStoredImage(IDENTIFIER));
+        assertNotNull(sut.readStoredImage(OTHER_IDENTIFIER));
+        assertNotNull(sut.readStoredImage(IDENTIFIER));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that an image changed within a transaction is dropped from the cache again when the transaction
+     * completes, so a copy read before the commit is not served.
+     *
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testDeleteForgetsImageAfterCommit() throws IOException
+    {
+        final byte[] png = encode("png");
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(deleteMapper).execute(IDENTIFIER);
+
+                oneOf(getMapper).execute(IDENTIFIER);
+                will(returnValue(new Image(IDENTIFIER, png)));
+
+                oneOf(getMapper).execute(IDENTIFIER);
+                will(returnValue(null));
+            }
+        });
+
+        TransactionSynchronizationManager.initSynchronization();
+        try
+        {
+            sut.delete(IDENTIFIER);
+
+            // another request reads the image before the delete commits
+            assertNotNull(sut.readStoredImage(IDENTIFIER));
+
+            for (Object sync : TransactionSynchronizationManager.getSynchronizations())
+            {
+                ((TransactionSynchronization) sync).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertNull(sut.readStoredImage(IDENTIFIER));
+        context.assertIsSatisfied();
+    }
+}
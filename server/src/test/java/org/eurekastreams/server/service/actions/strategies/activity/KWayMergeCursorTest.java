@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests KWayMergeCursor.
+ */
+public class KWayMergeCursorTest
+{
+    /**
+     * Builds the lists used by the tests.
+     *
+     * @return the lists.
+     */
+    private List<List<Long>> buildLists()
+    {
+        List<List<Long>> lists = new ArrayList<List<Long>>();
+        lists.add(Arrays.asList(9L, 7L, 3L));
+        lists.add(Arrays.asList(8L, 7L, 2L, 1L));
+        lists.add(Arrays.asList(9L, 6L, 3L, 2L));
+        return lists;
+    }
+
+    /**
+     * Test each batch continues where the previous one stopped.
+     */
+    @Test
+    public void testNextResumes()
+    {
+        KWayMergeCursor sut = new KWayMergeCursor(buildLists());
+
+        assertEquals(Arrays.asList(9L, 8L), sut.next(2));
+        assertEquals(Arrays.asList(7L, 6L, 3L), sut.next(3));
+        assertEquals(Arrays.asList(2L, 1L), sut.next(5));
+        assertEquals(Collections.EMPTY_LIST, sut.next(5));
+    }
+
+    /**
+     * Test the cursor starts below the given id.
+     */
+    @Test
+    public void testStartBefore()
+    {
+        KWayMergeCursor sut = new KWayMergeCursor(buildLists(), 7L);
+
+        assertEquals(Arrays.asList(6L, 3L, 2L, 1L), sut.next(10));
+    }
+
+    /**
+     * Test starting below every id.
+     */
+    @Test
+    public void testStartBeforeEverything()
+    {
+        KWayMergeCursor sut = new KWayMergeCursor(buildLists(), 1L);
+
+        assertEquals(Collections.EMPTY_LIST, sut.next(10));
+    }
+}
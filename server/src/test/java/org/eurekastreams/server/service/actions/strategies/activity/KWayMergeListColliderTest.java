@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests KWayMergeListCollider.
+ */
+public class KWayMergeListColliderTest
+{
+    /**
+     * System under test.
+     */
+    private final KWayMergeListCollider sut = new KWayMergeListCollider();
+
+    /**
+     * Test merging several lists, with ids shared between them.
+     */
+    @Test
+    public void testCollideMany()
+    {
+        List<List<Long>> lists = new ArrayList<List<Long>>();
+        lists.add(Arrays.asList(9L, 7L, 3L));
+        lists.add(Arrays.asList(8L, 7L, 2L, 1L));
+        lists.add(Arrays.asList(9L, 6L, 3L, 2L));
+
+        assertEquals(Arrays.asList(9L, 8L, 7L, 6L, 3L, 2L, 1L), sut.collide(lists, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Test the merge stops at the max results.
+     */
+    @Test
+    public void testCollideMaxResults()
+    {
+        List<List<Long>> lists = new ArrayList<List<Long>>();
+        lists.add(Arrays.asList(9L, 7L, 3L));
+        lists.add(Arrays.asList(9L, 8L, 2L));
+
+        assertEquals(Arrays.asList(9L, 8L, 7L), sut.collide(lists, 3));
+    }
+
+    /**
+     * Test null and empty lists are skipped.
+     */
+    @Test
+    public void testCollideEmptyAndNull()
+    {
+        List<List<Long>> lists = new ArrayList<List<Long>>();
+        lists.add(new ArrayList<Long>());
+        lists.add(null);
+        lists.add(Arrays.asList(5L, 4L));
+
+        assertEquals(Arrays.asList(5L, 4L), sut.collide(lists, 10));
+        assertEquals(Collections.EMPTY_LIST, sut.collide(new ArrayList<List<Long>>(), 10));
+    }
+
+    /**
+     * Test the two list form.
+     */
+    @Test
+    public void testCollideTwo()
+    {
+        assertEquals(Arrays.asList(6L, 5L, 4L, 1L), sut.collide(Arrays.asList(6L, 4L, 1L), Arrays.asList(5L, 4L), 10));
+    }
+}
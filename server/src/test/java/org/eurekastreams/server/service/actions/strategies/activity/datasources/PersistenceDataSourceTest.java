@@ -17,15 +17,17 @@ package org.eurekastreams.server.service.actions.strategies.activity.datasources
 
 import static org.eurekastreams.commons.test.IsEqualInternally.equalInternally;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
 import net.sf.json.JSONObject;
 
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
-import org.eurekastreams.server.service.actions.strategies.activity.ListCollider;
+import org.eurekastreams.server.service.actions.strategies.activity.MultiListCollider;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
@@ -62,7 +64,7 @@ public class PersistenceDataSourceTest
     /**
      * The or collider.
      */
-    private ListCollider orCollider = context.mock(ListCollider.class);
+    private MultiListCollider orCollider = context.mock(MultiListCollider.class);
 
 
     /**
@@ -101,6 +103,11 @@ public class PersistenceDataSourceTest
      */
     private static final int COUNT = 10;
 
+    /**
+     * The id cursors start below.
+     */
+    private static final long MAX_ID = 1000L;
+
     /**
      * Set up an empty request and the SUT.
      */
@@ -129,7 +136,7 @@ public class PersistenceDataSourceTest
 
                 oneOf(everyoneMapper).execute(null);
                 will(returnValue(everyoneIds));
-                oneOf(orCollider).collide(with(any(List.class)), with(any(List.class)), with(equalInternally(COUNT)));
+                oneOf(orCollider).collide(with(any(List.class)), with(equalInternally(COUNT)));
             }
         });
 
@@ -168,7 +175,7 @@ public class PersistenceDataSourceTest
                 oneOf(followedMapper).execute(2L);
                 will(returnValue(keys));
 
-                oneOf(orCollider).collide(with(any(List.class)), with(any(List.class)), with(equalInternally(COUNT)));
+                oneOf(orCollider).collide(with(any(List.class)), with(equalInternally(COUNT)));
             }
         });
 
@@ -197,8 +204,7 @@ public class PersistenceDataSourceTest
                 oneOf(followedMapper).execute(2L);
                 will(returnValue(keys));
 
-                oneOf(orCollider).collide(with(any(List.class)),
-                        with(any(List.class)), with(equalInternally(MAXITEMS)));
+                oneOf(orCollider).collide(with(any(List.class)), with(equalInternally(MAXITEMS)));
 
             }
         });
@@ -218,4 +224,46 @@ public class PersistenceDataSourceTest
         assertNull(sut.fetch(request, 0L));
         context.assertIsSatisfied();
     }
+
+    /**
+     * Opening a cursor for following w/o keywords. Call the appropriate generator and open the cursor on its lists.
+     */
+    @Test
+    public void openCursorForFollowing()
+    {
+        ((JSONObject) request.get("query")).put("followedBy", "shawkings");
+
+        final List<Long> ids = new ArrayList<Long>();
+        ids.add(2L);
+
+        final DescendingOrderCursor cursor = context.mock(DescendingOrderCursor.class);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(transformer).transform(with(any(JSONObject.class)), with(equal(0L)));
+                will(returnValue(2L));
+                oneOf(followedMapper).execute(2L);
+                will(returnValue(ids));
+
+                oneOf(orCollider).openCursor(with(equal(Collections.singletonList(ids))), with(equal(MAX_ID)));
+                will(returnValue(cursor));
+            }
+        });
+
+        assertSame(cursor, sut.openCursor(request, 0L, MAX_ID));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Opening a cursor with no handled query terms - should return null.
+     */
+    @Test
+    public void openCursorForEveryoneWithKeyword()
+    {
+        ((JSONObject) request.get("query")).put("keywords", "eureka");
+
+        assertNull(sut.openCursor(request, 0L, MAX_ID));
+        context.assertIsSatisfied();
+    }
 }
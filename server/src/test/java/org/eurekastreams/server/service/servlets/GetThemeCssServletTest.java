@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.servlets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.HttpStatus;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.cache.Transformer;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests GetThemeCssServlet.
+ */
+public class GetThemeCssServletTest
+{
+    /** Test data. */
+    private static final String URI = "/themes/abc.css";
+
+    /** Test data. */
+    private static final String UUID = "abc";
+
+    /** Test data. */
+    private static final String CSS = "body { color: red; }";
+
+    /** Test data. */
+    private static final String ETAG = "\"" + DigestUtils.md5Hex(CSS) + "\"";
+
+    /** Used for mocking objects. */
+    private final JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Request uri to theme uuid transformer. */
+    private final Transformer<String, String> uuidTransformer = context.mock(Transformer.class);
+
+    /** Mapper to get theme css by uuid. */
+    private final DomainMapper<String, String> cssMapper = context.mock(DomainMapper.class, "cssMapper");
+
+    /** Mapper to get theme version by uuid. */
+    private final DomainMapper<String, String> versionMapper = context.mock(DomainMapper.class, "versionMapper");
+
+    /** Request. */
+    private final HttpServletRequest request = context.mock(HttpServletRequest.class);
+
+    /** Response. */
+    private final HttpServletResponse response = context.mock(HttpServletResponse.class);
+
+    /** Receives the response body. */
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    /** SUT. */
+    private GetThemeCssServlet sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new GetThemeCssServlet(uuidTransformer, cssMapper, versionMapper);
+    }
+
+    /**
+     * Sets up a request.
+     *
+     * @param ifNoneMatch
+     *            If-None-Match header.
+     * @param acceptEncoding
+     *            Accept-Encoding header.
+     */
+    private void expectRequest(final String ifNoneMatch, final String acceptEncoding)
+    {
+        context.checking(new Expectations()
+        {
+            {
+                allowing(request).getRequestURI();
+                will(returnValue(URI));
+                allowing(uuidTransformer).transform(URI);
+                will(returnValue(UUID));
+                allowing(request).getHeader("If-None-Match");
+                will(returnValue(ifNoneMatch));
+                allowing(request).getHeader("Accept-Encoding");
+                will(returnValue(acceptEncoding));
+            }
+        });
+    }
+
+    /**
+     * Sets up a 200 response with the body captured.
+     *
+     * @param gzipped
+     *            If the body is expected to be gzipped.
+     * @throws IOException
+     *             Shouldn't.
+     */
+    private void expectResponse(final boolean gzipped) throws IOException
+    {
+        context.checking(new Expectations()
+        {
+            {
+                if (gzipped)
+                {
+                    oneOf(response).setHeader("Content-Encoding", "gzip");
+                }
+                oneOf(response).setHeader("Vary", "Accept-Encoding");
+                oneOf(response).setHeader("ETag", ETAG);
+                oneOf(response).setContentType("text/css; charset=UTF-8");
+                oneOf(response).setContentLength(with(any(int.class)));
+                allowing(response).getOutputStream();
+                will(returnValue(new ServletOutputStream()
+                {
+                    @Override
+                    public void write(final int b)
+                    {
+                        body.write(b);
+                    }
+                }));
+            }
+        });
+    }
+
+    /**
+     * Tests that a client holding the current version gets a 304 without the css being loaded.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testNotModified() throws Exception
+    {
+        expectRequest(ETAG, null);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(versionMapper).execute(UUID);
+                will(returnValue(DigestUtils.md5Hex(CSS)));
+                oneOf(response).setStatus(HttpStatus.SC_NOT_MODIFIED);
+                oneOf(response).setHeader("ETag", ETAG);
+            }
+        });
+
+        sut.doGet(request, response);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that the css is sent plain and then served from memory while the version is unchanged.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testPlainAndCached() throws Exception
+    {
+        expectRequest(null, "gzip;q=0, identity");
+        expectResponse(false);
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(versionMapper).execute(UUID);
+                will(returnValue(DigestUtils.md5Hex(CSS)));
+                oneOf(cssMapper).execute(UUID);
+                will(returnValue(CSS));
+            }
+        });
+
+        sut.doGet(request, response);
+        assertEquals(CSS, body.toString("UTF-8"));
+
+        body.reset();
+        expectResponse(false);
+        sut.doGet(request, response);
+        assertEquals(CSS, body.toString("UTF-8"));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that the css is gzipped for clients that accept it.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testGzip() throws Exception
+    {
+        expectRequest(null, "deflate, gzip");
+        expectResponse(true);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(versionMapper).execute(UUID);
+                will(returnValue(DigestUtils.md5Hex(CSS)));
+                oneOf(cssMapper).execute(UUID);
+                will(returnValue(CSS));
+            }
+        });
+
+        sut.doGet(request, response);
+
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()));
+        ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+        for (int b = in.read(); b >= 0; b = in.read())
+        {
+            unzipped.write(b);
+        }
+        assertArrayEquals(CSS.getBytes("UTF-8"), unzipped.toByteArray());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests that css rendered after a theme change is labeled with its own hash, not the version read before it.
+     *
+     * @throws ServletException
+     *             Shouldn't.
+     * @throws IOException
+     *             Shouldn't.
+     */
+    @Test
+    public void testEtagFromRenderedCss() throws ServletException, IOException
+    {
+        expectRequest(null, null);
+        expectResponse(false);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(versionMapper).execute(UUID);
+                will(returnValue("staleVersion"));
+                oneOf(cssMapper).execute(UUID);
+                will(returnValue(CSS));
+            }
+        });
+
+        sut.doGet(request, response);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests Accept-Encoding parsing.
+     */
+    @Test
+    public void testAcceptsGzip()
+    {
+        assertFalse(GetThemeCssServlet.acceptsGzip(null));
+        assertFalse(GetThemeCssServlet.acceptsGzip("identity"));
+        assertTrue(GetThemeCssServlet.acceptsGzip("gzip"));
+        assertTrue(GetThemeCssServlet.acceptsGzip("deflate, gzip;q=0.5"));
+        assertFalse(GetThemeCssServlet.acceptsGzip("gzip;q=0"));
+        assertFalse(GetThemeCssServlet.acceptsGzip("gzip; q=0.0, deflate"));
+        assertTrue(GetThemeCssServlet.acceptsGzip("*"));
+        assertFalse(GetThemeCssServlet.acceptsGzip("*;q=0"));
+        assertFalse(GetThemeCssServlet.acceptsGzip("*, gzip;q=0"));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.utility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests LongHashSet.
+ */
+public class LongHashSetTest
+{
+    /** Number of values to use when forcing the table to grow. */
+    private static final int MANY = 1000;
+
+    /**
+     * Tests adding and finding values, including zero and negatives.
+     */
+    @Test
+    public void testAddContains()
+    {
+        LongHashSet sut = new LongHashSet(2);
+        assertTrue(sut.isEmpty());
+
+        assertTrue(sut.add(5L));
+        assertTrue(sut.add(0L));
+        assertTrue(sut.add(-3L));
+        assertFalse(sut.add(5L));
+        assertFalse(sut.add(0L));
+
+        assertEquals(3, sut.size());
+        assertTrue(sut.contains(5L));
+        assertTrue(sut.contains(0L));
+        assertTrue(sut.contains(-3L));
+        assertFalse(sut.contains(4L));
+    }
+
+    /**
+     * Tests the set keeps all values when it grows past its initial size.
+     */
+    @Test
+    public void testGrow()
+    {
+        LongHashSet sut = new LongHashSet(1);
+        for (long i = 1; i <= MANY; i++)
+        {
+            sut.add(i * MANY);
+        }
+
+        assertEquals(MANY, sut.size());
+        for (long i = 1; i <= MANY; i++)
+        {
+            assertTrue(sut.contains(i * MANY));
+            assertFalse(sut.contains(i * MANY + 1));
+        }
+    }
+}
@@ -51,6 +51,11 @@ public class UnseenActivityNotificationPanel extends FlowPanel
      */
     private static final int MAX_UNSEEN = 100;
 
+    /**
+     * Largest unseen count displayed exactly; counts above it are shown as "99+".
+     */
+    private static final int MAX_DISPLAYED_UNSEEN = MAX_UNSEEN - 1;
+
     /**
      * Default constructor.
      */
@@ -116,6 +121,11 @@ public class UnseenActivityNotificationPanel extends FlowPanel
                                 unseenActivityCount.setHTML("<div><strong>" + ev.getResponse().toString()
                                         + "</strong> new update</div>");
                             }
+                            else if (ev.getResponse() > MAX_DISPLAYED_UNSEEN)
+                            {
+                                unseenActivityCount.setHTML("<div><strong>" + MAX_DISPLAYED_UNSEEN
+                                        + "+</strong> new updates</div>");
+                            }
                             else
                             {
                                 unseenActivityCount.setHTML("<div><strong>" + ev.getResponse().toString()